@@ -0,0 +1,255 @@
+/*
+ * IFMMLBenchmark.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Element;
+import org.xml.sax.InputSource;
+
+/**
+ * The benchmarks for loading and saving maps as IFMML.  Each benchmark is
+ * run against synthetic maps of increasing size.  Run the benchmarks with
+ * the Gradle <code>jmh</code> task, which also enables the allocation
+ * (<code>-prof gc</code>) and peak heap (PeakHeapProfiler) profilers.
+ */
+
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( value = 1, jvmArgsAppend = { "-Xmx2g", "-Djava.awt.headless=true" } )
+@State( Scope.Benchmark )
+public class IFMMLBenchmark
+    extends Object
+{
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The number of rooms in the benchmark map.
+     */
+    @Param( { "1000", "10000", "100000" } )
+    public int m_nRoomCount;
+
+    /**
+     * The benchmark map.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The MAP element of the parsed IFMML document for the benchmark map.
+     */
+    protected Element m_oMapElement;
+
+    /**
+     * The document used for the round trip benchmark.
+     */
+    protected IFMapDoc m_oDoc;
+
+    /**
+     * The file used for the round trip benchmark.
+     */
+    protected File m_oFile;
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Creates the benchmark map and its IFMML representations.
+     *
+     * @exception  Exception  If the benchmark map cannot be created.
+     */
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws Exception
+    {
+        // Create the benchmark map
+        m_oMap = MapFixtures.createMap( m_nRoomCount );
+
+        // Parse the IFMML for the map once so that readIFMML is measured
+        // without the XML parser
+        m_oDoc = new IFMapDoc();
+        m_oMapElement = m_oDoc.getDocumentBuilder().parse( new InputSource(
+            new StringReader( MapFixtures.toDocument( m_oMap ) ) ) ).getDocumentElement();
+
+        // Save the map to the round trip file
+        m_oFile = File.createTempFile( "ifmap-bench", ".ifm" );
+        m_oFile.deleteOnExit();
+        m_oDoc.m_oMap = m_oMap;
+        m_oDoc.save( m_oFile.getAbsolutePath() );
+    }
+
+    /**
+     * Deletes the round trip file.
+     */
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        // Delete the round trip file
+        m_oFile.delete();
+    }
+
+    /**
+     * Measures reading a map from a parsed IFMML document.
+     *
+     * @return  The map that was read.
+     */
+
+    @Benchmark
+    public Map readIFMML()
+    {
+        // Read a new map from the parsed document
+        Map oMap = new Map();
+        oMap.readIFMML( m_oMapElement );
+        return( oMap );
+    }
+
+    /**
+     * Measures writing a map as IFMML.  The output is discarded so that
+     * only the cost of producing it is measured.
+     *
+     * @return  The number of characters written.
+     *
+     * @exception  IOException  If an error occurs while writing.
+     */
+
+    @Benchmark
+    public long writeIFMML()
+        throws IOException
+    {
+        // Write the map to a writer that discards its output
+        CountingWriter oCountingWriter = new CountingWriter();
+        BufferedWriter oWriter = new BufferedWriter( oCountingWriter );
+        m_oMap.writeIFMML( oWriter );
+        oWriter.flush();
+        return( oCountingWriter.getCount() );
+    }
+
+    /**
+     * Measures saving the document to a file and loading it back, including
+     * file I/O and validating XML parsing.
+     *
+     * @return  The map that was loaded.
+     */
+
+    @Benchmark
+    public Map roundTrip()
+    {
+        // Save the document and load it back
+        m_oDoc.save( m_oFile.getAbsolutePath() );
+        m_oDoc.load( m_oFile.getAbsolutePath() );
+        return( m_oDoc.m_oMap );
+    }
+
+
+    // **********************************************************************
+    // *********************          Streams           *********************
+    // **********************************************************************
+
+    /**
+     * The writer that discards its output and counts the number of
+     * characters written to it.
+     */
+
+    protected static class CountingWriter
+        extends Writer
+    {
+        // ------------------------------------------------------------------
+        // -----------------    Instance Variables     ----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The number of characters written.
+         */
+        private long m_nCount;
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Public Instance Methods  ----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Gets the number of characters written.
+         *
+         * @return  The number of characters written.
+         */
+
+        public long getCount()
+        {
+            // Return the character count
+            return( m_nCount );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------     Writer Overrides      ----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.io.Writer#write( char[], int, int )  write
+         */
+
+        public void write( char[] ach, int nOffset, int nLength )
+        {
+            // Count the characters
+            m_nCount += nLength;
+        }
+
+        /**
+         * @see  java.io.Writer#flush()  flush
+         */
+
+        public void flush()
+        {
+        }
+
+        /**
+         * @see  java.io.Writer#close()  close
+         */
+
+        public void close()
+        {
+        }
+    }
+}
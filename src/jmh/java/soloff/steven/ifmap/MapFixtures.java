@@ -0,0 +1,135 @@
+/*
+ * MapFixtures.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+
+/**
+ * The collection of synthetic maps used as inputs by the benchmarks.  The
+ * maps are created by MapGenerator from a fixed seed, so every benchmark
+ * run measures the same maps.
+ */
+
+public final class MapFixtures
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The seed from which the maps (and any other random benchmark inputs)
+     * are generated.
+     */
+    public static final long SEED = 20130101L;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapFixtures object.  This class cannot be
+     * instantiated.
+     */
+
+    private MapFixtures()
+    {
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Creates a map with the default edge density and self-loop ratio of
+     * MapGenerator.
+     *
+     * @param  nRoomCount  The number of rooms in the map.
+     *
+     * @return  The new map.
+     *
+     * @exception  IllegalArgumentException  If nRoomCount is less than 1.
+     */
+
+    public static Map createMap( int nRoomCount )
+        throws IllegalArgumentException
+    {
+        // Create the map with the default ratios
+        return( createMap( nRoomCount, MapGenerator.DEFAULT_EDGE_DENSITY,
+            MapGenerator.DEFAULT_SELF_LOOP_RATIO ) );
+    }
+
+    /**
+     * Creates a map with the specified edge density and self-loop ratio.
+     *
+     * @param  nRoomCount  The number of rooms in the map.
+     * @param  dEdgeDensity  The average number of compass edges per room.
+     * @param  dSelfLoopRatio  The fraction of rooms that have an edge that
+     *     starts and ends at the same room.
+     *
+     * @return  The new map.
+     *
+     * @exception  IllegalArgumentException  If any argument is out of the
+     *     range accepted by MapGenerator.
+     */
+
+    public static Map createMap( int nRoomCount, double dEdgeDensity, double dSelfLoopRatio )
+        throws IllegalArgumentException
+    {
+        // Generate the map from the fixed seed
+        MapGenerator oGenerator = new MapGenerator();
+        oGenerator.setRoomCount( nRoomCount );
+        oGenerator.setEdgeDensity( dEdgeDensity );
+        oGenerator.setSelfLoopRatio( dSelfLoopRatio );
+        oGenerator.setSeed( SEED );
+        return( oGenerator.generate() );
+    }
+
+    /**
+     * Gets the specified map as a complete IFMML document, as it would be
+     * saved by IFMapDoc.save.
+     *
+     * @param  oMap  The map to be written.
+     *
+     * @return  The IFMML document text.
+     */
+
+    public static String toDocument( Map oMap )
+    {
+        // Write the document into a string
+        StringWriter oDocument = new StringWriter();
+        try
+        {
+            BufferedWriter oWriter = new BufferedWriter( oDocument );
+            IFMapDoc.writeDocument( oMap, oWriter );
+            oWriter.flush();
+        }
+        catch( IOException e )
+        {
+            throw new IllegalStateException( e );
+        }
+        return( oDocument.toString() );
+    }
+}
@@ -0,0 +1,393 @@
+/*
+ * MapUIBenchmark.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmarks for the hot paths of MapUI that run while the user
+ * interacts with the map: edge hit testing, edge bounds, the edge
+ * inclusion performed while dragging a room, edge lookup by room exit, and
+ * painting.  The benchmarks are run against maps created by MapFixtures
+ * with varying edge density and self-loop ratio.  Each invocation uses the
+ * next of a fixed, seeded sequence of probes so that the results are
+ * repeatable.
+ */
+
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( value = 1, jvmArgsAppend = { "-Djava.awt.headless=true" } )
+@State( Scope.Thread )
+public class MapUIBenchmark
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The number of probes in each probe sequence (a power of two).
+     */
+    protected static final int PROBE_COUNT = 1024;
+
+    /**
+     * The width of the viewport painted by the paint benchmarks.
+     */
+    protected static final int VIEWPORT_WIDTH = 800;
+
+    /**
+     * The height of the viewport painted by the paint benchmarks.
+     */
+    protected static final int VIEWPORT_HEIGHT = 600;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The number of rooms in the benchmark map.
+     */
+    @Param( { "2500" } )
+    public int m_nRoomCount;
+
+    /**
+     * The average number of compass edges per room.
+     */
+    @Param( { "1.0", "2.0", "4.0" } )
+    public double m_dEdgeDensity;
+
+    /**
+     * The fraction of rooms that have an edge that starts and ends at the
+     * same room.
+     */
+    @Param( { "0.0", "0.1", "0.5" } )
+    public double m_dSelfLoopRatio;
+
+    /**
+     * The benchmark map.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The UI of the benchmark map.
+     */
+    protected MapUI m_oMapUI;
+
+    /**
+     * The points used to probe the edge hit test.
+     */
+    protected Point[] m_aptProbes;
+
+    /**
+     * The rectangles used to probe the edge inclusion (the bounds of random
+     * rooms).
+     */
+    protected Rectangle[] m_arectProbes;
+
+    /**
+     * The edges used to probe the edge bounds.
+     */
+    protected Edge[] m_aoEdgeProbes;
+
+    /**
+     * The rooms used to probe the edge lookup by room exit.
+     */
+    protected Room[] m_aoRoomProbes;
+
+    /**
+     * The exits used to probe the edge lookup by room exit.
+     */
+    protected int[] m_anExitProbes;
+
+    /**
+     * The viewports used to probe painting.
+     */
+    protected Rectangle[] m_arectViewports;
+
+    /**
+     * The image into which the map is painted.
+     */
+    protected BufferedImage m_oImage;
+
+    /**
+     * The graphics context of the image.
+     */
+    protected Graphics2D m_oGraphics;
+
+    /**
+     * The index of the next probe.
+     */
+    protected int m_nProbe;
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Creates the benchmark map, its UI, and the probe sequences.
+     *
+     * @exception  Exception  If the UI of the benchmark map cannot be
+     *     created.
+     */
+
+    @Setup( Level.Trial )
+    public void setUp()
+        throws Exception
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Random oRandom;  // Random number generator
+        Room[] aoRooms;  // All rooms of the map
+        Edge[] aoEdges;  // All edges of the map
+        int    nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Create the benchmark map and lay out its UI on the event dispatch
+        // thread, where the repaint requests made while adding the rooms
+        // are merged
+        m_oMap = MapFixtures.createMap( m_nRoomCount, m_dEdgeDensity, m_dSelfLoopRatio );
+        EventQueue.invokeAndWait( new Runnable()
+        {
+            public void run()
+            {
+                m_oMapUI = new MapUI( m_oMap );
+                for( final Room room : m_oMap.m_oRoomMap.values() )
+                    m_oMapUI.addRoom( room );
+                m_oMapUI.setSize( m_oMap.m_dmMap );
+                m_oMapUI.doLayout();
+            }
+        } );
+
+        // Create the probe sequences
+        oRandom = new Random( MapFixtures.SEED );
+        aoRooms = m_oMap.m_oRoomMap.values().toArray( new Room[ 0 ] );
+        aoEdges = m_oMap.m_oEdgeMap.values().toArray( new Edge[ 0 ] );
+        m_aptProbes = new Point[ PROBE_COUNT ];
+        m_arectProbes = new Rectangle[ PROBE_COUNT ];
+        m_aoEdgeProbes = new Edge[ PROBE_COUNT ];
+        m_aoRoomProbes = new Room[ PROBE_COUNT ];
+        m_anExitProbes = new int[ PROBE_COUNT ];
+        m_arectViewports = new Rectangle[ PROBE_COUNT ];
+        for( nI = 0; nI < PROBE_COUNT; nI++ )
+        {
+            m_aptProbes[ nI ] = new Point( oRandom.nextInt( m_oMap.m_dmMap.width ),
+                oRandom.nextInt( m_oMap.m_dmMap.height ) );
+            m_arectProbes[ nI ] = aoRooms[ oRandom.nextInt( aoRooms.length ) ].getBounds();
+            m_aoEdgeProbes[ nI ] = aoEdges.length > 0 ? aoEdges[ oRandom.nextInt( aoEdges.length ) ] : null;
+            m_aoRoomProbes[ nI ] = aoRooms[ oRandom.nextInt( aoRooms.length ) ];
+            m_anExitProbes[ nI ] = oRandom.nextInt( Room.NUM_EXITS );
+            m_arectViewports[ nI ] = new Rectangle(
+                oRandom.nextInt( Math.max( 1, m_oMap.m_dmMap.width - VIEWPORT_WIDTH ) ),
+                oRandom.nextInt( Math.max( 1, m_oMap.m_dmMap.height - VIEWPORT_HEIGHT ) ),
+                VIEWPORT_WIDTH, VIEWPORT_HEIGHT );
+        }
+        m_nProbe = 0;
+
+        // Create the image into which the map is painted
+        m_oImage = new BufferedImage( VIEWPORT_WIDTH, VIEWPORT_HEIGHT, BufferedImage.TYPE_INT_RGB );
+        m_oGraphics = m_oImage.createGraphics();
+    }
+
+    /**
+     * Releases the graphics context of the image.
+     */
+
+    @TearDown( Level.Trial )
+    public void tearDown()
+    {
+        // Release the graphics context
+        m_oGraphics.dispose();
+    }
+
+    /**
+     * Measures hit testing a point against all edges.
+     *
+     * @return  The edge under the point.
+     */
+
+    @Benchmark
+    public Edge edgeHitTest()
+    {
+        // Hit test the next probe point
+        return( m_oMapUI.edgeHitTest( m_aptProbes[ nextProbe() ] ) );
+    }
+
+    /**
+     * Measures computing the bounds of an edge.
+     *
+     * @return  The bounds of the edge.
+     */
+
+    @Benchmark
+    public Rectangle getEdgeBounds()
+    {
+        // Compute the bounds of the next probe edge
+        Edge oEdge = m_aoEdgeProbes[ nextProbe() ];
+        return( oEdge != null ? m_oMapUI.getEdgeBounds( oEdge ) : null );
+    }
+
+    /**
+     * Measures including the bounds of the edges that intersect a room, as
+     * is done for each mouse event while dragging a room.
+     *
+     * @return  The bounds of the room and its intersecting edges.
+     */
+
+    @Benchmark
+    public Rectangle includeEdges()
+    {
+        // Include the edges intersecting the next probe rectangle
+        return( m_oMapUI.m_oMouseInputListener.includeEdges( m_arectProbes[ nextProbe() ] ) );
+    }
+
+    /**
+     * Measures looking up the edge attached to a room exit.
+     *
+     * @return  The edge attached to the room exit.
+     */
+
+    @Benchmark
+    public Edge getEdgeAtRoomExit()
+    {
+        // Look up the edge at the next probe room exit
+        int nProbe = nextProbe();
+        return( m_oMap.getEdgeAtRoomExit( m_aoRoomProbes[ nProbe ], m_anExitProbes[ nProbe ] ) );
+    }
+
+    /**
+     * Measures painting a viewport of the map background and edges.
+     *
+     * @return  The image into which the map was painted.
+     */
+
+    @Benchmark
+    public BufferedImage paintComponent()
+    {
+        // Paint the next probe viewport
+        paintViewport( m_arectViewports[ nextProbe() ] );
+        return( m_oImage );
+    }
+
+    /**
+     * Measures painting a viewport of the map background and edges after
+     * the edges have changed, as is done after each edit.
+     *
+     * @return  The image into which the map was painted.
+     */
+
+    @Benchmark
+    public BufferedImage paintComponentAfterEdit()
+    {
+        // Discard the cached edges and paint the next probe viewport
+        m_oMapUI.invalidateEdgeBatches();
+        paintViewport( m_arectViewports[ nextProbe() ] );
+        return( m_oImage );
+    }
+
+    /**
+     * Measures painting a viewport of the map background and edges after a
+     * room has been moved, as is done for each step of a drag.
+     *
+     * @return  The image into which the map was painted.
+     */
+
+    @Benchmark
+    public BufferedImage paintComponentAfterDrag()
+    {
+        // Move the next probe room back or forth by one grid step, discard
+        // the cached edges at it, and paint the next probe viewport
+        int nProbe = nextProbe();
+        Room oRoom = m_aoRoomProbes[ nProbe ];
+        m_oMapUI.m_oRoomUIMap.get( oRoom.m_strID ).setLocation(
+            oRoom.m_rectBounds.x + ((nProbe & 1) == 0 ? MapUI.GRID_SIZE : -MapUI.GRID_SIZE),
+            oRoom.m_rectBounds.y );
+        m_oMapUI.invalidateRoomEdges( oRoom );
+        paintViewport( m_arectViewports[ nProbe ] );
+        return( m_oImage );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Gets the index of the next probe in each probe sequence.
+     *
+     * @return  The index of the next probe.
+     */
+
+    protected int nextProbe()
+    {
+        // Advance to the next probe, wrapping around at the end
+        m_nProbe = (m_nProbe + 1) & (PROBE_COUNT - 1);
+        return( m_nProbe );
+    }
+
+    /**
+     * Paints the specified viewport of the map into the image.
+     *
+     * @param  rectViewport  The viewport to be painted.
+     */
+
+    protected void paintViewport( Rectangle rectViewport )
+    {
+        // Translate the viewport to the origin of the image, clip to it,
+        // and paint the component
+        Graphics2D g = (Graphics2D)m_oGraphics.create();
+        try
+        {
+            g.translate( -rectViewport.x, -rectViewport.y );
+            g.clipRect( rectViewport.x, rectViewport.y, rectViewport.width, rectViewport.height );
+            m_oMapUI.paintComponent( g );
+        }
+        finally
+        {
+            g.dispose();
+        }
+    }
+}
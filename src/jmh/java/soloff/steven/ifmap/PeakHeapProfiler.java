@@ -0,0 +1,109 @@
+/*
+ * PeakHeapProfiler.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.Collection;
+import java.util.Collections;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * The JMH profiler that reports the peak heap usage of each iteration.  The
+ * peak usage of every heap memory pool is reset before the iteration, and
+ * the sum of the peak usages is reported after the iteration.  Because the
+ * pools peak at different times, the sum is an upper bound on the true peak
+ * heap usage.
+ *
+ * <p>Enable the profiler with <code>-prof
+ * soloff.steven.ifmap.PeakHeapProfiler</code>.
+ */
+
+public class PeakHeapProfiler
+    extends Object
+    implements InternalProfiler
+{
+    // **********************************************************************
+    // *********************  Public Interface Methods  *********************
+    // **********************************************************************
+
+    /**
+     * @see  org.openjdk.jmh.profile.Profiler#getDescription()
+     *     getDescription
+     */
+
+    public String getDescription()
+    {
+        // Return the description of the profiler
+        return( "Peak heap usage per iteration" );
+    }
+
+    /**
+     * @see  org.openjdk.jmh.profile.InternalProfiler#beforeIteration(
+     *     BenchmarkParams, IterationParams )  beforeIteration
+     */
+
+    public void beforeIteration( BenchmarkParams oBenchmarkParams, IterationParams oIterationParams )
+    {
+        // Reset the peak usage of each heap pool
+        for( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if( pool.getType() == MemoryType.HEAP && pool.isValid() )
+                pool.resetPeakUsage();
+        }
+    }
+
+    /**
+     * @see  org.openjdk.jmh.profile.InternalProfiler#afterIteration(
+     *     BenchmarkParams, IterationParams, IterationResult )  afterIteration
+     */
+
+    public Collection<? extends Result> afterIteration( BenchmarkParams oBenchmarkParams,
+        IterationParams oIterationParams, IterationResult oIterationResult )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        long nPeakBytes;  // Sum of the peak usage of each heap pool
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Sum the peak usage of each heap pool
+        nPeakBytes = 0;
+        for( final MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans() )
+        {
+            if( pool.getType() == MemoryType.HEAP && pool.isValid() )
+                nPeakBytes += pool.getPeakUsage().getUsed();
+        }
+
+        // Report the peak heap usage in megabytes
+        return( Collections.singleton( new ScalarResult( "peak.heap",
+            nPeakBytes / (1024.0 * 1024.0), "MB", AggregationPolicy.MAX ) ) );
+    }
+}
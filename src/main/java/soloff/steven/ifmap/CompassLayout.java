@@ -0,0 +1,1069 @@
+/*
+ * CompassLayout.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The object that places the rooms of a Map on a lattice so that as many
+ * edges as possible point the way their exits say: an edge leaving a room
+ * by its north exit leads to a room directly above it, one leaving by its
+ * northeast exit to a room up and to the right, and so on.  An edge is
+ * satisfied if the room at its end lies any whole number of cells from
+ * the room at its start in the direction of the start exit.
+ *
+ * <p>Up and down exits have no direction on the map, so the rooms are
+ * divided into components joined by edges with a compass direction, which
+ * for most maps are the floors of the game.  Each component is laid out
+ * separately, in parallel on a fork-join pool: its rooms are placed in
+ * breadth-first order, each in the direction of the edge by which it is
+ * reached, and a spatial hash of the occupied cells finds the nearest free
+ * cell when that one is taken.  The rooms are then moved one at a time to
+ * cells that satisfy more of their edges.  Finally the components are
+ * packed in rows in the order of their position on the map.
+ *
+ * <p>Each cell of the lattice is large enough to hold the largest room
+ * with a gap around it, and is a multiple of MapUI.GRID_SIZE, so the rooms
+ * are placed on the grid.
+ */
+
+public class CompassLayout
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The horizontal and vertical step on the lattice of each exit, or
+     * zero for the exits with no direction on the map.
+     */
+    protected static final int[][] EXIT_STEPS =
+    {
+        { -1, -1 },  // EXIT_NW
+        {  0, -1 },  // EXIT_N
+        {  1, -1 },  // EXIT_NE
+        { -1,  0 },  // EXIT_W
+        {  1,  0 },  // EXIT_E
+        { -1,  1 },  // EXIT_SW
+        {  0,  1 },  // EXIT_S
+        {  1,  1 },  // EXIT_SE
+        {  0,  0 },  // EXIT_U
+        {  0,  0 }   // EXIT_D
+    };
+
+    /**
+     * The number of cells a room may be placed from the room it is reached
+     * from, in the direction of the edge, before a free cell is sought in
+     * any direction.
+     */
+    protected static final int MAX_STRETCH = 4;
+
+    /**
+     * The largest number of passes that move rooms to cells that satisfy
+     * more of their edges.
+     */
+    protected static final int MAX_SWEEPS = 8;
+
+    /**
+     * The number of rooms above which a task divides its components
+     * between subtasks.
+     */
+    protected static final int ROOMS_PER_TASK = 256;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The rooms laid out, in order of their position on the map.
+     */
+    protected Room[] m_aoRooms;
+
+    /**
+     * The width and height of each room.
+     */
+    protected int[] m_anWidth, m_anHeight;
+
+    /**
+     * The rooms at the start and end of each edge with a direction.
+     */
+    protected int[] m_anEdgeStart, m_anEdgeEnd;
+
+    /**
+     * The step on the lattice from the start of each edge towards its end.
+     */
+    protected int[] m_anEdgeStepX, m_anEdgeStepY;
+
+    /**
+     * The first entry in m_anArcs of each room; the entries of a room run
+     * to the first entry of the next room.
+     */
+    protected int[] m_anFirstArc;
+
+    /**
+     * The edges at each room.
+     */
+    protected int[] m_anArcs;
+
+    /**
+     * The component of each room.
+     */
+    protected int[] m_anComponent;
+
+    /**
+     * The first entry in m_anComponentRooms of each component.
+     */
+    protected int[] m_anComponentFirst;
+
+    /**
+     * The rooms of each component, in order of their position on the map.
+     */
+    protected int[] m_anComponentRooms;
+
+    /**
+     * The width and height in cells of each component once it is laid out.
+     */
+    protected int[] m_anComponentWidth, m_anComponentHeight;
+
+    /**
+     * The cell of each room.
+     */
+    protected int[] m_anCellX, m_anCellY;
+
+    /**
+     * The width and height of a cell in pixels.
+     */
+    protected int m_nCellWidth, m_nCellHeight;
+
+    /**
+     * The number of edges whose direction is satisfied.
+     */
+    protected int m_nSatisfiedCount;
+
+    /**
+     * Indicates if the layout has been computed.
+     */
+    protected boolean m_bDone;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new CompassLayout object for the rooms and edges of the
+     * specified Map.
+     *
+     * @param  oMap  The Map to be laid out.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public CompassLayout( Map oMap )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashMap<String, Integer> oIndex;      // Index of each room by ID
+        Integer                  oStart,      // Index of an edge's start room
+                                 oEnd;        // Index of an edge's end room
+        int[]                    anStep;      // Step of an edge's exit
+        int                      nRooms,      // Number of rooms
+                                 nEdges,      // Number of edges copied
+                                 nMaxWidth,   // Width of the widest room
+                                 nMaxHeight,  // Height of the tallest room
+                                 nI;          // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Copy the rooms, from the top left of the map to the bottom right,
+        // so that the components are numbered in that order
+        nRooms = oMap.m_oRoomMap.size();
+        m_aoRooms = oMap.m_oRoomMap.values().toArray( new Room[ nRooms ] );
+        Arrays.sort( m_aoRooms, new PositionComparator() );
+        m_anWidth = new int[ nRooms ];
+        m_anHeight = new int[ nRooms ];
+        oIndex = new HashMap<String, Integer>( (int)(nRooms / 0.75f) + 1 );
+        nMaxWidth = RoomUI.MIN_ROOM_WIDTH;
+        nMaxHeight = RoomUI.MIN_ROOM_HEIGHT;
+        for( nI = 0; nI < nRooms; nI++ )
+        {
+            m_anWidth[ nI ] = m_aoRooms[ nI ].m_rectBounds.width;
+            m_anHeight[ nI ] = m_aoRooms[ nI ].m_rectBounds.height;
+            nMaxWidth = Math.max( nMaxWidth, m_anWidth[ nI ] );
+            nMaxHeight = Math.max( nMaxHeight, m_anHeight[ nI ] );
+            oIndex.put( m_aoRooms[ nI ].getID(), Integer.valueOf( nI ) );
+        }
+
+        // Size the cells to hold the largest room with a gap of a smallest
+        // room around it, as MapGenerator spaces its rooms
+        m_nCellWidth = roundToGrid( nMaxWidth + RoomUI.MIN_ROOM_WIDTH );
+        m_nCellHeight = roundToGrid( nMaxHeight + RoomUI.MIN_ROOM_HEIGHT );
+
+        // Copy the edges between different rooms that have a direction:
+        // that of the start exit or, if it has none, the opposite of the
+        // end exit
+        m_anEdgeStart = new int[ oMap.m_oEdgeMap.size() ];
+        m_anEdgeEnd = new int[ oMap.m_oEdgeMap.size() ];
+        m_anEdgeStepX = new int[ oMap.m_oEdgeMap.size() ];
+        m_anEdgeStepY = new int[ oMap.m_oEdgeMap.size() ];
+        nEdges = 0;
+        for( final Edge oEdge : oMap.m_oEdgeMap.values() )
+        {
+            oStart = oIndex.get( oEdge.m_strStartRoomID );
+            oEnd = oIndex.get( oEdge.m_strEndRoomID );
+            if( oStart == null || oEnd == null || oStart.equals( oEnd ) )
+                continue;
+            anStep = EXIT_STEPS[ oEdge.m_nStartExit ];
+            m_anEdgeStepX[ nEdges ] = anStep[ 0 ];
+            m_anEdgeStepY[ nEdges ] = anStep[ 1 ];
+            if( anStep[ 0 ] == 0 && anStep[ 1 ] == 0 )
+            {
+                anStep = EXIT_STEPS[ oEdge.m_nEndExit ];
+                m_anEdgeStepX[ nEdges ] = -anStep[ 0 ];
+                m_anEdgeStepY[ nEdges ] = -anStep[ 1 ];
+                if( anStep[ 0 ] == 0 && anStep[ 1 ] == 0 )
+                    continue;
+            }
+            m_anEdgeStart[ nEdges ] = oStart.intValue();
+            m_anEdgeEnd[ nEdges ] = oEnd.intValue();
+            nEdges++;
+        }
+        m_anEdgeStart = Arrays.copyOf( m_anEdgeStart, nEdges );
+        m_anEdgeEnd = Arrays.copyOf( m_anEdgeEnd, nEdges );
+        m_anEdgeStepX = Arrays.copyOf( m_anEdgeStepX, nEdges );
+        m_anEdgeStepY = Arrays.copyOf( m_anEdgeStepY, nEdges );
+
+        // List the edges at each room
+        m_anFirstArc = new int[ nRooms + 1 ];
+        for( nI = 0; nI < nEdges; nI++ )
+        {
+            m_anFirstArc[ m_anEdgeStart[ nI ] + 1 ]++;
+            m_anFirstArc[ m_anEdgeEnd[ nI ] + 1 ]++;
+        }
+        for( nI = 0; nI < nRooms; nI++ )
+            m_anFirstArc[ nI + 1 ] += m_anFirstArc[ nI ];
+        m_anArcs = new int[ nEdges * 2 ];
+        anStep = Arrays.copyOf( m_anFirstArc, nRooms );
+        for( nI = 0; nI < nEdges; nI++ )
+        {
+            m_anArcs[ anStep[ m_anEdgeStart[ nI ] ]++ ] = nI;
+            m_anArcs[ anStep[ m_anEdgeEnd[ nI ] ]++ ] = nI;
+        }
+
+        // Divide the rooms into components
+        m_anCellX = new int[ nRooms ];
+        m_anCellY = new int[ nRooms ];
+        findComponents();
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the rooms laid out, in the order of the positions returned by
+     * getLocations.
+     *
+     * @return  The rooms.
+     */
+
+    public Room[] getRooms()
+    {
+        // Return a copy of the rooms
+        return( m_aoRooms.clone() );
+    }
+
+    /**
+     * Gets the number of components laid out separately.
+     *
+     * @return  The number of components.
+     */
+
+    public int getComponentCount()
+    {
+        // Return the number of components
+        return( m_anComponentWidth.length );
+    }
+
+    /**
+     * Gets the number of edges between different rooms with a direction on
+     * the map.
+     *
+     * @return  The number of edges.
+     */
+
+    public int getConstrainedCount()
+    {
+        // Return the number of edges with a direction
+        return( m_anEdgeStart.length );
+    }
+
+    /**
+     * Gets the number of edges with a direction on the map that point that
+     * way in the layout.
+     *
+     * @return  The number of edges satisfied, or zero if the layout has not
+     *     been computed.
+     */
+
+    public int getSatisfiedCount()
+    {
+        // Return the number of edges satisfied
+        return( m_nSatisfiedCount );
+    }
+
+    /**
+     * Indicates if the layout has been computed.
+     *
+     * @return  A flag indicating if the layout is complete.
+     */
+
+    public boolean isDone()
+    {
+        // Return the flag
+        return( m_bDone );
+    }
+
+    /**
+     * Computes the layout, laying out the components in parallel and then
+     * packing them.  Does nothing if the layout has been computed.
+     */
+
+    public void run()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ForkJoinPool oPool;  // Pool that lays out the components
+        int          nI;     // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure the layout has not been computed
+        if( m_bDone )
+            return;
+
+        // Lay out the components in parallel
+        oPool = new ForkJoinPool();
+        try
+        {
+            oPool.invoke( new ComponentTask( 0, m_anComponentWidth.length ) );
+        }
+        finally
+        {
+            oPool.shutdown();
+        }
+
+        // Pack the components and count the edges satisfied
+        packComponents();
+        m_nSatisfiedCount = 0;
+        for( nI = 0; nI < m_anEdgeStart.length; nI++ )
+        {
+            if( isSatisfied( nI, m_anCellX[ m_anEdgeStart[ nI ] ], m_anCellY[ m_anEdgeStart[ nI ] ],
+                m_anCellX[ m_anEdgeEnd[ nI ] ], m_anCellY[ m_anEdgeEnd[ nI ] ] ) )
+                m_nSatisfiedCount++;
+        }
+        m_bDone = true;
+    }
+
+    /**
+     * Gets the locations of the rooms: the top-left corners of their
+     * bounds, each centered in its cell as nearly as the grid allows.
+     *
+     * @param  anX  Receives the horizontal coordinate of each room, in the
+     *     order of getRooms.
+     * @param  anY  Receives the vertical coordinate of each room.
+     *
+     * @exception  IllegalArgumentException  If either array is shorter than
+     *     the number of rooms.
+     * @exception  IllegalStateException  If the layout has not been
+     *     computed.
+     */
+
+    public void getLocations( int[] anX, int[] anY )
+        throws IllegalArgumentException, IllegalStateException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nI;  // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( anX == null || anY == null || anX.length < m_aoRooms.length || anY.length < m_aoRooms.length )
+            throw new IllegalArgumentException();
+        if( !m_bDone )
+            throw new IllegalStateException();
+
+        // Place each room in its cell, one grid cell from the origin
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            anX[ nI ] = MapUI.GRID_SIZE + m_anCellX[ nI ] * m_nCellWidth +
+                (m_nCellWidth - m_anWidth[ nI ]) / 2 / MapUI.GRID_SIZE * MapUI.GRID_SIZE;
+            anY[ nI ] = MapUI.GRID_SIZE + m_anCellY[ nI ] * m_nCellHeight +
+                (m_nCellHeight - m_anHeight[ nI ]) / 2 / MapUI.GRID_SIZE * MapUI.GRID_SIZE;
+        }
+    }
+
+    /**
+     * Moves the rooms to their locations and sizes the Map to hold them.
+     * This is for use without a MapUI; a MapUI displaying the Map must move
+     * the rooms itself (see MapUI.setRoomLocations).
+     *
+     * @param  oMap  The Map the rooms belong to.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     * @exception  IllegalStateException  If the layout has not been
+     *     computed.
+     */
+
+    public void apply( Map oMap )
+        throws IllegalArgumentException, IllegalStateException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anX,    // Horizontal location of each room
+              anY;    // Vertical location of each room
+        int   nMaxX,  // Right edge of the rooms
+              nMaxY,  // Bottom edge of the rooms
+              nI;     // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Compute the locations
+        anX = new int[ m_aoRooms.length ];
+        anY = new int[ m_aoRooms.length ];
+        getLocations( anX, anY );
+
+        // Move each room and size the Map to hold them
+        nMaxX = MapUI.MIN_MAP_WIDTH;
+        nMaxY = MapUI.MIN_MAP_HEIGHT;
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            m_aoRooms[ nI ].m_rectBounds.setLocation( anX[ nI ], anY[ nI ] );
+            nMaxX = Math.max( nMaxX, anX[ nI ] + m_anWidth[ nI ] );
+            nMaxY = Math.max( nMaxY, anY[ nI ] + m_anHeight[ nI ] );
+        }
+        oMap.m_dmMap.setSize( nMaxX, nMaxY );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Divides the rooms into the components joined by edges with a
+     * direction, numbering the components in the order of their first
+     * room, and lists the rooms of each component.
+     */
+
+    protected void findComponents()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anQueue,      // Rooms to be visited
+              anFill;       // Next free entry of each component
+        int   nRooms,       // Number of rooms
+              nComponents,  // Number of components found
+              nHead,        // Next room in the queue
+              nTail,        // End of the queue
+              nRoom,        // Room being visited
+              nOther,       // Room at the other end of an edge
+              nI, nJ;       // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Search from each room not yet in a component
+        nRooms = m_aoRooms.length;
+        m_anComponent = new int[ nRooms ];
+        Arrays.fill( m_anComponent, -1 );
+        anQueue = new int[ nRooms ];
+        nComponents = 0;
+        for( nI = 0; nI < nRooms; nI++ )
+        {
+            if( m_anComponent[ nI ] >= 0 )
+                continue;
+            m_anComponent[ nI ] = nComponents;
+            anQueue[ 0 ] = nI;
+            nHead = 0;
+            nTail = 1;
+            while( nHead < nTail )
+            {
+                nRoom = anQueue[ nHead++ ];
+                for( nJ = m_anFirstArc[ nRoom ]; nJ < m_anFirstArc[ nRoom + 1 ]; nJ++ )
+                {
+                    nOther = getOtherRoom( m_anArcs[ nJ ], nRoom );
+                    if( m_anComponent[ nOther ] < 0 )
+                    {
+                        m_anComponent[ nOther ] = nComponents;
+                        anQueue[ nTail++ ] = nOther;
+                    }
+                }
+            }
+            nComponents++;
+        }
+
+        // List the rooms of each component in order
+        m_anComponentFirst = new int[ nComponents + 1 ];
+        for( nI = 0; nI < nRooms; nI++ )
+            m_anComponentFirst[ m_anComponent[ nI ] + 1 ]++;
+        for( nI = 0; nI < nComponents; nI++ )
+            m_anComponentFirst[ nI + 1 ] += m_anComponentFirst[ nI ];
+        m_anComponentRooms = new int[ nRooms ];
+        anFill = Arrays.copyOf( m_anComponentFirst, nComponents );
+        for( nI = 0; nI < nRooms; nI++ )
+            m_anComponentRooms[ anFill[ m_anComponent[ nI ] ]++ ] = nI;
+        m_anComponentWidth = new int[ nComponents ];
+        m_anComponentHeight = new int[ nComponents ];
+    }
+
+    /**
+     * Lays out one component with its top-left cell at the origin.  Only
+     * the entries of the component's rooms are written, so components may
+     * be laid out at the same time.
+     *
+     * @param  nComponent  The component.
+     */
+
+    protected void layoutComponent( int nComponent )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashMap<Long, Integer> oCells;     // Room in each occupied cell
+        int[]                  anQueue;    // Rooms in the order placed
+        long                   lCell;      // Key of a cell
+        boolean                bImproved;  // Indicates if a room was moved
+        int                    nFirst,     // First entry of the component
+                               nCount,     // Number of rooms
+                               nHead,      // Next room in the queue
+                               nTail,      // End of the queue
+                               nRoom,      // Room being placed or moved
+                               nEdge,      // Edge at the room
+                               nOther,     // Room at the other end
+                               nStepX,     // Step towards the other room
+                               nStepY,
+                               nX, nY,     // A cell
+                               nScore,     // Edges satisfied at a cell
+                               nBest,      // Edges satisfied at best cell
+                               nBestX,     // Best cell for the room
+                               nBestY,
+                               nMinX,      // Extent of the component
+                               nMinY,
+                               nMaxX,
+                               nMaxY,
+                               nSweep,     // Pass moving the rooms
+                               nI, nJ;     // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Place the first room of the component at the origin
+        nFirst = m_anComponentFirst[ nComponent ];
+        nCount = m_anComponentFirst[ nComponent + 1 ] - nFirst;
+        oCells = new HashMap<Long, Integer>( (int)(nCount / 0.75f) + 1 );
+        anQueue = new int[ nCount ];
+        anQueue[ 0 ] = m_anComponentRooms[ nFirst ];
+        m_anCellX[ anQueue[ 0 ] ] = 0;
+        m_anCellY[ anQueue[ 0 ] ] = 0;
+        oCells.put( Long.valueOf( getCellKey( 0, 0 ) ), Integer.valueOf( anQueue[ 0 ] ) );
+
+        // Place each room reached in the direction of the edge it is
+        // reached by, as near the room it is reached from as that direction
+        // allows, or else in the free cell nearest that
+        nHead = 0;
+        nTail = 1;
+        while( nHead < nTail )
+        {
+            nRoom = anQueue[ nHead++ ];
+            for( nJ = m_anFirstArc[ nRoom ]; nJ < m_anFirstArc[ nRoom + 1 ]; nJ++ )
+            {
+                nEdge = m_anArcs[ nJ ];
+                nOther = getOtherRoom( nEdge, nRoom );
+                if( isPlaced( oCells, nOther ) )
+                    continue;
+                nStepX = m_anEdgeStart[ nEdge ] == nRoom ? m_anEdgeStepX[ nEdge ] : -m_anEdgeStepX[ nEdge ];
+                nStepY = m_anEdgeStart[ nEdge ] == nRoom ? m_anEdgeStepY[ nEdge ] : -m_anEdgeStepY[ nEdge ];
+                lCell = findFreeCell( oCells, m_anCellX[ nRoom ], m_anCellY[ nRoom ], nStepX, nStepY );
+                m_anCellX[ nOther ] = (int)(lCell >> 32);
+                m_anCellY[ nOther ] = (int)lCell;
+                oCells.put( Long.valueOf( lCell ), Integer.valueOf( nOther ) );
+                anQueue[ nTail++ ] = nOther;
+            }
+        }
+
+        // Move rooms whose edges are not all satisfied to a free cell that
+        // satisfies more of them: the cell in the direction of an edge from
+        // the room at its other end
+        for( nSweep = 0; nSweep < MAX_SWEEPS; nSweep++ )
+        {
+            bImproved = false;
+            for( nI = 0; nI < nCount; nI++ )
+            {
+                nRoom = anQueue[ nI ];
+                nBest = countSatisfied( nRoom, m_anCellX[ nRoom ], m_anCellY[ nRoom ] );
+                if( nBest == m_anFirstArc[ nRoom + 1 ] - m_anFirstArc[ nRoom ] )
+                    continue;
+                nBestX = m_anCellX[ nRoom ];
+                nBestY = m_anCellY[ nRoom ];
+                for( nJ = m_anFirstArc[ nRoom ]; nJ < m_anFirstArc[ nRoom + 1 ]; nJ++ )
+                {
+                    nEdge = m_anArcs[ nJ ];
+                    nOther = getOtherRoom( nEdge, nRoom );
+                    nStepX = m_anEdgeStart[ nEdge ] == nRoom ? m_anEdgeStepX[ nEdge ] : -m_anEdgeStepX[ nEdge ];
+                    nStepY = m_anEdgeStart[ nEdge ] == nRoom ? m_anEdgeStepY[ nEdge ] : -m_anEdgeStepY[ nEdge ];
+                    nX = m_anCellX[ nOther ] - nStepX;
+                    nY = m_anCellY[ nOther ] - nStepY;
+                    if( oCells.containsKey( Long.valueOf( getCellKey( nX, nY ) ) ) )
+                        continue;
+                    nScore = countSatisfied( nRoom, nX, nY );
+                    if( nScore > nBest )
+                    {
+                        nBest = nScore;
+                        nBestX = nX;
+                        nBestY = nY;
+                    }
+                }
+                if( nBestX != m_anCellX[ nRoom ] || nBestY != m_anCellY[ nRoom ] )
+                {
+                    oCells.remove( Long.valueOf( getCellKey( m_anCellX[ nRoom ], m_anCellY[ nRoom ] ) ) );
+                    oCells.put( Long.valueOf( getCellKey( nBestX, nBestY ) ), Integer.valueOf( nRoom ) );
+                    m_anCellX[ nRoom ] = nBestX;
+                    m_anCellY[ nRoom ] = nBestY;
+                    bImproved = true;
+                }
+            }
+            if( !bImproved )
+                break;
+        }
+
+        // Move the component so that its top-left cell is at the origin
+        nMinX = nMinY = Integer.MAX_VALUE;
+        nMaxX = nMaxY = Integer.MIN_VALUE;
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            nRoom = anQueue[ nI ];
+            nMinX = Math.min( nMinX, m_anCellX[ nRoom ] );
+            nMinY = Math.min( nMinY, m_anCellY[ nRoom ] );
+            nMaxX = Math.max( nMaxX, m_anCellX[ nRoom ] );
+            nMaxY = Math.max( nMaxY, m_anCellY[ nRoom ] );
+        }
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            m_anCellX[ anQueue[ nI ] ] -= nMinX;
+            m_anCellY[ anQueue[ nI ] ] -= nMinY;
+        }
+        m_anComponentWidth[ nComponent ] = nMaxX - nMinX + 1;
+        m_anComponentHeight[ nComponent ] = nMaxY - nMinY + 1;
+    }
+
+    /**
+     * Indicates if a room has been placed in a cell.
+     *
+     * @param  oCells  The room in each occupied cell.
+     * @param  nRoom  The room.
+     *
+     * @return  A flag indicating if the room has been placed.
+     */
+
+    protected boolean isPlaced( HashMap<Long, Integer> oCells, int nRoom )
+    {
+        // Look the room up in the cell it was last given
+        Integer oRoom = oCells.get( Long.valueOf( getCellKey( m_anCellX[ nRoom ], m_anCellY[ nRoom ] ) ) );
+        return( oRoom != null && oRoom.intValue() == nRoom );
+    }
+
+    /**
+     * Finds the cell for a room reached from another in the specified
+     * direction: the first free cell up to MAX_STRETCH steps in that
+     * direction, or else the free cell nearest the first step, searching
+     * in rings around it.
+     *
+     * @param  oCells  The room in each occupied cell.
+     * @param  nX  The horizontal cell of the room reached from.
+     * @param  nY  The vertical cell of the room reached from.
+     * @param  nStepX  The horizontal step of the direction.
+     * @param  nStepY  The vertical step of the direction.
+     *
+     * @return  The key of the cell.
+     */
+
+    protected long findFreeCell( HashMap<Long, Integer> oCells, int nX, int nY, int nStepX, int nStepY )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        long lCell;      // Key of a cell
+        int  nRing,      // Distance of a ring from the first step
+             nCenterX,   // The cell of the first step
+             nCenterY,
+             nI;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Try the cells in the direction of the edge
+        for( nI = 1; nI <= MAX_STRETCH; nI++ )
+        {
+            lCell = getCellKey( nX + nStepX * nI, nY + nStepY * nI );
+            if( !oCells.containsKey( Long.valueOf( lCell ) ) )
+                return( lCell );
+        }
+
+        // Search the rings around the first step, each from its top-left
+        // corner clockwise
+        nCenterX = nX + nStepX;
+        nCenterY = nY + nStepY;
+        for( nRing = 1; ; nRing++ )
+        {
+            for( nI = 0; nI < nRing * 8; nI++ )
+            {
+                if( nI < nRing * 2 )
+                    lCell = getCellKey( nCenterX - nRing + nI, nCenterY - nRing );
+                else if( nI < nRing * 4 )
+                    lCell = getCellKey( nCenterX + nRing, nCenterY - nRing + nI - nRing * 2 );
+                else if( nI < nRing * 6 )
+                    lCell = getCellKey( nCenterX + nRing - (nI - nRing * 4), nCenterY + nRing );
+                else
+                    lCell = getCellKey( nCenterX - nRing, nCenterY + nRing - (nI - nRing * 6) );
+                if( !oCells.containsKey( Long.valueOf( lCell ) ) )
+                    return( lCell );
+            }
+        }
+    }
+
+    /**
+     * Counts the edges of a room that would be satisfied if it were in the
+     * specified cell.
+     *
+     * @param  nRoom  The room.
+     * @param  nX  The horizontal cell.
+     * @param  nY  The vertical cell.
+     *
+     * @return  The number of edges satisfied.
+     */
+
+    protected int countSatisfied( int nRoom, int nX, int nY )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nEdge,   // Edge at the room
+            nOther,  // Room at the other end
+            nCount,  // Number of edges satisfied
+            nI;      // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Check each edge with the room at the cell
+        nCount = 0;
+        for( nI = m_anFirstArc[ nRoom ]; nI < m_anFirstArc[ nRoom + 1 ]; nI++ )
+        {
+            nEdge = m_anArcs[ nI ];
+            nOther = getOtherRoom( nEdge, nRoom );
+            if( m_anEdgeStart[ nEdge ] == nRoom ?
+                isSatisfied( nEdge, nX, nY, m_anCellX[ nOther ], m_anCellY[ nOther ] ) :
+                isSatisfied( nEdge, m_anCellX[ nOther ], m_anCellY[ nOther ], nX, nY ) )
+                nCount++;
+        }
+        return( nCount );
+    }
+
+    /**
+     * Indicates if an edge would be satisfied with its rooms in the
+     * specified cells: if the end lies a whole number of steps from the
+     * start in the direction of the edge.
+     *
+     * @param  nEdge  The edge.
+     * @param  nStartX  The horizontal cell of the start room.
+     * @param  nStartY  The vertical cell of the start room.
+     * @param  nEndX  The horizontal cell of the end room.
+     * @param  nEndY  The vertical cell of the end room.
+     *
+     * @return  A flag indicating if the edge is satisfied.
+     */
+
+    protected boolean isSatisfied( int nEdge, int nStartX, int nStartY, int nEndX, int nEndY )
+    {
+        // The offset must be a positive multiple of the step; a step of
+        // zero along an axis requires no offset along it
+        int nDX = nEndX - nStartX;
+        int nDY = nEndY - nStartY;
+        int nStepX = m_anEdgeStepX[ nEdge ];
+        int nStepY = m_anEdgeStepY[ nEdge ];
+        if( nStepX == 0 )
+            return( nDX == 0 && nDY * nStepY > 0 );
+        if( nStepY == 0 )
+            return( nDY == 0 && nDX * nStepX > 0 );
+        return( nDX * nStepX > 0 && nDX * nStepX == nDY * nStepY );
+    }
+
+    /**
+     * Gets the room at the other end of an edge.
+     *
+     * @param  nEdge  The edge.
+     * @param  nRoom  The room at one end.
+     *
+     * @return  The room at the other end.
+     */
+
+    protected int getOtherRoom( int nEdge, int nRoom )
+    {
+        // Return the end that is not the room
+        return( m_anEdgeStart[ nEdge ] == nRoom ? m_anEdgeEnd[ nEdge ] : m_anEdgeStart[ nEdge ] );
+    }
+
+    /**
+     * Moves the components, each laid out at the origin, into rows, in
+     * order, leaving an empty cell between components.  The rows are about
+     * as wide as the packed components are tall.
+     */
+
+    protected void packComponents()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anOffsetX,   // Horizontal cell of each component
+              anOffsetY;   // Vertical cell of each component
+        long  lArea;       // Area of the components in pixels
+        int   nRowWidth,   // Width of a row in cells
+              nX,          // Next free cell of the current row
+              nY,          // Top cell of the current row
+              nRowHeight,  // Height of the current row in cells
+              nI;          // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the width of a row that makes the map about square
+        lArea = 0;
+        nRowWidth = 1;
+        for( nI = 0; nI < m_anComponentWidth.length; nI++ )
+        {
+            lArea += (long)(m_anComponentWidth[ nI ] + 1) * m_nCellWidth *
+                (m_anComponentHeight[ nI ] + 1) * m_nCellHeight;
+            nRowWidth = Math.max( nRowWidth, m_anComponentWidth[ nI ] );
+        }
+        nRowWidth = Math.max( nRowWidth, (int)(Math.sqrt( (double)lArea ) / m_nCellWidth) );
+
+        // Place the components in rows
+        anOffsetX = new int[ m_anComponentWidth.length ];
+        anOffsetY = new int[ m_anComponentWidth.length ];
+        nX = nY = nRowHeight = 0;
+        for( nI = 0; nI < m_anComponentWidth.length; nI++ )
+        {
+            if( nX > 0 && nX + m_anComponentWidth[ nI ] > nRowWidth )
+            {
+                nX = 0;
+                nY += nRowHeight + 1;
+                nRowHeight = 0;
+            }
+            anOffsetX[ nI ] = nX;
+            anOffsetY[ nI ] = nY;
+            nX += m_anComponentWidth[ nI ] + 1;
+            nRowHeight = Math.max( nRowHeight, m_anComponentHeight[ nI ] );
+        }
+
+        // Move each room with its component
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            m_anCellX[ nI ] += anOffsetX[ m_anComponent[ nI ] ];
+            m_anCellY[ nI ] += anOffsetY[ m_anComponent[ nI ] ];
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the key identifying a cell in the spatial hash.
+     *
+     * @param  nX  The horizontal cell.
+     * @param  nY  The vertical cell.
+     *
+     * @return  The key.
+     */
+
+    protected static long getCellKey( int nX, int nY )
+    {
+        // Combine the coordinates
+        return( ((long)nX << 32) | (nY & 0xFFFFFFFFL) );
+    }
+
+    /**
+     * Rounds a length up to a multiple of the grid size.
+     *
+     * @param  nLength  The length in pixels.
+     *
+     * @return  The rounded length.
+     */
+
+    protected static int roundToGrid( int nLength )
+    {
+        // Round up to the next grid line
+        return( (nLength + MapUI.GRID_SIZE - 1) / MapUI.GRID_SIZE * MapUI.GRID_SIZE );
+    }
+
+
+    // **********************************************************************
+    // *********************           Tasks            *********************
+    // **********************************************************************
+
+    /**
+     * The task that lays out a range of components, splitting the range
+     * between subtasks while it holds many rooms.
+     */
+
+    protected class ComponentTask
+        extends RecursiveAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The first component of the range.
+         */
+        protected int m_nFirst;
+
+        /**
+         * The component after the last of the range.
+         */
+        protected int m_nLimit;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 8116262207547335089L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ComponentTask for the specified range of
+         * components.
+         *
+         * @param  nFirst  The first component of the range.
+         * @param  nLimit  The component after the last of the range.
+         */
+
+        ComponentTask( int nFirst, int nLimit )
+        {
+            // Initialize instance variables
+            m_nFirst = nFirst;
+            m_nLimit = nLimit;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   RecursiveAction Methods   --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.concurrent.RecursiveAction#compute()  compute
+         */
+
+        protected void compute()
+        {
+            // Split a range of several components with many rooms in two,
+            // otherwise lay out each component
+            if( m_nLimit - m_nFirst > 1 &&
+                m_anComponentFirst[ m_nLimit ] - m_anComponentFirst[ m_nFirst ] > ROOMS_PER_TASK )
+            {
+                int nMiddle = (m_nFirst + m_nLimit) >>> 1;
+                invokeAll( new ComponentTask( m_nFirst, nMiddle ), new ComponentTask( nMiddle, m_nLimit ) );
+                return;
+            }
+            for( int nComponent = m_nFirst; nComponent < m_nLimit; nComponent++ )
+                layoutComponent( nComponent );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************        Comparators         *********************
+    // **********************************************************************
+
+    /**
+     * The object that orders rooms from the top of the map to the bottom,
+     * and from left to right within a row.
+     */
+
+    protected static class PositionComparator
+        extends Object
+        implements Comparator<Room>
+    {
+        // ------------------------------------------------------------------
+        // -----------------    Comparator Methods    -----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.Comparator#compare  compare
+         */
+
+        public int compare( Room oRoom1, Room oRoom2 )
+        {
+            // Compare the tops, then the left edges, then the identifiers
+            if( oRoom1.m_rectBounds.y != oRoom2.m_rectBounds.y )
+                return( oRoom1.m_rectBounds.y < oRoom2.m_rectBounds.y ? -1 : 1 );
+            if( oRoom1.m_rectBounds.x != oRoom2.m_rectBounds.x )
+                return( oRoom1.m_rectBounds.x < oRoom2.m_rectBounds.x ? -1 : 1 );
+            return( oRoom1.m_strID.compareTo( oRoom2.m_strID ) );
+        }
+    }
+}
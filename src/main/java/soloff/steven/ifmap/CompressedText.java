@@ -0,0 +1,227 @@
+/*
+ * CompressedText.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.zip.Deflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * The methods that store text compactly as UTF-8 bytes, Deflate-compressed
+ * when that makes it smaller.  The first byte of the stored form records
+ * whether the remaining bytes are compressed, since short text is usually
+ * larger after compression than before.
+ */
+
+public class CompressedText
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The marker of text stored as plain UTF-8 bytes.
+     */
+    protected static final byte STORED = 0;
+
+    /**
+     * The marker of text stored as Deflate-compressed UTF-8 bytes.
+     */
+    protected static final byte DEFLATED = 1;
+
+    /**
+     * The character set of the text.
+     */
+    protected static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+    /**
+     * The stored form of the empty string.
+     */
+    protected static final byte[] EMPTY = { STORED };
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Prevents CompressedText objects from being constructed.
+     */
+
+    private CompressedText()
+    {
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Compresses the specified text.
+     *
+     * @param  str  The text to be compressed.
+     *
+     * @return  The stored form of the text.
+     *
+     * @exception  IllegalArgumentException  If str is null.
+     */
+
+    public static byte[] compress( String str )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ByteArrayOutputStream oOutput;    // The stored form
+        Deflater              oDeflater;  // Compresses the UTF-8 bytes
+        byte[]                abUTF8,     // The text as UTF-8 bytes
+                              abBuffer;   // Buffer for compressed bytes
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( str == null )
+            throw new IllegalArgumentException();
+        if( str.length() == 0 )
+            return( EMPTY );
+
+        // Compress the UTF-8 bytes of the text
+        abUTF8 = str.getBytes( UTF8 );
+        oOutput = new ByteArrayOutputStream( abUTF8.length / 2 + 16 );
+        oOutput.write( DEFLATED );
+        oDeflater = new Deflater( Deflater.BEST_COMPRESSION );
+        try
+        {
+            oDeflater.setInput( abUTF8 );
+            oDeflater.finish();
+            abBuffer = new byte[ 512 ];
+            while( !oDeflater.finished() && oOutput.size() <= abUTF8.length )
+                oOutput.write( abBuffer, 0, oDeflater.deflate( abBuffer ) );
+        }
+        finally
+        {
+            oDeflater.end();
+        }
+
+        // Store the plain bytes if compression did not make them smaller
+        if( !oDeflater.finished() || oOutput.size() > abUTF8.length )
+        {
+            oOutput.reset();
+            oOutput.write( STORED );
+            oOutput.write( abUTF8, 0, abUTF8.length );
+        }
+        return( oOutput.toByteArray() );
+    }
+
+    /**
+     * Inflates the specified stored text.
+     *
+     * @param  abStored  The stored form of the text.
+     *
+     * @return  The text.
+     *
+     * @exception  IllegalArgumentException  If abStored is null or is not
+     *     valid.
+     */
+
+    public static String inflate( byte[] abStored )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Reader        oReader;   // Reader of the stored text
+        StringBuilder sb;        // The text
+        char[]        acBuffer;  // Buffer for characters read
+        int           nCount;    // Number of characters read
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( abStored == null || abStored.length == 0 )
+            throw new IllegalArgumentException();
+
+        // Decode plain bytes directly
+        if( abStored[ 0 ] == STORED )
+            return( new String( abStored, 1, abStored.length - 1, UTF8 ) );
+
+        // Read the compressed text
+        try
+        {
+            oReader = openReader( abStored );
+            sb = new StringBuilder( abStored.length * 3 );
+            acBuffer = new char[ 512 ];
+            while( (nCount = oReader.read( acBuffer )) != -1 )
+                sb.append( acBuffer, 0, nCount );
+            return( sb.toString() );
+        }
+        catch( IOException eIO )
+        {
+            throw new IllegalArgumentException( eIO.getMessage() );
+        }
+    }
+
+    /**
+     * Opens a reader that inflates the specified stored text as it is read,
+     * so that the text can be copied to a writer without being held in
+     * memory as a whole.
+     *
+     * @param  abStored  The stored form of the text.
+     *
+     * @return  The reader of the text.
+     *
+     * @exception  IllegalArgumentException  If abStored is null or is not
+     *     valid.
+     */
+
+    public static Reader openReader( byte[] abStored )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        InputStream oInput;  // Stream of the UTF-8 bytes
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( abStored == null || abStored.length == 0 ||
+            (abStored[ 0 ] != STORED && abStored[ 0 ] != DEFLATED) )
+            throw new IllegalArgumentException();
+
+        // Skip the marker and inflate the bytes if they are compressed
+        oInput = new ByteArrayInputStream( abStored, 1, abStored.length - 1 );
+        if( abStored[ 0 ] == DEFLATED )
+            oInput = new InflaterInputStream( oInput );
+        return( new InputStreamReader( oInput, UTF8 ) );
+    }
+}
@@ -0,0 +1,1486 @@
+/*
+ * DistanceOracle.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The object that answers many queries for the number of moves between two
+ * rooms of a Map that is not being edited, such as those made when
+ * generating a walkthrough.  The distances follow the same rules as
+ * RouteFinder: one-way edges only lead from their start room to their end
+ * room, and secret edges are followed only if the oracle includes them.
+ *
+ * <p>The oracle is precomputed in one of two forms, chosen by the memory
+ * it would take:
+ *
+ * <ul>
+ *   <li>If the table of all distances fits in the memory budget, a
+ *   breadth-first search is run from every room and its distances are
+ *   kept as one byte per room, or two bytes for the few searches that
+ *   reach beyond 254 moves.  A query is then a single array read.</li>
+ *   <li>Otherwise a small number of landmark rooms are chosen far apart,
+ *   and the distances from and to each landmark are kept.  By the triangle
+ *   inequality these bound the distance between any two rooms from below,
+ *   and a query is answered exactly by an A* search guided by the bounds
+ *   (the ALT technique), which visits far fewer rooms than a plain
+ *   search.</li>
+ * </ul>
+ *
+ * The searches of either form are run in parallel on a fork-join pool.
+ *
+ * <p>The oracle listens to the Map.  Adding an edge updates the table in
+ * place (a distance can only shrink through the new edge); any other
+ * change to the rooms or edges, and adding an edge to a landmark oracle,
+ * discards the precomputed distances, which are recomputed by the next
+ * query.  The oracle is built and updated on the thread that edits the
+ * Map; queries of a table may be made from any thread while the Map is not
+ * edited, whereas queries of a landmark oracle are serialized.
+ */
+
+public class DistanceOracle
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The distance returned when a room cannot be reached.
+     */
+    public static final int UNREACHABLE = -1;
+
+    /**
+     * The default memory budget in bytes for a table of all distances.
+     */
+    public static final long DEFAULT_MAX_TABLE_BYTES = 64L << 20;
+
+    /**
+     * The default number of landmarks used when the table does not fit.
+     */
+    public static final int DEFAULT_LANDMARK_COUNT = 16;
+
+    /**
+     * The distance stored in a byte row for a room that is not reached.
+     */
+    protected static final int BYTE_INFINITE = 0xff;
+
+    /**
+     * The distance stored in a char row or landmark array for a room that
+     * is not reached.
+     */
+    protected static final int CHAR_INFINITE = 0xffff;
+
+    /**
+     * The distance stored in a landmark array for a room that is reached
+     * but at least this many moves away.
+     */
+    protected static final int CHAR_SATURATED = 0xfffe;
+
+    /**
+     * The number of landmarks consulted by a single query.
+     */
+    protected static final int ACTIVE_LANDMARK_COUNT = 4;
+
+    /**
+     * The number of searches run by a single fork-join task.
+     */
+    protected static final int SEARCHES_PER_TASK = 16;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map whose distances are held.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The adjacency of the Map.
+     */
+    protected MapGraph m_oGraph;
+
+    /**
+     * Indicates if secret edges may be followed.
+     */
+    protected boolean m_bIncludeSecret;
+
+    /**
+     * The memory budget in bytes for a table of all distances.
+     */
+    protected long m_lMaxTableBytes;
+
+    /**
+     * The number of landmarks used when the table does not fit.
+     */
+    protected int m_nLandmarkCount;
+
+    /**
+     * Indicates if the distances must be recomputed before the next query.
+     */
+    protected boolean m_bStale;
+
+    /**
+     * The number of room indices covered (the room limit of the adjacency
+     * when the oracle was built).
+     */
+    protected int m_nRoomCount;
+
+    /**
+     * The offset of the first arc leaving each room in m_anOutTarget; the
+     * arcs of room i end at the offset of room i + 1.
+     */
+    protected int[] m_anOutStart;
+
+    /**
+     * The room each arc leads to, grouped by the room it leaves.
+     */
+    protected int[] m_anOutTarget;
+
+    /**
+     * The offset of the first arc entering each room in m_anInSource.
+     */
+    protected int[] m_anInStart;
+
+    /**
+     * The room each arc leaves, grouped by the room it enters.
+     */
+    protected int[] m_anInSource;
+
+    /**
+     * The byte row of distances from each room; null for a room whose row
+     * is held as chars or for an unused index.  Null for a landmark oracle.
+     */
+    protected byte[][] m_aabTable;
+
+    /**
+     * The char row of distances from each room whose distances do not fit
+     * in a byte.  Null for a landmark oracle.
+     */
+    protected char[][] m_aacTable;
+
+    /**
+     * The room index of each landmark.  Null for a table.
+     */
+    protected int[] m_anLandmarks;
+
+    /**
+     * The distances between each room and each landmark, kept together
+     * for each room so that the bounds of a room are read from one place:
+     * the moves from landmark k to room v are at (v * landmarks + k) * 2,
+     * and the moves from room v to landmark k follow them.
+     */
+    protected char[] m_acLandmarkDistances;
+
+    /**
+     * The stamp of the current landmark search; a room has been reached if
+     * its mark equals the stamp.
+     */
+    protected int m_nStamp;
+
+    /**
+     * The stamp of the search in which each room was reached.
+     */
+    protected int[] m_anMark;
+
+    /**
+     * The number of moves to each room reached.
+     */
+    protected int[] m_anMoves;
+
+    /**
+     * The lower bound of the moves from each room reached to the target.
+     */
+    protected int[] m_anBound;
+
+    /**
+     * The rooms to be extended by the search, bucketed by the lower bound
+     * of the length of a route through them.
+     */
+    protected int[][] m_aanBuckets;
+
+    /**
+     * The number of rooms in each bucket.
+     */
+    protected int[] m_anBucketCount;
+
+    /**
+     * The estimated number of bytes used by the precomputed distances.
+     */
+    protected long m_lMemoryCost;
+
+    /**
+     * The time in nanoseconds taken by the last build.
+     */
+    protected long m_lBuildNanos;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new DistanceOracle object for the specified Map with
+     * the default memory budget and number of landmarks.
+     *
+     * @param  oMap  The Map whose distances are to be held.
+     * @param  bIncludeSecret  Indicates if secret edges may be followed.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public DistanceOracle( Map oMap, boolean bIncludeSecret )
+        throws IllegalArgumentException
+    {
+        // Use the default settings
+        this( oMap, bIncludeSecret, DEFAULT_MAX_TABLE_BYTES, DEFAULT_LANDMARK_COUNT );
+    }
+
+    /**
+     * Constructs a new DistanceOracle object for the specified Map.  The
+     * distances are computed by the first query (or by rebuild).
+     *
+     * @param  oMap  The Map whose distances are to be held.
+     * @param  bIncludeSecret  Indicates if secret edges may be followed.
+     * @param  lMaxTableBytes  The memory budget in bytes for a table of all
+     *     distances; a landmark oracle is built if the table is larger.
+     * @param  nLandmarkCount  The number of landmarks of a landmark oracle.
+     *
+     * @exception  IllegalArgumentException  If oMap is null, lMaxTableBytes
+     *     is negative, or nLandmarkCount is less than one.
+     */
+
+    public DistanceOracle( Map oMap, boolean bIncludeSecret, long lMaxTableBytes, int nLandmarkCount )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || lMaxTableBytes < 0 || nLandmarkCount < 1 )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_oGraph = oMap.getGraph();
+        m_bIncludeSecret = bIncludeSecret;
+        m_lMaxTableBytes = lMaxTableBytes;
+        m_nLandmarkCount = nLandmarkCount;
+        m_bStale = true;
+
+        // Listen for changes to the Map (after the adjacency, which is
+        // already listening)
+        m_oMap.addMapListener( this );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the number of moves from one room to another.
+     *
+     * @param  oFrom  The room the moves start at.
+     * @param  oTo  The room the moves end at.
+     *
+     * @return  The number of moves, or UNREACHABLE if oTo cannot be reached
+     *     from oFrom or either room is not on the Map.
+     *
+     * @exception  IllegalArgumentException  If oFrom or oTo is null.
+     */
+
+    public int getDistance( Room oFrom, Room oTo )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oFrom == null || oTo == null )
+            throw new IllegalArgumentException();
+
+        // Look up the rooms and their distance
+        int nFrom = getRoomIndex( oFrom );
+        int nTo = getRoomIndex( oTo );
+        if( nFrom == MapGraph.NONE || nTo == MapGraph.NONE )
+            return( UNREACHABLE );
+        return( getDistance( nFrom, nTo ) );
+    }
+
+    /**
+     * Gets the index by which the specified room is queried.  Callers that
+     * make many queries may look up the indices of their rooms once and
+     * query by index, which avoids a hashtable lookup per room and query.
+     * The indices remain valid until a room is added or removed.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  The index of the room, or MapGraph.NONE if it is not on the
+     *     Map.
+     *
+     * @exception  IllegalArgumentException  If oRoom is null.
+     */
+
+    public int getRoomIndex( Room oRoom )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oRoom == null )
+            throw new IllegalArgumentException();
+
+        // Make sure the distances are current and look up the room
+        if( m_bStale )
+            rebuild();
+        int nRoom = m_oGraph.getRoomIndex( oRoom );
+        return( nRoom < m_nRoomCount ? nRoom : MapGraph.NONE );
+    }
+
+    /**
+     * Gets the number of moves from one room to another by their indices.
+     *
+     * @param  nFrom  The index of the room the moves start at.
+     * @param  nTo  The index of the room the moves end at.
+     *
+     * @return  The number of moves, or UNREACHABLE if the room cannot be
+     *     reached.
+     *
+     * @exception  IllegalArgumentException  If either index is not the
+     *     index of a room.
+     */
+
+    public int getDistance( int nFrom, int nTo )
+        throws IllegalArgumentException
+    {
+        // Make sure the distances are current and the arguments are valid
+        if( m_bStale )
+            rebuild();
+        if( nFrom < 0 || nFrom >= m_nRoomCount || nTo < 0 || nTo >= m_nRoomCount )
+            throw new IllegalArgumentException();
+
+        // Read the distance from the table, if any
+        if( m_aabTable != null )
+        {
+            byte[] abRow = m_aabTable[ nFrom ];
+            if( abRow != null )
+            {
+                int nDistance = abRow[ nTo ] & 0xff;
+                return( nDistance == BYTE_INFINITE ? UNREACHABLE : nDistance );
+            }
+            char[] acRow = m_aacTable[ nFrom ];
+            if( acRow == null )
+                throw new IllegalArgumentException();
+            return( acRow[ nTo ] == CHAR_INFINITE ? UNREACHABLE : acRow[ nTo ] );
+        }
+
+        // Search with the landmark bounds
+        return( searchWithLandmarks( nFrom, nTo ) );
+    }
+
+    /**
+     * Indicates if the distances are held as a table of all distances
+     * rather than landmark bounds.  Computes the distances if necessary.
+     *
+     * @return  A flag indicating if the distances are held as a table.
+     */
+
+    public boolean isTabulated()
+    {
+        // Make sure the distances are current
+        if( m_bStale )
+            rebuild();
+        return( m_aabTable != null );
+    }
+
+    /**
+     * Indicates if the distances must be recomputed before the next query
+     * because the Map has changed.
+     *
+     * @return  A flag indicating if the distances are out of date.
+     */
+
+    public boolean isStale()
+    {
+        // Return the stale flag
+        return( m_bStale );
+    }
+
+    /**
+     * Gets the estimated number of bytes used by the precomputed
+     * distances.  Computes the distances if necessary.
+     *
+     * @return  The memory cost in bytes.
+     */
+
+    public long getMemoryCost()
+    {
+        // Make sure the distances are current
+        if( m_bStale )
+            rebuild();
+        return( m_lMemoryCost );
+    }
+
+    /**
+     * Gets the time taken to compute the distances.
+     *
+     * @return  The time in milliseconds taken by the last build.
+     */
+
+    public double getBuildTime()
+    {
+        // Convert the build time to milliseconds
+        return( m_lBuildNanos / 1.0e6 );
+    }
+
+    /**
+     * Recomputes the distances from the current rooms and edges of the Map.
+     */
+
+    public void rebuild()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent oEvent;  // Event describing the build
+        ForkJoinPool   oPool;   // Pool that runs the searches
+        long           lStart;  // Time at which the build began
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Take a compact copy of the arcs that may be followed
+        lStart = System.nanoTime();
+        oEvent = OperationEvent.begin( OperationEvent.BUILD_ORACLE );
+        release();
+        snapshot();
+
+        // Run the searches of the table or the landmarks
+        oPool = new ForkJoinPool();
+        try
+        {
+            if( (long)m_nRoomCount * m_nRoomCount <= m_lMaxTableBytes )
+                buildTable( oPool );
+            else
+                buildLandmarks( oPool );
+        }
+        finally
+        {
+            oPool.shutdown();
+        }
+        m_bStale = false;
+        m_lBuildNanos = System.nanoTime() - lStart;
+
+        // Record the build
+        oEvent.set( "rooms", m_nRoomCount );
+        oEvent.set( "arcs", m_anOutTarget.length );
+        oEvent.set( "landmarks", m_anLandmarks != null ? m_anLandmarks.length : 0 );
+        oEvent.set( "bytes", m_lMemoryCost );
+        oEvent.commit();
+        if( m_aabTable != null )
+            m_anOutStart = m_anOutTarget = m_anInStart = m_anInSource = null;
+    }
+
+    /**
+     * Stops listening to the Map and releases the precomputed distances.
+     */
+
+    public void dispose()
+    {
+        // Stop listening and release the distances
+        m_oMap.removeMapListener( this );
+        release();
+        m_bStale = true;
+    }
+
+    /**
+     * @see  java.lang.Object#toString()  toString
+     */
+
+    public String toString()
+    {
+        // Describe the form and cost of the distances
+        if( m_bStale )
+            return( "DistanceOracle (stale)" );
+        return( "DistanceOracle (" + m_nRoomCount + " rooms, " +
+            (m_aabTable != null ? "table" : m_anLandmarks.length + " landmarks") + ", " +
+            m_lMemoryCost + " bytes, built in " + Math.round( getBuildTime() ) + " ms)" );
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // The new room has no index in the distances
+        m_bStale = true;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        // Routes through the room are gone
+        m_bStale = true;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nStart,  // Index of the start room of the edge
+            nEnd;    // Index of the end room of the edge
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Only a current table can be updated in place; the bounds of the
+        // landmarks may no longer hold
+        if( m_bStale || m_aabTable == null )
+        {
+            m_bStale = true;
+            return;
+        }
+
+        // An edge that may not be followed changes nothing
+        if( oEdge.isSecret() && !m_bIncludeSecret )
+            return;
+
+        // Look up the rooms of the edge
+        nStart = m_oGraph.getRoomIndex( oMap.getRoom( oEdge.m_strStartRoomID ) );
+        nEnd = m_oGraph.getRoomIndex( oMap.getRoom( oEdge.m_strEndRoomID ) );
+        if( nStart == MapGraph.NONE || nEnd == MapGraph.NONE ||
+            nStart >= m_nRoomCount || nEnd >= m_nRoomCount )
+        {
+            m_bStale = true;
+            return;
+        }
+
+        // Shorten the distances through the edge in each direction it may
+        // be followed
+        addArc( nStart, nEnd );
+        if( !oEdge.isOneWay() )
+            addArc( nEnd, nStart );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+        // Routes along the edge are gone
+        m_bStale = true;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+        // The directions in which the edge may be followed have changed
+        m_bStale = true;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Release the distances until the next query
+        release();
+        m_bStale = true;
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Releases the precomputed distances and the copy of the arcs.
+     */
+
+    protected void release()
+    {
+        // Release all arrays
+        m_anOutStart = m_anOutTarget = m_anInStart = m_anInSource = null;
+        m_aabTable = null;
+        m_aacTable = null;
+        m_anLandmarks = null;
+        m_acLandmarkDistances = null;
+        m_anMark = m_anMoves = m_anBound = m_anBucketCount = null;
+        m_aanBuckets = null;
+        m_lMemoryCost = 0;
+    }
+
+    /**
+     * Copies the arcs that may be followed from the adjacency into compact
+     * arrays, both by the room they leave and by the room they enter, so
+     * that the searches run on other threads do not touch the Map.
+     */
+
+    protected void snapshot()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapGraph oGraph;     // The adjacency of the Map
+        int[]    anOutFill,  // Next free arc offset of each room leaving
+                 anInFill;   // Next free arc offset of each room entering
+        int      nArcCount,  // Number of arcs
+                 nEdge,      // Edge being copied
+                 nFlags,     // Exits and flags of the edge
+                 nStart,     // Start room of the edge
+                 nEnd,       // End room of the edge
+                 nPass,      // Pass over the edges
+                 nI;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Count the arcs leaving and entering each room in the first pass,
+        // and store them in the second
+        oGraph = m_oGraph;
+        oGraph.validate();
+        m_nRoomCount = oGraph.m_nRoomLimit;
+        m_anOutStart = new int[ m_nRoomCount + 1 ];
+        m_anInStart = new int[ m_nRoomCount + 1 ];
+        anOutFill = anInFill = null;
+        nArcCount = 0;
+        for( nPass = 0; nPass < 2; nPass++ )
+        {
+            for( nEdge = 0; nEdge < oGraph.m_nEdgeLimit; nEdge++ )
+            {
+                // Make sure the edge exists and may be followed
+                if( oGraph.m_aoEdges[ nEdge ] == null )
+                    continue;
+                nFlags = oGraph.m_anEdgeFlags[ nEdge ];
+                if( !m_bIncludeSecret && (nFlags & MapGraph.FLAG_SECRET) != 0 )
+                    continue;
+                nStart = oGraph.m_anEdgeStart[ nEdge ];
+                nEnd = oGraph.m_anEdgeEnd[ nEdge ];
+                if( nStart == nEnd )
+                    continue;
+
+                // Count or store the arc from start to end, and the arc
+                // from end to start unless the edge is one-way
+                if( nPass == 0 )
+                {
+                    m_anOutStart[ nStart + 1 ]++;
+                    m_anInStart[ nEnd + 1 ]++;
+                    nArcCount++;
+                    if( (nFlags & MapGraph.FLAG_ONEWAY) == 0 )
+                    {
+                        m_anOutStart[ nEnd + 1 ]++;
+                        m_anInStart[ nStart + 1 ]++;
+                        nArcCount++;
+                    }
+                }
+                else
+                {
+                    m_anOutTarget[ anOutFill[ nStart ]++ ] = nEnd;
+                    m_anInSource[ anInFill[ nEnd ]++ ] = nStart;
+                    if( (nFlags & MapGraph.FLAG_ONEWAY) == 0 )
+                    {
+                        m_anOutTarget[ anOutFill[ nEnd ]++ ] = nStart;
+                        m_anInSource[ anInFill[ nStart ]++ ] = nEnd;
+                    }
+                }
+            }
+
+            // Convert the counts to offsets after the first pass
+            if( nPass == 0 )
+            {
+                for( nI = 0; nI < m_nRoomCount; nI++ )
+                {
+                    m_anOutStart[ nI + 1 ] += m_anOutStart[ nI ];
+                    m_anInStart[ nI + 1 ] += m_anInStart[ nI ];
+                }
+                m_anOutTarget = new int[ nArcCount ];
+                m_anInSource = new int[ nArcCount ];
+                anOutFill = Arrays.copyOf( m_anOutStart, m_nRoomCount );
+                anInFill = Arrays.copyOf( m_anInStart, m_nRoomCount );
+            }
+        }
+    }
+
+    /**
+     * Computes the table of all distances by searching from every room.
+     *
+     * @param  oPool  The pool that runs the searches.
+     */
+
+    protected void buildTable( ForkJoinPool oPool )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        long lBytes;  // Memory used by the table
+        int  nI;      // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Search from every room in parallel
+        m_aabTable = new byte[ m_nRoomCount ][];
+        m_aacTable = new char[ m_nRoomCount ][];
+        oPool.invoke( new TableTask( 0, m_nRoomCount ) );
+
+        // Total the memory used by the rows
+        lBytes = 2 * (MapMetrics.ESTIMATED_ARRAY_SIZE + 4L * m_nRoomCount);
+        for( nI = 0; nI < m_nRoomCount; nI++ )
+        {
+            if( m_aabTable[ nI ] != null )
+                lBytes += MapMetrics.ESTIMATED_ARRAY_SIZE + m_aabTable[ nI ].length;
+            else if( m_aacTable[ nI ] != null )
+                lBytes += MapMetrics.ESTIMATED_ARRAY_SIZE + 2L * m_aacTable[ nI ].length;
+        }
+        m_lMemoryCost = lBytes;
+    }
+
+    /**
+     * Chooses the landmarks and computes the distances from and to each of
+     * them.
+     *
+     * @param  oPool  The pool that runs the searches.
+     */
+
+    protected void buildLandmarks( ForkJoinPool oPool )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anNearest,   // Moves from each room to the nearest landmark
+              anDistance,  // Moves found by a search
+              anQueue;     // Rooms reached by a search
+        int   nLandmarks,  // Number of landmarks
+              nBest,       // Room farthest from the landmarks so far
+              nReached,    // Number of rooms reached by a search
+              nK,          // Landmark being chosen
+              nI;          // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Choose each landmark as the room farthest (ignoring direction)
+        // from those chosen before, preferring rooms not connected to them
+        // at all, starting from the first room
+        anNearest = new int[ m_nRoomCount ];
+        Arrays.fill( anNearest, Integer.MAX_VALUE );
+        anDistance = new int[ m_nRoomCount ];
+        Arrays.fill( anDistance, -1 );
+        anQueue = new int[ m_nRoomCount ];
+        nLandmarks = Math.min( m_nLandmarkCount, m_nRoomCount );
+        m_anLandmarks = new int[ nLandmarks ];
+        nBest = MapGraph.NONE;
+        for( nI = 0; nI < m_nRoomCount && nBest == MapGraph.NONE; nI++ )
+        {
+            if( m_oGraph.m_aoRooms[ nI ] != null )
+                nBest = nI;
+        }
+        for( nK = 0; nK < nLandmarks && nBest != MapGraph.NONE; nK++ )
+        {
+            // Search from the new landmark along arcs in either direction
+            m_anLandmarks[ nK ] = nBest;
+            nReached = search( nBest, null, null, anDistance, anQueue );
+            for( nI = 0; nI < nReached; nI++ )
+                anNearest[ anQueue[ nI ] ] = Math.min( anNearest[ anQueue[ nI ] ], anDistance[ anQueue[ nI ] ] );
+            for( nI = 0; nI < nReached; nI++ )
+                anDistance[ anQueue[ nI ] ] = -1;
+
+            // Choose the room farthest from all landmarks so far next
+            nBest = MapGraph.NONE;
+            for( nI = 0; nI < m_nRoomCount; nI++ )
+            {
+                if( m_oGraph.m_aoRooms[ nI ] != null && anNearest[ nI ] > 0 &&
+                    (nBest == MapGraph.NONE || anNearest[ nI ] > anNearest[ nBest ]) )
+                    nBest = nI;
+            }
+        }
+        if( nK < nLandmarks )
+            m_anLandmarks = Arrays.copyOf( m_anLandmarks, nK );
+
+        // Search from and to each landmark in parallel
+        m_acLandmarkDistances = new char[ 2 * m_anLandmarks.length * m_nRoomCount ];
+        oPool.invoke( new LandmarkTask( 0, 2 * m_anLandmarks.length ) );
+
+        // Allocate the arrays of the query searches
+        m_anMark = new int[ m_nRoomCount ];
+        m_anMoves = new int[ m_nRoomCount ];
+        m_anBound = new int[ m_nRoomCount ];
+        m_aanBuckets = new int[ 64 ][];
+        m_anBucketCount = new int[ 64 ];
+        m_nStamp = 0;
+
+        // Total the memory used by the arcs, landmarks and search arrays
+        m_lMemoryCost = 4 * (MapMetrics.ESTIMATED_ARRAY_SIZE + 4L * (m_nRoomCount + 1)) +
+            2 * (MapMetrics.ESTIMATED_ARRAY_SIZE + 4L * m_anOutTarget.length) +
+            MapMetrics.ESTIMATED_ARRAY_SIZE + 2L * m_acLandmarkDistances.length;
+    }
+
+    /**
+     * Answers a query of a landmark oracle with an A* search.  Rooms are
+     * extended in order of the moves to reach them plus the largest lower
+     * bound given by the landmarks of the moves from them to the target;
+     * the bounds are consistent, so the first time the target is extended
+     * its moves are the distance.  Only the few landmarks that give the
+     * best bounds for the first room are consulted while searching, which
+     * costs less for each room reached than consulting all of them and
+     * loses little of the guidance.
+     *
+     * @param  nFrom  The index of the room the moves start at.
+     * @param  nTo  The index of the room the moves end at.
+     *
+     * @return  The number of moves, or UNREACHABLE.
+     */
+
+    protected synchronized int searchWithLandmarks( int nFrom, int nTo )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anTarget,      // Moves between the target and each landmark
+              anSlots,       // Slots of the distances of each landmark
+              anBucket;      // Bucket being extended
+        int   nStride,       // Distances stored for each room
+              nEstimate,     // Lower bound of the route being extended
+              nMaxEstimate,  // Highest bucket used
+              nRoom,         // Room being extended
+              nNext,         // Room reached from nRoom
+              nBound,        // Lower bound of the moves from nNext
+              nResult,       // Distance found
+              nBest,         // Best landmark not yet active
+              nBestBound,    // Bound of the best landmark
+              nK,            // Landmark being considered
+              nI;            // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Handle the trivial query
+        if( nFrom == nTo )
+            return( m_oGraph.m_aoRooms[ nFrom ] != null ? 0 : UNREACHABLE );
+
+        // Gather the distances between the target and all landmarks, and
+        // rule out a target that the landmarks show cannot be reached
+        nStride = 2 * m_anLandmarks.length;
+        anSlots = new int[ nStride ];
+        anTarget = new int[ nStride ];
+        for( nI = 0; nI < nStride; nI++ )
+        {
+            anSlots[ nI ] = nI;
+            anTarget[ nI ] = m_acLandmarkDistances[ nTo * nStride + nI ];
+        }
+        if( getBound( nFrom, anSlots, anTarget ) == Integer.MAX_VALUE )
+            return( UNREACHABLE );
+
+        // Move the landmarks with the best bounds for the first room to the
+        // front, and consult only those
+        for( nI = 0; nI < 2 * ACTIVE_LANDMARK_COUNT && nI < nStride; nI += 2 )
+        {
+            nBest = nI;
+            nBestBound = -1;
+            for( nK = nI; nK < nStride; nK += 2 )
+            {
+                nBound = getBound( nFrom, Arrays.copyOfRange( anSlots, nK, nK + 2 ), Arrays.copyOfRange( anTarget, nK, nK + 2 ) );
+                if( nBound > nBestBound )
+                {
+                    nBest = nK;
+                    nBestBound = nBound;
+                }
+            }
+            swap( anSlots, nI, nBest );
+            swap( anTarget, nI, nBest );
+        }
+        anSlots = Arrays.copyOf( anSlots, nI );
+        anTarget = Arrays.copyOf( anTarget, nI );
+
+        // Begin a new search from the first room
+        if( ++m_nStamp == Integer.MAX_VALUE )
+        {
+            Arrays.fill( m_anMark, 0 );
+            m_nStamp = 1;
+        }
+        nBound = getBound( nFrom, anSlots, anTarget );
+        m_anMark[ nFrom ] = m_nStamp;
+        m_anMoves[ nFrom ] = 0;
+        m_anBound[ nFrom ] = nBound;
+        nMaxEstimate = nBound;
+        pushBucket( nBound, nFrom );
+        nResult = UNREACHABLE;
+
+        // Extend the rooms in order of their estimate until the target is
+        // extended
+        for( nEstimate = nBound; nEstimate <= nMaxEstimate && nResult == UNREACHABLE; nEstimate++ )
+        {
+            while( m_anBucketCount[ nEstimate ] > 0 )
+            {
+                // Skip a room already extended with fewer moves
+                anBucket = m_aanBuckets[ nEstimate ];
+                nRoom = anBucket[ --m_anBucketCount[ nEstimate ] ];
+                if( m_anMoves[ nRoom ] + m_anBound[ nRoom ] != nEstimate )
+                    continue;
+                if( nRoom == nTo )
+                {
+                    nResult = m_anMoves[ nRoom ];
+                    break;
+                }
+
+                // Reach the rooms the arcs leaving the room lead to
+                for( nI = m_anOutStart[ nRoom ]; nI < m_anOutStart[ nRoom + 1 ]; nI++ )
+                {
+                    nNext = m_anOutTarget[ nI ];
+                    if( m_anMark[ nNext ] == m_nStamp )
+                    {
+                        if( m_anMoves[ nNext ] <= m_anMoves[ nRoom ] + 1 )
+                            continue;
+                    }
+                    else
+                    {
+                        nBound = getBound( nNext, anSlots, anTarget );
+                        if( nBound == Integer.MAX_VALUE )
+                            continue;
+                        m_anMark[ nNext ] = m_nStamp;
+                        m_anBound[ nNext ] = nBound;
+                    }
+                    m_anMoves[ nNext ] = m_anMoves[ nRoom ] + 1;
+                    nMaxEstimate = Math.max( nMaxEstimate, m_anMoves[ nNext ] + m_anBound[ nNext ] );
+                    pushBucket( m_anMoves[ nNext ] + m_anBound[ nNext ], nNext );
+                }
+            }
+        }
+
+        // Empty the buckets for the next search
+        for( nI = 0; nI <= nMaxEstimate && nI < m_anBucketCount.length; nI++ )
+            m_anBucketCount[ nI ] = 0;
+        return( nResult );
+    }
+
+    /**
+     * Computes the largest lower bound given by the landmarks of the moves
+     * from the specified room to the target.
+     *
+     * @param  nRoom  The index of the room.
+     * @param  anSlots  The slots in the distances of a room of the moves
+     *     from each landmark consulted, each followed by the moves to it.
+     * @param  anTarget  The moves from each landmark consulted to the
+     *     target, each followed by the moves from the target to it.
+     *
+     * @return  The lower bound, or Integer.MAX_VALUE if the landmarks show
+     *     the target cannot be reached from the room.
+     */
+
+    protected int getBound( int nRoom, int[] anSlots, int[] anTarget )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        char[] acDistances;  // Distances between rooms and landmarks
+        int    nOffset,      // Offset of the distances of the room
+               nBound,       // Largest lower bound so far
+               nFromL,       // Moves from the landmark to the room
+               nToL,         // Moves from the room to the landmark
+               nK;           // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Combine the bounds of all landmarks: d(v, t) >= d(L, t) - d(L, v)
+        // and d(v, t) >= d(v, L) - d(t, L).  A saturated distance is only a
+        // lower bound itself, so it is never subtracted.
+        acDistances = m_acLandmarkDistances;
+        nOffset = nRoom * 2 * m_anLandmarks.length;
+        nBound = 0;
+        for( nK = 0; nK < anTarget.length; nK += 2 )
+        {
+            // If L reaches v but not t, then v cannot reach t
+            nFromL = acDistances[ nOffset + anSlots[ nK ] ];
+            if( nFromL != CHAR_INFINITE )
+            {
+                if( anTarget[ nK ] == CHAR_INFINITE )
+                    return( Integer.MAX_VALUE );
+                if( nFromL != CHAR_SATURATED )
+                    nBound = Math.max( nBound, anTarget[ nK ] - nFromL );
+            }
+
+            // If t reaches L but v does not, then v cannot reach t
+            nToL = acDistances[ nOffset + anSlots[ nK + 1 ] ];
+            if( nToL == CHAR_INFINITE )
+            {
+                if( anTarget[ nK + 1 ] != CHAR_INFINITE )
+                    return( Integer.MAX_VALUE );
+            }
+            else if( anTarget[ nK + 1 ] != CHAR_INFINITE && anTarget[ nK + 1 ] != CHAR_SATURATED )
+                nBound = Math.max( nBound, nToL - anTarget[ nK + 1 ] );
+        }
+        return( nBound );
+    }
+
+    /**
+     * Adds a room to the bucket of the specified estimate, growing the
+     * buckets as necessary.
+     *
+     * @param  nEstimate  The lower bound of the route through the room.
+     * @param  nRoom  The index of the room.
+     */
+
+    protected void pushBucket( int nEstimate, int nRoom )
+    {
+        // Grow the list of buckets if necessary
+        if( nEstimate >= m_aanBuckets.length )
+        {
+            int nLength = Math.max( nEstimate + 1, m_aanBuckets.length * 2 );
+            m_aanBuckets = Arrays.copyOf( m_aanBuckets, nLength );
+            m_anBucketCount = Arrays.copyOf( m_anBucketCount, nLength );
+        }
+
+        // Grow the bucket if necessary and add the room
+        int[] anBucket = m_aanBuckets[ nEstimate ];
+        int nCount = m_anBucketCount[ nEstimate ];
+        if( anBucket == null )
+            anBucket = m_aanBuckets[ nEstimate ] = new int[ 16 ];
+        else if( nCount == anBucket.length )
+            anBucket = m_aanBuckets[ nEstimate ] = Arrays.copyOf( anBucket, nCount * 2 );
+        anBucket[ nCount ] = nRoom;
+        m_anBucketCount[ nEstimate ] = nCount + 1;
+    }
+
+    /**
+     * Shortens the distances of the table through a new arc: the distance
+     * from any room s to any room t becomes at most the distance from s to
+     * the start of the arc, plus one, plus the distance from its end to t.
+     *
+     * @param  nStart  The index of the room the arc leaves.
+     * @param  nEnd  The index of the room the arc enters.
+     */
+
+    protected void addArc( int nStart, int nEnd )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[]  anFromEnd;  // Moves from the end of the arc to each room
+        byte[] abRow;      // Byte row of the room s
+        char[] acRow;      // Char row of the room s
+        int    nToStart,   // Moves from s to the start of the arc
+               nMoves,     // Moves from s to t through the arc
+               nS, nT;     // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Copy the distances from the end of the arc (they do not change,
+        // since a route from the end through the arc returns to the end)
+        anFromEnd = new int[ m_nRoomCount ];
+        for( nT = 0; nT < m_nRoomCount; nT++ )
+            anFromEnd[ nT ] = getDistance( nEnd, nT );
+
+        // Shorten the row of each room that reaches the start of the arc
+        for( nS = 0; nS < m_nRoomCount; nS++ )
+        {
+            if( m_aabTable[ nS ] == null && m_aacTable[ nS ] == null )
+                continue;
+            nToStart = getDistance( nS, nStart );
+            if( nToStart == UNREACHABLE )
+                continue;
+            for( nT = 0; nT < m_nRoomCount; nT++ )
+            {
+                if( anFromEnd[ nT ] == UNREACHABLE )
+                    continue;
+                nMoves = nToStart + 1 + anFromEnd[ nT ];
+                abRow = m_aabTable[ nS ];
+                if( abRow != null )
+                {
+                    if( nMoves < (abRow[ nT ] & 0xff) )
+                    {
+                        if( nMoves < BYTE_INFINITE )
+                        {
+                            abRow[ nT ] = (byte)nMoves;
+                            continue;
+                        }
+
+                        // Widen the row if the distance does not fit
+                        acRow = new char[ m_nRoomCount ];
+                        for( int nI = 0; nI < m_nRoomCount; nI++ )
+                            acRow[ nI ] = (abRow[ nI ] & 0xff) == BYTE_INFINITE ? (char)CHAR_INFINITE : (char)(abRow[ nI ] & 0xff);
+                        m_aacTable[ nS ] = acRow;
+                        m_aabTable[ nS ] = null;
+                        m_lMemoryCost += m_nRoomCount;
+                    }
+                    else
+                        continue;
+                }
+                acRow = m_aacTable[ nS ];
+                if( nMoves < acRow[ nT ] )
+                    acRow[ nT ] = (char)nMoves;
+            }
+        }
+    }
+
+
+    /**
+     * Runs a breadth-first search from the specified room.  The arcs
+     * followed are given as offsets and rooms; if both are null, the arcs of
+     * the oracle are followed in either direction.
+     *
+     * @param  nSource  The index of the room searched from.
+     * @param  anStart  The offset of the first arc of each room.
+     * @param  anTarget  The room each arc leads to.
+     * @param  anDistance  The moves to each room; must be -1 for all rooms
+     *     on entry, and is -1 for all rooms not reached on exit.
+     * @param  anQueue  Receives the rooms reached in order of distance.
+     *
+     * @return  The number of rooms reached.
+     */
+
+    protected int search( int nSource, int[] anStart, int[] anTarget, int[] anDistance, int[] anQueue )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nHead,   // Next room to extend
+            nTail,   // End of the queue
+            nRoom,   // Room being extended
+            nNext,   // Room reached from nRoom
+            nPass,   // Direction of the arcs followed
+            nI;      // Loop control variable
+        int[] anPassStart,   // Offsets of the arcs of the direction
+              anPassTarget;  // Rooms of the arcs of the direction
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Extend the rooms in order of distance
+        anDistance[ nSource ] = 0;
+        anQueue[ 0 ] = nSource;
+        for( nHead = 0, nTail = 1; nHead < nTail; nHead++ )
+        {
+            nRoom = anQueue[ nHead ];
+            for( nPass = 0; nPass < 2; nPass++ )
+            {
+                // Follow the arcs given, or those of the oracle both ways
+                if( anStart != null )
+                {
+                    if( nPass > 0 )
+                        break;
+                    anPassStart = anStart;
+                    anPassTarget = anTarget;
+                }
+                else
+                {
+                    anPassStart = nPass == 0 ? m_anOutStart : m_anInStart;
+                    anPassTarget = nPass == 0 ? m_anOutTarget : m_anInSource;
+                }
+                for( nI = anPassStart[ nRoom ]; nI < anPassStart[ nRoom + 1 ]; nI++ )
+                {
+                    nNext = anPassTarget[ nI ];
+                    if( anDistance[ nNext ] < 0 )
+                    {
+                        anDistance[ nNext ] = anDistance[ nRoom ] + 1;
+                        anQueue[ nTail++ ] = nNext;
+                    }
+                }
+            }
+        }
+        return( nTail );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Exchanges the pairs of elements of an array at two even offsets.
+     *
+     * @param  an  The array.
+     * @param  nI  The offset of the first pair.
+     * @param  nJ  The offset of the second pair.
+     */
+
+    protected static void swap( int[] an, int nI, int nJ )
+    {
+        // Exchange both elements of the pairs
+        for( int nK = 0; nK < 2; nK++ )
+        {
+            int nTemp = an[ nI + nK ];
+            an[ nI + nK ] = an[ nJ + nK ];
+            an[ nJ + nK ] = nTemp;
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************           Tasks            *********************
+    // **********************************************************************
+
+    /**
+     * The task that computes the rows of the table for a range of rooms,
+     * splitting the range between subtasks while it is large.
+     */
+
+    protected class TableTask
+        extends RecursiveAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The index of the first room of the range.
+         */
+        protected int m_nFirst;
+
+        /**
+         * The index after the last room of the range.
+         */
+        protected int m_nLimit;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 5092177483605413719L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new TableTask for the specified range of rooms.
+         *
+         * @param  nFirst  The index of the first room of the range.
+         * @param  nLimit  The index after the last room of the range.
+         */
+
+        TableTask( int nFirst, int nLimit )
+        {
+            // Initialize instance variables
+            m_nFirst = nFirst;
+            m_nLimit = nLimit;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   RecursiveAction Methods   --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.concurrent.RecursiveAction#compute()  compute
+         */
+
+        protected void compute()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            int[]  anDistance,  // Moves to each room
+                   anQueue;     // Rooms reached
+            byte[] abRow;       // Byte row of the room searched from
+            char[] acRow;       // Char row of the room searched from
+            int    nReached,    // Number of rooms reached
+                   nMax,        // Largest distance
+                   nMiddle,     // Middle of the range
+                   nRoom,       // Room searched from
+                   nI;          // Loop control variable
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Split a large range in two
+            if( m_nLimit - m_nFirst > SEARCHES_PER_TASK )
+            {
+                nMiddle = (m_nFirst + m_nLimit) >>> 1;
+                invokeAll( new TableTask( m_nFirst, nMiddle ), new TableTask( nMiddle, m_nLimit ) );
+                return;
+            }
+
+            // Search from each room of the range
+            anDistance = new int[ m_nRoomCount ];
+            Arrays.fill( anDistance, -1 );
+            anQueue = new int[ m_nRoomCount ];
+            for( nRoom = m_nFirst; nRoom < m_nLimit; nRoom++ )
+            {
+                // Skip unused indices
+                if( m_oGraph.m_aoRooms[ nRoom ] == null )
+                    continue;
+                nReached = search( nRoom, m_anOutStart, m_anOutTarget, anDistance, anQueue );
+
+                // Store the distances in a byte row if they fit
+                nMax = anDistance[ anQueue[ nReached - 1 ] ];
+                if( nMax < BYTE_INFINITE )
+                {
+                    abRow = new byte[ m_nRoomCount ];
+                    Arrays.fill( abRow, (byte)BYTE_INFINITE );
+                    for( nI = 0; nI < nReached; nI++ )
+                        abRow[ anQueue[ nI ] ] = (byte)anDistance[ anQueue[ nI ] ];
+                    m_aabTable[ nRoom ] = abRow;
+                }
+                else
+                {
+                    acRow = new char[ m_nRoomCount ];
+                    Arrays.fill( acRow, (char)CHAR_INFINITE );
+                    for( nI = 0; nI < nReached; nI++ )
+                        acRow[ anQueue[ nI ] ] = (char)Math.min( anDistance[ anQueue[ nI ] ], CHAR_INFINITE - 1 );
+                    m_aacTable[ nRoom ] = acRow;
+                }
+
+                // Reset the distances of the rooms reached
+                for( nI = 0; nI < nReached; nI++ )
+                    anDistance[ anQueue[ nI ] ] = -1;
+            }
+        }
+    }
+
+    /**
+     * The task that computes the distances from and to a range of
+     * landmarks.  Even search indices search from landmark index / 2 along
+     * the arcs, odd ones search to it against the arcs; the index is also
+     * the slot of the search in the distances of each room.
+     */
+
+    protected class LandmarkTask
+        extends RecursiveAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The first search of the range.
+         */
+        protected int m_nFirst;
+
+        /**
+         * The search after the last of the range.
+         */
+        protected int m_nLimit;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -2316640381985541407L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new LandmarkTask for the specified range of searches.
+         *
+         * @param  nFirst  The first search of the range.
+         * @param  nLimit  The search after the last of the range.
+         */
+
+        LandmarkTask( int nFirst, int nLimit )
+        {
+            // Initialize instance variables
+            m_nFirst = nFirst;
+            m_nLimit = nLimit;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   RecursiveAction Methods   --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.concurrent.RecursiveAction#compute()  compute
+         */
+
+        protected void compute()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            int[]  anDistance,   // Moves to or from each room
+                   anQueue;      // Rooms reached
+            char[] acDistances;  // Distances between rooms and landmarks
+            int    nMiddle,      // Middle of the range
+                   nLandmark,    // Landmark searched from or to
+                   nStride,      // Distances stored for each room
+                   nSearch,      // Search being run
+                   nI;           // Loop control variable
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Run each search in its own task
+            if( m_nLimit - m_nFirst > 1 )
+            {
+                nMiddle = (m_nFirst + m_nLimit) >>> 1;
+                invokeAll( new LandmarkTask( m_nFirst, nMiddle ), new LandmarkTask( nMiddle, m_nLimit ) );
+                return;
+            }
+
+            // Search from or to the landmark
+            nSearch = m_nFirst;
+            nLandmark = m_anLandmarks[ nSearch / 2 ];
+            anDistance = new int[ m_nRoomCount ];
+            Arrays.fill( anDistance, -1 );
+            anQueue = new int[ m_nRoomCount ];
+            if( nSearch % 2 == 0 )
+                search( nLandmark, m_anOutStart, m_anOutTarget, anDistance, anQueue );
+            else
+                search( nLandmark, m_anInStart, m_anInSource, anDistance, anQueue );
+
+            // Store the distances at the slot of the search in the
+            // distances of each room, saturating those that do not fit
+            acDistances = m_acLandmarkDistances;
+            nStride = 2 * m_anLandmarks.length;
+            for( nI = 0; nI < m_nRoomCount; nI++ )
+            {
+                acDistances[ nI * nStride + nSearch ] = anDistance[ nI ] < 0 ?
+                    (char)CHAR_INFINITE : (char)Math.min( anDistance[ nI ], CHAR_SATURATED );
+            }
+        }
+    }
+}
@@ -21,6 +21,8 @@
 package soloff.steven.ifmap;
 
 import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Point2D;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import org.w3c.dom.Element;
@@ -89,6 +91,13 @@ public class Edge
      */
     protected boolean m_bSecret;
 
+    /**
+     * The points this edge bends at between its start and end, in order, or
+     * null if the edge is a straight line.  Circular edges are always drawn
+     * as arcs, so their bends are ignored.
+     */
+    protected Point[] m_aptBends;
+
 
     // **********************************************************************
     // *********************      Class Variables       *********************
@@ -138,6 +147,7 @@ public class Edge
         m_nEndExit = nEndExit;
         m_bOneWay = false;
         m_bSecret = false;
+        m_aptBends = null;
 
         // Update next edge identifier
         c_nNextEdgeID++;
@@ -160,6 +170,39 @@ public class Edge
         m_oMap = oMap;
     }
 
+    /**
+     * Constructs a new Edge object on the specified Map that is a copy of
+     * the specified Edge with the specified identifier and end rooms.  The
+     * next edge identifier is not changed.
+     *
+     * @param  oMap  The Map that contains this Edge.
+     * @param  strID  The identifier of this Edge.
+     * @param  oEdge  The Edge to be copied.
+     * @param  strStartRoomID  The ID of the Room the Edge starts at.
+     * @param  strEndRoomID  The ID of the Room the Edge ends at.
+     *
+     * @exception  IllegalArgumentException  If any argument is null.
+     */
+
+    Edge( Map oMap, String strID, Edge oEdge, String strStartRoomID, String strEndRoomID )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || strID == null || oEdge == null || strStartRoomID == null || strEndRoomID == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_strID = strID;
+        m_oMap = oMap;
+        m_strStartRoomID = strStartRoomID;
+        m_strEndRoomID = strEndRoomID;
+        m_nStartExit = oEdge.m_nStartExit;
+        m_nEndExit = oEdge.m_nEndExit;
+        m_bOneWay = oEdge.m_bOneWay;
+        m_bSecret = oEdge.m_bSecret;
+        setBends( oEdge.m_aptBends );
+    }
+
 
     // **********************************************************************
     // *********************  Public Instance Methods   *********************
@@ -279,6 +322,200 @@ public class Edge
         return( pt );
     }
 
+    /**
+     * Indicates if the edge starts and ends at the same Room.  Such edges
+     * are rendered as circular (arc) edges rather than line edges.
+     *
+     * @return  A flag indicating if the edge is a circular edge.
+     */
+
+    public boolean isCircular()
+    {
+        // Return whether the edge starts and ends at the same room
+        return( m_strStartRoomID.equals( m_strEndRoomID ) );
+    }
+
+    /**
+     * Computes the bounding rectangle of the Edge.  The coordinates are
+     * relative to the parent container (the map).  For circular edges, the
+     * bounding rectangle is that of the circle on which the edge lies.
+     *
+     * @return  The bounding rectangle of the Edge.
+     */
+
+    public Rectangle getBounds()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rectEdge;
+        Point ptStart = getStartPoint();
+        Point ptEnd = getEndPoint();
+
+        // CONSTANT DECLARATIONS                                           //
+
+        final double SQRT2           = Math.sqrt( 2.0 );  // Square root of 2
+        final int    MIN_EDGE_RADIUS = 10;                // Minimum radius for circular edges
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Determine if the edge is a line edge or a circular edge
+        if( isCircular() )
+        {
+            // Determine if the circular edge connects the same exit
+            if( m_nStartExit == m_nEndExit )
+            {
+                // Adjust left coordinate of edge bounds so it properly intersects exit
+                switch( m_nStartExit )
+                {
+                    case Room.EXIT_NW:
+                    case Room.EXIT_SW:
+                        ptStart.x -= (int)(MIN_EDGE_RADIUS * (SQRT2 + 1.0) * SQRT2 / 2.0);
+                        break;
+
+                    case Room.EXIT_NE:
+                    case Room.EXIT_SE:
+                        ptStart.x -= (int)(MIN_EDGE_RADIUS * (SQRT2 - 1.0)) * SQRT2 / 2.0;
+                        break;
+
+                    case Room.EXIT_W:
+                        ptStart.x -= 2 * MIN_EDGE_RADIUS;
+                        break;
+
+                    case Room.EXIT_U:
+                    case Room.EXIT_N:
+                    case Room.EXIT_D:
+                    case Room.EXIT_S:
+                        ptStart.x -= MIN_EDGE_RADIUS;
+                        break;
+                }
+
+                // Adjust top coordinate of edge bounds so it properly intersects exit
+                switch( m_nStartExit )
+                {
+                    case Room.EXIT_NW:
+                    case Room.EXIT_NE:
+                        ptStart.y -= (int)(MIN_EDGE_RADIUS * (SQRT2 + 1.0) * SQRT2 / 2.0);
+                        break;
+
+                    case Room.EXIT_U:
+                    case Room.EXIT_N:
+                        ptStart.y -= 2 * MIN_EDGE_RADIUS;
+                        break;
+
+                    case Room.EXIT_W:
+                    case Room.EXIT_E:
+                        ptStart.y -= MIN_EDGE_RADIUS;
+                        break;
+
+                    case Room.EXIT_SW:
+                    case Room.EXIT_SE:
+                        ptStart.y -= MIN_EDGE_RADIUS * (SQRT2 - 1.0) * SQRT2 / 2.0;
+                        break;
+                }
+
+                // Compute bounding rectangle of edge
+                rectEdge = new Rectangle( ptStart.x, ptStart.y,
+                    2 * MIN_EDGE_RADIUS + 1, 2 * MIN_EDGE_RADIUS + 1 );
+            }
+            else
+            {
+                Point2D.Double pt1 = new Point2D.Double();
+                Point2D.Double pt2 = new Point2D.Double();
+                Point2D.Double ptCenter1 = new Point2D.Double();
+                Point2D.Double ptCenter2 = new Point2D.Double();
+                Point2D.Double ptCenter = new Point2D.Double();
+                Point2D.Double ptMid = new Point2D.Double();
+                Point2D.Double ptRoomMid = new Point2D.Double();
+
+                Rectangle rectRoom;
+                double dAlpha, dA, dB, dC, dR, dDiscrim;
+
+                pt1.setLocation( ptStart );
+                pt2.setLocation( ptEnd );
+
+                rectRoom = m_oMap.getRoom( m_strStartRoomID ).m_rectBounds;
+
+                double rTemp = Math.max( rectRoom.width, rectRoom.height );
+                rTemp = Math.max( rTemp, Math.sqrt( (pt2.x - pt1.x) * (pt2.x - pt1.x) + (pt2.y - pt1.y) * (pt2.y - pt1.y) ) );
+                dR = 0.55 * rTemp;
+                dAlpha = 0.5 * (pt2.x * pt2.x - pt1.x * pt1.x + pt2.y * pt2.y - pt1.y * pt1.y);
+
+                // Compute the two solutions for the x-coordinate of circle center
+                dA = (pt2.x - pt1.x) * (pt2.x - pt1.x) + (pt2.y - pt1.y) * (pt2.y - pt1.y);
+                dB = 2.0 * (pt2.y - pt1.y) * (pt1.y * (pt2.x - pt1.x) - pt1.x * (pt2.y - pt1.y)) -
+                    2.0 * dAlpha * (pt2.x - pt1.x);
+                dC = (pt2.y - pt1.y) * (pt2.y - pt1.y) * (pt1.x * pt1.x + pt1.y * pt1.y - dR * dR) +
+                    dAlpha * (dAlpha - 2.0 * pt1.y * (pt2.y - pt1.y));
+                dDiscrim = Math.sqrt( dB * dB - 4.0 * dA * dC );
+                ptCenter1.x = (-dB + dDiscrim) / (2.0 * dA);
+                ptCenter2.x = (-dB - dDiscrim) / (2.0 * dA);
+
+                // Compute the two solutions for the y-coordinate of circle center
+                // (the same as above) dA = (pt2.x - pt1.x) * (pt2.x - pt1.x) + (pt2.y - pt1.y) * (pt2.y - pt1.y);
+                dB = 2.0 * (pt2.x - pt1.x) * (pt1.x * (pt2.y - pt1.y) - pt1.y * (pt2.x - pt1.x)) -
+                    2.0 * dAlpha * (pt2.y - pt1.y);
+                dC = (pt2.x - pt1.x) * (pt2.x - pt1.x) * (pt1.x * pt1.x + pt1.y * pt1.y - dR * dR) +
+                    dAlpha * (dAlpha - 2.0 * pt1.x * (pt2.x - pt1.x));
+                dDiscrim = Math.sqrt( dB * dB - 4.0 * dA * dC );
+                ptCenter1.y = (-dB + dDiscrim) / (2.0 * dA);
+                ptCenter2.y = (-dB - dDiscrim) / (2.0 * dA);
+
+                // Compute the midpoints of the room and the line that connects the
+                // edge exits
+                ptRoomMid.setLocation( rectRoom.getCenterX(), rectRoom.getCenterY() );
+                ptMid.setLocation( (pt1.x + pt2.x) / 2.0, (pt1.y + pt2.y) / 2.0 );
+
+                // Arbitrarily use the x- and y- solutions that are skewed the most in the
+                // direction of the midpoint of the line that connects the starting and
+                // ending points of the edge relative to the midpoint of the room for the
+                // center of the arc.
+                ptCenter.x = ptMid.x < ptRoomMid.x ? Math.min( ptCenter1.x, ptCenter2.x ) :
+                    Math.max( ptCenter1.x, ptCenter2.x );
+                ptCenter.y = ptMid.y < ptRoomMid.y ? Math.min( ptCenter1.y, ptCenter2.y ) :
+                    Math.max( ptCenter1.y, ptCenter2.y );
+
+                // Make sure the point that was arbitrarily chosen is actually a circle
+                // (if it is it will be equidistant from the starting and ending points
+                // of the edge).
+                if( Math.abs( ptCenter.distance( pt1 ) - ptCenter.distance( pt2 ) ) > 1.0 )
+                {
+                    // Otherwise switch the solution of the coordinate that is closer to
+                    // the midpoint of the room (we want the coordinate furthest away to
+                    // dominate the solution).
+                    if( Math.abs( ptMid.x - ptRoomMid.x ) > Math.abs( ptMid.y - ptRoomMid.y ) )
+                        ptCenter.y = ptCenter.y == ptCenter1.y ? ptCenter2.y : ptCenter1.y;
+                    else
+                        ptCenter.x = ptCenter.x == ptCenter1.x ? ptCenter2.x : ptCenter1.x;
+                }
+
+                // Compute bounding rectangle of edge
+                rectEdge = new Rectangle();
+                rectEdge.setRect( ptCenter.x - dR, ptCenter.y - dR, 2.0 * dR + 1.0, 2.0 * dR + 1.0 );
+            }
+        }
+        else
+        {
+            // Compute bounding rectangle of edge
+            // (the bounds include both endpoints and any bends so that
+            // horizontal and vertical edges do not have an empty bounding
+            // rectangle)
+            rectEdge = new Rectangle( ptStart );
+            rectEdge.add( ptEnd );
+            if( m_aptBends != null )
+            {
+                for( final Point ptBend : m_aptBends )
+                    rectEdge.add( ptBend );
+            }
+            rectEdge.width++;
+            rectEdge.height++;
+        }
+
+        // Return bounding rectangle of edge
+        return( rectEdge );
+    }
+
     /**
      * Indicates if the edge represents a one-way passage.
      *
@@ -299,8 +536,12 @@ public class Edge
 
     public void setOneWay( boolean bOneWay )
     {
-        // Set the one-way flag
-        m_bOneWay = bOneWay;
+        // Set the one-way flag and notify the listeners of the Map
+        if( m_bOneWay != bOneWay )
+        {
+            m_bOneWay = bOneWay;
+            m_oMap.fireEdgeChanged( this );
+        }
     }
 
     /**
@@ -323,8 +564,95 @@ public class Edge
 
     public void setSecret( boolean bSecret )
     {
-        // Set the secret flag
-        m_bSecret = bSecret;
+        // Set the secret flag and notify the listeners of the Map
+        if( m_bSecret != bSecret )
+        {
+            m_bSecret = bSecret;
+            m_oMap.fireEdgeChanged( this );
+        }
+    }
+
+
+    /**
+     * Indicates if the edge bends between its start and end.
+     *
+     * @return  A flag indicating if the edge has bends.
+     */
+
+    public boolean hasBends()
+    {
+        // Return whether there are any bends
+        return( m_aptBends != null );
+    }
+
+    /**
+     * Gets the points the edge bends at between its start and end.  The
+     * coordinates are relative to the parent container (the map).
+     *
+     * @return  A copy of the bends, in order from the start of the edge;
+     *     empty if the edge is a straight line.
+     */
+
+    public Point[] getBends()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Point[] apt;  // Copy of the bends
+        int     nI;   // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Copy each bend so the caller cannot change the edge
+        if( m_aptBends == null )
+            return( new Point[ 0 ] );
+        apt = new Point[ m_aptBends.length ];
+        for( nI = 0; nI < apt.length; nI++ )
+            apt[ nI ] = new Point( m_aptBends[ nI ] );
+        return( apt );
+    }
+
+    /**
+     * Sets the points the edge bends at between its start and end.  Like
+     * moving a room, this changes only how the edge is drawn, so the
+     * listeners of the Map are not notified; the caller is responsible for
+     * repainting the edge.
+     *
+     * @param  aptBends  The bends, in order from the start of the edge, or
+     *     null or an empty array to make the edge a straight line.
+     *
+     * @exception  IllegalArgumentException  If any bend is null.
+     */
+
+    public void setBends( Point[] aptBends )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Point[] apt;  // Copy of the bends
+        int     nI;   // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // A straight edge has no bends
+        if( aptBends == null || aptBends.length == 0 )
+        {
+            m_aptBends = null;
+            return;
+        }
+
+        // Copy each bend so the caller cannot change the edge
+        apt = new Point[ aptBends.length ];
+        for( nI = 0; nI < apt.length; nI++ )
+        {
+            if( aptBends[ nI ] == null )
+                throw new IllegalArgumentException();
+            apt[ nI ] = new Point( aptBends[ nI ] );
+        }
+        m_aptBends = apt;
     }
 
 
@@ -404,14 +732,33 @@ public class Edge
     public void readIFMML( Element oElement )
         throws RuntimeException
     {
-        // Parse simple text attributes
+        // Read the edge without sharing its values with other edges
+        readIFMML( oElement, new LoadInterner() );
+    }
+
+    /**
+     * Reads the edge from the specified EDGE element, sharing the IDs of
+     * the rooms it connects with the IDs read earlier in the same load.
+     *
+     * @param  oElement  The EDGE element.
+     * @param  oInterner  The interner of the load.
+     *
+     * @exception  RuntimeException  If the element is not a valid edge.
+     */
+
+    void readIFMML( Element oElement, LoadInterner oInterner )
+        throws RuntimeException
+    {
+        // Parse simple text attributes (the edge ID is unique, so it is not
+        // worth sharing)
         m_strID = oElement.getAttribute( IFMML_ATTR_EDGE_ID );
         m_bOneWay = Boolean.valueOf( oElement.getAttribute( IFMML_ATTR_EDGE_ONEWAY ) ).booleanValue();
         m_bSecret = Boolean.valueOf( oElement.getAttribute( IFMML_ATTR_EDGE_SECRET ) ).booleanValue();
-        m_strStartRoomID = oElement.getAttribute( IFMML_ATTR_EDGE_STARTROOMID );
+        m_strStartRoomID = oInterner.intern( oElement.getAttribute( IFMML_ATTR_EDGE_STARTROOMID ) );
         m_nStartExit = Room.getExitID( oElement.getAttribute( IFMML_ATTR_EDGE_STARTROOMEXIT ) );
-        m_strEndRoomID = oElement.getAttribute( IFMML_ATTR_EDGE_ENDROOMID );
+        m_strEndRoomID = oInterner.intern( oElement.getAttribute( IFMML_ATTR_EDGE_ENDROOMID ) );
         m_nEndExit = Room.getExitID( oElement.getAttribute( IFMML_ATTR_EDGE_ENDROOMEXIT ) );
+        m_aptBends = parseBends( oElement.getAttribute( IFMML_ATTR_EDGE_BENDS ) );
     }
 
     /**
@@ -447,8 +794,86 @@ public class Edge
         oWriter.write( str, 0, str.length() );
         str = IFMML_ATTR_EDGE_ENDROOMEXIT + "=\"" + Room.getExitName( m_nEndExit ) + "\" ";
         oWriter.write( str, 0, str.length() );
+        if( m_aptBends != null )
+        {
+            str = IFMML_ATTR_EDGE_BENDS + "=\"" + formatBends( m_aptBends ) + "\" ";
+            oWriter.write( str, 0, str.length() );
+        }
         str = "/>";
         oWriter.write( str, 0, str.length() );
         oWriter.newLine();
     }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Formats bends as the value of the BENDS attribute: "x,y" pairs
+     * separated by spaces.
+     *
+     * @param  aptBends  The bends.
+     *
+     * @return  The value of the attribute.
+     */
+
+    protected static String formatBends( Point[] aptBends )
+    {
+        // Append each bend in turn
+        StringBuilder sb = new StringBuilder( aptBends.length * 10 );
+        for( final Point pt : aptBends )
+        {
+            if( sb.length() > 0 )
+                sb.append( ' ' );
+            sb.append( pt.x ).append( ',' ).append( pt.y );
+        }
+        return( sb.toString() );
+    }
+
+    /**
+     * Parses the value of the BENDS attribute.
+     *
+     * @param  strBends  The value of the attribute; empty if the attribute
+     *     is absent.
+     *
+     * @return  The bends, or null if there are none.
+     *
+     * @exception  IllegalArgumentException  If the value is not a list of
+     *     "x,y" pairs.
+     */
+
+    protected static Point[] parseBends( String strBends )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        String[] astrPairs;  // The "x,y" pairs
+        Point[]  aptBends;   // The bends parsed
+        int      nComma,     // Position of the comma in a pair
+                 nI;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // An absent or empty attribute means a straight edge
+        strBends = strBends.trim();
+        if( strBends.length() == 0 )
+            return( null );
+
+        // Parse each pair (a malformed number is reported as a
+        // NumberFormatException, which is an IllegalArgumentException)
+        astrPairs = strBends.split( "\\s+" );
+        aptBends = new Point[ astrPairs.length ];
+        for( nI = 0; nI < astrPairs.length; nI++ )
+        {
+            nComma = astrPairs[ nI ].indexOf( ',' );
+            if( nComma < 0 )
+                throw new IllegalArgumentException();
+            aptBends[ nI ] = new Point( Integer.parseInt( astrPairs[ nI ].substring( 0, nComma ) ),
+                Integer.parseInt( astrPairs[ nI ].substring( nComma + 1 ) ) );
+        }
+        return( aptBends );
+    }
 }
@@ -0,0 +1,658 @@
+/*
+ * EdgeBatchCache.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * The object that keeps the edges of a Map in batches ready to be painted.
+ * The map is divided into square tiles, and each edge is kept in the tile
+ * that contains the center of its bounds, in one batch for each style.  A
+ * paint strokes only the batches of the tiles whose edges intersect the
+ * region being painted, so the work of a paint grows with the part of the
+ * map shown rather than with the whole map.
+ *
+ * <p>When edges change, only the tiles they were in and are now in are
+ * built again.  The cache listens to the Map for edges being added,
+ * removed, and changed; since moving or sizing a room and rerouting an
+ * edge are not reported to the listeners of the Map, the caller marks the
+ * edges at a moved room, or a rerouted edge, itself.  Like the Map, the
+ * cache must only be used on the event dispatch thread.
+ */
+
+public class EdgeBatchCache
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The width and height in pixels of the tiles of the map.
+     */
+    protected static final int TILE_SIZE = RoomUI.MIN_ROOM_WIDTH * 8;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map whose edges are batched.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The object used to add the edges to the batches.
+     */
+    protected MapRenderer m_oRenderer;
+
+    /**
+     * The tiles that hold edges, by their keys.
+     */
+    protected HashMap<Long, Tile> m_oTiles;
+
+    /**
+     * The tile each batched edge is kept in.
+     */
+    protected HashMap<Edge, Tile> m_oEdgeTiles;
+
+    /**
+     * The edges at each room.
+     */
+    protected HashMap<String, ArrayList<Edge>> m_oRoomEdges;
+
+    /**
+     * The edges to be placed in a tile again by the next update.
+     */
+    protected LinkedHashSet<Edge> m_oDirtyEdges;
+
+    /**
+     * The tiles whose batches are to be built again by the next update.
+     */
+    protected LinkedHashSet<Tile> m_oStaleTiles;
+
+    /**
+     * Indicates if every batch is to be built again by the next update.
+     */
+    protected boolean m_bRebuildNeeded;
+
+    /**
+     * The number of tiles built by the last update.
+     */
+    protected int m_nLastBuiltCount;
+
+    /**
+     * The number of edges in the tiles painted by the last paint.
+     */
+    protected int m_nLastPaintedEdgeCount;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new EdgeBatchCache for the specified Map.  The batches
+     * are not built until the cache is first updated.
+     *
+     * @param  oMap  The Map whose edges are to be batched.
+     * @param  oRenderer  The object used to add the edges to the batches.
+     *
+     * @exception  IllegalArgumentException  If oMap or oRenderer is null.
+     */
+
+    public EdgeBatchCache( Map oMap, MapRenderer oRenderer )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || oRenderer == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_oRenderer = oRenderer;
+        m_oTiles = new HashMap<Long, Tile>();
+        m_oEdgeTiles = new HashMap<Edge, Tile>();
+        m_oRoomEdges = new HashMap<String, ArrayList<Edge>>();
+        m_oDirtyEdges = new LinkedHashSet<Edge>();
+        m_oStaleTiles = new LinkedHashSet<Tile>();
+        m_bRebuildNeeded = true;
+        m_nLastBuiltCount = 0;
+        m_nLastPaintedEdgeCount = 0;
+
+        // Index the edges at each room and listen for changes to the Map
+        indexRoomEdges();
+        m_oMap.addMapListener( this );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Indicates if any batches must be built before the edges are painted.
+     *
+     * @return  A flag indicating if the cache must be updated.
+     */
+
+    public boolean isUpdateNeeded()
+    {
+        // An update is needed if anything changed since the last one
+        return( m_bRebuildNeeded || !m_oDirtyEdges.isEmpty() || !m_oStaleTiles.isEmpty() );
+    }
+
+    /**
+     * Marks every batch to be built again by the next update.  This must be
+     * called when many edges may have changed, such as after a layout.
+     */
+
+    public void invalidate()
+    {
+        // Rebuild everything
+        m_bRebuildNeeded = true;
+    }
+
+    /**
+     * Marks the specified Edge to be batched again by the next update.
+     * This must be called when the shape of the edge changes, such as when
+     * its bends are set.
+     *
+     * @param  oEdge  The Edge that changed.
+     */
+
+    public void invalidateEdge( Edge oEdge )
+    {
+        // Batch the edge again
+        m_oDirtyEdges.add( oEdge );
+    }
+
+    /**
+     * Marks the edges at the specified Room to be batched again by the next
+     * update.  This must be called when the room is moved or sized.
+     *
+     * @param  oRoom  The Room that was moved or sized.
+     */
+
+    public void invalidateRoomEdges( Room oRoom )
+    {
+        // Batch each edge at the room again
+        ArrayList<Edge> aoEdges = m_oRoomEdges.get( oRoom.m_strID );
+        if( aoEdges != null )
+            m_oDirtyEdges.addAll( aoEdges );
+    }
+
+    /**
+     * Builds the batches of the tiles whose edges changed since the last
+     * update, or of every tile if the cache was invalidated.
+     */
+
+    public void update()
+    {
+        // Place every edge in its tile again if the cache was invalidated,
+        // or only the edges that changed
+        if( m_bRebuildNeeded )
+        {
+            m_oTiles.clear();
+            m_oEdgeTiles.clear();
+            m_oDirtyEdges.clear();
+            m_oStaleTiles.clear();
+            for( final Edge oEdge : m_oMap.m_oEdgeMap.values() )
+                placeEdge( oEdge );
+            m_bRebuildNeeded = false;
+        }
+        else
+        {
+            for( final Edge oEdge : m_oDirtyEdges )
+            {
+                unplaceEdge( oEdge );
+                if( m_oMap.m_oEdgeMap.get( oEdge.getID() ) == oEdge )
+                    placeEdge( oEdge );
+            }
+            m_oDirtyEdges.clear();
+        }
+
+        // Build the batches of the tiles that changed, and drop the tiles
+        // left empty
+        m_nLastBuiltCount = 0;
+        for( final Tile oTile : m_oStaleTiles )
+        {
+            if( oTile.m_oEdges.isEmpty() )
+                m_oTiles.remove( Long.valueOf( oTile.m_lKey ) );
+            else
+            {
+                oTile.build( m_oRenderer );
+                m_nLastBuiltCount++;
+            }
+        }
+        m_oStaleTiles.clear();
+    }
+
+    /**
+     * Paints the batches of each tile whose edges intersect the specified
+     * clipping rectangle: normal edges in black and then secret edges in
+     * gray.  The cache must be up to date.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The region of the map to be painted.
+     *
+     * @return  The number of tiles painted.
+     */
+
+    public int paint( Graphics g, Rectangle rectClip )
+    {
+        // Paint the normal edges of the tiles within the region
+        int nPainted = 0;
+        m_nLastPaintedEdgeCount = 0;
+        g.setColor( Color.black );
+        for( final Tile oTile : m_oTiles.values() )
+        {
+            if( rectClip.intersects( oTile.m_rectBounds ) )
+            {
+                oTile.m_oNormalBatch.paint( g );
+                m_nLastPaintedEdgeCount += oTile.m_oEdges.size();
+                nPainted++;
+            }
+        }
+
+        // Paint the secret edges of the same tiles over them
+        g.setColor( Color.gray );
+        for( final Tile oTile : m_oTiles.values() )
+        {
+            if( rectClip.intersects( oTile.m_rectBounds ) )
+                oTile.m_oSecretBatch.paint( g );
+        }
+        return( nPainted );
+    }
+
+    /**
+     * Gets the number of tiles that hold edges.
+     *
+     * @return  The number of tiles.
+     */
+
+    public int getTileCount()
+    {
+        // Return the number of tiles
+        return( m_oTiles.size() );
+    }
+
+    /**
+     * Gets the number of tiles built by the last update.
+     *
+     * @return  The number of tiles built.
+     */
+
+    public int getLastBuiltCount()
+    {
+        // Return the number of tiles
+        return( m_nLastBuiltCount );
+    }
+
+    /**
+     * Gets the number of edges in the tiles painted by the last paint.
+     * Every edge of a painted tile is counted, even if the edge itself
+     * lies outside the clipping rectangle.
+     *
+     * @return  The number of edges painted.
+     */
+
+    public int getLastPaintedEdgeCount()
+    {
+        // Return the number of edges
+        return( m_nLastPaintedEdgeCount );
+    }
+
+    /**
+     * Stops listening to the Map and releases the batches.
+     */
+
+    public void dispose()
+    {
+        // Stop listening and release the index and batches
+        m_oMap.removeMapListener( this );
+        m_oTiles.clear();
+        m_oEdgeTiles.clear();
+        m_oRoomEdges.clear();
+        m_oDirtyEdges.clear();
+        m_oStaleTiles.clear();
+        m_bRebuildNeeded = true;
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // A new room has no edges
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        // Forget the room (its edges have already been removed)
+        m_oRoomEdges.remove( oRoom.m_strID );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+        // Index the new edge at its rooms and batch it
+        addRoomEdge( oEdge.m_strStartRoomID, oEdge );
+        if( !oEdge.isCircular() )
+            addRoomEdge( oEdge.m_strEndRoomID, oEdge );
+        m_oDirtyEdges.add( oEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+        // Forget the edge and take it out of its tile
+        removeRoomEdge( oEdge.m_strStartRoomID, oEdge );
+        removeRoomEdge( oEdge.m_strEndRoomID, oEdge );
+        m_oDirtyEdges.remove( oEdge );
+        unplaceEdge( oEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+        // The flags of the edge decide its batch and its head
+        m_oDirtyEdges.add( oEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Index the new contents and rebuild every batch
+        indexRoomEdges();
+        m_bRebuildNeeded = true;
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Discards the index of the edges at each room and indexes every edge
+     * of the Map.
+     */
+
+    protected void indexRoomEdges()
+    {
+        // Index each edge at its rooms
+        m_oRoomEdges.clear();
+        for( final Edge oEdge : m_oMap.m_oEdgeMap.values() )
+        {
+            addRoomEdge( oEdge.m_strStartRoomID, oEdge );
+            if( !oEdge.isCircular() )
+                addRoomEdge( oEdge.m_strEndRoomID, oEdge );
+        }
+    }
+
+    /**
+     * Adds an edge to the edges at a room.
+     *
+     * @param  strRoomID  The identifier of the room.
+     * @param  oEdge  The edge.
+     */
+
+    protected void addRoomEdge( String strRoomID, Edge oEdge )
+    {
+        // Create the list of the room's edges the first time
+        ArrayList<Edge> aoEdges = m_oRoomEdges.get( strRoomID );
+        if( aoEdges == null )
+        {
+            aoEdges = new ArrayList<Edge>( 4 );
+            m_oRoomEdges.put( strRoomID, aoEdges );
+        }
+        aoEdges.add( oEdge );
+    }
+
+    /**
+     * Removes an edge from the edges at a room.
+     *
+     * @param  strRoomID  The identifier of the room.
+     * @param  oEdge  The edge.
+     */
+
+    protected void removeRoomEdge( String strRoomID, Edge oEdge )
+    {
+        // Remove the edge, if the room is still known
+        ArrayList<Edge> aoEdges = m_oRoomEdges.get( strRoomID );
+        if( aoEdges != null )
+            aoEdges.remove( oEdge );
+    }
+
+    /**
+     * Adds an edge to the tile containing the center of its bounds, and
+     * marks the tile to be built again.
+     *
+     * @param  oEdge  The edge.
+     */
+
+    protected void placeEdge( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rectEdge;  // Bounds of the edge
+        Long      oKey;      // Key of the tile
+        Tile      oTile;     // Tile containing the edge
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the tile containing the center of the edge, creating it the
+        // first time
+        rectEdge = oEdge.getBounds();
+        oKey = Long.valueOf( getTileKey( getTile( rectEdge.x + rectEdge.width / 2 ),
+            getTile( rectEdge.y + rectEdge.height / 2 ) ) );
+        oTile = m_oTiles.get( oKey );
+        if( oTile == null )
+        {
+            oTile = new Tile( oKey.longValue() );
+            m_oTiles.put( oKey, oTile );
+        }
+
+        // Add the edge to the tile
+        oTile.m_oEdges.add( oEdge );
+        m_oEdgeTiles.put( oEdge, oTile );
+        m_oStaleTiles.add( oTile );
+    }
+
+    /**
+     * Removes an edge from the tile it is kept in, if any, and marks the
+     * tile to be built again.
+     *
+     * @param  oEdge  The edge.
+     */
+
+    protected void unplaceEdge( Edge oEdge )
+    {
+        // Remove the edge from its tile
+        Tile oTile = m_oEdgeTiles.remove( oEdge );
+        if( oTile != null )
+        {
+            oTile.m_oEdges.remove( oEdge );
+            m_oStaleTiles.add( oTile );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the tile of the map containing a coordinate.
+     *
+     * @param  n  The horizontal or vertical coordinate in pixels.
+     *
+     * @return  The tile coordinate.
+     */
+
+    protected static int getTile( int n )
+    {
+        // Round towards negative infinity
+        return( n >= 0 ? n / TILE_SIZE : (n + 1) / TILE_SIZE - 1 );
+    }
+
+    /**
+     * Gets the key identifying a tile of the map.
+     *
+     * @param  nX  The horizontal tile coordinate.
+     * @param  nY  The vertical tile coordinate.
+     *
+     * @return  The key.
+     */
+
+    protected static long getTileKey( int nX, int nY )
+    {
+        // Combine the coordinates
+        return( ((long)nX << 32) | (nY & 0xFFFFFFFFL) );
+    }
+
+
+    // **********************************************************************
+    // *********************           Tiles            *********************
+    // **********************************************************************
+
+    /**
+     * A tile of the map: the edges whose centers lie within it, their
+     * batches, and the region they cover, which may extend beyond the tile.
+     */
+
+    protected static class Tile
+        extends Object
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The key identifying the tile.
+         */
+        long m_lKey;
+
+        /**
+         * The edges kept in the tile.
+         */
+        LinkedHashSet<Edge> m_oEdges;
+
+        /**
+         * The batch of the normal (non-secret) edges of the tile.
+         */
+        MapRenderer.EdgeBatch m_oNormalBatch;
+
+        /**
+         * The batch of the secret edges of the tile.
+         */
+        MapRenderer.EdgeBatch m_oSecretBatch;
+
+        /**
+         * The region covered by the edges of the tile when it was built.
+         */
+        Rectangle m_rectBounds;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new, empty Tile.
+         *
+         * @param  lKey  The key identifying the tile.
+         */
+
+        Tile( long lKey )
+        {
+            // Initialize instance variables
+            m_lKey = lKey;
+            m_oEdges = new LinkedHashSet<Edge>();
+            m_oNormalBatch = new MapRenderer.EdgeBatch();
+            m_oSecretBatch = new MapRenderer.EdgeBatch();
+            m_rectBounds = new Rectangle();
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   Package Instance Methods   -------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Builds the batches of the tile from its edges.
+         *
+         * @param  oRenderer  The object used to add the edges to the
+         *     batches.
+         */
+
+        void build( MapRenderer oRenderer )
+        {
+            // Accumulate each edge into the batch for its style and the
+            // region it covers into the bounds of the tile
+            m_oNormalBatch = new MapRenderer.EdgeBatch();
+            m_oSecretBatch = new MapRenderer.EdgeBatch();
+            m_rectBounds = null;
+            for( final Edge oEdge : m_oEdges )
+            {
+                Rectangle rectEdge = oEdge.getBounds();
+                oRenderer.addEdge( oEdge.isSecret() ? m_oSecretBatch : m_oNormalBatch, oEdge, rectEdge );
+                m_rectBounds = EdgeRouter.addBounds( m_rectBounds, rectEdge );
+            }
+        }
+    }
+}
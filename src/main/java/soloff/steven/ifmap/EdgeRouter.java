@@ -0,0 +1,1425 @@
+/*
+ * EdgeRouter.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The object that routes the edges of a Map around the rooms, giving each
+ * edge bends so that it is drawn as a path of horizontal and vertical lines
+ * that keeps clear of every room.  Edges whose straight line crosses no
+ * room are left straight, as are circular edges.
+ *
+ * <p>An edge leaves its start room a short distance in the direction of its
+ * exit (up for an up exit and down for a down exit), and enters its end
+ * room in the same way.  Between those points the route is the shortest
+ * path, with a cost for each bend, along the lines a margin away from the
+ * sides of the nearby rooms; the lines through the rooms' sides are the
+ * only places a shortest path needs to turn, so the search visits few
+ * points.  The rooms near an edge are found through an index of the rooms
+ * by the square buckets of the map they overlap.  An edge for which no
+ * route is found, or which passes too many rooms for the search to be
+ * quick, is left straight.
+ *
+ * <p>The route of each edge is kept, with the buckets it passes through,
+ * and recomputed only when a room moves onto it or away from it, or one of
+ * its own rooms moves.  The router listens to the Map for rooms and edges
+ * being added and removed, and finds the rooms that moved by comparing
+ * their bounds with those it indexed when it is updated, since moving a
+ * room is not reported to the listeners of the Map.  The router is updated
+ * on the thread that edits the Map; many routes are computed in parallel.
+ */
+
+public class EdgeRouter
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The distance in pixels a route keeps from the sides of the rooms.
+     */
+    public static final int ROOM_MARGIN = MapUI.GRID_SIZE;
+
+    /**
+     * The distance in pixels from the side of a room at which a route
+     * leaving or entering it by an exit may first turn.
+     */
+    protected static final int STUB_LENGTH = ROOM_MARGIN * 2;
+
+    /**
+     * The cost of a bend in a route, as the length in pixels of route it is
+     * worth avoiding.
+     */
+    protected static final int BEND_COST = MapUI.GRID_SIZE * 3;
+
+    /**
+     * The distance in pixels beyond the ends of an edge that its route may
+     * go around rooms.
+     */
+    protected static final int SEARCH_MARGIN = RoomUI.MIN_ROOM_WIDTH * 2;
+
+    /**
+     * The largest number of rooms near an edge for which a route is
+     * sought; an edge past more rooms is left straight.
+     */
+    protected static final int MAX_OBSTACLES = 64;
+
+    /**
+     * The width and height in pixels of the buckets of the room index.
+     */
+    protected static final int BUCKET_SIZE = RoomUI.MIN_ROOM_WIDTH * 4;
+
+    /**
+     * The number of edges routed by one task; more edges are divided
+     * between subtasks.
+     */
+    protected static final int EDGES_PER_TASK = 64;
+
+    /**
+     * The number of edges to be routed from which they are routed in
+     * parallel.  Fewer edges, such as those rerouted while a room is
+     * dragged, are routed on the calling thread.
+     */
+    protected static final int MIN_PARALLEL_EDGES = 1024;
+
+    /**
+     * The directions in which a route may run, as horizontal and vertical
+     * steps: right, left, down, and up.
+     */
+    protected static final int[][] DIRECTIONS = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map whose edges are routed.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The rooms overlapping each bucket of the map.
+     */
+    protected HashMap<Long, ArrayList<Room>> m_oRoomBuckets;
+
+    /**
+     * The bounds of each room when it was indexed.
+     */
+    protected HashMap<String, Rectangle> m_oRoomBounds;
+
+    /**
+     * The edges at each room.
+     */
+    protected HashMap<String, ArrayList<Edge>> m_oRoomEdges;
+
+    /**
+     * The buckets the route of each routed edge passes through.
+     */
+    protected HashMap<Edge, long[]> m_oRouteBuckets;
+
+    /**
+     * The routed edges passing through each bucket of the map.
+     */
+    protected HashMap<Long, HashSet<Edge>> m_oBucketEdges;
+
+    /**
+     * The edges to be routed by the next update.
+     */
+    protected LinkedHashSet<Edge> m_oDirtyEdges;
+
+    /**
+     * The edges routed by the last update.
+     */
+    protected Edge[] m_aoLastRouted;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new EdgeRouter for the specified Map.  The edges are not
+     * routed until the router is first updated.
+     *
+     * @param  oMap  The Map whose edges are to be routed.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public EdgeRouter( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_oRoomBuckets = new HashMap<Long, ArrayList<Room>>();
+        m_oRoomBounds = new HashMap<String, Rectangle>();
+        m_oRoomEdges = new HashMap<String, ArrayList<Edge>>();
+        m_oRouteBuckets = new HashMap<Edge, long[]>();
+        m_oBucketEdges = new HashMap<Long, HashSet<Edge>>();
+        m_oDirtyEdges = new LinkedHashSet<Edge>();
+        m_aoLastRouted = new Edge[ 0 ];
+
+        // Index the Map and listen for changes to it
+        reset();
+        m_oMap.addMapListener( this );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Reroutes the edges whose routes may have changed since the last
+     * update: those added since, those at a room that moved, and those
+     * passing near where a room was or is now.  The new routes are set as
+     * the bends of the edges.
+     *
+     * @return  The region of the map in which edges changed, covering each
+     *     rerouted edge before and after it was rerouted, or null if no
+     *     edge was rerouted.
+     */
+
+    public Rectangle update()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle    rectOld,      // Bounds of a room when indexed
+                     rectChanged;  // Region in which edges changed
+        Edge[]       aoEdges;      // Edges to be routed
+        Point[][]    aaptBends;    // Route computed for each edge
+        ForkJoinPool oPool;        // Pool that routes many edges
+        int          nI;           // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the rooms that moved or changed size, and mark the edges at
+        // them and the edges passing near them to be rerouted
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+        {
+            rectOld = m_oRoomBounds.get( oRoom.m_strID );
+            if( rectOld == null || rectOld.equals( oRoom.m_rectBounds ) )
+                continue;
+            unindexRoom( oRoom, rectOld );
+            indexRoom( oRoom );
+            markRoutesNear( rectOld );
+            markRoutesNear( oRoom.m_rectBounds );
+            markRoomEdges( oRoom );
+        }
+
+        // Route the marked edges, in parallel if there are many of them
+        aoEdges = m_oDirtyEdges.toArray( new Edge[ m_oDirtyEdges.size() ] );
+        m_oDirtyEdges.clear();
+        m_aoLastRouted = aoEdges;
+        if( aoEdges.length == 0 )
+            return( null );
+        aaptBends = new Point[ aoEdges.length ][];
+        if( aoEdges.length < MIN_PARALLEL_EDGES )
+            new RouteTask( aoEdges, aaptBends, 0, aoEdges.length ).compute();
+        else
+        {
+            oPool = new ForkJoinPool();
+            try
+            {
+                oPool.invoke( new RouteTask( aoEdges, aaptBends, 0, aoEdges.length ) );
+            }
+            finally
+            {
+                oPool.shutdown();
+            }
+        }
+
+        // Set the routes as the bends of the edges and remember the buckets
+        // they pass through
+        rectChanged = null;
+        for( nI = 0; nI < aoEdges.length; nI++ )
+        {
+            rectChanged = addBounds( rectChanged, aoEdges[ nI ].getBounds() );
+            aoEdges[ nI ].setBends( aaptBends[ nI ] );
+            rectChanged.add( aoEdges[ nI ].getBounds() );
+            unregisterRoute( aoEdges[ nI ] );
+            registerRoute( aoEdges[ nI ] );
+        }
+        return( rectChanged );
+    }
+
+    /**
+     * Gets the number of edges routed by the last update.
+     *
+     * @return  The number of edges routed.
+     */
+
+    public int getLastRoutedCount()
+    {
+        // Return the number of edges
+        return( m_aoLastRouted.length );
+    }
+
+    /**
+     * Gets the edges routed by the last update, whose bends may have
+     * changed.
+     *
+     * @return  A copy of the edges routed.
+     */
+
+    public Edge[] getLastRoutedEdges()
+    {
+        // Copy the edges so the caller cannot change them
+        return( m_aoLastRouted.clone() );
+    }
+
+    /**
+     * Computes the route of an edge around the rooms as they were when the
+     * router was last updated, without setting it as the bends of the
+     * edge.  This may be called from any thread while the Map and the
+     * router are not changed.
+     *
+     * @param  oEdge  The edge to be routed.
+     *
+     * @return  The bends of the route, in order from the start of the edge,
+     *     or null if the edge is to be drawn straight: because it is
+     *     circular, no route was found, or it passes too many rooms.
+     *
+     * @exception  IllegalArgumentException  If oEdge is null.
+     */
+
+    public Point[] route( Edge oEdge )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<Rectangle> aoObstacles;  // Rooms near the edge, inflated
+        ArrayList<Point>     aptPath;      // Points of the route
+        Room                 oStartRoom,   // Room the edge starts at
+                             oEndRoom;     // Room the edge ends at
+        Point                ptStart,      // Start point of the edge
+                             ptEnd,        // End point of the edge
+                             ptLeave,      // Point the route leaves the start room
+                             ptEnter;      // Point the route enters the end room
+        Rectangle            rectSearch;   // Region searched for the route
+        int[]                anX,          // Lines on which the route may run
+                             anY,
+                             anNodes;      // Points of the route on the lines
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oEdge == null )
+            throw new IllegalArgumentException();
+
+        // Circular edges are drawn as arcs
+        if( oEdge.isCircular() )
+            return( null );
+
+        // Find the points at which the route leaves the start room and
+        // enters the end room
+        oStartRoom = m_oMap.getRoom( oEdge.m_strStartRoomID );
+        oEndRoom = m_oMap.getRoom( oEdge.m_strEndRoomID );
+        ptStart = oEdge.getStartPoint();
+        ptEnd = oEdge.getEndPoint();
+        ptLeave = getStubPoint( oStartRoom, oEdge.m_nStartExit, ptStart );
+        ptEnter = getStubPoint( oEndRoom, oEdge.m_nEndExit, ptEnd );
+
+        // Find the rooms the route must go around
+        rectSearch = new Rectangle( ptLeave );
+        rectSearch.add( ptEnter );
+        rectSearch.grow( SEARCH_MARGIN, SEARCH_MARGIN );
+        aoObstacles = findObstacles( rectSearch );
+        if( aoObstacles == null )
+            return( null );
+
+        // An edge whose straight line crosses no room, as most edges between
+        // neighboring rooms do, is left straight without a search
+        if( isStraightClear( aoObstacles, oStartRoom, oEndRoom, ptStart, ptEnd ) )
+            return( null );
+
+        // Collect the lines on which the route may run: those through its
+        // ends, the sides of the inflated rooms, and the sides of the
+        // region searched
+        anX = new int[ aoObstacles.size() * 2 + 4 ];
+        anY = new int[ anX.length ];
+        anX[ 0 ] = ptLeave.x;
+        anX[ 1 ] = ptEnter.x;
+        anX[ 2 ] = rectSearch.x;
+        anX[ 3 ] = rectSearch.x + rectSearch.width;
+        anY[ 0 ] = ptLeave.y;
+        anY[ 1 ] = ptEnter.y;
+        anY[ 2 ] = rectSearch.y;
+        anY[ 3 ] = rectSearch.y + rectSearch.height;
+        for( int nI = 0; nI < aoObstacles.size(); nI++ )
+        {
+            Rectangle rect = aoObstacles.get( nI );
+            anX[ nI * 2 + 4 ] = rect.x;
+            anX[ nI * 2 + 5 ] = rect.x + rect.width;
+            anY[ nI * 2 + 4 ] = rect.y;
+            anY[ nI * 2 + 5 ] = rect.y + rect.height;
+        }
+        anX = sortUnique( anX );
+        anY = sortUnique( anY );
+
+        // Search the lines for the shortest route
+        anNodes = findPath( anX, anY, aoObstacles, ptLeave, ptEnter,
+            getDirection( oEdge.m_nStartExit, false ), getDirection( oEdge.m_nEndExit, true ) );
+        if( anNodes == null )
+            return( null );
+
+        // Join the ends of the edge to the route and keep only the points at
+        // which it turns
+        aptPath = new ArrayList<Point>( anNodes.length + 2 );
+        aptPath.add( ptStart );
+        aptPath.add( ptLeave );
+        for( final int nNode : anNodes )
+            aptPath.add( new Point( anX[ nNode % anX.length ], anY[ nNode / anX.length ] ) );
+        aptPath.add( ptEnter );
+        aptPath.add( ptEnd );
+        return( getBends( aptPath ) );
+    }
+
+    /**
+     * Stops listening to the Map and releases the routes kept.  The bends
+     * of the edges are left as they are.
+     */
+
+    public void dispose()
+    {
+        // Stop listening and release the index and routes
+        m_oMap.removeMapListener( this );
+        m_oRoomBuckets.clear();
+        m_oRoomBounds.clear();
+        m_oRoomEdges.clear();
+        m_oRouteBuckets.clear();
+        m_oBucketEdges.clear();
+        m_oDirtyEdges.clear();
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // Routes through the new room must go around it
+        indexRoom( oRoom );
+        markRoutesNear( oRoom.m_rectBounds );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        // Routes that went around the room may be shorter now (its edges
+        // have already been removed)
+        Rectangle rectOld = m_oRoomBounds.get( oRoom.m_strID );
+        if( rectOld != null )
+        {
+            unindexRoom( oRoom, rectOld );
+            markRoutesNear( rectOld );
+        }
+        m_oRoomEdges.remove( oRoom.m_strID );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+        // Route the new edge
+        addRoomEdge( oEdge.m_strStartRoomID, oEdge );
+        if( !oEdge.isCircular() )
+            addRoomEdge( oEdge.m_strEndRoomID, oEdge );
+        m_oDirtyEdges.add( oEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+        // Forget the edge and its route
+        removeRoomEdge( oEdge.m_strStartRoomID, oEdge );
+        removeRoomEdge( oEdge.m_strEndRoomID, oEdge );
+        unregisterRoute( oEdge );
+        m_oDirtyEdges.remove( oEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+        // The flags of an edge do not affect its route
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Index the new contents and route every edge
+        reset();
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Discards the index and routes, indexes every room of the Map, and
+     * marks every edge to be routed.
+     */
+
+    protected void reset()
+    {
+        // Discard the index and routes
+        m_oRoomBuckets.clear();
+        m_oRoomBounds.clear();
+        m_oRoomEdges.clear();
+        m_oRouteBuckets.clear();
+        m_oBucketEdges.clear();
+        m_oDirtyEdges.clear();
+
+        // Index the rooms and edges
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+            indexRoom( oRoom );
+        for( final Edge oEdge : m_oMap.m_oEdgeMap.values() )
+            edgeAdded( m_oMap, oEdge );
+    }
+
+    /**
+     * Adds a room to the buckets its bounds overlap and remembers the
+     * bounds.
+     *
+     * @param  oRoom  The room.
+     */
+
+    protected void indexRoom( Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<Room> aoRooms;  // Rooms of a bucket
+        Rectangle       rect;     // Bounds of the room
+        Long            oKey;     // Key of a bucket
+        int             nX, nY;   // Bucket coordinates
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Add the room to each bucket it overlaps
+        rect = new Rectangle( oRoom.m_rectBounds );
+        for( nY = getBucket( rect.y ); nY <= getBucket( rect.y + rect.height ); nY++ )
+        {
+            for( nX = getBucket( rect.x ); nX <= getBucket( rect.x + rect.width ); nX++ )
+            {
+                oKey = Long.valueOf( getBucketKey( nX, nY ) );
+                aoRooms = m_oRoomBuckets.get( oKey );
+                if( aoRooms == null )
+                {
+                    aoRooms = new ArrayList<Room>( 4 );
+                    m_oRoomBuckets.put( oKey, aoRooms );
+                }
+                aoRooms.add( oRoom );
+            }
+        }
+        m_oRoomBounds.put( oRoom.m_strID, rect );
+    }
+
+    /**
+     * Removes a room from the buckets it was indexed in.
+     *
+     * @param  oRoom  The room.
+     * @param  rect  The bounds of the room when it was indexed.
+     */
+
+    protected void unindexRoom( Room oRoom, Rectangle rect )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<Room> aoRooms;  // Rooms of a bucket
+        Long            oKey;     // Key of a bucket
+        int             nX, nY;   // Bucket coordinates
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Remove the room from each bucket it overlapped
+        for( nY = getBucket( rect.y ); nY <= getBucket( rect.y + rect.height ); nY++ )
+        {
+            for( nX = getBucket( rect.x ); nX <= getBucket( rect.x + rect.width ); nX++ )
+            {
+                oKey = Long.valueOf( getBucketKey( nX, nY ) );
+                aoRooms = m_oRoomBuckets.get( oKey );
+                if( aoRooms != null && aoRooms.remove( oRoom ) && aoRooms.isEmpty() )
+                    m_oRoomBuckets.remove( oKey );
+            }
+        }
+        m_oRoomBounds.remove( oRoom.m_strID );
+    }
+
+    /**
+     * Marks the edges at a room to be rerouted.
+     *
+     * @param  oRoom  The room.
+     */
+
+    protected void markRoomEdges( Room oRoom )
+    {
+        // Mark each edge at the room
+        ArrayList<Edge> aoEdges = m_oRoomEdges.get( oRoom.m_strID );
+        if( aoEdges != null )
+            m_oDirtyEdges.addAll( aoEdges );
+    }
+
+    /**
+     * Marks the routed edges that pass within the margin of a region to be
+     * rerouted.
+     *
+     * @param  rect  The region, such as the bounds of a room.
+     */
+
+    protected void markRoutesNear( Rectangle rect )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashSet<Edge> aoEdges;   // Routed edges of a bucket
+        Rectangle     rectNear;  // Region within the margin
+        int           nX, nY;    // Bucket coordinates
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Check the routes passing through each bucket near the region
+        rectNear = new Rectangle( rect );
+        rectNear.grow( ROOM_MARGIN + 1, ROOM_MARGIN + 1 );
+        for( nY = getBucket( rectNear.y ); nY <= getBucket( rectNear.y + rectNear.height ); nY++ )
+        {
+            for( nX = getBucket( rectNear.x ); nX <= getBucket( rectNear.x + rectNear.width ); nX++ )
+            {
+                aoEdges = m_oBucketEdges.get( Long.valueOf( getBucketKey( nX, nY ) ) );
+                if( aoEdges == null )
+                    continue;
+                for( final Edge oEdge : aoEdges )
+                {
+                    if( !m_oDirtyEdges.contains( oEdge ) && intersects( oEdge, rectNear ) )
+                        m_oDirtyEdges.add( oEdge );
+                }
+            }
+        }
+    }
+
+    /**
+     * Remembers the buckets the route of an edge passes through.
+     *
+     * @param  oEdge  The edge, whose bends are its route.
+     */
+
+    protected void registerRoute( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashSet<Long>  oKeys;    // Buckets the route passes through
+        HashSet<Edge>  aoEdges;  // Routed edges of a bucket
+        Point[]        aptPath;  // Points of the route
+        Line2D.Float   oLine;    // A segment of the route
+        long[]         alKeys;   // Buckets the route passes through
+        int            nX, nY,   // Bucket coordinates
+                       nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Circular edges are not routed
+        if( oEdge.isCircular() )
+            return;
+
+        // Find the buckets each segment of the route passes through
+        aptPath = getPath( oEdge );
+        oKeys = new HashSet<Long>();
+        oLine = new Line2D.Float();
+        for( nI = 1; nI < aptPath.length; nI++ )
+        {
+            oLine.setLine( aptPath[ nI - 1 ], aptPath[ nI ] );
+            for( nY = getBucket( Math.min( aptPath[ nI - 1 ].y, aptPath[ nI ].y ) );
+                nY <= getBucket( Math.max( aptPath[ nI - 1 ].y, aptPath[ nI ].y ) ); nY++ )
+            {
+                for( nX = getBucket( Math.min( aptPath[ nI - 1 ].x, aptPath[ nI ].x ) );
+                    nX <= getBucket( Math.max( aptPath[ nI - 1 ].x, aptPath[ nI ].x ) ); nX++ )
+                {
+                    if( oLine.intersects( nX * BUCKET_SIZE, nY * BUCKET_SIZE, BUCKET_SIZE, BUCKET_SIZE ) )
+                        oKeys.add( Long.valueOf( getBucketKey( nX, nY ) ) );
+                }
+            }
+        }
+
+        // Add the edge to each bucket
+        alKeys = new long[ oKeys.size() ];
+        nI = 0;
+        for( final Long oKey : oKeys )
+        {
+            alKeys[ nI++ ] = oKey.longValue();
+            aoEdges = m_oBucketEdges.get( oKey );
+            if( aoEdges == null )
+            {
+                aoEdges = new HashSet<Edge>( 8 );
+                m_oBucketEdges.put( oKey, aoEdges );
+            }
+            aoEdges.add( oEdge );
+        }
+        m_oRouteBuckets.put( oEdge, alKeys );
+    }
+
+    /**
+     * Forgets the buckets the route of an edge passes through.
+     *
+     * @param  oEdge  The edge.
+     */
+
+    protected void unregisterRoute( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashSet<Edge> aoEdges;  // Routed edges of a bucket
+        long[]        alKeys;   // Buckets the route passed through
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Remove the edge from each bucket
+        alKeys = m_oRouteBuckets.remove( oEdge );
+        if( alKeys == null )
+            return;
+        for( final long lKey : alKeys )
+        {
+            aoEdges = m_oBucketEdges.get( Long.valueOf( lKey ) );
+            if( aoEdges != null && aoEdges.remove( oEdge ) && aoEdges.isEmpty() )
+                m_oBucketEdges.remove( Long.valueOf( lKey ) );
+        }
+    }
+
+    /**
+     * Adds an edge to the edges at a room.
+     *
+     * @param  strRoomID  The identifier of the room.
+     * @param  oEdge  The edge.
+     */
+
+    protected void addRoomEdge( String strRoomID, Edge oEdge )
+    {
+        // Create the list of the room's edges the first time
+        ArrayList<Edge> aoEdges = m_oRoomEdges.get( strRoomID );
+        if( aoEdges == null )
+        {
+            aoEdges = new ArrayList<Edge>( 4 );
+            m_oRoomEdges.put( strRoomID, aoEdges );
+        }
+        aoEdges.add( oEdge );
+    }
+
+    /**
+     * Removes an edge from the edges at a room.
+     *
+     * @param  strRoomID  The identifier of the room.
+     * @param  oEdge  The edge.
+     */
+
+    protected void removeRoomEdge( String strRoomID, Edge oEdge )
+    {
+        // Remove the edge, if the room is still known
+        ArrayList<Edge> aoEdges = m_oRoomEdges.get( strRoomID );
+        if( aoEdges != null )
+            aoEdges.remove( oEdge );
+    }
+
+    /**
+     * Finds the rooms that overlap a region, each inflated by the margin.
+     *
+     * @param  rectSearch  The region.
+     *
+     * @return  The inflated bounds of the rooms, or null if there are more
+     *     than MAX_OBSTACLES of them.
+     */
+
+    protected ArrayList<Rectangle> findObstacles( Rectangle rectSearch )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashSet<Room>        oSeen;        // Rooms already found
+        ArrayList<Rectangle> aoObstacles;  // Inflated bounds of the rooms
+        ArrayList<Room>      aoRooms;      // Rooms of a bucket
+        Rectangle            rect;         // Inflated bounds of a room
+        int                  nX, nY;       // Bucket coordinates
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Collect the rooms of each bucket overlapping the region
+        oSeen = new HashSet<Room>();
+        aoObstacles = new ArrayList<Rectangle>();
+        for( nY = getBucket( rectSearch.y ); nY <= getBucket( rectSearch.y + rectSearch.height ); nY++ )
+        {
+            for( nX = getBucket( rectSearch.x ); nX <= getBucket( rectSearch.x + rectSearch.width ); nX++ )
+            {
+                aoRooms = m_oRoomBuckets.get( Long.valueOf( getBucketKey( nX, nY ) ) );
+                if( aoRooms == null )
+                    continue;
+                for( final Room oRoom : aoRooms )
+                {
+                    rect = new Rectangle( m_oRoomBounds.get( oRoom.m_strID ) );
+                    rect.grow( ROOM_MARGIN, ROOM_MARGIN );
+                    if( !rect.intersects( rectSearch ) || !oSeen.add( oRoom ) )
+                        continue;
+                    if( aoObstacles.size() == MAX_OBSTACLES )
+                        return( null );
+                    aoObstacles.add( rect );
+                }
+            }
+        }
+        return( aoObstacles );
+    }
+
+    /**
+     * Searches for the shortest route, counting the cost of each bend,
+     * between two points along horizontal and vertical lines, running only
+     * between the points where the lines cross and never through the inside
+     * of an obstacle.
+     *
+     * @param  anX  The vertical lines, in increasing order.
+     * @param  anY  The horizontal lines, in increasing order.
+     * @param  aoObstacles  The obstacles, whose sides lie on the lines.
+     * @param  ptFrom  The start of the route, on one of the crossings.
+     * @param  ptTo  The end of the route, on one of the crossings.
+     * @param  nFromDirection  The direction in which the route is heading at
+     *     its start, or -1 if it is heading diagonally.
+     * @param  nToDirection  The direction in which the route should be
+     *     heading at its end, or -1 if it should be heading diagonally.
+     *
+     * @return  The crossings of the route in order, each as its column plus
+     *     its row times the number of columns, or null if there is no
+     *     route.
+     */
+
+    protected int[] findPath( int[] anX, int[] anY, ArrayList<Rectangle> aoObstacles,
+        Point ptFrom, Point ptTo, int nFromDirection, int nToDirection )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        PriorityQueue<Long> oQueue;     // States to be expanded, by estimate
+        boolean[]           abBlocked,  // Crossings inside an obstacle
+                            abRight,    // Segments to the right blocked
+                            abDown;     // Segments downward blocked
+        int[]               anCost,     // Cost of reaching each state
+                            anPrev,     // State each state was reached from
+                            anPath;     // Crossings of the route
+        long                lEntry;     // Entry of the queue
+        int                 nColumns,   // Number of vertical lines
+                            nRows,      // Number of horizontal lines
+                            nFrom,      // Crossing of the start
+                            nTo,        // Crossing of the end
+                            nState,     // State: crossing and heading
+                            nFound,     // State that reached the end
+                            nNode,      // Crossing of a state
+                            nNext,      // Neighboring crossing
+                            nCost,      // Cost of reaching a neighbor
+                            nColumn,    // Column of a crossing
+                            nRow,       // Row of a crossing
+                            nLength,    // Number of crossings of the route
+                            nI, nJ;     // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Mark the crossings and segments inside each obstacle (the sides
+        // lie on the lines, so a segment is either wholly inside or not)
+        nColumns = anX.length;
+        nRows = anY.length;
+        abBlocked = new boolean[ nColumns * nRows ];
+        abRight = new boolean[ nColumns * nRows ];
+        abDown = new boolean[ nColumns * nRows ];
+        for( final Rectangle rect : aoObstacles )
+        {
+            int nLeft = Arrays.binarySearch( anX, rect.x );
+            int nRight = Arrays.binarySearch( anX, rect.x + rect.width );
+            int nTop = Arrays.binarySearch( anY, rect.y );
+            int nBottom = Arrays.binarySearch( anY, rect.y + rect.height );
+            for( nJ = nTop; nJ <= nBottom; nJ++ )
+            {
+                for( nI = nLeft; nI <= nRight; nI++ )
+                {
+                    if( nJ > nTop && nJ < nBottom && nI < nRight )
+                        abRight[ nJ * nColumns + nI ] = true;
+                    if( nI > nLeft && nI < nRight && nJ < nBottom )
+                        abDown[ nJ * nColumns + nI ] = true;
+                    if( nI > nLeft && nI < nRight && nJ > nTop && nJ < nBottom )
+                        abBlocked[ nJ * nColumns + nI ] = true;
+                }
+            }
+        }
+
+        // Start from the start, heading in any direction; turning away
+        // from the direction the route left the room counts as a bend
+        nFrom = Arrays.binarySearch( anY, ptFrom.y ) * nColumns + Arrays.binarySearch( anX, ptFrom.x );
+        nTo = Arrays.binarySearch( anY, ptTo.y ) * nColumns + Arrays.binarySearch( anX, ptTo.x );
+        abBlocked[ nFrom ] = abBlocked[ nTo ] = false;
+        anCost = new int[ nColumns * nRows * 4 ];
+        anPrev = new int[ anCost.length ];
+        Arrays.fill( anCost, Integer.MAX_VALUE );
+        oQueue = new PriorityQueue<Long>();
+        for( nI = 0; nI < 4; nI++ )
+        {
+            nState = nFrom * 4 + nI;
+            anCost[ nState ] = nI == nFromDirection ? 0 : BEND_COST;
+            anPrev[ nState ] = -1;
+            oQueue.add( Long.valueOf( ((long)(anCost[ nState ] +
+                getDistance( anX, anY, nFrom, nTo )) << 32) | nState ) );
+        }
+
+        // Expand the state with the lowest estimate until the end is
+        // reached (an entry whose estimate is out of date is skipped)
+        nFound = -1;
+        while( !oQueue.isEmpty() )
+        {
+            lEntry = oQueue.poll().longValue();
+            nState = (int)lEntry;
+            nNode = nState / 4;
+            if( (int)(lEntry >>> 32) != anCost[ nState ] + getDistance( anX, anY, nNode, nTo ) )
+                continue;
+            if( nNode == nTo )
+            {
+                nFound = nState;
+                break;
+            }
+            nColumn = nNode % nColumns;
+            nRow = nNode / nColumns;
+            for( nI = 0; nI < 4; nI++ )
+            {
+                // Find the neighboring crossing in the direction, unless the
+                // segment to it is blocked
+                if( nI == 0 && (nColumn + 1 >= nColumns || abRight[ nNode ]) )
+                    continue;
+                if( nI == 1 && (nColumn == 0 || abRight[ nNode - 1 ]) )
+                    continue;
+                if( nI == 2 && (nRow + 1 >= nRows || abDown[ nNode ]) )
+                    continue;
+                if( nI == 3 && (nRow == 0 || abDown[ nNode - nColumns ]) )
+                    continue;
+                nNext = nNode + DIRECTIONS[ nI ][ 0 ] + DIRECTIONS[ nI ][ 1 ] * nColumns;
+                if( abBlocked[ nNext ] )
+                    continue;
+
+                // Reach it if that is cheaper than before, counting a bend
+                // if the heading changes and for arriving at the end other
+                // than heading into the room
+                nCost = anCost[ nState ] + getDistance( anX, anY, nNode, nNext ) +
+                    (nI != nState % 4 ? BEND_COST : 0) +
+                    (nNext == nTo && nI != nToDirection ? BEND_COST : 0);
+                if( nCost < anCost[ nNext * 4 + nI ] )
+                {
+                    anCost[ nNext * 4 + nI ] = nCost;
+                    anPrev[ nNext * 4 + nI ] = nState;
+                    oQueue.add( Long.valueOf( ((long)(nCost +
+                        getDistance( anX, anY, nNext, nTo )) << 32) | (nNext * 4 + nI) ) );
+                }
+            }
+        }
+        if( nFound < 0 )
+            return( null );
+
+        // Follow the states back to the start
+        nLength = 0;
+        for( nJ = nFound; nJ >= 0; nJ = anPrev[ nJ ] )
+            nLength++;
+        anPath = new int[ nLength ];
+        for( nJ = nFound; nJ >= 0; nJ = anPrev[ nJ ] )
+            anPath[ --nLength ] = nJ / 4;
+        return( anPath );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Indicates if the straight line of an edge crosses none of the rooms
+     * near it.  The line may cross the exits of the edge's own rooms, since
+     * it starts and ends on them.
+     *
+     * @param  aoObstacles  The bounds of the rooms, inflated by the margin.
+     * @param  oStartRoom  The room the edge starts at.
+     * @param  oEndRoom  The room the edge ends at.
+     * @param  ptStart  The start point of the edge.
+     * @param  ptEnd  The end point of the edge.
+     *
+     * @return  A flag indicating if the line is clear.
+     */
+
+    protected static boolean isStraightClear( ArrayList<Rectangle> aoObstacles, Room oStartRoom, Room oEndRoom,
+        Point ptStart, Point ptEnd )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rectStart,  // Inflated bounds of the start room
+                  rectEnd,    // Inflated bounds of the end room
+                  rect;       // A room, less its exits or border
+        int       nInset;     // Distance the sides of a room are moved in
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Check the inside of each room, less the exits of the edge's own
+        // rooms
+        rectStart = new Rectangle( oStartRoom.m_rectBounds );
+        rectStart.grow( ROOM_MARGIN, ROOM_MARGIN );
+        rectEnd = new Rectangle( oEndRoom.m_rectBounds );
+        rectEnd.grow( ROOM_MARGIN, ROOM_MARGIN );
+        for( final Rectangle rectObstacle : aoObstacles )
+        {
+            nInset = ROOM_MARGIN + (rectObstacle.equals( rectStart ) || rectObstacle.equals( rectEnd ) ?
+                RoomUI.EXIT_WIDTH : 1);
+            rect = new Rectangle( rectObstacle );
+            rect.grow( -nInset, -nInset );
+            if( !rect.isEmpty() && rect.intersectsLine( ptStart.x, ptStart.y, ptEnd.x, ptEnd.y ) )
+                return( false );
+        }
+        return( true );
+    }
+
+    /**
+     * Gets the point at which a route leaves or enters a room by an exit: a
+     * short distance beyond the side of the room in the direction of the
+     * exit, or above the room for an up exit and below it for a down exit.
+     *
+     * @param  oRoom  The room.
+     * @param  nExit  The exit.
+     * @param  ptExit  The point at which the edge meets the exit.
+     *
+     * @return  The point.
+     */
+
+    protected static Point getStubPoint( Room oRoom, int nExit, Point ptExit )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rect;  // Bounds of the room
+        int       nDX,   // Horizontal direction of the exit
+                  nDY;   // Vertical direction of the exit
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the direction of the exit
+        nDX = CompassLayout.EXIT_STEPS[ nExit ][ 0 ];
+        nDY = CompassLayout.EXIT_STEPS[ nExit ][ 1 ];
+        if( nExit == Room.EXIT_U )
+            nDY = -1;
+        else if( nExit == Room.EXIT_D )
+            nDY = 1;
+
+        // Move beyond the side of the room in that direction
+        rect = oRoom.m_rectBounds;
+        return( new Point(
+            nDX < 0 ? rect.x - STUB_LENGTH : nDX > 0 ? rect.x + rect.width + STUB_LENGTH : ptExit.x,
+            nDY < 0 ? rect.y - STUB_LENGTH : nDY > 0 ? rect.y + rect.height + STUB_LENGTH : ptExit.y ) );
+    }
+
+    /**
+     * Gets the direction in which a route runs when it leaves or enters a
+     * room by an exit.
+     *
+     * @param  nExit  The exit.
+     * @param  bEntering  Indicates if the route enters the room rather than
+     *     leaving it.
+     *
+     * @return  The index of the direction in DIRECTIONS, or -1 if the route
+     *     runs diagonally.
+     */
+
+    protected static int getDirection( int nExit, boolean bEntering )
+    {
+        // Map the exit to the direction leaving the room, and reverse it
+        // when entering
+        switch( nExit )
+        {
+            case Room.EXIT_E:
+                return( bEntering ? 1 : 0 );
+
+            case Room.EXIT_W:
+                return( bEntering ? 0 : 1 );
+
+            case Room.EXIT_S:
+            case Room.EXIT_D:
+                return( bEntering ? 3 : 2 );
+
+            case Room.EXIT_N:
+            case Room.EXIT_U:
+                return( bEntering ? 2 : 3 );
+
+            default:
+                return( -1 );
+        }
+    }
+
+    /**
+     * Gets the distance in pixels between two crossings, along the lines.
+     *
+     * @param  anX  The vertical lines.
+     * @param  anY  The horizontal lines.
+     * @param  nNode1  The first crossing.
+     * @param  nNode2  The second crossing.
+     *
+     * @return  The distance.
+     */
+
+    protected static int getDistance( int[] anX, int[] anY, int nNode1, int nNode2 )
+    {
+        // Sum the horizontal and vertical distances
+        return( Math.abs( anX[ nNode1 % anX.length ] - anX[ nNode2 % anX.length ] ) +
+            Math.abs( anY[ nNode1 / anX.length ] - anY[ nNode2 / anX.length ] ) );
+    }
+
+    /**
+     * Gets the points of a path at which it turns, leaving out its ends,
+     * repeated points, and points on a straight line between their
+     * neighbors.
+     *
+     * @param  aptPath  The points of the path, from start to end.
+     *
+     * @return  The points at which the path turns, or null if it is
+     *     straight.
+     */
+
+    protected static Point[] getBends( ArrayList<Point> aptPath )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<Point> aptKept;  // Points kept so far
+        Point            ptLast,   // Last point kept
+                         ptPrev;   // Point kept before the last
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Keep each point unless it repeats the last one, and drop the last
+        // one if it lies on the line from the one before to this one
+        aptKept = new ArrayList<Point>( aptPath.size() );
+        for( final Point pt : aptPath )
+        {
+            if( !aptKept.isEmpty() && aptKept.get( aptKept.size() - 1 ).equals( pt ) )
+                continue;
+            if( aptKept.size() >= 2 )
+            {
+                ptLast = aptKept.get( aptKept.size() - 1 );
+                ptPrev = aptKept.get( aptKept.size() - 2 );
+                if( (long)(ptLast.x - ptPrev.x) * (pt.y - ptPrev.y) ==
+                    (long)(ptLast.y - ptPrev.y) * (pt.x - ptPrev.x) &&
+                    (long)(ptLast.x - ptPrev.x) * (pt.x - ptLast.x) +
+                    (long)(ptLast.y - ptPrev.y) * (pt.y - ptLast.y) >= 0 )
+                    aptKept.remove( aptKept.size() - 1 );
+            }
+            aptKept.add( pt );
+        }
+
+        // Return the points between the ends
+        if( aptKept.size() <= 2 )
+            return( null );
+        return( aptKept.subList( 1, aptKept.size() - 1 ).toArray( new Point[ aptKept.size() - 2 ] ) );
+    }
+
+    /**
+     * Gets the points an edge is drawn through: its start, its bends, and
+     * its end.
+     *
+     * @param  oEdge  The edge.
+     *
+     * @return  The points.
+     */
+
+    protected static Point[] getPath( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Point[] aptPath;  // Points of the edge
+        int     nBends;   // Number of bends
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Put the bends between the ends
+        nBends = oEdge.m_aptBends != null ? oEdge.m_aptBends.length : 0;
+        aptPath = new Point[ nBends + 2 ];
+        aptPath[ 0 ] = oEdge.getStartPoint();
+        if( nBends > 0 )
+            System.arraycopy( oEdge.m_aptBends, 0, aptPath, 1, nBends );
+        aptPath[ nBends + 1 ] = oEdge.getEndPoint();
+        return( aptPath );
+    }
+
+    /**
+     * Indicates if an edge, as drawn through its bends, passes through a
+     * region.
+     *
+     * @param  oEdge  The edge.
+     * @param  rect  The region.
+     *
+     * @return  A flag indicating if the edge passes through the region.
+     */
+
+    protected static boolean intersects( Edge oEdge, Rectangle rect )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Point[] aptPath;  // Points of the edge
+        int     nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Check each segment of the edge
+        aptPath = getPath( oEdge );
+        for( nI = 1; nI < aptPath.length; nI++ )
+        {
+            if( rect.intersectsLine( aptPath[ nI - 1 ].x, aptPath[ nI - 1 ].y, aptPath[ nI ].x, aptPath[ nI ].y ) )
+                return( true );
+        }
+        return( false );
+    }
+
+    /**
+     * Adds a rectangle to a region that may not exist yet.
+     *
+     * @param  rectRegion  The region, or null if it is empty.
+     * @param  rect  The rectangle.
+     *
+     * @return  The region including the rectangle.
+     */
+
+    protected static Rectangle addBounds( Rectangle rectRegion, Rectangle rect )
+    {
+        // Start the region with the rectangle, or add it to the region
+        if( rectRegion == null )
+            return( new Rectangle( rect ) );
+        rectRegion.add( rect );
+        return( rectRegion );
+    }
+
+    /**
+     * Sorts a list of coordinates and removes duplicates.
+     *
+     * @param  an  The coordinates.
+     *
+     * @return  The distinct coordinates in increasing order.
+     */
+
+    protected static int[] sortUnique( int[] an )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nCount,  // Number of distinct coordinates
+            nI;      // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Sort and keep each coordinate that differs from the one before
+        Arrays.sort( an );
+        nCount = 0;
+        for( nI = 0; nI < an.length; nI++ )
+        {
+            if( nCount == 0 || an[ nI ] != an[ nCount - 1 ] )
+                an[ nCount++ ] = an[ nI ];
+        }
+        return( Arrays.copyOf( an, nCount ) );
+    }
+
+    /**
+     * Gets the bucket of the room index containing a coordinate.
+     *
+     * @param  n  The horizontal or vertical coordinate in pixels.
+     *
+     * @return  The bucket coordinate.
+     */
+
+    protected static int getBucket( int n )
+    {
+        // Round towards negative infinity
+        return( n >= 0 ? n / BUCKET_SIZE : (n + 1) / BUCKET_SIZE - 1 );
+    }
+
+    /**
+     * Gets the key identifying a bucket of the room index.
+     *
+     * @param  nX  The horizontal bucket coordinate.
+     * @param  nY  The vertical bucket coordinate.
+     *
+     * @return  The key.
+     */
+
+    protected static long getBucketKey( int nX, int nY )
+    {
+        // Combine the coordinates
+        return( ((long)nX << 32) | (nY & 0xFFFFFFFFL) );
+    }
+
+
+    // **********************************************************************
+    // *********************           Tasks            *********************
+    // **********************************************************************
+
+    /**
+     * The task that computes the routes of a range of edges, splitting the
+     * range between subtasks while it holds many edges.
+     */
+
+    protected class RouteTask
+        extends RecursiveAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The edges to be routed.
+         */
+        protected Edge[] m_aoEdges;
+
+        /**
+         * Receives the route of each edge.
+         */
+        protected Point[][] m_aaptBends;
+
+        /**
+         * The first edge of the range.
+         */
+        protected int m_nFirst;
+
+        /**
+         * The edge after the last of the range.
+         */
+        protected int m_nLimit;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -4417295618834350626L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new RouteTask for the specified range of edges.
+         *
+         * @param  aoEdges  The edges to be routed.
+         * @param  aaptBends  Receives the route of each edge.
+         * @param  nFirst  The first edge of the range.
+         * @param  nLimit  The edge after the last of the range.
+         */
+
+        RouteTask( Edge[] aoEdges, Point[][] aaptBends, int nFirst, int nLimit )
+        {
+            // Initialize instance variables
+            m_aoEdges = aoEdges;
+            m_aaptBends = aaptBends;
+            m_nFirst = nFirst;
+            m_nLimit = nLimit;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   RecursiveAction Methods   --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.concurrent.RecursiveAction#compute()  compute
+         */
+
+        protected void compute()
+        {
+            // Split a large range in two, otherwise route each edge
+            if( m_nLimit - m_nFirst > EDGES_PER_TASK && getPool() != null )
+            {
+                int nMiddle = (m_nFirst + m_nLimit) >>> 1;
+                invokeAll( new RouteTask( m_aoEdges, m_aaptBends, m_nFirst, nMiddle ),
+                    new RouteTask( m_aoEdges, m_aaptBends, nMiddle, m_nLimit ) );
+                return;
+            }
+            for( int nI = m_nFirst; nI < m_nLimit; nI++ )
+                m_aaptBends[ nI ] = route( m_aoEdges[ nI ] );
+        }
+    }
+}
@@ -0,0 +1,521 @@
+/*
+ * EventWatchdog.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.AWTEvent;
+import java.awt.EventQueue;
+import java.awt.Toolkit;
+import java.io.IOException;
+import java.util.logging.FileHandler;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * The event queue that watches how long each event takes to dispatch and
+ * logs the stack of the event dispatch thread when an event stalls it.
+ * The watchdog is only installed if the <code>ifmap.watchdog</code> system
+ * property names the log file, for example:
+ *
+ * <pre>
+ *     java -Difmap.watchdog=ifmap-watchdog%g.log -jar ifmap.jar
+ * </pre>
+ *
+ * The log file name is a java.util.logging.FileHandler pattern; the log
+ * rolls over to a new file once it reaches its size limit, keeping a fixed
+ * number of older files.  The <code>ifmap.watchdog.threshold</code> system
+ * property sets the number of milliseconds after which an event is
+ * considered stalled (500 by default).
+ *
+ * <p>A monitor thread captures the stack of the event dispatch thread each
+ * time the event being dispatched exceeds another multiple of the
+ * threshold, so that a long stall shows where it spent its time.  When a
+ * stalled event finally completes, the total time taken is logged.  Time
+ * spent waiting for events in a nested event loop (such as that of a modal
+ * dialog) is not counted against the event that opened it.
+ */
+
+public class EventWatchdog
+    extends EventQueue
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The system property that names the log file.
+     */
+    public static final String PROP_LOG_FILE = "ifmap.watchdog";
+
+    /**
+     * The system property that specifies the stall threshold in
+     * milliseconds.
+     */
+    public static final String PROP_THRESHOLD = "ifmap.watchdog.threshold";
+
+    /**
+     * The default stall threshold in milliseconds.
+     */
+    protected static final long DEFAULT_THRESHOLD = 500;
+
+    /**
+     * The size in bytes at which the log rolls over to a new file.
+     */
+    protected static final int LOG_FILE_LIMIT = 1024 * 1024;
+
+    /**
+     * The number of log files kept.
+     */
+    protected static final int LOG_FILE_COUNT = 5;
+
+    /**
+     * The maximum number of stacks captured for a single event.
+     */
+    protected static final int MAX_CAPTURES = 5;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The logger to which stalls are written.
+     */
+    protected Logger m_oLogger;
+
+    /**
+     * The stall threshold in nanoseconds.
+     */
+    protected long m_lThresholdNanos;
+
+    /**
+     * The innermost dispatch in progress on the event dispatch thread; null
+     * if no event is being dispatched.
+     */
+    protected volatile Dispatch m_oCurrent;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new EventWatchdog object.
+     *
+     * @param  oLogger  The logger to which stalls are written.
+     * @param  lThreshold  The stall threshold in milliseconds.
+     *
+     * @exception  IllegalArgumentException  If oLogger is null or lThreshold
+     *     is not positive.
+     */
+
+    protected EventWatchdog( Logger oLogger, long lThreshold )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oLogger == null || lThreshold <= 0 )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oLogger = oLogger;
+        m_lThresholdNanos = lThreshold * 1000000L;
+        m_oCurrent = null;
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Installs the watchdog as the system event queue and starts its
+     * monitor thread if the watchdog is enabled.
+     *
+     * @return  A flag indicating if the watchdog was installed.
+     */
+
+    public static boolean install()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        EventWatchdog oWatchdog;    // The new watchdog
+        FileHandler   oHandler;     // Handler that writes the rolling log
+        Logger        oLogger;      // Logger to which stalls are written
+        String        strFile,      // Log file name pattern
+                      strThreshold; // Stall threshold property
+        long          lThreshold;   // Stall threshold in milliseconds
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure the watchdog is enabled
+        strFile = System.getProperty( PROP_LOG_FILE );
+        if( strFile == null || strFile.length() == 0 )
+            return( false );
+
+        // Get the stall threshold
+        lThreshold = DEFAULT_THRESHOLD;
+        strThreshold = System.getProperty( PROP_THRESHOLD );
+        if( strThreshold != null )
+        {
+            try
+            {
+                lThreshold = Long.parseLong( strThreshold );
+            }
+            catch( NumberFormatException eNF )
+            {
+                System.err.println( eNF.getMessage() );
+            }
+            if( lThreshold <= 0 )
+                lThreshold = DEFAULT_THRESHOLD;
+        }
+
+        // Open the rolling log
+        try
+        {
+            oHandler = new FileHandler( strFile, LOG_FILE_LIMIT, LOG_FILE_COUNT, true );
+        }
+        catch( IOException eIO )
+        {
+            System.err.println( eIO.getMessage() );
+            return( false );
+        }
+        oHandler.setFormatter( new SimpleFormatter() );
+        oLogger = Logger.getLogger( "soloff.steven.ifmap.watchdog" );
+        oLogger.setUseParentHandlers( false );
+        oLogger.addHandler( oHandler );
+
+        // Replace the system event queue and start watching it
+        oWatchdog = new EventWatchdog( oLogger, lThreshold );
+        Toolkit.getDefaultToolkit().getSystemEventQueue().push( oWatchdog );
+        new Monitor( oWatchdog ).start();
+        oLogger.info( "Watching the event dispatch thread for stalls longer than " + lThreshold + " ms" );
+        return( true );
+    }
+
+
+    // **********************************************************************
+    // *********************    EventQueue Overrides    *********************
+    // **********************************************************************
+
+    /**
+     * @see  java.awt.EventQueue#getNextEvent()  getNextEvent
+     */
+
+    public AWTEvent getNextEvent()
+        throws InterruptedException
+    {
+        // The event dispatch thread is idle while it waits for an event, so
+        // suspend the timing of a dispatch running a nested event loop
+        Dispatch oDispatch = m_oCurrent;
+        if( oDispatch != null )
+            oDispatch.suspend( System.nanoTime() );
+        try
+        {
+            return( super.getNextEvent() );
+        }
+        finally
+        {
+            if( oDispatch != null )
+                oDispatch.resume( System.nanoTime() );
+        }
+    }
+
+    /**
+     * @see  java.awt.EventQueue#dispatchEvent( AWTEvent )  dispatchEvent
+     */
+
+    protected void dispatchEvent( AWTEvent oEvent )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Dispatch oOuter,     // Dispatch interrupted by this one, if any
+                 oDispatch;  // Dispatch of the specified event
+        long     lNow;       // Current value of the nanosecond timer
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Suspend the timing of any dispatch this one is nested within
+        lNow = System.nanoTime();
+        oOuter = m_oCurrent;
+        if( oOuter != null )
+            oOuter.suspend( lNow );
+
+        // Dispatch the event
+        oDispatch = new Dispatch( oEvent, Thread.currentThread(), lNow );
+        m_oCurrent = oDispatch;
+        try
+        {
+            super.dispatchEvent( oEvent );
+        }
+        finally
+        {
+            // Log the total time taken by a stalled event
+            lNow = System.nanoTime();
+            oDispatch.suspend( lNow );
+            if( oDispatch.m_nCaptures > 0 )
+                m_oLogger.warning( "EDT event completed after " + oDispatch.m_lBusyNanos / 1000000L +
+                    " ms: " + oDispatch.m_strEvent );
+
+            // Resume the timing of the interrupted dispatch
+            if( oOuter != null )
+                oOuter.resume( lNow );
+            m_oCurrent = oOuter;
+        }
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Captures and logs the stack of the event dispatch thread if the
+     * current dispatch has exceeded another multiple of the stall threshold.
+     * This method is called periodically by the monitor thread.
+     */
+
+    protected void check()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Dispatch            oDispatch;  // The dispatch in progress
+        StackTraceElement[] aoStack;    // Stack of the dispatch thread
+        StringBuilder       sb;         // The log message
+        long                lElapsed;   // Time taken so far
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure the current dispatch is due for a capture
+        oDispatch = m_oCurrent;
+        if( oDispatch == null || oDispatch.m_nCaptures >= MAX_CAPTURES )
+            return;
+        lElapsed = oDispatch.getElapsedNanos( System.nanoTime() );
+        if( lElapsed < m_lThresholdNanos * (oDispatch.m_nCaptures + 1) )
+            return;
+
+        // Capture the stack and make sure the event is still being
+        // dispatched (otherwise the stack is meaningless)
+        aoStack = oDispatch.m_oThread.getStackTrace();
+        if( m_oCurrent != oDispatch )
+            return;
+        oDispatch.m_nCaptures++;
+
+        // Log the stack
+        sb = new StringBuilder();
+        sb.append( "EDT stalled for " ).append( lElapsed / 1000000L ).append( " ms: " );
+        sb.append( oDispatch.m_strEvent );
+        for( final StackTraceElement element : aoStack )
+            sb.append( System.getProperty( "line.separator" ) ).append( "\tat " ).append( element );
+        m_oLogger.log( Level.WARNING, sb.toString() );
+    }
+
+
+    // **********************************************************************
+    // *********************       Inner Classes        *********************
+    // **********************************************************************
+
+    /**
+     * The timing of the dispatch of one event.  The timing is suspended
+     * while a nested event loop dispatches other events, so that only the
+     * time spent on this event is counted.
+     */
+
+    protected static class Dispatch
+        extends Object
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The description of the event.
+         */
+        protected final String m_strEvent;
+
+        /**
+         * The thread dispatching the event.
+         */
+        protected final Thread m_oThread;
+
+        /**
+         * The value of the nanosecond timer when the timing was last
+         * started or resumed; -1 while it is suspended.
+         */
+        protected volatile long m_lStartNanos;
+
+        /**
+         * The time spent on the event before the timing was last
+         * suspended.
+         */
+        protected volatile long m_lBusyNanos;
+
+        /**
+         * The number of stacks captured for the event (only accessed by the
+         * monitor thread until the dispatch completes).
+         */
+        protected volatile int m_nCaptures;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new Dispatch object whose timing starts now.
+         *
+         * @param  oEvent  The event being dispatched.
+         * @param  oThread  The thread dispatching the event.
+         * @param  lNow  The current value of the nanosecond timer.
+         */
+
+        protected Dispatch( AWTEvent oEvent, Thread oThread, long lNow )
+        {
+            // Initialize instance variables
+            m_strEvent = oEvent.getClass().getName() + "[" + oEvent.paramString() + "]";
+            m_oThread = oThread;
+            m_lStartNanos = lNow;
+            m_lBusyNanos = 0;
+            m_nCaptures = 0;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Protected Instance Methods ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Gets the time spent on the event so far.
+         *
+         * @param  lNow  The current value of the nanosecond timer.
+         *
+         * @return  The time spent on the event in nanoseconds.
+         */
+
+        protected long getElapsedNanos( long lNow )
+        {
+            // Add the time since the timing was last resumed, if it is running
+            long lStartNanos = m_lStartNanos;
+            return( m_lBusyNanos + (lStartNanos < 0 ? 0 : lNow - lStartNanos) );
+        }
+
+        /**
+         * Suspends the timing of the event.
+         *
+         * @param  lNow  The current value of the nanosecond timer.
+         */
+
+        protected void suspend( long lNow )
+        {
+            // Accumulate the time since the timing was last resumed
+            m_lBusyNanos = getElapsedNanos( lNow );
+            m_lStartNanos = -1;
+        }
+
+        /**
+         * Resumes the timing of the event.
+         *
+         * @param  lNow  The current value of the nanosecond timer.
+         */
+
+        protected void resume( long lNow )
+        {
+            // Restart the timing from now
+            m_lStartNanos = lNow;
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************          Threads           *********************
+    // **********************************************************************
+
+    /**
+     * The thread that periodically checks the watchdog for stalls.
+     */
+
+    protected static class Monitor
+        extends Thread
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The watchdog being checked.
+         */
+        private EventWatchdog m_oWatchdog;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new Monitor object.
+         *
+         * @param  oWatchdog  The watchdog to be checked.
+         */
+
+        private Monitor( EventWatchdog oWatchdog )
+        {
+            // Initialize the thread
+            super( "IFMap Event Watchdog" );
+            setDaemon( true );
+
+            // Initialize instance variables
+            m_oWatchdog = oWatchdog;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------      Thread Overrides      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.lang.Thread#run()  run
+         */
+
+        public void run()
+        {
+            // Check the watchdog four times per threshold so that a stall is
+            // captured soon after it exceeds the threshold
+            long lInterval = Math.max( 1L, m_oWatchdog.m_lThresholdNanos / 4000000L );
+            try
+            {
+                while( true )
+                {
+                    Thread.sleep( lInterval );
+                    m_oWatchdog.check();
+                }
+            }
+            catch( InterruptedException e )
+            {
+                // The monitor was stopped
+            }
+        }
+    }
+}
@@ -0,0 +1,1427 @@
+/*
+ * ForceLayout.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The object that computes new positions for the rooms of a Map with a
+ * force-directed algorithm: every pair of rooms repels, every edge pulls
+ * its two rooms together, and the rooms move a shrinking distance along
+ * the sum of their forces at each iteration until the layout settles
+ * (Fruchterman and Reingold, with the repulsion falling with the square of
+ * the distance as Hu suggests for large graphs).
+ *
+ * <p>The repulsion between all pairs of rooms is approximated with a
+ * quadtree (Barnes and Hut): a distant group of rooms repels as a single
+ * room at its center of mass, which takes each iteration from a time
+ * proportional to the square of the number of rooms to one proportional
+ * to the number times its logarithm.  The repulsion on each room is
+ * computed in parallel on a fork-join pool.
+ *
+ * <p>Large maps do not untangle from an arbitrary start in a practical
+ * number of iterations, so the layout is computed on several levels: the
+ * rooms are merged in pairs joined by an edge into clusters, and the
+ * clusters in turn, until few remain; the clusters of the coarsest level
+ * are laid out first, and each level then starts from the layout of the
+ * level above it, with every cluster split where its parent was.
+ *
+ * <p>The layout works on a copy of the rooms' positions taken when it is
+ * constructed, so that iterations may run on a worker thread while the
+ * Map is displayed; the positions computed so far are read with
+ * getLocations and applied to the rooms by the caller, or by apply.
+ */
+
+public class ForceLayout
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The default number of iterations on the coarsest level.
+     */
+    public static final int DEFAULT_ITERATION_COUNT = 300;
+
+    /**
+     * The default accuracy of the quadtree approximation: a group of rooms
+     * is treated as one if its size is less than this fraction of its
+     * distance.  Lower is more accurate and slower.
+     */
+    public static final double DEFAULT_THETA = 1.2;
+
+    /**
+     * The default length in pixels between the centers of the rooms of an
+     * edge.
+     */
+    public static final double DEFAULT_EDGE_LENGTH = RoomUI.MIN_ROOM_WIDTH * 2;
+
+    /**
+     * The number of iterations on each level below the coarsest, as a
+     * fraction of the number on the coarsest.
+     */
+    protected static final double REFINEMENT_ITERATION_RATIO = 0.25;
+
+    /**
+     * The number of clusters below which no coarser level is built.
+     */
+    protected static final int MIN_CLUSTER_COUNT = 50;
+
+    /**
+     * The largest ratio of the number of clusters of a level to the number
+     * of the level below it; a level that merges fewer clusters is not
+     * worth its iterations.
+     */
+    protected static final double MAX_COARSENING_RATIO = 0.8;
+
+    /**
+     * The strength of the pull of every cluster towards the center of the
+     * layout, which keeps rooms that are not connected from drifting apart.
+     */
+    protected static final double GRAVITY = 0.05;
+
+    /**
+     * The temperature at the start of each level below the coarsest, as a
+     * fraction of the edge length.
+     */
+    protected static final double REFINEMENT_TEMPERATURE = 1.0;
+
+    /**
+     * The temperature at the end of each level, as a fraction of the edge
+     * length.
+     */
+    protected static final double FINAL_TEMPERATURE = 0.02;
+
+    /**
+     * The largest number of clusters held by a leaf of the quadtree.
+     */
+    protected static final int LEAF_CAPACITY = 8;
+
+    /**
+     * The depth beyond which the quadtree is not divided, so that clusters
+     * at the same position do not divide it forever.
+     */
+    protected static final int MAX_TREE_DEPTH = 32;
+
+    /**
+     * The number of clusters whose repulsion is computed by a single
+     * fork-join task.
+     */
+    protected static final int CLUSTERS_PER_TASK = 512;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The rooms laid out.
+     */
+    protected Room[] m_aoRooms;
+
+    /**
+     * The width and height of each room.
+     */
+    protected int[] m_anWidth, m_anHeight;
+
+    /**
+     * The cluster holding each room on each level.  On the finest level,
+     * level zero, each room is its own cluster.
+     */
+    protected int[][] m_aanRoomCluster;
+
+    /**
+     * The number of clusters on each level.
+     */
+    protected int[] m_anClusterCount;
+
+    /**
+     * The clusters at the start and end of each edge on each level.
+     */
+    protected int[][] m_aanEdgeStart, m_aanEdgeEnd;
+
+    /**
+     * The level being laid out.
+     */
+    protected int m_nLevel;
+
+    /**
+     * The position of the center of each cluster of the current level.
+     */
+    protected double[] m_adX, m_adY;
+
+    /**
+     * The displacement of each cluster computed by the current iteration.
+     */
+    protected double[] m_adDispX, m_adDispY;
+
+    /**
+     * The number of iterations on the coarsest level.
+     */
+    protected int m_nIterationCount;
+
+    /**
+     * The number of iterations run so far on all levels.
+     */
+    protected int m_nIteration;
+
+    /**
+     * The number of iterations run so far on the current level.
+     */
+    protected int m_nLevelIteration;
+
+    /**
+     * The accuracy of the quadtree approximation.
+     */
+    protected double m_dTheta;
+
+    /**
+     * The ideal length of an edge.
+     */
+    protected double m_dEdgeLength;
+
+    /**
+     * The largest distance a cluster may move in the first iteration of the
+     * coarsest level.
+     */
+    protected double m_dStartTemperature;
+
+    /**
+     * Indicates if the positions returned are snapped to the grid.
+     */
+    protected boolean m_bSnapToGrid;
+
+    /**
+     * The generator that orders the merging of clusters and places the
+     * clusters split from the same parent, seeded so that the same Map is
+     * always laid out the same way.
+     */
+    protected Random m_oRandom;
+
+    /**
+     * The pool that computes the repulsion; created by the first iteration
+     * and shut down by the last.
+     */
+    protected ForkJoinPool m_oPool;
+
+    /**
+     * The clusters in the order of the leaves of the quadtree that hold
+     * them.
+     */
+    protected int[] m_anOrder;
+
+    /**
+     * The number of cells of the quadtree.  The cells are stored in
+     * preorder, so the children of a cell follow it.
+     */
+    protected int m_nCellCount;
+
+    /**
+     * The index of the cell following the subtree of each cell.
+     */
+    protected int[] m_anCellSkip;
+
+    /**
+     * The first and last-plus-one positions in m_anOrder of the clusters
+     * of each cell.
+     */
+    protected int[] m_anCellFirst, m_anCellLast;
+
+    /**
+     * Indicates if a cell is a leaf, whose clusters are visited one by one.
+     */
+    protected boolean[] m_abCellLeaf;
+
+    /**
+     * The side of the square of each cell, squared.
+     */
+    protected double[] m_adCellSize2;
+
+    /**
+     * The center of mass of the clusters of each cell.
+     */
+    protected double[] m_adCellX, m_adCellY;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new ForceLayout object for the rooms and edges of the
+     * specified Map, starting from their current positions.
+     *
+     * @param  oMap  The Map to be laid out.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public ForceLayout( Map oMap )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashMap<String, Integer> oIndex;      // Index of each room by ID
+        HashSet<Long>            oPairs;      // Pairs of clusters joined
+        List<int[]>              oClusters,   // Room clusters of each level
+                                 oStarts,     // Edge starts of each level
+                                 oEnds;       // Edge ends of each level
+        List<Integer>            oCounts;     // Clusters of each level
+        Integer                  oStart,      // Index of an edge's start room
+                                 oEnd;        // Index of an edge's end room
+        Rectangle                rectBounds;  // Bounds of a room
+        int[]                    anStart,     // Edge starts of a level
+                                 anEnd,       // Edge ends of a level
+                                 anParent,    // Cluster merging each cluster
+                                 anCluster;   // Cluster of each room
+        int                      nRooms,      // Number of rooms
+                                 nEdges,      // Number of edges copied
+                                 nCount,      // Number of clusters
+                                 nParents,    // Number of merged clusters
+                                 nI;          // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Copy the rooms; each is its own cluster on the finest level
+        nRooms = oMap.m_oRoomMap.size();
+        m_aoRooms = oMap.m_oRoomMap.values().toArray( new Room[ nRooms ] );
+        m_anWidth = new int[ nRooms ];
+        m_anHeight = new int[ nRooms ];
+        anCluster = new int[ nRooms ];
+        oIndex = new HashMap<String, Integer>( (int)(nRooms / 0.75f) + 1 );
+        for( nI = 0; nI < nRooms; nI++ )
+        {
+            m_anWidth[ nI ] = m_aoRooms[ nI ].m_rectBounds.width;
+            m_anHeight[ nI ] = m_aoRooms[ nI ].m_rectBounds.height;
+            anCluster[ nI ] = nI;
+            oIndex.put( m_aoRooms[ nI ].getID(), Integer.valueOf( nI ) );
+        }
+
+        // Copy each pair of different rooms joined by an edge once
+        anStart = new int[ oMap.m_oEdgeMap.size() ];
+        anEnd = new int[ oMap.m_oEdgeMap.size() ];
+        oPairs = new HashSet<Long>();
+        nEdges = 0;
+        for( final Edge oEdge : oMap.m_oEdgeMap.values() )
+        {
+            oStart = oIndex.get( oEdge.m_strStartRoomID );
+            oEnd = oIndex.get( oEdge.m_strEndRoomID );
+            if( oStart == null || oEnd == null || oStart.equals( oEnd ) )
+                continue;
+            if( !oPairs.add( getPairKey( oStart.intValue(), oEnd.intValue() ) ) )
+                continue;
+            anStart[ nEdges ] = oStart.intValue();
+            anEnd[ nEdges ] = oEnd.intValue();
+            nEdges++;
+        }
+        oClusters = new ArrayList<int[]>();
+        oStarts = new ArrayList<int[]>();
+        oEnds = new ArrayList<int[]>();
+        oCounts = new ArrayList<Integer>();
+        oClusters.add( anCluster );
+        oStarts.add( Arrays.copyOf( anStart, nEdges ) );
+        oEnds.add( Arrays.copyOf( anEnd, nEdges ) );
+        oCounts.add( Integer.valueOf( nRooms ) );
+
+        // Merge the clusters into coarser levels while that pays, joining
+        // the merged clusters of each edge, once for each pair
+        m_oRandom = new Random( nRooms );
+        nCount = nRooms;
+        while( nCount > MIN_CLUSTER_COUNT )
+        {
+            anStart = oStarts.get( oStarts.size() - 1 );
+            anEnd = oEnds.get( oEnds.size() - 1 );
+            anParent = new int[ nCount ];
+            nParents = mergeClusters( nCount, anStart, anEnd, anParent );
+            if( nParents > nCount * MAX_COARSENING_RATIO )
+                break;
+            anStart = anStart.clone();
+            anEnd = anEnd.clone();
+            oPairs.clear();
+            nEdges = 0;
+            for( nI = 0; nI < anStart.length; nI++ )
+            {
+                if( anParent[ anStart[ nI ] ] == anParent[ anEnd[ nI ] ] ||
+                    !oPairs.add( getPairKey( anParent[ anStart[ nI ] ], anParent[ anEnd[ nI ] ] ) ) )
+                    continue;
+                anStart[ nEdges ] = anParent[ anStart[ nI ] ];
+                anEnd[ nEdges ] = anParent[ anEnd[ nI ] ];
+                nEdges++;
+            }
+            anCluster = anCluster.clone();
+            for( nI = 0; nI < nRooms; nI++ )
+                anCluster[ nI ] = anParent[ anCluster[ nI ] ];
+            oClusters.add( anCluster );
+            oStarts.add( Arrays.copyOf( anStart, nEdges ) );
+            oEnds.add( Arrays.copyOf( anEnd, nEdges ) );
+            oCounts.add( Integer.valueOf( nParents ) );
+            nCount = nParents;
+        }
+        m_aanRoomCluster = oClusters.toArray( new int[ oClusters.size() ][] );
+        m_aanEdgeStart = oStarts.toArray( new int[ oStarts.size() ][] );
+        m_aanEdgeEnd = oEnds.toArray( new int[ oEnds.size() ][] );
+        m_anClusterCount = new int[ oCounts.size() ];
+        for( nI = 0; nI < m_anClusterCount.length; nI++ )
+            m_anClusterCount[ nI ] = oCounts.get( nI ).intValue();
+
+        // Start the coarsest level with each cluster at the center of its
+        // rooms, spread if it shares its position with another
+        m_nLevel = m_anClusterCount.length - 1;
+        m_adX = new double[ nRooms ];
+        m_adY = new double[ nRooms ];
+        m_adDispX = new double[ nRooms ];
+        m_adDispY = new double[ nRooms ];
+        anParent = new int[ nCount ];
+        for( nI = 0; nI < nRooms; nI++ )
+        {
+            rectBounds = m_aoRooms[ nI ].m_rectBounds;
+            m_adX[ anCluster[ nI ] ] += rectBounds.x + rectBounds.width / 2.0;
+            m_adY[ anCluster[ nI ] ] += rectBounds.y + rectBounds.height / 2.0;
+            anParent[ anCluster[ nI ] ]++;
+        }
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            m_adX[ nI ] /= anParent[ nI ];
+            m_adY[ nI ] /= anParent[ nI ];
+        }
+        spreadCoincidentClusters( nCount );
+
+        // Initialize the settings and the quadtree
+        m_nIterationCount = DEFAULT_ITERATION_COUNT;
+        m_dTheta = DEFAULT_THETA;
+        m_dEdgeLength = DEFAULT_EDGE_LENGTH;
+        m_bSnapToGrid = true;
+        m_anOrder = new int[ nRooms ];
+        m_anCellSkip = new int[ 0 ];
+        m_anCellFirst = new int[ 0 ];
+        m_anCellLast = new int[ 0 ];
+        m_abCellLeaf = new boolean[ 0 ];
+        m_adCellSize2 = new double[ 0 ];
+        m_adCellX = new double[ 0 ];
+        m_adCellY = new double[ 0 ];
+        allocateCells( Math.max( 16, nRooms / 2 ) );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the rooms laid out, in the order of the positions returned by
+     * getLocations.
+     *
+     * @return  The rooms.
+     */
+
+    public Room[] getRooms()
+    {
+        // Return a copy of the rooms
+        return( m_aoRooms.clone() );
+    }
+
+    /**
+     * Gets the number of iterations to run on all levels.
+     *
+     * @return  The number of iterations.
+     */
+
+    public int getIterationCount()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nCount,  // Number of iterations
+            nI;      // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Add the iterations of each level; there are none without rooms
+        nCount = 0;
+        if( m_aoRooms.length > 0 )
+            for( nI = 0; nI < m_anClusterCount.length; nI++ )
+                nCount += getLevelIterationCount( nI );
+        return( nCount );
+    }
+
+    /**
+     * Sets the number of iterations to run on the coarsest level.  Each
+     * finer level runs a fraction of that number.
+     *
+     * @param  nIterationCount  The number of iterations.
+     *
+     * @exception  IllegalArgumentException  If nIterationCount is less than
+     *     one.
+     * @exception  IllegalStateException  If iterations have already run.
+     */
+
+    public void setIterationCount( int nIterationCount )
+        throws IllegalArgumentException, IllegalStateException
+    {
+        // Make sure arguments are valid
+        if( nIterationCount < 1 )
+            throw new IllegalArgumentException();
+        if( m_nIteration > 0 )
+            throw new IllegalStateException();
+
+        // Store the count
+        m_nIterationCount = nIterationCount;
+    }
+
+    /**
+     * Gets the number of iterations run so far on all levels.
+     *
+     * @return  The number of iterations run.
+     */
+
+    public int getIteration()
+    {
+        // Return the iteration
+        return( m_nIteration );
+    }
+
+    /**
+     * Gets the number of levels on which the layout is computed.
+     *
+     * @return  The number of levels; one if the rooms are laid out
+     *     directly.
+     */
+
+    public int getLevelCount()
+    {
+        // Return the number of levels
+        return( m_anClusterCount.length );
+    }
+
+    /**
+     * Sets the accuracy of the quadtree approximation.
+     *
+     * @param  dTheta  The ratio of the size of a group of rooms to its
+     *     distance below which the group repels as one room; zero computes
+     *     the repulsion of every pair exactly.
+     *
+     * @exception  IllegalArgumentException  If dTheta is negative.
+     */
+
+    public void setTheta( double dTheta )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( dTheta < 0.0 )
+            throw new IllegalArgumentException();
+
+        // Store the accuracy
+        m_dTheta = dTheta;
+    }
+
+    /**
+     * Sets the length of an edge in the layout.
+     *
+     * @param  dEdgeLength  The distance in pixels between the centers of
+     *     the rooms of the median edge.
+     *
+     * @exception  IllegalArgumentException  If dEdgeLength is not positive.
+     */
+
+    public void setEdgeLength( double dEdgeLength )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( !(dEdgeLength > 0.0) )
+            throw new IllegalArgumentException();
+
+        // Store the length
+        m_dEdgeLength = dEdgeLength;
+    }
+
+    /**
+     * Sets whether the positions returned are snapped to the grid.
+     *
+     * @param  bSnapToGrid  Indicates if the positions are snapped to
+     *     multiples of MapUI.GRID_SIZE.
+     */
+
+    public void setSnapToGrid( boolean bSnapToGrid )
+    {
+        // Store the flag
+        m_bSnapToGrid = bSnapToGrid;
+    }
+
+    /**
+     * Indicates if all iterations have been run.
+     *
+     * @return  A flag indicating if the layout is complete.
+     */
+
+    public boolean isDone()
+    {
+        // Compare the iterations run with the count
+        return( m_nIteration >= getIterationCount() );
+    }
+
+    /**
+     * Runs one iteration, moving every cluster of the current level along
+     * the forces on it by at most the current temperature, and moves to the
+     * next finer level when the current one is complete.
+     *
+     * @return  A flag indicating if more iterations remain.
+     */
+
+    public boolean step()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[]  anStart,       // Edge starts of the level
+               anEnd;         // Edge ends of the level
+        double dTemperature,  // Largest distance a cluster may move
+               dFirst,        // Temperature at the start of the level
+               dCenterX,      // Center of the layout
+               dCenterY,
+               dDX, dDY,      // Vector between two clusters
+               dDistance,     // Length of a vector
+               dForce;        // Size of a force
+        int    nCount,        // Number of clusters
+               nA, nB,        // Clusters of an edge
+               nI;            // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure there is an iteration to run
+        if( isDone() )
+        {
+            dispose();
+            return( false );
+        }
+
+        // Compute the repulsion between all clusters in parallel
+        nCount = m_anClusterCount[ m_nLevel ];
+        buildTree( nCount );
+        if( m_oPool == null )
+            m_oPool = new ForkJoinPool();
+        m_oPool.invoke( new RepulsionTask( 0, nCount ) );
+
+        // Add the pull of each edge on its clusters
+        anStart = m_aanEdgeStart[ m_nLevel ];
+        anEnd = m_aanEdgeEnd[ m_nLevel ];
+        for( nI = 0; nI < anStart.length; nI++ )
+        {
+            nA = anStart[ nI ];
+            nB = anEnd[ nI ];
+            dDX = m_adX[ nA ] - m_adX[ nB ];
+            dDY = m_adY[ nA ] - m_adY[ nB ];
+            dDistance = Math.sqrt( dDX * dDX + dDY * dDY );
+            dForce = dDistance / m_dEdgeLength;
+            m_adDispX[ nA ] -= dDX * dForce;
+            m_adDispY[ nA ] -= dDY * dForce;
+            m_adDispX[ nB ] += dDX * dForce;
+            m_adDispY[ nB ] += dDY * dForce;
+        }
+
+        // Find the temperature, which falls geometrically over each level
+        // to a small fraction of the edge length; the coarsest level starts
+        // hot enough to move clusters a good way across the layout
+        if( m_nLevel == m_anClusterCount.length - 1 )
+        {
+            if( m_nLevelIteration == 0 )
+                m_dStartTemperature = Math.max( m_dEdgeLength, Math.sqrt( m_adCellSize2[ 0 ] ) / 10.0 );
+            dFirst = m_dStartTemperature;
+        }
+        else
+            dFirst = REFINEMENT_TEMPERATURE * m_dEdgeLength;
+        dTemperature = dFirst * Math.pow( FINAL_TEMPERATURE * m_dEdgeLength / dFirst,
+            (double)m_nLevelIteration / Math.max( 1, getLevelIterationCount( m_nLevel ) - 1 ) );
+
+        // Add the pull towards the center of the layout, and move each
+        // cluster along its forces by no more than the temperature
+        dCenterX = m_adCellX[ 0 ];
+        dCenterY = m_adCellY[ 0 ];
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            dDX = m_adDispX[ nI ] - GRAVITY * (m_adX[ nI ] - dCenterX);
+            dDY = m_adDispY[ nI ] - GRAVITY * (m_adY[ nI ] - dCenterY);
+            dDistance = Math.sqrt( dDX * dDX + dDY * dDY );
+            if( dDistance > dTemperature )
+            {
+                dDX *= dTemperature / dDistance;
+                dDY *= dTemperature / dDistance;
+            }
+            m_adX[ nI ] += dDX;
+            m_adY[ nI ] += dDY;
+        }
+
+        // Move to the next finer level at the end of this one, and release
+        // the pool after the last iteration
+        m_nIteration++;
+        m_nLevelIteration++;
+        if( m_nLevelIteration >= getLevelIterationCount( m_nLevel ) && m_nLevel > 0 )
+            refine();
+        if( isDone() )
+            dispose();
+        return( !isDone() );
+    }
+
+    /**
+     * Runs all remaining iterations.
+     */
+
+    public void run()
+    {
+        // Run the iterations
+        while( step() )
+            ;
+    }
+
+    /**
+     * Gets the locations of the rooms computed so far: the top-left
+     * corners of their bounds, centered on their clusters on the current
+     * level, moved together so that the layout begins at one grid cell from
+     * the origin, and snapped to the grid if requested.
+     *
+     * <p>The forces determine the shape of the layout but not its size,
+     * which grows with the number of rooms, so the layout is scaled so that
+     * the median edge has the requested length.
+     *
+     * @param  anX  Receives the horizontal coordinate of each room, in the
+     *     order of getRooms.
+     * @param  anY  Receives the vertical coordinate of each room.
+     *
+     * @exception  IllegalArgumentException  If either array is shorter than
+     *     the number of rooms.
+     */
+
+    public void getLocations( int[] anX, int[] anY )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[]  anCluster;  // Cluster of each room
+        double dScale,     // Factor the positions are scaled by
+               dMinX,      // Left edge of the layout
+               dMinY,      // Top edge of the layout
+               dX,         // Left edge of a room
+               dY;         // Top edge of a room
+        int    nI;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( anX == null || anY == null || anX.length < m_aoRooms.length || anY.length < m_aoRooms.length )
+            throw new IllegalArgumentException();
+
+        // Find the top-left corner of the scaled layout
+        anCluster = m_aanRoomCluster[ m_nLevel ];
+        dScale = getScale();
+        dMinX = dMinY = Double.MAX_VALUE;
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            dMinX = Math.min( dMinX, m_adX[ anCluster[ nI ] ] * dScale - m_anWidth[ nI ] / 2.0 );
+            dMinY = Math.min( dMinY, m_adY[ anCluster[ nI ] ] * dScale - m_anHeight[ nI ] / 2.0 );
+        }
+
+        // Place each room relative to it
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            dX = m_adX[ anCluster[ nI ] ] * dScale - m_anWidth[ nI ] / 2.0 - dMinX + MapUI.GRID_SIZE;
+            dY = m_adY[ anCluster[ nI ] ] * dScale - m_anHeight[ nI ] / 2.0 - dMinY + MapUI.GRID_SIZE;
+            if( m_bSnapToGrid )
+            {
+                anX[ nI ] = (int)Math.round( dX / MapUI.GRID_SIZE ) * MapUI.GRID_SIZE;
+                anY[ nI ] = (int)Math.round( dY / MapUI.GRID_SIZE ) * MapUI.GRID_SIZE;
+            }
+            else
+            {
+                anX[ nI ] = (int)Math.round( dX );
+                anY[ nI ] = (int)Math.round( dY );
+            }
+        }
+    }
+
+    /**
+     * Moves the rooms to the locations computed so far and sizes the Map
+     * to hold them.  This is for use without a MapUI; a MapUI displaying
+     * the Map must move the rooms itself (see MapUI.setRoomLocations).
+     *
+     * @param  oMap  The Map the rooms belong to.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public void apply( Map oMap )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anX,    // Horizontal location of each room
+              anY;    // Vertical location of each room
+        int   nMaxX,  // Right edge of the rooms
+              nMaxY,  // Bottom edge of the rooms
+              nI;     // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Compute the locations
+        anX = new int[ m_aoRooms.length ];
+        anY = new int[ m_aoRooms.length ];
+        getLocations( anX, anY );
+
+        // Move each room and size the Map to hold them
+        nMaxX = MapUI.MIN_MAP_WIDTH;
+        nMaxY = MapUI.MIN_MAP_HEIGHT;
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            m_aoRooms[ nI ].m_rectBounds.setLocation( anX[ nI ], anY[ nI ] );
+            nMaxX = Math.max( nMaxX, anX[ nI ] + m_anWidth[ nI ] );
+            nMaxY = Math.max( nMaxY, anY[ nI ] + m_anHeight[ nI ] );
+        }
+        oMap.m_dmMap.setSize( nMaxX, nMaxY );
+    }
+
+    /**
+     * Releases the threads used to compute the repulsion.  Further
+     * iterations create them again.
+     */
+
+    public void dispose()
+    {
+        // Shut down the pool
+        if( m_oPool != null )
+        {
+            m_oPool.shutdown();
+            m_oPool = null;
+        }
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Merges the clusters of a level in pairs joined by an edge, visiting
+     * them in random order and merging each with its unmerged neighbor of
+     * fewest edges, which keeps the clusters of the next level similar in
+     * size.
+     *
+     * @param  nCount  The number of clusters of the level.
+     * @param  anStart  The clusters at the start of each edge.
+     * @param  anEnd  The clusters at the end of each edge.
+     * @param  anParent  Receives the cluster of the next level into which
+     *     each cluster is merged.
+     *
+     * @return  The number of clusters of the next level.
+     */
+
+    protected int mergeClusters( int nCount, int[] anStart, int[] anEnd, int[] anParent )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anFirst,     // First neighbor of each cluster in anNeighbor
+              anNeighbor,  // Neighbors of the clusters
+              anFill,      // Next free neighbor of each cluster
+              anVisit;     // Order the clusters are visited in
+        int   nCluster,    // Cluster being merged
+              nOther,      // A neighbor of the cluster
+              nBest,       // Neighbor it is merged with
+              nParents,    // Number of clusters of the next level
+              nI, nJ;      // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // List the neighbors of each cluster
+        anFirst = new int[ nCount + 1 ];
+        for( nI = 0; nI < anStart.length; nI++ )
+        {
+            anFirst[ anStart[ nI ] + 1 ]++;
+            anFirst[ anEnd[ nI ] + 1 ]++;
+        }
+        for( nI = 0; nI < nCount; nI++ )
+            anFirst[ nI + 1 ] += anFirst[ nI ];
+        anNeighbor = new int[ anFirst[ nCount ] ];
+        anFill = Arrays.copyOf( anFirst, nCount );
+        for( nI = 0; nI < anStart.length; nI++ )
+        {
+            anNeighbor[ anFill[ anStart[ nI ] ]++ ] = anEnd[ nI ];
+            anNeighbor[ anFill[ anEnd[ nI ] ]++ ] = anStart[ nI ];
+        }
+
+        // Shuffle the order of the visits
+        anVisit = new int[ nCount ];
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            nJ = m_oRandom.nextInt( nI + 1 );
+            anVisit[ nI ] = anVisit[ nJ ];
+            anVisit[ nJ ] = nI;
+        }
+
+        // Merge each unmerged cluster with its smallest unmerged neighbor,
+        // or keep it alone if it has none
+        Arrays.fill( anParent, -1 );
+        nParents = 0;
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            nCluster = anVisit[ nI ];
+            if( anParent[ nCluster ] >= 0 )
+                continue;
+            nBest = -1;
+            for( nJ = anFirst[ nCluster ]; nJ < anFirst[ nCluster + 1 ]; nJ++ )
+            {
+                nOther = anNeighbor[ nJ ];
+                if( anParent[ nOther ] >= 0 )
+                    continue;
+                if( nBest < 0 || anFirst[ nOther + 1 ] - anFirst[ nOther ] < anFirst[ nBest + 1 ] - anFirst[ nBest ] )
+                    nBest = nOther;
+            }
+            anParent[ nCluster ] = nParents;
+            if( nBest >= 0 )
+                anParent[ nBest ] = nParents;
+            nParents++;
+        }
+        return( nParents );
+    }
+
+    /**
+     * Moves to the next finer level, placing the clusters of each parent
+     * cluster a little way around the parent.  The layout of the parents is
+     * first spread out so that the additional clusters have the room they
+     * will take.
+     */
+
+    protected void refine()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[]     anParent,   // Parent cluster of each room
+                  anCluster;  // Cluster of each room on the finer level
+        boolean[] abPlaced;   // Indicates if a cluster has been placed
+        double    dSpread,    // Factor the parents are spread by
+                  dCenterX,   // Center of the layout
+                  dCenterY,
+                  dAngle;     // Direction of a cluster from its parent
+        int       nCount,     // Number of parent clusters
+                  nI;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Keep the positions of the parents, spread about their center so
+        // that each cluster keeps about the same area
+        nCount = m_anClusterCount[ m_nLevel ];
+        dSpread = Math.sqrt( (double)m_anClusterCount[ m_nLevel - 1 ] / nCount );
+        dCenterX = dCenterY = 0.0;
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            dCenterX += m_adX[ nI ] / nCount;
+            dCenterY += m_adY[ nI ] / nCount;
+        }
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            m_adDispX[ nI ] = dCenterX + (m_adX[ nI ] - dCenterX) * dSpread;
+            m_adDispY[ nI ] = dCenterY + (m_adY[ nI ] - dCenterY) * dSpread;
+        }
+
+        // Place each cluster of the finer level in a random direction from
+        // its parent
+        anParent = m_aanRoomCluster[ m_nLevel ];
+        anCluster = m_aanRoomCluster[ m_nLevel - 1 ];
+        abPlaced = new boolean[ m_anClusterCount[ m_nLevel - 1 ] ];
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            if( abPlaced[ anCluster[ nI ] ] )
+                continue;
+            abPlaced[ anCluster[ nI ] ] = true;
+            dAngle = m_oRandom.nextDouble() * 2.0 * Math.PI;
+            m_adX[ anCluster[ nI ] ] = m_adDispX[ anParent[ nI ] ] + Math.cos( dAngle ) * m_dEdgeLength / 4.0;
+            m_adY[ anCluster[ nI ] ] = m_adDispY[ anParent[ nI ] ] + Math.sin( dAngle ) * m_dEdgeLength / 4.0;
+        }
+
+        // Start the level
+        m_nLevel--;
+        m_nLevelIteration = 0;
+    }
+
+    /**
+     * Gets the number of iterations run on a level.
+     *
+     * @param  nLevel  The level.
+     *
+     * @return  The number of iterations.
+     */
+
+    protected int getLevelIterationCount( int nLevel )
+    {
+        // The coarsest level runs the full count, the others a fraction
+        if( nLevel == m_anClusterCount.length - 1 )
+            return( m_nIterationCount );
+        return( Math.max( 1, (int)(m_nIterationCount * REFINEMENT_ITERATION_RATIO) ) );
+    }
+
+    /**
+     * Gets the factor by which the positions are scaled so that the median
+     * length of the edges of the current level is the requested length.
+     *
+     * @return  The factor, or one if there are no edges.
+     */
+
+    protected double getScale()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[]    anStart,   // Edge starts of the level
+                 anEnd;     // Edge ends of the level
+        double[] adLength;  // Length of each edge
+        double   dMedian;   // Median length
+        int      nI;        // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the median length of the edges
+        anStart = m_aanEdgeStart[ m_nLevel ];
+        anEnd = m_aanEdgeEnd[ m_nLevel ];
+        if( anStart.length == 0 )
+            return( 1.0 );
+        adLength = new double[ anStart.length ];
+        for( nI = 0; nI < adLength.length; nI++ )
+            adLength[ nI ] = Math.hypot( m_adX[ anStart[ nI ] ] - m_adX[ anEnd[ nI ] ],
+                m_adY[ anStart[ nI ] ] - m_adY[ anEnd[ nI ] ] );
+        Arrays.sort( adLength );
+        dMedian = adLength[ adLength.length / 2 ];
+
+        // Scale it to the requested length
+        return( dMedian > 1.0 ? m_dEdgeLength / dMedian : 1.0 );
+    }
+
+    /**
+     * Moves each cluster that shares its position with an earlier cluster
+     * a small distance around it, along a spiral.
+     *
+     * @param  nCount  The number of clusters.
+     */
+
+    protected void spreadCoincidentClusters( int nCount )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        HashMap<Long, Integer> oCount;   // Clusters seen at each position
+        Integer                oSeen;    // Clusters seen at a position
+        Long                   oKey;     // Key of a position
+        double                 dAngle,   // Direction a cluster is moved in
+                               dRadius;  // Distance it is moved
+        int                    nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Move the n-th cluster at a position along a spiral around it
+        oCount = new HashMap<Long, Integer>();
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            oKey = Long.valueOf( (Double.doubleToLongBits( m_adX[ nI ] ) * 31) ^ Double.doubleToLongBits( m_adY[ nI ] ) );
+            oSeen = oCount.get( oKey );
+            oCount.put( oKey, Integer.valueOf( oSeen == null ? 1 : oSeen.intValue() + 1 ) );
+            if( oSeen != null )
+            {
+                dAngle = oSeen.intValue() * 2.39996;
+                dRadius = Math.sqrt( oSeen.intValue() ) * MapUI.GRID_SIZE;
+                m_adX[ nI ] += Math.cos( dAngle ) * dRadius;
+                m_adY[ nI ] += Math.sin( dAngle ) * dRadius;
+            }
+        }
+    }
+
+    /**
+     * Grows the arrays of the quadtree cells, keeping the cells built so
+     * far.
+     *
+     * @param  nCapacity  The number of cells to hold.
+     */
+
+    protected void allocateCells( int nCapacity )
+    {
+        // Grow each array to the capacity
+        m_anCellSkip = Arrays.copyOf( m_anCellSkip, nCapacity );
+        m_anCellFirst = Arrays.copyOf( m_anCellFirst, nCapacity );
+        m_anCellLast = Arrays.copyOf( m_anCellLast, nCapacity );
+        m_abCellLeaf = Arrays.copyOf( m_abCellLeaf, nCapacity );
+        m_adCellSize2 = Arrays.copyOf( m_adCellSize2, nCapacity );
+        m_adCellX = Arrays.copyOf( m_adCellX, nCapacity );
+        m_adCellY = Arrays.copyOf( m_adCellY, nCapacity );
+    }
+
+    /**
+     * Builds the quadtree of the current positions of the clusters.
+     *
+     * @param  nCount  The number of clusters.
+     */
+
+    protected void buildTree( int nCount )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        double dMinX, dMaxX,  // Extent of the clusters
+               dMinY, dMaxY;
+        int    nI;            // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the square that holds all clusters
+        dMinX = dMinY = Double.MAX_VALUE;
+        dMaxX = dMaxY = -Double.MAX_VALUE;
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            m_anOrder[ nI ] = nI;
+            dMinX = Math.min( dMinX, m_adX[ nI ] );
+            dMaxX = Math.max( dMaxX, m_adX[ nI ] );
+            dMinY = Math.min( dMinY, m_adY[ nI ] );
+            dMaxY = Math.max( dMaxY, m_adY[ nI ] );
+        }
+
+        // Divide it from the root down
+        m_nCellCount = 0;
+        buildCell( 0, nCount, dMinX, dMinY,
+            Math.max( 1.0, Math.max( dMaxX - dMinX, dMaxY - dMinY ) ), 0 );
+    }
+
+    /**
+     * Builds the cell of the quadtree for the clusters in a range of
+     * m_anOrder, which all lie in the specified square, and the cells below
+     * it.  The range is reordered so that the clusters of each child are
+     * together.
+     *
+     * @param  nFirst  The first position of the range.
+     * @param  nLast  The position after the range.
+     * @param  dX  The left edge of the square.
+     * @param  dY  The top edge of the square.
+     * @param  dSize  The side of the square.
+     * @param  nDepth  The depth of the cell.
+     */
+
+    protected void buildCell( int nFirst, int nLast, double dX, double dY, double dSize, int nDepth )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[]  anBounds;   // Positions dividing the range into quadrants
+        double dHalf,      // Half the side of the square
+               dSumX,      // Sum of the positions of the clusters
+               dSumY;
+        int    nCell,      // The cell built
+               nQuadrant,  // Quadrant being built
+               nI;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Take the next cell
+        if( m_nCellCount == m_anCellSkip.length )
+            allocateCells( m_nCellCount * 2 );
+        nCell = m_nCellCount++;
+        m_anCellFirst[ nCell ] = nFirst;
+        m_anCellLast[ nCell ] = nLast;
+        m_adCellSize2[ nCell ] = dSize * dSize;
+
+        // A cell with few clusters, or at the greatest depth, is a leaf
+        // whose center of mass is computed from its clusters
+        if( nLast - nFirst <= LEAF_CAPACITY || nDepth >= MAX_TREE_DEPTH )
+        {
+            dSumX = dSumY = 0.0;
+            for( nI = nFirst; nI < nLast; nI++ )
+            {
+                dSumX += m_adX[ m_anOrder[ nI ] ];
+                dSumY += m_adY[ m_anOrder[ nI ] ];
+            }
+            m_abCellLeaf[ nCell ] = true;
+            m_adCellX[ nCell ] = nLast > nFirst ? dSumX / (nLast - nFirst) : dX;
+            m_adCellY[ nCell ] = nLast > nFirst ? dSumY / (nLast - nFirst) : dY;
+            m_anCellSkip[ nCell ] = m_nCellCount;
+            return;
+        }
+
+        // Divide the clusters into top and bottom halves, then each half
+        // into left and right
+        dHalf = dSize / 2.0;
+        anBounds = new int[ 5 ];
+        anBounds[ 0 ] = nFirst;
+        anBounds[ 4 ] = nLast;
+        anBounds[ 2 ] = partition( nFirst, nLast, m_adY, dY + dHalf );
+        anBounds[ 1 ] = partition( nFirst, anBounds[ 2 ], m_adX, dX + dHalf );
+        anBounds[ 3 ] = partition( anBounds[ 2 ], nLast, m_adX, dX + dHalf );
+
+        // Build the nonempty quadrants and combine their centers of mass
+        m_abCellLeaf[ nCell ] = false;
+        dSumX = dSumY = 0.0;
+        for( nQuadrant = 0; nQuadrant < 4; nQuadrant++ )
+        {
+            if( anBounds[ nQuadrant ] == anBounds[ nQuadrant + 1 ] )
+                continue;
+            nI = m_nCellCount;
+            buildCell( anBounds[ nQuadrant ], anBounds[ nQuadrant + 1 ],
+                dX + (nQuadrant % 2) * dHalf, dY + (nQuadrant / 2) * dHalf, dHalf, nDepth + 1 );
+            dSumX += m_adCellX[ nI ] * (anBounds[ nQuadrant + 1 ] - anBounds[ nQuadrant ]);
+            dSumY += m_adCellY[ nI ] * (anBounds[ nQuadrant + 1 ] - anBounds[ nQuadrant ]);
+        }
+        m_adCellX[ nCell ] = dSumX / (nLast - nFirst);
+        m_adCellY[ nCell ] = dSumY / (nLast - nFirst);
+        m_anCellSkip[ nCell ] = m_nCellCount;
+    }
+
+    /**
+     * Reorders a range of m_anOrder so that the clusters whose coordinate
+     * is less than the specified value come first.
+     *
+     * @param  nFirst  The first position of the range.
+     * @param  nLast  The position after the range.
+     * @param  adCoord  The coordinate of each cluster.
+     * @param  dValue  The value dividing the clusters.
+     *
+     * @return  The position of the first cluster whose coordinate is not
+     *     less than the value.
+     */
+
+    protected int partition( int nFirst, int nLast, double[] adCoord, double dValue )
+    {
+        // Swap clusters from the ends towards the middle
+        int nLow = nFirst;
+        int nHigh = nLast - 1;
+        while( nLow <= nHigh )
+        {
+            if( adCoord[ m_anOrder[ nLow ] ] < dValue )
+                nLow++;
+            else
+            {
+                int nTemp = m_anOrder[ nLow ];
+                m_anOrder[ nLow ] = m_anOrder[ nHigh ];
+                m_anOrder[ nHigh-- ] = nTemp;
+            }
+        }
+        return( nLow );
+    }
+
+    /**
+     * Computes the repulsion of all other clusters on a cluster,
+     * approximating distant groups of clusters by their centers of mass,
+     * and stores it as the displacement of the cluster.
+     *
+     * @param  nCluster  The cluster.
+     */
+
+    protected void computeRepulsion( int nCluster )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        double dX,        // Position of the cluster
+               dY,
+               dK2,       // Square of the edge length
+               dTheta2,   // Square of the accuracy
+               dDX, dDY,  // Vector from another cluster or group
+               dD2,       // Square of its length
+               dDispX,    // Displacement of the cluster
+               dDispY;
+        int    nCell,     // Cell being visited
+               nOther,    // Other cluster of a leaf
+               nI;        // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Visit the cells in preorder, skipping the subtree of each cell
+        // that is far enough to be treated as one cluster; each cluster or
+        // group of mass m at distance d repels with force k * k * k * m /
+        // (d * d), which falls faster than the k * k * m / d of Fruchterman
+        // and Reingold so that the many distant rooms of a large map do not
+        // crowd the middle of the layout
+        dX = m_adX[ nCluster ];
+        dY = m_adY[ nCluster ];
+        dK2 = m_dEdgeLength * m_dEdgeLength;
+        dTheta2 = m_dTheta * m_dTheta;
+        dDispX = dDispY = 0.0;
+        nCell = 0;
+        while( nCell < m_nCellCount )
+        {
+            if( m_abCellLeaf[ nCell ] )
+            {
+                for( nI = m_anCellFirst[ nCell ]; nI < m_anCellLast[ nCell ]; nI++ )
+                {
+                    nOther = m_anOrder[ nI ];
+                    if( nOther == nCluster )
+                        continue;
+                    dDX = dX - m_adX[ nOther ];
+                    dDY = dY - m_adY[ nOther ];
+                    dD2 = Math.max( dDX * dDX + dDY * dDY, 1.0 );
+                    dD2 = dD2 * Math.sqrt( dD2 ) / m_dEdgeLength;
+                    dDispX += dDX * dK2 / dD2;
+                    dDispY += dDY * dK2 / dD2;
+                }
+                nCell = m_anCellSkip[ nCell ];
+                continue;
+            }
+            dDX = dX - m_adCellX[ nCell ];
+            dDY = dY - m_adCellY[ nCell ];
+            dD2 = dDX * dDX + dDY * dDY;
+            if( m_adCellSize2[ nCell ] < dTheta2 * dD2 )
+            {
+                dD2 = Math.max( dD2, 1.0 );
+                dD2 = dD2 * Math.sqrt( dD2 ) / m_dEdgeLength;
+                dDispX += dDX * dK2 * (m_anCellLast[ nCell ] - m_anCellFirst[ nCell ]) / dD2;
+                dDispY += dDY * dK2 * (m_anCellLast[ nCell ] - m_anCellFirst[ nCell ]) / dD2;
+                nCell = m_anCellSkip[ nCell ];
+            }
+            else
+                nCell++;
+        }
+        m_adDispX[ nCluster ] = dDispX;
+        m_adDispY[ nCluster ] = dDispY;
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the key identifying an unordered pair of clusters.
+     *
+     * @param  nA  One cluster.
+     * @param  nB  The other cluster.
+     *
+     * @return  The key.
+     */
+
+    protected static Long getPairKey( int nA, int nB )
+    {
+        // Combine the lower and the higher cluster
+        return( Long.valueOf( ((long)Math.min( nA, nB ) << 32) | Math.max( nA, nB ) ) );
+    }
+
+
+    // **********************************************************************
+    // *********************           Tasks            *********************
+    // **********************************************************************
+
+    /**
+     * The task that computes the repulsion on a range of clusters,
+     * splitting the range between subtasks while it is large.
+     */
+
+    protected class RepulsionTask
+        extends RecursiveAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The first cluster of the range.
+         */
+        protected int m_nFirst;
+
+        /**
+         * The cluster after the last of the range.
+         */
+        protected int m_nLimit;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -4473035310946425917L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new RepulsionTask for the specified range of
+         * clusters.
+         *
+         * @param  nFirst  The first cluster of the range.
+         * @param  nLimit  The cluster after the last of the range.
+         */
+
+        RepulsionTask( int nFirst, int nLimit )
+        {
+            // Initialize instance variables
+            m_nFirst = nFirst;
+            m_nLimit = nLimit;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   RecursiveAction Methods   --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.concurrent.RecursiveAction#compute()  compute
+         */
+
+        protected void compute()
+        {
+            // Split a large range in two, otherwise compute each cluster
+            if( m_nLimit - m_nFirst > CLUSTERS_PER_TASK )
+            {
+                int nMiddle = (m_nFirst + m_nLimit) >>> 1;
+                invokeAll( new RepulsionTask( m_nFirst, nMiddle ), new RepulsionTask( nMiddle, m_nLimit ) );
+                return;
+            }
+            for( int nCluster = m_nFirst; nCluster < m_nLimit; nCluster++ )
+                computeRepulsion( nCluster );
+        }
+    }
+}
@@ -140,6 +140,11 @@ public interface IFMMLizable
      */
     public static final String IFMML_ATTR_EDGE_ENDROOMEXIT = "ENDROOMEXIT";
 
+    /**
+     * Name of the BENDS attribute of the EDGE element.
+     */
+    public static final String IFMML_ATTR_EDGE_BENDS = "BENDS";
+
 
     // **********************************************************************
     // *********************  Public Interface Methods  *********************
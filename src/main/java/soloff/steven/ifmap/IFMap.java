@@ -21,6 +21,7 @@
 package soloff.steven.ifmap;
 
 import java.awt.Dimension;
+import java.awt.EventQueue;
 import java.awt.Point;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
@@ -28,9 +29,11 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.util.MissingResourceException;
 import java.util.Properties;
 import java.util.ResourceBundle;
+import javax.management.JMException;
 import javax.swing.ImageIcon;
 import javax.swing.UIManager;
 
@@ -102,6 +105,12 @@ public class IFMap
      */
     public static final String PROP_VIEW_GROUPMOVE = "view.groupMove";
 
+    /**
+     * Key for the property that specifies if edges are routed around the
+     * rooms in the view.
+     */
+    public static final String PROP_VIEW_ROUTEEDGES = "view.routeEdges";
+
 
     // **********************************************************************
     // *********************     Instance Variables     *********************
@@ -117,6 +126,12 @@ public class IFMap
      */
     protected IFMapView m_oView;
 
+    /**
+     * The event describing the startup of the application; null once the
+     * main window has been opened.
+     */
+    protected OperationEvent m_oStartupEvent;
+
 
     // **********************************************************************
     // *********************      Class Variables       *********************
@@ -167,18 +182,11 @@ public class IFMap
         oDefaultProps.setProperty( PROP_VIEW_LAF, UIManager.getCrossPlatformLookAndFeelClassName() );
         oDefaultProps.setProperty( PROP_VIEW_GRID, String.valueOf( false ) );
         oDefaultProps.setProperty( PROP_VIEW_GROUPMOVE, String.valueOf( false ) );
+        oDefaultProps.setProperty( PROP_VIEW_ROUTEEDGES, String.valueOf( false ) );
 
-        // Create the application properties and load from disk
+        // Create the application properties (the user settings are loaded
+        // from disk by main)
         c_oProperties = new Properties( oDefaultProps );
-
-        try
-        {
-            c_oProperties.load( new FileInputStream( getSettingsFile() ) );
-        }
-        catch( IOException eIO )
-        {
-            // Silently ignore missing settings file
-        }
     }
 
 
@@ -216,6 +224,37 @@ public class IFMap
         return new File( new File( new File( System.getProperty( "user.home" ) ), ".ifmap" ), "ifmap.settings" );
     }
 
+    /**
+     * Loads the user settings from the application settings file.
+     */
+
+    private static void loadSettings()
+    {
+        FileInputStream oInputStream = null;
+        try
+        {
+            // Load the user settings over the defaults
+            oInputStream = new FileInputStream( getSettingsFile() );
+            c_oProperties.load( oInputStream );
+        }
+        catch( IOException eIO )
+        {
+            // Silently ignore missing settings file
+        }
+        finally
+        {
+            try
+            {
+                if( oInputStream != null )
+                    oInputStream.close();
+            }
+            catch( IOException eIO )
+            {
+                // Ignore failure to close the settings file
+            }
+        }
+    }
+
 
     // **********************************************************************
     // *********************    Public Class Methods    *********************
@@ -229,8 +268,18 @@ public class IFMap
 
     public static void main( String[] args )
     {
-        // Create a new IFMap
-        new IFMap();
+        // Begin the startup and load the user settings (which include the
+        // look and feel and window bounds) on this thread
+        final OperationEvent oStartupEvent = beginStartup();
+
+        // Create a new IFMap on the event dispatch thread with the settings
+        EventQueue.invokeLater( new Runnable()
+        {
+            public void run()
+            {
+                new IFMap().startup( oStartupEvent );
+            }
+        } );
     }
 
     /**
@@ -312,6 +361,137 @@ public class IFMap
     }
 
 
+    // **********************************************************************
+    // *********************    Package Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Begins the startup of the application, before the application is
+     * created: starts timing the startup (including the time taken by the
+     * virtual machine to reach main), installs the event dispatch thread
+     * watchdog if requested, and loads the user settings.  The settings are
+     * read on a separate thread while the watchdog is installed, and are
+     * loaded before this method returns, so the view is built with them.
+     * The slow parts of the startup (creating the XML parser and
+     * registering the metrics MBean) are left until they are needed or the
+     * window has opened.
+     *
+     * @return  The event describing the startup.
+     */
+
+    static OperationEvent beginStartup()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent oStartupEvent;    // Event describing the startup
+        Thread         oSettingsLoader;  // Thread that loads the settings
+        boolean        bInterrupted;     // Whether the wait was interrupted
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Begin timing the startup
+        oStartupEvent = OperationEvent.begin( OperationEvent.STARTUP );
+        if( oStartupEvent.isEnabled() )
+            oStartupEvent.set( "jvmToMain", ManagementFactory.getRuntimeMXBean().getUptime() * 1000L );
+
+        // Load the user settings while the rest of this method runs
+        oSettingsLoader = new Thread( "IFMap Settings Loader" )
+        {
+            public void run()
+            {
+                loadSettings();
+            }
+        };
+        oSettingsLoader.start();
+
+        // Watch the event dispatch thread for stalls if requested
+        EventWatchdog.install();
+
+        // Wait for the settings to be loaded (on this thread, not the event
+        // dispatch thread) so that the view is created with them
+        bInterrupted = false;
+        while( oSettingsLoader.isAlive() )
+        {
+            try
+            {
+                oSettingsLoader.join();
+            }
+            catch( InterruptedException e )
+            {
+                bInterrupted = true;
+            }
+        }
+        if( bInterrupted )
+            Thread.currentThread().interrupt();
+        oStartupEvent.mark( "settingsAt" );
+        return( oStartupEvent );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Registers an MBean with the platform MBean server that exposes live
+     * metrics of the map and its rendering, so that they can be watched
+     * with JConsole.  The metrics are attached to the document and map UI
+     * immediately, but the MBean server (which is slow to start) is
+     * initialized on a background thread.  A failure to register is
+     * reported but is otherwise ignored.
+     *
+     * @param  lOpenedMillis  The wall clock time (in milliseconds) at which
+     *     the main window was opened.
+     */
+
+    public void registerMetrics( final long lOpenedMillis )
+    {
+        // Create the metrics and attach them to the document and map UI
+        final MapMetrics oMetrics = new MapMetrics( m_oDocument.m_oMap, m_oView.m_oMapUI );
+        m_oDocument.setMetrics( oMetrics );
+        m_oView.m_oMapUI.setMetrics( oMetrics );
+
+        // Register the metrics in the background
+        new Thread( "IFMap Metrics Registration" )
+        {
+            public void run()
+            {
+                try
+                {
+                    oMetrics.recordWindowOpened( lOpenedMillis );
+                    oMetrics.register();
+                }
+                catch( JMException eJM )
+                {
+                    System.err.println( eJM.getMessage() );
+                }
+            }
+        }.start();
+    }
+
+
+    // **********************************************************************
+    // *********************  Package Instance Methods  *********************
+    // **********************************************************************
+
+    /**
+     * Completes the startup of the application once it has been created
+     * on the event dispatch thread.
+     *
+     * @param  oStartupEvent  The event describing the startup, as returned
+     *     by beginStartup; it is completed when the main window is opened.
+     */
+
+    void startup( OperationEvent oStartupEvent )
+    {
+        // Record that the view has been created
+        m_oStartupEvent = oStartupEvent;
+        m_oStartupEvent.mark( "viewAt" );
+    }
+
+
     // **********************************************************************
     // *********************         Listeners          *********************
     // **********************************************************************
@@ -328,6 +508,25 @@ public class IFMap
         // -----------------  WindowAdapter Overrides   ---------------------
         // ------------------------------------------------------------------
 
+        /**
+         * @see  java.awt.WindowAdapter#windowOpened( WindowEvent )
+         *     windowOpened
+         */
+
+        public void windowOpened( WindowEvent evt )
+        {
+            // Complete the startup event now that the window is showing
+            long lOpenedMillis = System.currentTimeMillis();
+            if( m_oStartupEvent != null )
+            {
+                m_oStartupEvent.commit();
+                m_oStartupEvent = null;
+            }
+
+            // Expose the metrics of the application
+            registerMetrics( lOpenedMillis );
+        }
+
         /**
          * @see  java.awt.WindowAdapter#windowClosed( WindowEvent )
          *     windowClosed
@@ -360,6 +559,7 @@ public class IFMap
             IFMap.setProperty( PROP_VIEW_LAF, IFMapView.c_strCurrentLookAndFeel );
             IFMap.setProperty( PROP_VIEW_GRID, String.valueOf( m_oView.m_oMapUI.m_bGridEnabled ) );
             IFMap.setProperty( PROP_VIEW_GROUPMOVE, String.valueOf( m_oView.m_oMapUI.m_bGroupMoveEnabled ) );
+            IFMap.setProperty( PROP_VIEW_ROUTEEDGES, String.valueOf( m_oView.m_oMapUI.isEdgeRoutingEnabled() ) );
 
             try
             {
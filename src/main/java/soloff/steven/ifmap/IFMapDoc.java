@@ -62,10 +62,17 @@ public class IFMapDoc
     protected File m_oFile;
 
     /**
-     * The DocumentBuilder used to parse and XML/IFMML documents.
+     * The DocumentBuilder used to parse and XML/IFMML documents; null until
+     * it is first needed.
      */
     protected DocumentBuilder m_oDocBuilder;
 
+    /**
+     * The metrics in which the time taken by each load and save is
+     * recorded; null if they are not measured.
+     */
+    protected MapMetrics m_oMetrics;
+
 
     // **********************************************************************
     // *********************        Constructors        *********************
@@ -77,29 +84,10 @@ public class IFMapDoc
 
     public IFMapDoc()
     {
-        // Initialize instance variables
+        // Initialize instance variables (the DocumentBuilder is created when
+        // the first document is loaded to keep it off the startup path)
         m_oMap = new Map();
-
-        // Create and initialize a new DocumentBuilderFactory instance
-        DocumentBuilderFactory oDocBuilderFactory = DocumentBuilderFactory.newInstance();
-        oDocBuilderFactory.setValidating( true );
-        oDocBuilderFactory.setIgnoringComments( true );
-        oDocBuilderFactory.setIgnoringElementContentWhitespace( true );
-        oDocBuilderFactory.setCoalescing( false );
-        oDocBuilderFactory.setExpandEntityReferences( true );
-
-        try
-        {
-            // Create and initialize a new DocumentBuilder instance
-            m_oDocBuilder = oDocBuilderFactory.newDocumentBuilder();
-            m_oDocBuilder.setEntityResolver( new IFMapDoc.SAXEntityResolver() );
-            m_oDocBuilder.setErrorHandler( new IFMapDoc.SAXErrorHandler() );
-        }
-        catch( ParserConfigurationException e )
-        {
-            System.err.println( e.getMessage() );
-            System.exit( 1 );
-        }
+        m_oDocBuilder = null;
     }
 
 
@@ -165,7 +153,9 @@ public class IFMapDoc
         /////////////////////////////////////////////////////////////////////
         // VARIABLE DECLARATIONS                                           //
 
-        Document oDoc;  // DOM for the IFMML document
+        Document       oDoc;         // DOM for the IFMML document
+        OperationEvent oEvent;       // Event describing the load
+        long           lStartNanos;  // Time at which the load began
 
         //                                                                 //
         /////////////////////////////////////////////////////////////////////
@@ -174,6 +164,8 @@ public class IFMapDoc
         if( strFileName == null )
             throw new IllegalArgumentException();
 
+        oEvent = OperationEvent.begin( OperationEvent.LOAD );
+        lStartNanos = System.nanoTime();
         try
         {
             // Clear the document
@@ -181,17 +173,33 @@ public class IFMapDoc
 
             // Parse the document and read it
             m_oFile = new File( strFileName );
-            oDoc = m_oDocBuilder.parse( m_oFile );
+            oEvent.set( "bytes", m_oFile.length() );
+            oDoc = getDocumentBuilder().parse( m_oFile );
+            oEvent.mark( "parsedAt" );
             m_oMap.readIFMML( oDoc.getDocumentElement() );
+            oEvent.mark( "readAt" );
 
             // Check integrity of Map
             // (NOTE: I think this can be removed since the DTD validates
             // everything we are checking here.)
             if( !m_oMap.checkIntegrity() )
                 throw new Exception( IFMap.getResource( "msg.badMapIntegrity" ) );
+            oEvent.mark( "checkedAt" );
+
+            // Record the load
+            oEvent.set( "rooms", m_oMap.m_oRoomMap.size() );
+            oEvent.set( "edges", m_oMap.m_oEdgeMap.size() );
+            oEvent.set( "heapSaved", m_oMap.getLoadStatistics().getEstimatedBytesSaved() );
+            oEvent.commit();
+            if( m_oMetrics != null )
+                m_oMetrics.recordLoad( System.nanoTime() - lStartNanos );
         }
         catch( Exception e )
         {
+            // Record the failure
+            oEvent.set( "failed", 1 );
+            oEvent.commit();
+
             // Display error message and clear the document
             clear();
             JOptionPane.showMessageDialog( m_oView, e.getMessage(),
@@ -217,7 +225,8 @@ public class IFMapDoc
 
         FileWriter     oFileWriter;      // FileWriter for specified file
         BufferedWriter oBufferedWriter;  // BufferedWriter for specified file
-        String         str;              // Buffer used for writing
+        OperationEvent oEvent;           // Event describing the save
+        long           lStartNanos;      // Time at which the save began
 
         //                                                                 //
         /////////////////////////////////////////////////////////////////////
@@ -226,6 +235,8 @@ public class IFMapDoc
         if( strFileName == null )
             throw new IllegalArgumentException();
 
+        oEvent = OperationEvent.begin( OperationEvent.SAVE );
+        lStartNanos = System.nanoTime();
         try
         {
             // Open the specified file
@@ -233,25 +244,27 @@ public class IFMapDoc
             oFileWriter = new FileWriter( m_oFile );
             oBufferedWriter = new BufferedWriter( oFileWriter );
 
-            // Write XML directive and document type declaration
-            str = "<?xml version=\"1.0\" standalone=\"no\"?>";
-            oBufferedWriter.write( str, 0, str.length() );
-            oBufferedWriter.newLine();
-            str = "<!DOCTYPE " + IFMMLizable.IFMML_ELEM_MAP + " PUBLIC \"" +
-                IFMMLizable.IFMML_DTD_PUBLIC_ID + "\" \"" +
-                IFMMLizable.IFMML_DTD_SYSTEM_ID + "\">";
-            oBufferedWriter.write( str, 0, str.length() );
-            oBufferedWriter.newLine();
-
-            // Write IFMML for the Map
-            m_oMap.writeIFMML( oBufferedWriter );
+            // Write the IFMML document for the Map
+            writeDocument( m_oMap, oBufferedWriter );
 
             // Close file
             oBufferedWriter.flush();
             oFileWriter.close();
+
+            // Record the save
+            oEvent.set( "rooms", m_oMap.m_oRoomMap.size() );
+            oEvent.set( "edges", m_oMap.m_oEdgeMap.size() );
+            oEvent.set( "bytes", m_oFile.length() );
+            oEvent.commit();
+            if( m_oMetrics != null )
+                m_oMetrics.recordSave( System.nanoTime() - lStartNanos );
         }
         catch( IOException eIO )
         {
+            // Record the failure
+            oEvent.set( "failed", 1 );
+            oEvent.commit();
+
             // Display error message
             JOptionPane.showMessageDialog( m_oView, eIO.getMessage(),
                 IFMap.getResource( "app.title" ),
@@ -284,6 +297,150 @@ public class IFMapDoc
         m_oView = oView;
     }
 
+    /**
+     * Sets the metrics in which the time taken by each load and save is
+     * recorded.
+     *
+     * @param  oMetrics  The metrics; null if loads and saves are not to be
+     *     measured.
+     */
+
+    void setMetrics( MapMetrics oMetrics )
+    {
+        // Store the metrics
+        m_oMetrics = oMetrics;
+    }
+
+    /**
+     * Reads the Map in the specified IFMML file without loading it into
+     * the document, as when it is to be compared with or merged into the
+     * document.  Reading a Map sets the identifiers of the next Room and
+     * Edge created, so they are restored afterwards.
+     *
+     * @param  oFile  The file to be read.
+     *
+     * @return  The Map read.
+     *
+     * @exception  IllegalArgumentException  If oFile is null.
+     * @exception  IOException  If the file cannot be read or the Map fails
+     *     its integrity check.
+     * @exception  ParserConfigurationException  If the DocumentBuilder
+     *     cannot be created.
+     * @exception  SAXException  If the file is not a valid IFMML document.
+     */
+
+    Map readMap( File oFile )
+        throws IllegalArgumentException, IOException, ParserConfigurationException, SAXException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Map oMap;         // The Map read
+        int nNextRoomID,  // Saved next Room ID
+            nNextEdgeID;  // Saved next Edge ID
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oFile == null )
+            throw new IllegalArgumentException();
+
+        // Parse the document and read it, keeping the next IDs
+        nNextRoomID = Room.getNextRoomID();
+        nNextEdgeID = Edge.getNextEdgeID();
+        oMap = new Map();
+        try
+        {
+            oMap.readIFMML( getDocumentBuilder().parse( oFile ).getDocumentElement() );
+        }
+        finally
+        {
+            Room.setNextRoomID( nNextRoomID );
+            Edge.setNextEdgeID( nNextEdgeID );
+        }
+
+        // Check integrity of Map
+        if( !oMap.checkIntegrity() )
+            throw new IOException( IFMap.getResource( "msg.badMapIntegrity" ) );
+        return( oMap );
+    }
+
+    /**
+     * Gets the DocumentBuilder used to parse XML/IFMML documents, creating
+     * it if necessary.
+     *
+     * @return  The DocumentBuilder.
+     *
+     * @exception  ParserConfigurationException  If the DocumentBuilder
+     *     cannot be created.
+     */
+
+    DocumentBuilder getDocumentBuilder()
+        throws ParserConfigurationException
+    {
+        // Create and initialize the DocumentBuilder on first use
+        if( m_oDocBuilder == null )
+        {
+            DocumentBuilderFactory oDocBuilderFactory = DocumentBuilderFactory.newInstance();
+            oDocBuilderFactory.setValidating( true );
+            oDocBuilderFactory.setIgnoringComments( true );
+            oDocBuilderFactory.setIgnoringElementContentWhitespace( true );
+            oDocBuilderFactory.setCoalescing( false );
+            oDocBuilderFactory.setExpandEntityReferences( true );
+            m_oDocBuilder = oDocBuilderFactory.newDocumentBuilder();
+            m_oDocBuilder.setEntityResolver( new IFMapDoc.SAXEntityResolver() );
+            m_oDocBuilder.setErrorHandler( new IFMapDoc.SAXErrorHandler() );
+        }
+        return( m_oDocBuilder );
+    }
+
+
+    // **********************************************************************
+    // *********************    Package Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Writes the specified Map as a complete IFMML document, including the
+     * XML directive and document type declaration.  The writer is not
+     * flushed or closed.
+     *
+     * @param  oMap  The Map to be written.
+     * @param  oWriter  The writer to which the document is written.
+     *
+     * @exception  IllegalArgumentException  If oMap or oWriter is null.
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    static void writeDocument( Map oMap, BufferedWriter oWriter )
+        throws IllegalArgumentException, IOException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        String str;  // Buffer used for writing
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oMap == null || oWriter == null )
+            throw new IllegalArgumentException();
+
+        // Write XML directive and document type declaration
+        str = "<?xml version=\"1.0\" standalone=\"no\"?>";
+        oWriter.write( str, 0, str.length() );
+        oWriter.newLine();
+        str = "<!DOCTYPE " + IFMMLizable.IFMML_ELEM_MAP + " PUBLIC \"" +
+            IFMMLizable.IFMML_DTD_PUBLIC_ID + "\" \"" +
+            IFMMLizable.IFMML_DTD_SYSTEM_ID + "\">";
+        oWriter.write( str, 0, str.length() );
+        oWriter.newLine();
+
+        // Write IFMML for the Map
+        oMap.writeIFMML( oWriter );
+    }
+
 
     // **********************************************************************
     // *********************          Handlers          *********************
@@ -21,24 +21,44 @@
 package soloff.steven.ifmap;
 
 import java.awt.BorderLayout;
+import java.awt.Cursor;
 import java.awt.Event;
+import java.awt.FlowLayout;
 import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.event.KeyEvent;
+import java.beans.PropertyChangeEvent;
+import java.beans.PropertyChangeListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.swing.AbstractAction;
+import javax.swing.BorderFactory;
 import javax.swing.ButtonGroup;
+import javax.swing.JButton;
 import javax.swing.JCheckBoxMenuItem;
+import javax.swing.JDialog;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
+import javax.swing.JLabel;
 import javax.swing.JMenu;
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JProgressBar;
 import javax.swing.JRadioButtonMenuItem;
 import javax.swing.JScrollPane;
+import javax.swing.JTextArea;
+import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
 import javax.swing.UIManager;
 
 /**
@@ -48,6 +68,52 @@ import javax.swing.UIManager;
 public class IFMapView
     extends JFrame
 {
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The number of directions shown on each line of a route.
+     */
+    protected static final int ROUTE_DIRECTIONS_PER_LINE = 16;
+
+    /**
+     * The number of milliseconds between the frames of a layout being
+     * animated.
+     */
+    protected static final long LAYOUT_FRAME_MILLIS = 100;
+
+    /**
+     * The maximum number of rooms offered when finding rooms by their
+     * words.
+     */
+    protected static final int MAX_FOUND_ROOMS = 100;
+
+    /**
+     * The width, in columns, of the field in which the name of a room to
+     * go to is typed.
+     */
+    protected static final int GO_TO_FIELD_COLUMNS = 30;
+
+    /**
+     * The maximum number of lines shown by the report of a comparison or a
+     * merge.
+     */
+    protected static final int MAX_REPORT_LINES = 1000;
+
+    /**
+     * The number of rows of text shown at once by the report of a
+     * comparison or a merge.
+     */
+    protected static final int REPORT_ROWS = 20;
+
+    /**
+     * The number of columns of text shown at once by the report of a
+     * comparison or a merge.
+     */
+    protected static final int REPORT_COLUMNS = 80;
+
+
     // **********************************************************************
     // *********************     Instance Variables     *********************
     // **********************************************************************
@@ -62,6 +128,32 @@ public class IFMapView
      */
     protected MapUI m_oMapUI;
 
+    /**
+     * The field in which the name of a room to go to is typed.
+     */
+    protected JTextField m_oGoToField;
+
+    /**
+     * The room from which routes are found, or null if none has been
+     * chosen.
+     */
+    protected Room m_oRouteStart;
+
+    /**
+     * Indicates if routes may follow secret edges.
+     */
+    protected boolean m_bRouteIncludeSecret;
+
+    /**
+     * The object used to find routes; null until a route is first found.
+     */
+    protected RouteFinder m_oRouteFinder;
+
+    /**
+     * The worker computing a layout of the map, or null if none is running.
+     */
+    protected LayoutWorker m_oLayoutWorker;
+
 
     // **********************************************************************
     // *********************      Class Variables       *********************
@@ -137,11 +229,28 @@ public class IFMapView
 
     public void clear()
     {
-        // Clear the MapUI
+        // Stop any layout and clear the MapUI
+        stopLayout();
         m_oMapUI.clear();
+        m_oRouteStart = null;
         updateTitle();
     }
 
+    /**
+     * Stops the layout of the map in progress, leaving the rooms where the
+     * last frame placed them.  Does nothing if no layout is running.
+     */
+
+    public void stopLayout()
+    {
+        // Cancel the worker
+        if( m_oLayoutWorker != null )
+        {
+            m_oLayoutWorker.cancel( false );
+            m_oLayoutWorker = null;
+        }
+    }
+
     /**
      * Loads the contents of the view from the document.
      */
@@ -149,6 +258,7 @@ public class IFMapView
     public void load()
     {
         // Clear the contents of the view
+        OperationEvent oEvent = OperationEvent.begin( OperationEvent.LOAD_VIEW );
         clear();
 
         // Add each RoomUI to the view
@@ -158,6 +268,10 @@ public class IFMapView
         // Revalidate and repaint the view
         m_oMapUI.revalidate();
         m_oMapUI.repaint();
+
+        // Record the view load
+        oEvent.set( "rooms", m_oMapUI.getComponentCount() );
+        oEvent.commit();
     }
 
     /**
@@ -260,12 +374,104 @@ public class IFMapView
         }
     }
 
+    /**
+     * Prompts the user for an IFMML file and reads the Map in it without
+     * loading it into the document.
+     *
+     * @param  strTitle  The title of the dialog used to select the file.
+     *
+     * @return  The Map read, or null if the user cancelled or the file
+     *     could not be read.
+     */
+
+    private Map readMap( String strTitle )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        JFileChooser oChooser;  // Dialog used to select the file
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Prompt the user for the file
+        oChooser = new JFileChooser( m_oDocument.getFileName() );
+        oChooser.setAcceptAllFileFilterUsed( false );
+        oChooser.setFileFilter( new IFMMLFileFilter() );
+        oChooser.setDialogTitle( strTitle );
+        if( oChooser.showOpenDialog( this ) != JFileChooser.APPROVE_OPTION )
+            return( null );
+
+        // Read the Map in the file
+        setCursor( Cursor.getPredefinedCursor( Cursor.WAIT_CURSOR ) );
+        try
+        {
+            return( m_oDocument.readMap( oChooser.getSelectedFile() ) );
+        }
+        catch( Exception e )
+        {
+            JOptionPane.showMessageDialog( this,
+                IFMap.getResource( "msg.readMapFailed" ) + e.getMessage(),
+                IFMap.getResource( "app.title" ), JOptionPane.ERROR_MESSAGE );
+            return( null );
+        }
+        finally
+        {
+            setCursor( Cursor.getDefaultCursor() );
+        }
+    }
+
+    /**
+     * Shows a report of a comparison or a merge, a heading followed by a
+     * line for each change or conflict, of which only the first
+     * MAX_REPORT_LINES are shown.
+     *
+     * @param  strTitle  The title of the report.
+     * @param  strHeading  The heading of the report.
+     * @param  alLines  The objects whose text forms the lines.
+     */
+
+    private void showReport( String strTitle, String strHeading, List<?> alLines )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        StringBuilder sb;        // Text of the report
+        JTextArea     oTextArea; // Area that shows the lines
+        int           nI;        // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Put each line of the report in a scrolled text area
+        sb = new StringBuilder();
+        for( nI = 0; nI < alLines.size() && nI < MAX_REPORT_LINES; nI++ )
+            sb.append( alLines.get( nI ) ).append( '\n' );
+        if( alLines.size() > MAX_REPORT_LINES )
+            sb.append( "..." );
+        oTextArea = new JTextArea( sb.toString(), REPORT_ROWS, REPORT_COLUMNS );
+        oTextArea.setEditable( false );
+        oTextArea.setCaretPosition( 0 );
+
+        // Show the heading and the lines
+        JOptionPane.showMessageDialog( this, new Object[] { strHeading, new JScrollPane( oTextArea ) },
+            strTitle, JOptionPane.INFORMATION_MESSAGE );
+    }
+
     /**
      * Initializes the layout of the components within the frame.
      */
 
     private void initLayout()
     {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        JPanel oGoToPanel;  // Panel holding the go to field
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
         // Initialize generic layout parameters
         setLocation( Integer.parseInt( IFMap.getProperty( IFMap.PROP_WINDOW_X ) ),
             Integer.parseInt( IFMap.getProperty( IFMap.PROP_WINDOW_Y ) ) );
@@ -279,6 +485,14 @@ public class IFMapView
         m_oMapUI = new MapUI( m_oDocument.m_oMap );
         getContentPane().add( new JScrollPane( m_oMapUI ), BorderLayout.CENTER );
 
+        // Create the box in which the name of a room to go to is typed
+        oGoToPanel = new JPanel( new FlowLayout( FlowLayout.LEADING ) );
+        oGoToPanel.add( new JLabel( IFMap.getResource( "goToRoom.label" ) ) );
+        m_oGoToField = new JTextField( GO_TO_FIELD_COLUMNS );
+        m_oGoToField.addActionListener( new GoToRoomAction() );
+        oGoToPanel.add( m_oGoToField );
+        getContentPane().add( oGoToPanel, BorderLayout.NORTH );
+
         // Create the menu
         setJMenuBar( new IFMapView.MenuBar() );
     }
@@ -307,12 +521,12 @@ public class IFMapView
         /**
          * Index of the first MRU menu item on the File menu.
          */
-        public static final int MENUITEM_MRU_FIRST = 5;
+        public static final int MENUITEM_MRU_FIRST = 9;
 
         /**
          * Index of the last MRU menu item on the File menu.
          */
-        public static final int MENUITEM_MRU_LAST = 8;
+        public static final int MENUITEM_MRU_LAST = 12;
 
 
         // ------------------------------------------------------------------
@@ -376,6 +590,19 @@ public class IFMapView
             oMenuItem.setMnemonic( IFMap.getResource( "menu.file.saveAs.shortcut" ).charAt( 0 ) );
             oMenuItem.addActionListener( new SaveFileAction( true ) );
             oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.file.exportImage.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.file.exportImage.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new ExportImageAction() );
+            oMenu.add( oMenuItem );
+            oMenu.addSeparator();
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.file.compare.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.file.compare.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new CompareFileAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.file.merge.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.file.merge.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new MergeFileAction() );
+            oMenu.add( oMenuItem );
             oMenu.addSeparator();
             oMenuItem = new JMenuItem( "1 " + IFMap.getProperty( IFMap.PROP_FILE_MRU1 ) );
             oMenuItem.setMnemonic( '1' );
@@ -423,6 +650,21 @@ public class IFMapView
             oMenuItem.setAccelerator( KeyStroke.getKeyStroke( KeyEvent.VK_DELETE, 0 ) );
             oMenuItem.addActionListener( new DeleteObjectAction() );
             oMenu.add( oMenuItem );
+            oMenu.addSeparator();
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.edit.findRoom.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.edit.findRoom.shortcut" ).charAt( 0 ) );
+            oMenuItem.setAccelerator( KeyStroke.getKeyStroke(
+                (int)IFMap.getResource( "menu.edit.findRoom.accel" ).charAt( 0 ),
+                Event.CTRL_MASK ) );
+            oMenuItem.addActionListener( new FindRoomAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.edit.goToRoom.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.edit.goToRoom.shortcut" ).charAt( 0 ) );
+            oMenuItem.setAccelerator( KeyStroke.getKeyStroke(
+                (int)IFMap.getResource( "menu.edit.goToRoom.accel" ).charAt( 0 ),
+                Event.CTRL_MASK ) );
+            oMenuItem.addActionListener( new FocusGoToFieldAction() );
+            oMenu.add( oMenuItem );
             add( oMenu );
 
             // Create the View->LookAndFeel popup menu
@@ -462,6 +704,67 @@ public class IFMapView
                 Event.CTRL_MASK | Event.ALT_MASK ) );
             oMenuItem.addActionListener( new ToggleGroupMoveAction() );
             oMenu.add( oMenuItem );
+            oMenuItem = new JCheckBoxMenuItem( IFMap.getResource( "menu.view.routeEdges.label" ), m_oMapUI.isEdgeRoutingEnabled() );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.view.routeEdges.shortcut" ).charAt( 0 ) );
+            oMenuItem.setAccelerator( KeyStroke.getKeyStroke(
+                (int)IFMap.getResource( "menu.view.routeEdges.accel" ).charAt( 0 ),
+                Event.CTRL_MASK | Event.ALT_MASK ) );
+            oMenuItem.addActionListener( new ToggleEdgeRoutingAction() );
+            oMenu.add( oMenuItem );
+            add( oMenu );
+
+            // Create the Layout menu
+            oMenu = new JMenu( IFMap.getResource( "menu.layout.label" ) );
+            oMenu.setMnemonic( IFMap.getResource( "menu.layout.shortcut" ).charAt( 0 ) );
+            oMenu.addItemListener( new LayoutMenuItemListener() );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.layout.force.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.layout.force.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new ForceLayoutAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.layout.compass.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.layout.compass.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new CompassLayoutAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.layout.separate.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.layout.separate.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new SeparateRoomsAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.layout.stop.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.layout.stop.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new StopLayoutAction() );
+            oMenu.add( oMenuItem );
+            add( oMenu );
+
+            // Create the Route menu
+            oMenu = new JMenu( IFMap.getResource( "menu.route.label" ) );
+            oMenu.setMnemonic( IFMap.getResource( "menu.route.shortcut" ).charAt( 0 ) );
+            oMenu.addItemListener( new RouteMenuItemListener() );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.route.from.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.route.from.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new RouteFromRoomAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.route.to.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.route.to.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new RouteToRoomAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.route.clear.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.route.clear.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new ClearRouteAction() );
+            oMenu.add( oMenuItem );
+            oMenu.addSeparator();
+            oMenuItem = new JMenuItem( IFMap.getResource( "menu.route.startRoom.label" ) );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.route.startRoom.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new SetStartRoomAction() );
+            oMenu.add( oMenuItem );
+            oMenuItem = new JCheckBoxMenuItem( IFMap.getResource( "menu.route.shade.label" ), false );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.route.shade.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new ToggleReachabilityAction() );
+            oMenu.add( oMenuItem );
+            oMenu.addSeparator();
+            oMenuItem = new JCheckBoxMenuItem( IFMap.getResource( "menu.route.secret.label" ), m_bRouteIncludeSecret );
+            oMenuItem.setMnemonic( IFMap.getResource( "menu.route.secret.shortcut" ).charAt( 0 ) );
+            oMenuItem.addActionListener( new ToggleRouteSecretAction() );
+            oMenu.add( oMenuItem );
             add( oMenu );
 
             // Create the Help menu
@@ -518,6 +821,67 @@ public class IFMapView
         }
     }
 
+    /**
+     * The class that updates the state of items on the Layout menu.
+     */
+
+    protected class LayoutMenuItemListener
+        extends Object
+        implements ItemListener
+    {
+        // ------------------------------------------------------------------
+        // -----------------    ItemListener Methods    ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ItemListener#itemStateChanged  itemStateChanged
+         */
+
+        public void itemStateChanged( ItemEvent evt )
+        {
+            // A layout can only be stopped while one is running
+            JMenu oMenu = (JMenu)evt.getItem();
+            oMenu.getItem( 3 ).setEnabled( m_oLayoutWorker != null );
+        }
+    }
+
+    /**
+     * The class that updates the state of items on the Route menu.
+     */
+
+    protected class RouteMenuItemListener
+        extends Object
+        implements ItemListener
+    {
+        // ------------------------------------------------------------------
+        // -----------------    ItemListener Methods    ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ItemListener#itemStateChanged  itemStateChanged
+         */
+
+        public void itemStateChanged( ItemEvent evt )
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            JMenu                oMenu;       // The Menu that fired the event
+            JCheckBoxMenuItem    oShadeItem;  // The Shade Unreachable Rooms item
+            ReachabilityAnalyzer oAnalyzer;   // Analyzer of the MapUI
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Shading can only be turned on once a start room has been set
+            oMenu = (JMenu)evt.getItem();
+            oShadeItem = (JCheckBoxMenuItem)oMenu.getItem( 5 );
+            oAnalyzer = m_oMapUI.getReachabilityAnalyzer();
+            oShadeItem.setEnabled( oAnalyzer != null && oAnalyzer.getStartRoom() != null );
+            oShadeItem.setSelected( m_oMapUI.isReachabilityShaded() );
+        }
+    }
+
 
     // **********************************************************************
     // *********************          Actions           *********************
@@ -724,22 +1088,13 @@ public class IFMapView
     }
 
     /**
-     * The class that implements the action to open a file from the MRU list.
+     * The class that implements the action to export the map to an image
+     * file.
      */
 
-    protected class OpenMRUAction
+    protected class ExportImageAction
         extends AbstractAction
     {
-        // ------------------------------------------------------------------
-        // -----------------     Instance Variables     ---------------------
-        // ------------------------------------------------------------------
-
-        /**
-         * The absolute path name of the MRU file associated with this action.
-         */
-        String m_strFilePath;
-
-
         // ------------------------------------------------------------------
         // -----------------       Class Variables      ---------------------
         // ------------------------------------------------------------------
@@ -747,7 +1102,7 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = -8161525765615980095L;
+        private static final long serialVersionUID = 3158245920741186307L;
 
 
         // ------------------------------------------------------------------
@@ -755,19 +1110,13 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new OpenMRUAction.
-         *
-         * @param  strFilePath  The absolute path name of the MRU file
-         *     associated with this action.
+         * Constructs a new ExportImageAction.
          */
 
-        OpenMRUAction( String strFilePath )
+        ExportImageAction()
         {
             // Call base class implementation
-            super( "OpenMRU" );
-
-            // Initialize instance variables
-            m_strFilePath = strFilePath;
+            super( "ExportImage" );
         }
 
 
@@ -781,18 +1130,65 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Load the selected file into the document and refresh the view
-            m_oDocument.load( m_strFilePath );
-            IFMapView.this.load();
-            IFMapView.this.addMRUFile( m_strFilePath );
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            JFileChooser oChooser;       // Dialog used to select filename
+            File         oFile;          // File to which the image is exported
+            String       strResolution;  // Resolution entered by the user
+            int          nResolution;    // Resolution of the image
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Make sure the map has something to export
+            if( m_oDocument.m_oMap.m_oRoomMap.isEmpty() )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.emptyMapImage" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.ERROR_MESSAGE );
+                return;
+            }
+
+            // Prompt the user for the name of the image file
+            oChooser = new JFileChooser();
+            if( oChooser.showSaveDialog( IFMapView.this ) != JFileChooser.APPROVE_OPTION )
+                return;
+            oFile = oChooser.getSelectedFile();
+            if( !oFile.getName().toLowerCase().endsWith( ".png" ) )
+                oFile = new File( oFile.getPath() + ".png" );
+
+            // Prompt the user for the resolution of the image
+            strResolution = JOptionPane.showInputDialog( IFMapView.this,
+                IFMap.getResource( "exportImage.resolution.prompt" ),
+                Integer.toString( MapImageExporter.BASE_RESOLUTION ) );
+            if( strResolution == null )
+                return;
+            try
+            {
+                nResolution = Integer.parseInt( strResolution.trim() );
+                if( nResolution < 1 )
+                    throw new NumberFormatException();
+            }
+            catch( NumberFormatException e )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.badImageResolution" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.ERROR_MESSAGE );
+                return;
+            }
+
+            // Export the image in the background
+            new ExportImageWorker( oFile, nResolution ).exportImage();
         }
     }
 
     /**
-     * The class that implements the action to exit the application.
+     * The class that implements the action to compare the document with
+     * an earlier or other copy of the map in a file.
      */
 
-    protected class ExitAction
+    protected class CompareFileAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
@@ -802,7 +1198,7 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = 6848421657908990513L;
+        private static final long serialVersionUID = -6148317252409617825L;
 
 
         // ------------------------------------------------------------------
@@ -810,13 +1206,13 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new ExitAction.
+         * Constructs a new CompareFileAction.
          */
 
-        ExitAction()
+        CompareFileAction()
         {
             // Call base class implementation
-            super( "Exit" );
+            super( "CompareFile" );
         }
 
 
@@ -830,16 +1226,45 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Dispose of the view
-            dispose();
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            Map               oMap;      // Map the document is compared with
+            MapDiff           oDiff;     // Changes that turn it into the document
+            ArrayList<Object> alLines;   // Changes listed by the report
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Read the map to compare the document with
+            oMap = readMap( IFMap.getResource( "compareMaps.choose" ) );
+            if( oMap == null )
+                return;
+
+            // Find the changes that turn the map into the document
+            oDiff = new MapDiff( oMap, m_oDocument.m_oMap );
+            if( oDiff.isEmpty() )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.mapsSame" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+
+            // List the changes
+            alLines = new ArrayList<Object>( oDiff.getRoomChanges() );
+            alLines.addAll( oDiff.getEdgeChanges() );
+            showReport( IFMap.getResource( "compareMaps.title" ), oDiff.getSummary(), alLines );
         }
     }
 
     /**
-     * The class that implements the action to insert a room onto the map.
+     * The class that implements the action to merge into the document the
+     * changes made to another copy of the map since both were copied from
+     * a common ancestor.
      */
 
-    protected class InsertRoomAction
+    protected class MergeFileAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
@@ -849,7 +1274,7 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = -6684298387243293948L;
+        private static final long serialVersionUID = 2739510846627394155L;
 
 
         // ------------------------------------------------------------------
@@ -857,13 +1282,13 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new InsertRoomAction.
+         * Constructs a new MergeFileAction.
          */
 
-        InsertRoomAction()
+        MergeFileAction()
         {
             // Call base class implementation
-            super( "InsertRoom" );
+            super( "MergeFile" );
         }
 
 
@@ -877,26 +1302,69 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Insert a new Room
-            m_oMapUI.createRoom();
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            Map      oBaseMap,    // Common ancestor of both copies
+                     oTheirMap;   // Other copy whose changes are merged
+            MapMerge oMerge;      // Merge of the changes
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Read the common ancestor and the other copy
+            oBaseMap = readMap( IFMap.getResource( "mergeMaps.chooseBase" ) );
+            if( oBaseMap == null )
+                return;
+            oTheirMap = readMap( IFMap.getResource( "mergeMaps.chooseTheirs" ) );
+            if( oTheirMap == null )
+                return;
+
+            // Merge the changes of the other copy into the document, keeping
+            // new IDs clear of those of all three maps, and refresh the view
+            oMerge = new MapMerge( oBaseMap, m_oDocument.m_oMap, oTheirMap );
+            m_oDocument.m_oMap.replace( oMerge.getMergedMap() );
+            Room.setNextRoomID( Math.max( Room.getNextRoomID(), oMerge.getNextRoomID() ) );
+            Edge.setNextEdgeID( Math.max( Edge.getNextEdgeID(), oMerge.getNextEdgeID() ) );
+            IFMapView.this.load();
+
+            // Report the conflicts
+            if( oMerge.getConflicts().isEmpty() )
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.mergedWithoutConflicts" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+            else
+                showReport( IFMap.getResource( "mergeMaps.title" ),
+                    oMerge.getConflicts().size() + " " + IFMap.getResource( "mergeMaps.conflicts" ),
+                    oMerge.getConflicts() );
         }
     }
 
     /**
-     * The class that implements the action to edit an object on the map.
+     * The class that implements the action to open a file from the MRU list.
      */
 
-    protected class EditObjectAction
+    protected class OpenMRUAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
-        // -----------------       Class Variables      ---------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The absolute path name of the MRU file associated with this action.
+         */
+        String m_strFilePath;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
         // ------------------------------------------------------------------
 
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = -6917886564447854051L;
+        private static final long serialVersionUID = -8161525765615980095L;
 
 
         // ------------------------------------------------------------------
@@ -904,13 +1372,19 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new EditObjectAction.
+         * Constructs a new OpenMRUAction.
+         *
+         * @param  strFilePath  The absolute path name of the MRU file
+         *     associated with this action.
          */
 
-        EditObjectAction()
+        OpenMRUAction( String strFilePath )
         {
             // Call base class implementation
-            super( "EditObject" );
+            super( "OpenMRU" );
+
+            // Initialize instance variables
+            m_strFilePath = strFilePath;
         }
 
 
@@ -924,16 +1398,18 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Edit the active component in the MapUI
-            m_oMapUI.editActiveComponent();
+            // Load the selected file into the document and refresh the view
+            m_oDocument.load( m_strFilePath );
+            IFMapView.this.load();
+            IFMapView.this.addMRUFile( m_strFilePath );
         }
     }
 
     /**
-     * The class that implements the action to delete an object on the map.
+     * The class that implements the action to exit the application.
      */
 
-    protected class DeleteObjectAction
+    protected class ExitAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
@@ -943,7 +1419,7 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = 18100730483104851L;
+        private static final long serialVersionUID = 6848421657908990513L;
 
 
         // ------------------------------------------------------------------
@@ -951,13 +1427,13 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new DeleteObjectAction.
+         * Constructs a new ExitAction.
          */
 
-        DeleteObjectAction()
+        ExitAction()
         {
             // Call base class implementation
-            super( "DeleteObject" );
+            super( "Exit" );
         }
 
 
@@ -971,29 +1447,65 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Delete the active component in the MapUI
-            m_oMapUI.deleteActiveComponent();
+            // Dispose of the view
+            dispose();
         }
     }
 
     /**
-     * The class that implements the action to change the Look & Feel of the
-     * application.
+     * The class that implements the action to insert a room onto the map.
      */
 
-    protected class ChangeLookAndFeelAction
+    protected class InsertRoomAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
-        // -----------------     Instance Variables     ---------------------
+        // -----------------       Class Variables      ---------------------
         // ------------------------------------------------------------------
 
         /**
-         * The class name of the L&F associated with this action.
+         * Serializable class version number.
          */
-        String m_strLookAndFeel;
+        private static final long serialVersionUID = -6684298387243293948L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new InsertRoomAction.
+         */
+
+        InsertRoomAction()
+        {
+            // Call base class implementation
+            super( "InsertRoom" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Insert a new Room
+            m_oMapUI.createRoom();
+        }
+    }
 
+    /**
+     * The class that implements the action to edit an object on the map.
+     */
 
+    protected class EditObjectAction
+        extends AbstractAction
+    {
         // ------------------------------------------------------------------
         // -----------------       Class Variables      ---------------------
         // ------------------------------------------------------------------
@@ -1001,7 +1513,7 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = -436550997055437481L;
+        private static final long serialVersionUID = -6917886564447854051L;
 
 
         // ------------------------------------------------------------------
@@ -1009,19 +1521,60 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new ChangeLookAndFeelAction.
-         *
-         * @param  strLookAndFeel  The class name of the L&F associated with
-         *     this action.
+         * Constructs a new EditObjectAction.
          */
 
-        ChangeLookAndFeelAction( String strLookAndFeel )
+        EditObjectAction()
         {
             // Call base class implementation
-            super( "ChangeLookAndFeel" );
+            super( "EditObject" );
+        }
 
-            // Initialize instance variables
-            m_strLookAndFeel = strLookAndFeel;
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Edit the active component in the MapUI
+            m_oMapUI.editActiveComponent();
+        }
+    }
+
+    /**
+     * The class that implements the action to delete an object on the map.
+     */
+
+    protected class DeleteObjectAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 18100730483104851L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new DeleteObjectAction.
+         */
+
+        DeleteObjectAction()
+        {
+            // Call base class implementation
+            super( "DeleteObject" );
         }
 
 
@@ -1035,29 +1588,17 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            try
-            {
-                // Set the new look and feel
-                if( !c_strCurrentLookAndFeel.equals( m_strLookAndFeel ) )
-                {
-                    UIManager.setLookAndFeel( m_strLookAndFeel );
-                    SwingUtilities.updateComponentTreeUI( IFMapView.this );
-                    c_strCurrentLookAndFeel = m_strLookAndFeel;
-                }
-            }
-            catch( Exception e )
-            {
-                System.out.println( "Failed to load L&F: " + m_strLookAndFeel );
-                System.out.println( e );
-            }
+            // Delete the active component in the MapUI
+            m_oMapUI.deleteActiveComponent();
         }
     }
 
     /**
-     * The class that implements the action to toggle the grid in the view.
+     * The class that implements the action to find the rooms whose name or
+     * description contains given words and show one of them.
      */
 
-    protected class ToggleGridAction
+    protected class FindRoomAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
@@ -1067,7 +1608,17 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = 768345438838330031L;
+        private static final long serialVersionUID = 5127708364719630298L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The words last found, offered again the next time.
+         */
+        private String m_strQuery;
 
 
         // ------------------------------------------------------------------
@@ -1075,13 +1626,16 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new ToggleGridAction.
+         * Constructs a new FindRoomAction.
          */
 
-        ToggleGridAction()
+        FindRoomAction()
         {
             // Call base class implementation
-            super( "ToggleGrid" );
+            super( "FindRoom" );
+
+            // Initialize instance variables
+            m_strQuery = "";
         }
 
 
@@ -1095,17 +1649,63 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Toggle the grid setting
-            m_oMapUI.enableGrid( !m_oMapUI.isGridEnabled() );
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            String   strQuery;   // Words entered by the user
+            Room[]   aoRooms;    // Rooms that contain the words
+            String[] astrRooms;  // Names of the rooms offered
+            Object   oChoice;    // Name of the room chosen
+            int      nRoom,      // Index of the room shown
+                     nI;         // Loop control
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Prompt the user for the words to find
+            strQuery = JOptionPane.showInputDialog( IFMapView.this,
+                IFMap.getResource( "findRoom.prompt" ), m_strQuery );
+            if( strQuery == null || strQuery.trim().length() == 0 )
+                return;
+            m_strQuery = strQuery;
+
+            // Find the rooms that contain the words
+            aoRooms = m_oDocument.m_oMap.getTextIndex().find( strQuery, MAX_FOUND_ROOMS );
+            if( aoRooms.length == 0 )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.noRoomsFound" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+
+            // Let the user choose the room to show if more than one was found
+            nRoom = 0;
+            if( aoRooms.length > 1 )
+            {
+                astrRooms = new String[ aoRooms.length ];
+                for( nI = 0; nI < aoRooms.length; nI++ )
+                    astrRooms[ nI ] = aoRooms[ nI ].getName() + " (" + aoRooms[ nI ].getID() + ")";
+                oChoice = JOptionPane.showInputDialog( IFMapView.this,
+                    IFMap.getResource( "findRoom.choose" ), IFMap.getResource( "app.title" ),
+                    JOptionPane.QUESTION_MESSAGE, null, astrRooms, astrRooms[ 0 ] );
+                if( oChoice == null )
+                    return;
+                while( astrRooms[ nRoom ] != oChoice )
+                    nRoom++;
+            }
+
+            // Scroll to the room and select it
+            m_oMapUI.showRoom( aoRooms[ nRoom ] );
         }
     }
 
     /**
-     * The class that implements the action to toggle group movement in the
-     * view.
+     * The class that implements the action to move the keyboard focus to
+     * the field in which the name of a room to go to is typed.
      */
 
-    protected class ToggleGroupMoveAction
+    protected class FocusGoToFieldAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
@@ -1115,7 +1715,7 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = 2999019747374571510L;
+        private static final long serialVersionUID = -2736105832470982216L;
 
 
         // ------------------------------------------------------------------
@@ -1123,13 +1723,13 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new ToggleGroupMoveAction.
+         * Constructs a new FocusGoToFieldAction.
          */
 
-        ToggleGroupMoveAction()
+        FocusGoToFieldAction()
         {
             // Call base class implementation
-            super( "ToggleGroupMove" );
+            super( "FocusGoToField" );
         }
 
 
@@ -1143,16 +1743,19 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Toggle the group movement setting
-            m_oMapUI.enableGroupMove( !m_oMapUI.isGroupMoveEnabled() );
+            // Focus the field and select its text so it may be typed over
+            m_oGoToField.requestFocusInWindow();
+            m_oGoToField.selectAll();
         }
     }
 
     /**
-     * The class that implements the action to view the About dialog.
+     * The class that implements the action to go to the room whose name is
+     * most like the name typed in the go to field.  Going to the same name
+     * again goes to the next closest room.
      */
 
-    protected class AboutAction
+    protected class GoToRoomAction
         extends AbstractAction
     {
         // ------------------------------------------------------------------
@@ -1162,7 +1765,27 @@ public class IFMapView
         /**
          * Serializable class version number.
          */
-        private static final long serialVersionUID = -1967979928779718104L;
+        private static final long serialVersionUID = 4458802967145301337L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The name last gone to; null if none.
+         */
+        private String m_strName;
+
+        /**
+         * The rooms found for the name last gone to, closest first.
+         */
+        private NameIndex.Match[] m_aoMatches;
+
+        /**
+         * The position in m_aoMatches of the room to go to next.
+         */
+        private int m_nNext;
 
 
         // ------------------------------------------------------------------
@@ -1170,13 +1793,18 @@ public class IFMapView
         // ------------------------------------------------------------------
 
         /**
-         * Constructs a new AboutAction.
+         * Constructs a new GoToRoomAction.
          */
 
-        AboutAction()
+        GoToRoomAction()
         {
             // Call base class implementation
-            super( "About" );
+            super( "GoToRoom" );
+
+            // Initialize instance variables
+            m_strName = null;
+            m_aoMatches = null;
+            m_nNext = 0;
         }
 
 
@@ -1190,11 +1818,1282 @@ public class IFMapView
 
         public void actionPerformed( ActionEvent evt )
         {
-            // Display the About dialog
-            JOptionPane.showMessageDialog( IFMapView.this,
-                IFMap.getResource( "aboutDialog.message" ),
-                IFMap.getResource( "aboutDialog.title" ), JOptionPane.OK_OPTION,
-                IFMap.createImageIcon( "icon.png" ) );
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            String strName;  // Name typed by the user
+            Room   oRoom;    // Room gone to
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Make sure a name was typed
+            strName = m_oGoToField.getText();
+            if( strName.trim().length() == 0 )
+                return;
+
+            // Find the rooms with names like the name, unless it is the name
+            // last gone to and all the rooms found are still on the map
+            if( !strName.equals( m_strName ) || !isMatchValid() )
+            {
+                m_strName = strName;
+                m_aoMatches = m_oDocument.m_oMap.getNameIndex().find( strName, MAX_FOUND_ROOMS );
+                m_nNext = 0;
+            }
+            if( m_aoMatches.length == 0 )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.noRoomNamed" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+
+            // Go to the next room found
+            oRoom = m_aoMatches[ m_nNext ].getRoom();
+            m_nNext = (m_nNext + 1) % m_aoMatches.length;
+            m_oMapUI.showRoom( oRoom );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Private Instance Methods  ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Indicates if the next room found is still on the map.
+         *
+         * @return  A flag indicating if the next room may be gone to.
+         */
+
+        private boolean isMatchValid()
+        {
+            // Look up the room on the map
+            if( m_aoMatches == null || m_aoMatches.length == 0 )
+                return( false );
+            Room oRoom = m_aoMatches[ m_nNext ].getRoom();
+            return( m_oDocument.m_oMap.getRoom( oRoom.getID() ) == oRoom );
+        }
+    }
+
+    /**
+     * The class that implements the action to change the Look & Feel of the
+     * application.
+     */
+
+    protected class ChangeLookAndFeelAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The class name of the L&F associated with this action.
+         */
+        String m_strLookAndFeel;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -436550997055437481L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ChangeLookAndFeelAction.
+         *
+         * @param  strLookAndFeel  The class name of the L&F associated with
+         *     this action.
+         */
+
+        ChangeLookAndFeelAction( String strLookAndFeel )
+        {
+            // Call base class implementation
+            super( "ChangeLookAndFeel" );
+
+            // Initialize instance variables
+            m_strLookAndFeel = strLookAndFeel;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            try
+            {
+                // Set the new look and feel
+                if( !c_strCurrentLookAndFeel.equals( m_strLookAndFeel ) )
+                {
+                    UIManager.setLookAndFeel( m_strLookAndFeel );
+                    SwingUtilities.updateComponentTreeUI( IFMapView.this );
+                    c_strCurrentLookAndFeel = m_strLookAndFeel;
+                }
+            }
+            catch( Exception e )
+            {
+                System.out.println( "Failed to load L&F: " + m_strLookAndFeel );
+                System.out.println( e );
+            }
+        }
+    }
+
+    /**
+     * The class that implements the action to toggle the grid in the view.
+     */
+
+    protected class ToggleGridAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 768345438838330031L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ToggleGridAction.
+         */
+
+        ToggleGridAction()
+        {
+            // Call base class implementation
+            super( "ToggleGrid" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Toggle the grid setting
+            m_oMapUI.enableGrid( !m_oMapUI.isGridEnabled() );
+        }
+    }
+
+    /**
+     * The class that implements the action to toggle group movement in the
+     * view.
+     */
+
+    protected class ToggleGroupMoveAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 2999019747374571510L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ToggleGroupMoveAction.
+         */
+
+        ToggleGroupMoveAction()
+        {
+            // Call base class implementation
+            super( "ToggleGroupMove" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Toggle the group movement setting
+            m_oMapUI.enableGroupMove( !m_oMapUI.isGroupMoveEnabled() );
+        }
+    }
+
+    /**
+     * The class that implements the action to toggle the edge routing
+     * setting.
+     */
+
+    protected class ToggleEdgeRoutingAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -1864033227901469714L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ToggleEdgeRoutingAction.
+         */
+
+        ToggleEdgeRoutingAction()
+        {
+            // Call base class implementation
+            super( "ToggleEdgeRouting" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Toggle the edge routing setting
+            m_oMapUI.enableEdgeRouting( !m_oMapUI.isEdgeRoutingEnabled() );
+        }
+    }
+
+    /**
+     * The class that implements the action to choose the selected room as the
+     * room from which routes are found.
+     */
+
+    protected class RouteFromRoomAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -3862061744905437411L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new RouteFromRoomAction.
+         */
+
+        RouteFromRoomAction()
+        {
+            // Call base class implementation
+            super( "RouteFromRoom" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Make sure a room is selected
+            Room oRoom = m_oMapUI.getActiveRoom();
+            if( oRoom == null )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.selectRoom" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+
+            // Find routes from the room
+            m_oRouteStart = oRoom;
+        }
+    }
+
+    /**
+     * The class that implements the action to find and highlight the route
+     * from the chosen room to the selected room.
+     */
+
+    protected class RouteToRoomAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 7215983270531948126L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new RouteToRoomAction.
+         */
+
+        RouteToRoomAction()
+        {
+            // Call base class implementation
+            super( "RouteToRoom" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            Room          oRoom;    // The room the route ends at
+            Route         oRoute;   // The route found
+            StringBuilder sb;       // The directions of the route
+            int           nI;       // Loop control variable
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Make sure the route has both a start and an end
+            oRoom = m_oMapUI.getActiveRoom();
+            if( m_oRouteStart == null || m_oDocument.m_oMap.getRoom( m_oRouteStart.getID() ) != m_oRouteStart )
+            {
+                m_oRouteStart = null;
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.selectRouteStart" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+            if( oRoom == null )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.selectRoom" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+
+            // Find the route
+            if( m_oRouteFinder == null )
+                m_oRouteFinder = new RouteFinder( m_oDocument.m_oMap );
+            oRoute = m_oRouteFinder.findRoute( m_oRouteStart, oRoom, m_bRouteIncludeSecret );
+            m_oMapUI.setRoute( oRoute );
+            if( oRoute == null )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.noRoute" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+
+            // Display the directions, a line at a time
+            sb = new StringBuilder();
+            sb.append( m_oRouteStart.getName() ).append( " - " ).append( oRoom.getName() );
+            sb.append( " (" ).append( oRoute.getLength() ).append( ' ' );
+            sb.append( IFMap.getResource( "route.moves" ) ).append( ")" );
+            for( nI = 0; nI < oRoute.getLength(); nI++ )
+            {
+                sb.append( nI % ROUTE_DIRECTIONS_PER_LINE == 0 ? '\n' : ' ' );
+                sb.append( Room.getExitName( oRoute.getExit( nI ) ) );
+            }
+            JOptionPane.showMessageDialog( IFMapView.this, sb.toString(),
+                IFMap.getResource( "route.title" ), JOptionPane.INFORMATION_MESSAGE );
+        }
+    }
+
+    /**
+     * The class that implements the action to remove the highlighted route.
+     */
+
+    protected class ClearRouteAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 2634180719442805373L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ClearRouteAction.
+         */
+
+        ClearRouteAction()
+        {
+            // Call base class implementation
+            super( "ClearRoute" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Remove the highlighted route
+            m_oMapUI.setRoute( null );
+        }
+    }
+
+    /**
+     * The class that implements the action to toggle whether routes may
+     * follow secret edges.
+     */
+
+    protected class ToggleRouteSecretAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -5569204338013626790L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ToggleRouteSecretAction.
+         */
+
+        ToggleRouteSecretAction()
+        {
+            // Call base class implementation
+            super( "ToggleRouteSecret" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Toggle the secret edge setting, and shade reachability under
+            // the new setting
+            m_bRouteIncludeSecret = !m_bRouteIncludeSecret;
+            if( m_oMapUI.getReachabilityAnalyzer() != null )
+            {
+                m_oMapUI.getReachabilityAnalyzer().setSecretIncluded( m_bRouteIncludeSecret );
+                m_oMapUI.setReachabilityShaded( m_oMapUI.isReachabilityShaded() );
+            }
+        }
+    }
+
+    /**
+     * The class that implements the action to measure reachability from
+     * the selected room and shade the rooms that cannot be reached from it.
+     */
+
+    protected class SetStartRoomAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 3408612927330964517L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new SetStartRoomAction.
+         */
+
+        SetStartRoomAction()
+        {
+            // Call base class implementation
+            super( "SetStartRoom" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Make sure a room is selected
+            Room oRoom = m_oMapUI.getActiveRoom();
+            if( oRoom == null )
+            {
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.selectRoom" ),
+                    IFMap.getResource( "app.title" ), JOptionPane.INFORMATION_MESSAGE );
+                return;
+            }
+
+            // Measure reachability from the room
+            m_oMapUI.setStartRoom( oRoom, m_bRouteIncludeSecret );
+        }
+    }
+
+    /**
+     * The class that implements the action to toggle whether rooms that
+     * cannot be reached from the start room are shaded.
+     */
+
+    protected class ToggleReachabilityAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -7710380539127385316L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ToggleReachabilityAction.
+         */
+
+        ToggleReachabilityAction()
+        {
+            // Call base class implementation
+            super( "ToggleReachability" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Toggle the shading of reachability
+            m_oMapUI.setReachabilityShaded( !m_oMapUI.isReachabilityShaded() );
+        }
+    }
+
+    /**
+     * The class that implements the action to lay out the map with a
+     * force-directed layout, animating the rooms as they move.
+     */
+
+    protected class ForceLayoutAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 3390611486301954972L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ForceLayoutAction.
+         */
+
+        ForceLayoutAction()
+        {
+            // Call base class implementation
+            super( "ForceLayout" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Replace any layout in progress with one from the current
+            // positions, snapped to the grid if the grid is enabled
+            stopLayout();
+            ForceLayout oLayout = new ForceLayout( m_oMapUI.m_oMap );
+            oLayout.setSnapToGrid( m_oMapUI.isGridEnabled() );
+            m_oLayoutWorker = new LayoutWorker( oLayout );
+            m_oLayoutWorker.execute();
+        }
+    }
+
+    /**
+     * The class that implements the action to lay out the map on a grid so
+     * that edges point the way their exits say.
+     */
+
+    protected class CompassLayoutAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 6021487145592387231L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new CompassLayoutAction.
+         */
+
+        CompassLayoutAction()
+        {
+            // Call base class implementation
+            super( "CompassLayout" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            CompassLayout  oLayout;  // Layout of the map
+            OperationEvent oEvent;   // Event recording the layout
+            int[]          anX,      // Horizontal location of each room
+                           anY;      // Vertical location of each room
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Replace any layout in progress; the compass layout is fast
+            // enough to compute here
+            stopLayout();
+            setCursor( Cursor.getPredefinedCursor( Cursor.WAIT_CURSOR ) );
+            try
+            {
+                oEvent = OperationEvent.begin( OperationEvent.COMPASS_LAYOUT );
+                oLayout = new CompassLayout( m_oMapUI.m_oMap );
+                oLayout.run();
+                anX = new int[ oLayout.getRooms().length ];
+                anY = new int[ anX.length ];
+                oLayout.getLocations( anX, anY );
+                oEvent.set( "rooms", anX.length );
+                oEvent.set( "components", oLayout.getComponentCount() );
+                oEvent.set( "constrained", oLayout.getConstrainedCount() );
+                oEvent.set( "satisfied", oLayout.getSatisfiedCount() );
+                oEvent.commit();
+
+                // Move the rooms
+                m_oMapUI.setRoomLocations( oLayout.getRooms(), anX, anY );
+            }
+            finally
+            {
+                setCursor( Cursor.getDefaultCursor() );
+            }
+        }
+    }
+
+    /**
+     * The class that implements the action to push overlapping rooms apart.
+     */
+
+    protected class SeparateRoomsAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -3182250618394016377L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new SeparateRoomsAction.
+         */
+
+        SeparateRoomsAction()
+        {
+            // Call base class implementation
+            super( "SeparateRooms" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // A layout in progress would move the rooms back; separating the
+            // rooms is fast enough to compute here
+            stopLayout();
+            setCursor( Cursor.getPredefinedCursor( Cursor.WAIT_CURSOR ) );
+            try
+            {
+                m_oMapUI.separateRooms();
+            }
+            finally
+            {
+                setCursor( Cursor.getDefaultCursor() );
+            }
+        }
+    }
+
+    /**
+     * The class that implements the action to stop the layout in progress.
+     */
+
+    protected class StopLayoutAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -5297472013619387504L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new StopLayoutAction.
+         */
+
+        StopLayoutAction()
+        {
+            // Call base class implementation
+            super( "StopLayout" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Stop the layout
+            stopLayout();
+        }
+    }
+
+    /**
+     * The class that implements the action to view the About dialog.
+     */
+
+    protected class AboutAction
+        extends AbstractAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -1967979928779718104L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new AboutAction.
+         */
+
+        AboutAction()
+        {
+            // Call base class implementation
+            super( "About" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Display the About dialog
+            JOptionPane.showMessageDialog( IFMapView.this,
+                IFMap.getResource( "aboutDialog.message" ),
+                IFMap.getResource( "aboutDialog.title" ), JOptionPane.OK_OPTION,
+                IFMap.createImageIcon( "icon.png" ) );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************           Tasks            *********************
+    // **********************************************************************
+
+    /**
+     * The worker that runs the iterations of a layout in the background and
+     * moves the rooms on the map to the positions computed so far several
+     * times a second, so that the user watches the layout settle.  The
+     * rooms are moved on the event dispatch thread only.
+     */
+
+    protected class LayoutWorker
+        extends SwingWorker<int[][], int[][]>
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The layout being computed.
+         */
+        protected ForceLayout m_oLayout;
+
+        /**
+         * The rooms moved, in the order of the layout's locations.
+         */
+        protected Room[] m_aoRooms;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new LayoutWorker.
+         *
+         * @param  oLayout  The layout to be computed.
+         */
+
+        LayoutWorker( ForceLayout oLayout )
+        {
+            // Initialize instance variables
+            m_oLayout = oLayout;
+            m_aoRooms = oLayout.getRooms();
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------     SwingWorker Methods     --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  javax.swing.SwingWorker#doInBackground()  doInBackground
+         */
+
+        protected int[][] doInBackground()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            OperationEvent oEvent;      // Event describing the layout
+            long           lNextFrame;  // Time of the next frame
+            int[][]        aanFrame;    // Locations of a frame
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Run the iterations, publishing a frame whenever one is due
+            oEvent = OperationEvent.begin( OperationEvent.FORCE_LAYOUT );
+            lNextFrame = System.currentTimeMillis() + LAYOUT_FRAME_MILLIS;
+            try
+            {
+                while( !isCancelled() && m_oLayout.step() )
+                {
+                    if( System.currentTimeMillis() >= lNextFrame )
+                    {
+                        aanFrame = new int[ 2 ][ m_aoRooms.length ];
+                        m_oLayout.getLocations( aanFrame[ 0 ], aanFrame[ 1 ] );
+                        publish( aanFrame );
+                        lNextFrame = System.currentTimeMillis() + LAYOUT_FRAME_MILLIS;
+                    }
+                }
+            }
+            finally
+            {
+                m_oLayout.dispose();
+            }
+
+            // Record the layout and return the final locations
+            oEvent.set( "rooms", m_aoRooms.length );
+            oEvent.set( "levels", m_oLayout.getLevelCount() );
+            oEvent.set( "iterations", m_oLayout.getIteration() );
+            oEvent.commit();
+            aanFrame = new int[ 2 ][ m_aoRooms.length ];
+            m_oLayout.getLocations( aanFrame[ 0 ], aanFrame[ 1 ] );
+            return( aanFrame );
+        }
+
+        /**
+         * @see  javax.swing.SwingWorker#process( List )  process
+         */
+
+        protected void process( List<int[][]> oFrames )
+        {
+            // Show the latest frame unless the layout has been stopped
+            if( m_oLayoutWorker != this )
+                return;
+            int[][] aanFrame = oFrames.get( oFrames.size() - 1 );
+            m_oMapUI.setRoomLocations( m_aoRooms, aanFrame[ 0 ], aanFrame[ 1 ] );
+        }
+
+        /**
+         * @see  javax.swing.SwingWorker#done()  done
+         */
+
+        protected void done()
+        {
+            // Show the final locations unless the layout has been stopped
+            if( m_oLayoutWorker != this )
+                return;
+            m_oLayoutWorker = null;
+            try
+            {
+                int[][] aanFrame = get();
+                m_oMapUI.setRoomLocations( m_aoRooms, aanFrame[ 0 ], aanFrame[ 1 ] );
+            }
+            catch( InterruptedException e )
+            {
+                // Leave the rooms at the last frame
+            }
+            catch( ExecutionException e )
+            {
+                // Report the failure
+                JOptionPane.showMessageDialog( IFMapView.this,
+                    IFMap.getResource( "msg.layoutFailed" ) + e.getCause(),
+                    IFMap.getResource( "app.title" ), JOptionPane.ERROR_MESSAGE );
+            }
+        }
+    }
+
+
+    /**
+     * The worker that exports the map to a PNG image in the background.  A
+     * modal dialog shows the progress of the export and lets the user stop
+     * it; because the dialog is modal, the map cannot be changed while it
+     * is being read.
+     */
+
+    protected class ExportImageWorker
+        extends SwingWorker<Object, Object>
+        implements ActionListener, PropertyChangeListener
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The file to which the image is exported.
+         */
+        protected File m_oFile;
+
+        /**
+         * The resolution of the image in dots per inch.
+         */
+        protected int m_nResolution;
+
+        /**
+         * The exporter of the image.
+         */
+        protected MapImageExporter m_oExporter;
+
+        /**
+         * The dialog that shows the progress of the export.
+         */
+        protected JDialog m_oDialog;
+
+        /**
+         * The progress bar of the dialog.
+         */
+        protected JProgressBar m_oProgressBar;
+
+        /**
+         * Indicates if the user has stopped the export.
+         */
+        protected volatile boolean m_bCancelled;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new ExportImageWorker.
+         *
+         * @param  oFile  The file to which the image is exported.
+         * @param  nResolution  The resolution of the image in dots per inch.
+         */
+
+        ExportImageWorker( File oFile, int nResolution )
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            JButton oCancelButton;  // Button used to stop the export
+            JPanel  oButtonPanel,   // Panel containing the Cancel button
+                    oContentPane;   // Content pane of the dialog
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Initialize instance variables
+            m_oFile = oFile;
+            m_nResolution = nResolution;
+            m_bCancelled = false;
+
+            // Create the exporter, reporting the progress of the export
+            // after each band and stopping if the user has cancelled it
+            m_oExporter = new MapImageExporter( m_oDocument.m_oMap, m_oMapUI.getFont() )
+            {
+                protected void bandExported( int nRowsExported, int nRows )
+                    throws IOException
+                {
+                    if( m_bCancelled )
+                        throw new InterruptedIOException();
+                    setProgress( (int)(100L * nRowsExported / nRows) );
+                }
+            };
+
+            // Create the progress bar and the Cancel button
+            m_oProgressBar = new JProgressBar( 0, 100 );
+            m_oProgressBar.setStringPainted( true );
+            oCancelButton = new JButton( IFMap.getResource( "exportImage.cancel.label" ) );
+            oCancelButton.addActionListener( this );
+            oButtonPanel = new JPanel( new FlowLayout( FlowLayout.TRAILING, 0, 0 ) );
+            oButtonPanel.add( oCancelButton );
+
+            // Create the dialog
+            oContentPane = new JPanel( new BorderLayout( 0, 17 ) );
+            oContentPane.setBorder( BorderFactory.createEmptyBorder( 12, 12, 11, 11 ) );
+            oContentPane.add( m_oProgressBar, BorderLayout.CENTER );
+            oContentPane.add( oButtonPanel, BorderLayout.SOUTH );
+            m_oDialog = new JDialog( IFMapView.this, IFMap.getResource( "exportImage.progress.title" ), true );
+            m_oDialog.setDefaultCloseOperation( JDialog.DO_NOTHING_ON_CLOSE );
+            m_oDialog.setContentPane( oContentPane );
+            m_oDialog.pack();
+            soloff.steven.awt.Utilities.centerWindowInOwner( m_oDialog );
+            m_oDialog.setResizable( false );
+
+            // Show the progress of the export in the dialog
+            addPropertyChangeListener( this );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Package Instance Methods  ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Starts the export and shows its progress until it finishes.
+         */
+
+        void exportImage()
+        {
+            // Start the export and block input to the view until the dialog
+            // is closed when the export finishes
+            execute();
+            m_oDialog.setVisible( true );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------     SwingWorker Methods     --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  javax.swing.SwingWorker#doInBackground()  doInBackground
+         */
+
+        protected Object doInBackground()
+            throws IOException
+        {
+            // Export the image
+            m_oExporter.export( m_oFile, m_nResolution );
+            return( null );
+        }
+
+        /**
+         * @see  javax.swing.SwingWorker#done()  done
+         */
+
+        protected void done()
+        {
+            // Close the dialog
+            m_oDialog.dispose();
+            try
+            {
+                get();
+            }
+            catch( InterruptedException e )
+            {
+                // The export has already finished
+            }
+            catch( ExecutionException e )
+            {
+                // Remove the incomplete image and report the failure unless
+                // the user stopped the export
+                m_oFile.delete();
+                if( !m_bCancelled )
+                    JOptionPane.showMessageDialog( IFMapView.this,
+                        IFMap.getResource( "msg.exportImageFailed" ) + e.getCause().getMessage(),
+                        IFMap.getResource( "app.title" ), JOptionPane.ERROR_MESSAGE );
+            }
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Stop the export after the band being encoded
+            m_bCancelled = true;
+            ((JButton)evt.getSource()).setEnabled( false );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  PropertyChangeListener Methods  ---------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.beans.PropertyChangeListener#propertyChange  propertyChange
+         */
+
+        public void propertyChange( PropertyChangeEvent evt )
+        {
+            // Show the progress of the export
+            if( "progress".equals( evt.getPropertyName() ) )
+                m_oProgressBar.setValue( ((Integer)evt.getNewValue()).intValue() );
         }
     }
 }
@@ -0,0 +1,186 @@
+/*
+ * LoadInterner.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Color;
+import java.util.HashMap;
+
+/**
+ * The object that shares equal values read while loading a map.  The DOM
+ * returns a new string for every attribute value, so without sharing each
+ * repeated room name or description, and each room ID referenced by an
+ * edge, would be kept in its own copy; likewise each room would have its
+ * own Color objects although most rooms use the same few colors.  Both
+ * strings and colors are immutable, so rooms and edges can safely share
+ * them.
+ *
+ * <p>An interner is only used for a single load, so that its pools are
+ * released when the load completes.  String.intern is deliberately not
+ * used, since it would keep every description for the life of the
+ * application.
+ */
+
+public class LoadInterner
+    extends Object
+{
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The distinct strings read so far.
+     */
+    protected HashMap<String, String> m_oStringPool;
+
+    /**
+     * The distinct colors read so far keyed by their RGB value.
+     */
+    protected HashMap<Integer, Color> m_oColorPool;
+
+    /**
+     * The compressed form of each distinct string compressed so far.
+     */
+    protected HashMap<String, byte[]> m_oCompressedPool;
+
+    /**
+     * The statistics of the load.
+     */
+    protected LoadStatistics m_oStatistics;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new LoadInterner object.
+     */
+
+    public LoadInterner()
+    {
+        // Initialize instance variables
+        m_oStringPool = new HashMap<String, String>();
+        m_oColorPool = new HashMap<Integer, Color>();
+        m_oCompressedPool = new HashMap<String, byte[]>();
+        m_oStatistics = new LoadStatistics();
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the shared string equal to the specified string.
+     *
+     * @param  str  The string read; may be null.
+     *
+     * @return  The shared string, or str if it is the first of its value.
+     */
+
+    public String intern( String str )
+    {
+        // Empty strings are not worth sharing
+        if( str == null || str.length() == 0 )
+            return( str );
+
+        // Share any equal string read earlier
+        String strShared = m_oStringPool.get( str );
+        if( strShared != null )
+        {
+            m_oStatistics.m_nSharedStringCount++;
+            m_oStatistics.m_lBytesSaved += MapMetrics.estimateSize( str );
+            return( strShared );
+        }
+
+        // Remember the first string of this value
+        m_oStringPool.put( str, str );
+        m_oStatistics.m_nDistinctStringCount++;
+        return( str );
+    }
+
+    /**
+     * Gets the shared opaque color with the specified RGB value.
+     *
+     * @param  nRGB  The RGB value of the color (bits 0-23).
+     *
+     * @return  The shared color.
+     */
+
+    public Color getColor( int nRGB )
+    {
+        // Share any equal color read earlier
+        Integer oKey = Integer.valueOf( nRGB & 0xffffff );
+        Color clrShared = m_oColorPool.get( oKey );
+        if( clrShared != null )
+        {
+            m_oStatistics.m_nSharedColorCount++;
+            m_oStatistics.m_lBytesSaved += LoadStatistics.ESTIMATED_COLOR_SIZE;
+            return( clrShared );
+        }
+
+        // Create the first color of this value
+        clrShared = new Color( nRGB );
+        m_oColorPool.put( oKey, clrShared );
+        m_oStatistics.m_nDistinctColorCount++;
+        return( clrShared );
+    }
+
+    /**
+     * Gets the shared compressed form of the specified string (see
+     * CompressedText).
+     *
+     * @param  str  The string read.
+     *
+     * @return  The shared compressed form of the string.
+     *
+     * @exception  IllegalArgumentException  If str is null.
+     */
+
+    public byte[] compress( String str )
+        throws IllegalArgumentException
+    {
+        // Share the compressed form of any equal string compressed earlier
+        byte[] abShared = m_oCompressedPool.get( str );
+        if( abShared != null )
+        {
+            m_oStatistics.m_lBytesSaved += MapMetrics.ESTIMATED_ARRAY_SIZE + abShared.length;
+            return( abShared );
+        }
+
+        // Compress the first string of this value
+        abShared = CompressedText.compress( str );
+        m_oCompressedPool.put( str, abShared );
+        return( abShared );
+    }
+
+    /**
+     * Gets the statistics of the load.
+     *
+     * @return  The statistics of the load.
+     */
+
+    public LoadStatistics getStatistics()
+    {
+        // Return the statistics
+        return( m_oStatistics );
+    }
+}
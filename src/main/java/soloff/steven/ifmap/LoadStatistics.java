@@ -0,0 +1,187 @@
+/*
+ * LoadStatistics.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+/**
+ * The statistics of loading a map from IFMML: the number of rooms and
+ * edges read and how many of their colors and strings were shared with
+ * equal values read earlier, together with an estimate of the heap saved
+ * by sharing them.
+ */
+
+public class LoadStatistics
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The estimated size in bytes of a Color.
+     */
+    protected static final int ESTIMATED_COLOR_SIZE = 32;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The number of rooms read.
+     */
+    protected int m_nRoomCount;
+
+    /**
+     * The number of edges read.
+     */
+    protected int m_nEdgeCount;
+
+    /**
+     * The number of distinct colors read.
+     */
+    protected int m_nDistinctColorCount;
+
+    /**
+     * The number of colors read that were shared with an equal color.
+     */
+    protected int m_nSharedColorCount;
+
+    /**
+     * The number of distinct strings read.
+     */
+    protected int m_nDistinctStringCount;
+
+    /**
+     * The number of strings read that were shared with an equal string.
+     */
+    protected int m_nSharedStringCount;
+
+    /**
+     * The estimated number of bytes of heap saved by sharing colors and
+     * strings.
+     */
+    protected long m_lBytesSaved;
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the number of rooms read.
+     *
+     * @return  The number of rooms read.
+     */
+
+    public int getRoomCount()
+    {
+        // Return the number of rooms
+        return( m_nRoomCount );
+    }
+
+    /**
+     * Gets the number of edges read.
+     *
+     * @return  The number of edges read.
+     */
+
+    public int getEdgeCount()
+    {
+        // Return the number of edges
+        return( m_nEdgeCount );
+    }
+
+    /**
+     * Gets the number of distinct colors read.
+     *
+     * @return  The number of distinct colors.
+     */
+
+    public int getDistinctColorCount()
+    {
+        // Return the number of distinct colors
+        return( m_nDistinctColorCount );
+    }
+
+    /**
+     * Gets the number of colors read that were shared with an equal color
+     * read earlier rather than created.
+     *
+     * @return  The number of shared colors.
+     */
+
+    public int getSharedColorCount()
+    {
+        // Return the number of shared colors
+        return( m_nSharedColorCount );
+    }
+
+    /**
+     * Gets the number of distinct strings read.
+     *
+     * @return  The number of distinct strings.
+     */
+
+    public int getDistinctStringCount()
+    {
+        // Return the number of distinct strings
+        return( m_nDistinctStringCount );
+    }
+
+    /**
+     * Gets the number of strings read that were shared with an equal string
+     * read earlier rather than kept.
+     *
+     * @return  The number of shared strings.
+     */
+
+    public int getSharedStringCount()
+    {
+        // Return the number of shared strings
+        return( m_nSharedStringCount );
+    }
+
+    /**
+     * Gets the estimated number of bytes of heap saved by sharing colors
+     * and strings.
+     *
+     * @return  The estimated heap saved.
+     */
+
+    public long getEstimatedBytesSaved()
+    {
+        // Return the heap saved
+        return( m_lBytesSaved );
+    }
+
+    /**
+     * @see  java.lang.Object#toString()  toString
+     */
+
+    public String toString()
+    {
+        // Format the statistics
+        return( m_nRoomCount + " rooms, " + m_nEdgeCount + " edges, " +
+            m_nDistinctColorCount + " distinct colors (" + m_nSharedColorCount + " shared), " +
+            m_nDistinctStringCount + " distinct strings (" + m_nSharedStringCount + " shared), " +
+            m_lBytesSaved + " bytes saved" );
+    }
+}
@@ -23,8 +23,10 @@ package soloff.steven.ifmap;
 import java.awt.Dimension;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import org.w3c.dom.Element;
 import org.w3c.dom.NodeList;
 
@@ -36,6 +38,23 @@ public class Map
     extends Object
     implements IFMMLizable
 {
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The system property that enables compressed room descriptions by
+     * default.
+     */
+    public static final String PROP_COMPRESS_DESCRIPTIONS = "ifmap.compressDescriptions";
+
+    /**
+     * The number of inflated room descriptions kept when descriptions are
+     * compressed.
+     */
+    protected static final int DESCRIPTION_CACHE_SIZE = 32;
+
+
     // **********************************************************************
     // *********************     Instance Variables     *********************
     // **********************************************************************
@@ -58,6 +77,48 @@ public class Map
      */
     protected Dimension m_dmMap;
 
+    /**
+     * The statistics of the last load of the Map from IFMML; null if the
+     * Map has not been loaded.
+     */
+    protected LoadStatistics m_oLoadStatistics;
+
+    /**
+     * Indicates if room descriptions are kept compressed.
+     */
+    protected boolean m_bCompressDescriptions;
+
+    /**
+     * The most recently used inflated room descriptions, in order of use,
+     * when descriptions are compressed.  The cache is kept in access order,
+     * so a lookup also changes it; it may be used only while holding its
+     * lock.
+     */
+    protected LinkedHashMap<Room, String> m_oDescriptionCache;
+
+    /**
+     * The objects notified of changes to the topology of the Map.
+     */
+    protected ArrayList<MapListener> m_oListeners;
+
+    /**
+     * The adjacency of the rooms on the Map used to answer routing
+     * queries; null until it is first requested.
+     */
+    protected MapGraph m_oGraph;
+
+    /**
+     * The index of the words in the names and descriptions of the rooms on
+     * the Map; null until it is first requested.
+     */
+    protected TextIndex m_oTextIndex;
+
+    /**
+     * The trigram index of the names of the rooms on the Map; null until it
+     * is first requested.
+     */
+    protected NameIndex m_oNameIndex;
+
 
     // **********************************************************************
     // *********************        Constructors        *********************
@@ -73,6 +134,25 @@ public class Map
         m_oRoomMap = new HashMap<String, Room>();
         m_oEdgeMap = new HashMap<String, Edge>();
         m_dmMap = new Dimension( MapUI.MIN_MAP_WIDTH, MapUI.MIN_MAP_HEIGHT );
+        m_oLoadStatistics = null;
+        m_bCompressDescriptions = Boolean.getBoolean( PROP_COMPRESS_DESCRIPTIONS );
+        m_oListeners = new ArrayList<MapListener>();
+        m_oGraph = null;
+        m_oTextIndex = null;
+        m_oNameIndex = null;
+        m_oDescriptionCache = new LinkedHashMap<Room, String>( DESCRIPTION_CACHE_SIZE * 2, 0.75f, true )
+        {
+            /**
+             * Serializable class version number.
+             */
+            private static final long serialVersionUID = 4416387015525342977L;
+
+            protected boolean removeEldestEntry( java.util.Map.Entry<Room, String> oEldest )
+            {
+                // Only keep the most recently used descriptions
+                return( size() > DESCRIPTION_CACHE_SIZE );
+            }
+        };
     }
 
 
@@ -89,11 +169,160 @@ public class Map
         // Remove all Rooms and Edges and reset map dimension
         m_oRoomMap.clear();
         m_oEdgeMap.clear();
+        synchronized( m_oDescriptionCache )
+        {
+            m_oDescriptionCache.clear();
+        }
         m_dmMap.setSize( MapUI.MIN_MAP_WIDTH, MapUI.MIN_MAP_HEIGHT );
 
         // Reset next Room and Edge IDs
         Room.setNextRoomID( 1 );
         Edge.setNextEdgeID( 1 );
+
+        // Notify listeners
+        fireMapReset();
+    }
+
+    /**
+     * Adds the specified listener to be notified of changes to the topology
+     * of the Map.
+     *
+     * @param  oListener  The listener to be added.
+     *
+     * @exception  IllegalArgumentException  If oListener is null.
+     */
+
+    public void addMapListener( MapListener oListener )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oListener == null )
+            throw new IllegalArgumentException();
+
+        // Add the listener
+        m_oListeners.add( oListener );
+    }
+
+    /**
+     * Removes the specified listener so that it is no longer notified of
+     * changes to the Map.
+     *
+     * @param  oListener  The listener to be removed.
+     */
+
+    public void removeMapListener( MapListener oListener )
+    {
+        // Remove the listener
+        m_oListeners.remove( oListener );
+    }
+
+    /**
+     * Gets the adjacency of the rooms on the Map.  The adjacency is built
+     * when it is first requested and is kept up to date as the Map changes
+     * from then on.
+     *
+     * @return  The adjacency of the rooms on the Map.
+     */
+
+    public MapGraph getGraph()
+    {
+        // Create the adjacency and keep it up to date
+        if( m_oGraph == null )
+        {
+            m_oGraph = new MapGraph( this );
+            addMapListener( m_oGraph );
+        }
+        return( m_oGraph );
+    }
+
+    /**
+     * Gets the index of the words in the names and descriptions of the
+     * rooms on the Map.  The index is built when it is first requested and
+     * is kept up to date as the Map and its rooms change from then on.
+     *
+     * @return  The word index of the rooms on the Map.
+     */
+
+    public TextIndex getTextIndex()
+    {
+        // Create the index and keep it up to date
+        if( m_oTextIndex == null )
+        {
+            m_oTextIndex = new TextIndex( this );
+            addMapListener( m_oTextIndex );
+        }
+        return( m_oTextIndex );
+    }
+
+    /**
+     * Gets the trigram index used to find rooms by names with typing
+     * mistakes.  The index is built when it is first requested and is kept
+     * up to date as the Map and its rooms change from then on.
+     *
+     * @return  The name index of the rooms on the Map.
+     */
+
+    public NameIndex getNameIndex()
+    {
+        // Create the index and keep it up to date
+        if( m_oNameIndex == null )
+        {
+            m_oNameIndex = new NameIndex( this );
+            addMapListener( m_oNameIndex );
+        }
+        return( m_oNameIndex );
+    }
+
+    /**
+     * Indicates if room descriptions are kept compressed.
+     *
+     * @return  A flag indicating if room descriptions are compressed.
+     */
+
+    public boolean isDescriptionCompressionEnabled()
+    {
+        // Return the storage mode of descriptions
+        return( m_bCompressDescriptions );
+    }
+
+    /**
+     * Sets whether room descriptions are kept Deflate-compressed and only
+     * inflated when they are requested.  This saves most of the heap used
+     * by maps with long descriptions at the cost of inflating a
+     * description when it is first shown.  The descriptions of all rooms
+     * are converted to the new storage mode.
+     *
+     * @param  bCompressDescriptions  Indicates if room descriptions are to
+     *     be compressed.
+     */
+
+    public void setDescriptionCompressionEnabled( boolean bCompressDescriptions )
+    {
+        // Make sure the storage mode changes
+        if( bCompressDescriptions == m_bCompressDescriptions )
+            return;
+
+        // Convert the description of each room to the new storage mode
+        m_bCompressDescriptions = bCompressDescriptions;
+        for( final Room room : m_oRoomMap.values() )
+            room.storeDescription( room.getDescription() );
+        synchronized( m_oDescriptionCache )
+        {
+            m_oDescriptionCache.clear();
+        }
+    }
+
+    /**
+     * Gets the statistics of the last load of the Map from IFMML.
+     *
+     * @return  The statistics of the last load, or null if the Map has not
+     *     been loaded.
+     */
+
+    public LoadStatistics getLoadStatistics()
+    {
+        // Return the statistics of the last load
+        return( m_oLoadStatistics );
     }
 
     /**
@@ -159,9 +388,10 @@ public class Map
         /////////////////////////////////////////////////////////////////////
         // VARIABLE DECLARATIONS                                           //
 
-        Iterator<Edge> iter;       // Iterator for Edge hash map
-        Edge           oEdge;      // An Edge on the Map
-        String         strRoomID;  // ID of the Room to be deleted
+        Iterator<Edge>  iter;           // Iterator for Edge hash map
+        Edge            oEdge;          // An Edge on the Map
+        ArrayList<Edge> oRemovedEdges;  // Edges removed with the Room
+        String          strRoomID;      // ID of the Room to be deleted
 
         //                                                                 //
         /////////////////////////////////////////////////////////////////////
@@ -172,6 +402,7 @@ public class Map
 
         // Store the ID of the Room to be deleted
         strRoomID = oRoom.getID();
+        oRemovedEdges = new ArrayList<Edge>();
 
         // Iterate through all edges
         for( iter = m_oEdgeMap.values().iterator(); iter.hasNext(); )
@@ -180,11 +411,133 @@ public class Map
             oEdge = iter.next();
             if( oEdge.getStartRoomID().equals( strRoomID ) ||
                     oEdge.getEndRoomID().equals( strRoomID ) )
+            {
                 iter.remove();
+                oRemovedEdges.add( oEdge );
+            }
         }
 
         // Remove the Room from the Map
         m_oRoomMap.remove( strRoomID );
+
+        // Notify listeners
+        for( final Edge edge : oRemovedEdges )
+            fireEdgeRemoved( edge );
+        fireRoomRemoved( oRoom );
+    }
+
+    /**
+     * Merges a duplicate of a Room into it, as when the same location was
+     * recorded twice under slightly different names.  Each Edge connected
+     * to the duplicate is reconnected to the same exit of the kept Room
+     * and keeps its identifier, unless the kept Room already has an Edge
+     * at that exit, in which case the Edge is deleted.  An Edge between
+     * the kept Room and the duplicate is always deleted: both ends are the
+     * same location, so it would otherwise become a loop of the kept Room
+     * between two of its exits, and it does not occupy the exit of the
+     * kept Room it started or ended at.  An Edge that loops from the
+     * duplicate to itself stays a loop of the kept Room.  The kept Room
+     * takes the description of the duplicate if it has none of its own.
+     * The duplicate is then deleted.
+     *
+     * @param  oKeptRoom  The Room to be kept.
+     * @param  oDuplicateRoom  The Room to be merged into oKeptRoom and
+     *     deleted.
+     *
+     * @return  The number of Edges of the duplicate that were deleted,
+     *     either because they ran to the kept Room or because the kept Room
+     *     already had an Edge at their exit.
+     *
+     * @exception  IllegalArgumentException  If either Room is null or is
+     *     not on the Map, or if they are the same Room.
+     */
+
+    public int mergeRooms( Room oKeptRoom, Room oDuplicateRoom )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent  oEvent;       // Event describing the merge
+        boolean[]       abExitUsed;   // Indicates if a kept exit is in use
+        ArrayList<Edge> alEdges;      // Edges of the duplicate
+        String          strKeptID,    // ID of the kept Room
+                        strDupID;     // ID of the duplicate Room
+        int             nDropped;     // Number of Edges deleted
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oKeptRoom == null || oDuplicateRoom == null || oKeptRoom == oDuplicateRoom )
+            throw new IllegalArgumentException();
+        strKeptID = oKeptRoom.m_strID;
+        strDupID = oDuplicateRoom.m_strID;
+        if( m_oRoomMap.get( strKeptID ) != oKeptRoom || m_oRoomMap.get( strDupID ) != oDuplicateRoom )
+            throw new IllegalArgumentException();
+
+        // Find the exits of the kept Room in use and the Edges of the
+        // duplicate (the Edges between the two Rooms are deleted, so they
+        // do not use an exit of the kept Room)
+        oEvent = OperationEvent.begin( OperationEvent.MERGE_ROOMS );
+        abExitUsed = new boolean[ Room.NUM_EXITS ];
+        alEdges = new ArrayList<Edge>();
+        for( final Edge oEdge : m_oEdgeMap.values() )
+        {
+            boolean bStartDup = oEdge.m_strStartRoomID.equals( strDupID ),
+                    bEndDup = oEdge.m_strEndRoomID.equals( strDupID );
+            if( bStartDup || bEndDup )
+                alEdges.add( oEdge );
+            else
+            {
+                if( oEdge.m_strStartRoomID.equals( strKeptID ) )
+                    abExitUsed[ oEdge.m_nStartExit ] = true;
+                if( oEdge.m_strEndRoomID.equals( strKeptID ) )
+                    abExitUsed[ oEdge.m_nEndExit ] = true;
+            }
+        }
+
+        // Reconnect each Edge to the kept Room if it does not already run to
+        // the kept Room and its exits there are free, and delete it
+        // otherwise
+        nDropped = 0;
+        for( final Edge oEdge : alEdges )
+        {
+            boolean bStart = oEdge.m_strStartRoomID.equals( strDupID ),
+                    bEnd = oEdge.m_strEndRoomID.equals( strDupID );
+            m_oEdgeMap.remove( oEdge.m_strID );
+            fireEdgeRemoved( oEdge );
+            if( oEdge.m_strStartRoomID.equals( strKeptID ) || oEdge.m_strEndRoomID.equals( strKeptID ) ||
+                (bStart && abExitUsed[ oEdge.m_nStartExit ]) || (bEnd && abExitUsed[ oEdge.m_nEndExit ]) )
+            {
+                nDropped++;
+                continue;
+            }
+            if( bStart )
+            {
+                oEdge.m_strStartRoomID = strKeptID;
+                abExitUsed[ oEdge.m_nStartExit ] = true;
+            }
+            if( bEnd )
+            {
+                oEdge.m_strEndRoomID = strKeptID;
+                abExitUsed[ oEdge.m_nEndExit ] = true;
+            }
+            oEdge.setBends( null );
+            addEdge( oEdge );
+        }
+
+        // Keep the description of the duplicate if the kept Room has none,
+        // then delete the duplicate
+        if( oKeptRoom.getDescription().length() == 0 )
+            oKeptRoom.setDescription( oDuplicateRoom.getDescription() );
+        deleteRoom( oDuplicateRoom );
+
+        // Record the merge
+        oEvent.set( "edges", alEdges.size() );
+        oEvent.set( "dropped", nDropped );
+        oEvent.commit();
+        return( nDropped );
     }
 
     /**
@@ -202,8 +555,9 @@ public class Map
         if( oEdge == null )
             throw new IllegalArgumentException();
 
-        // Remove the Edge from the Map
-        m_oEdgeMap.remove( oEdge.getID() );
+        // Remove the Edge from the Map and notify listeners
+        if( m_oEdgeMap.remove( oEdge.getID() ) != null )
+            fireEdgeRemoved( oEdge );
     }
 
     /**
@@ -317,8 +671,9 @@ public class Map
         if( oRoom == null )
             throw new IllegalArgumentException();
 
-        // Add the Room to the Map
+        // Add the Room to the Map and notify listeners
         m_oRoomMap.put( oRoom.getID(), oRoom );
+        fireRoomAdded( oRoom );
     }
 
     /**
@@ -336,8 +691,175 @@ public class Map
         if( oEdge == null )
             throw new IllegalArgumentException();
 
-        // Add the Edge to the Map
+        // Add the Edge to the Map and notify listeners
         m_oEdgeMap.put( oEdge.getID(), oEdge );
+        fireEdgeAdded( oEdge );
+    }
+
+    /**
+     * Notifies all listeners that the specified Room has been added.
+     *
+     * @param  oRoom  The Room added.
+     */
+
+    protected void fireRoomAdded( Room oRoom )
+    {
+        // Notify each listener
+        for( final MapListener oListener : m_oListeners )
+            oListener.roomAdded( this, oRoom );
+    }
+
+    /**
+     * Notifies all listeners that the specified Room has been removed.
+     *
+     * @param  oRoom  The Room removed.
+     */
+
+    protected void fireRoomRemoved( Room oRoom )
+    {
+        // Notify each listener
+        for( final MapListener oListener : m_oListeners )
+            oListener.roomRemoved( this, oRoom );
+    }
+
+    /**
+     * Notifies all listeners that the specified Edge has been added.
+     *
+     * @param  oEdge  The Edge added.
+     */
+
+    protected void fireEdgeAdded( Edge oEdge )
+    {
+        // Notify each listener
+        for( final MapListener oListener : m_oListeners )
+            oListener.edgeAdded( this, oEdge );
+    }
+
+    /**
+     * Notifies all listeners that the specified Edge has been removed.
+     *
+     * @param  oEdge  The Edge removed.
+     */
+
+    protected void fireEdgeRemoved( Edge oEdge )
+    {
+        // Notify each listener
+        for( final MapListener oListener : m_oListeners )
+            oListener.edgeRemoved( this, oEdge );
+    }
+
+    /**
+     * Notifies all listeners that the flags of the specified Edge have
+     * changed.  Nothing is reported for an Edge that is not on the Map.
+     *
+     * @param  oEdge  The Edge changed.
+     */
+
+    protected void fireEdgeChanged( Edge oEdge )
+    {
+        // Make sure the Edge is on the Map
+        if( m_oEdgeMap.get( oEdge.getID() ) != oEdge )
+            return;
+
+        // Notify each listener
+        for( final MapListener oListener : m_oListeners )
+            oListener.edgeChanged( this, oEdge );
+    }
+
+    /**
+     * Notifies all listeners that the contents of the Map have been
+     * replaced as a whole.
+     */
+
+    protected void fireMapReset()
+    {
+        // Notify each listener
+        for( final MapListener oListener : m_oListeners )
+            oListener.mapReset( this );
+    }
+
+
+    // **********************************************************************
+    // *********************  Package Instance Methods  *********************
+    // **********************************************************************
+
+    /**
+     * Notifies the indexes of the Map that the name or description of the
+     * specified Room is about to be set.
+     *
+     * @param  oRoom  The Room whose text is to change.
+     */
+
+    void fireRoomTextChanging( Room oRoom )
+    {
+        // Remove the old words of the room from the word index
+        if( m_oTextIndex != null )
+            m_oTextIndex.removeText( oRoom );
+    }
+
+    /**
+     * Notifies the indexes of the Map that the name or description of the
+     * specified Room has been set.
+     *
+     * @param  oRoom  The Room whose text has changed.
+     */
+
+    void fireRoomTextChanged( Room oRoom )
+    {
+        // Add the new words of the room to the word index, and index its
+        // name again if it changed
+        if( m_oTextIndex != null )
+            m_oTextIndex.addText( oRoom );
+        if( m_oNameIndex != null )
+            m_oNameIndex.updateName( oRoom );
+    }
+
+    /**
+     * Replaces the contents of the Map with the Rooms and Edges of the
+     * specified Map, as when the result of a merge is opened in place of
+     * the Map.  The Rooms and Edges are moved rather than copied, leaving
+     * the specified Map empty.
+     *
+     * @param  oMap  The Map whose contents are to be moved to this Map.
+     *
+     * @exception  IllegalArgumentException  If oMap is null or is this Map.
+     */
+
+    void replace( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || oMap == this )
+            throw new IllegalArgumentException();
+
+        // Take the Rooms and Edges of the other Map
+        m_oRoomMap = oMap.m_oRoomMap;
+        m_oEdgeMap = oMap.m_oEdgeMap;
+        m_dmMap.setSize( oMap.m_dmMap );
+        synchronized( m_oDescriptionCache )
+        {
+            m_oDescriptionCache.clear();
+        }
+        oMap.m_oRoomMap = new HashMap<String, Room>();
+        oMap.m_oEdgeMap = new HashMap<String, Edge>();
+        synchronized( oMap.m_oDescriptionCache )
+        {
+            oMap.m_oDescriptionCache.clear();
+        }
+
+        // Move each Room and Edge to this Map, converting descriptions
+        // stored in the other mode
+        for( final Room room : m_oRoomMap.values() )
+        {
+            room.m_oMap = this;
+            if( (room.m_abDescription != null) != m_bCompressDescriptions )
+                room.storeDescription( room.getDescription() );
+        }
+        for( final Edge edge : m_oEdgeMap.values() )
+            edge.m_oMap = this;
+
+        // Notify listeners once for all the Rooms and Edges
+        fireMapReset();
     }
 
 
@@ -356,28 +878,34 @@ public class Map
         /////////////////////////////////////////////////////////////////////
         // VARIABLE DECLARATIONS                                           //
 
-        NodeList oElemList;    // List of Elements
-        Room     oRoom;        // New Room created from a ROOM element
-        Edge     oEdge;        // New Edge created from an EDGE element
-        int      nNextRoomID,  // New next Room ID
-                 nNextEdgeID,  // New next Edge ID
-                 nElemCount,   // Count of Elements in the list
-                 nI;           // Loop control variable
+        NodeList     oElemList;    // List of Elements
+        LoadInterner oInterner;    // Shares equal values read by the load
+        Room         oRoom;        // New Room created from a ROOM element
+        Edge         oEdge;        // New Edge created from an EDGE element
+        int          nNextRoomID,  // New next Room ID
+                     nNextEdgeID,  // New next Edge ID
+                     nElemCount,   // Count of Elements in the list
+                     nI;           // Loop control variable
 
         //                                                                 //
         /////////////////////////////////////////////////////////////////////
 
         // Initialize next ID counts
         nNextRoomID = nNextEdgeID = 1;
+        oInterner = new LoadInterner();
 
-        // Loop through all the ROOM elements that are children of the MAP
+        // Size the Room hashtable for all ROOM elements so that it is not
+        // rehashed as they are added
         oElemList = oElement.getElementsByTagName( IFMML_ELEM_ROOM );
         nElemCount = oElemList.getLength();
+        m_oRoomMap = resize( m_oRoomMap, nElemCount );
+
+        // Loop through all the ROOM elements that are children of the MAP
         for( nI = 0; nI < nElemCount; nI++ )
         {
             // Create a new Room and initialize it
             oRoom = new Room( this );
-            oRoom.readIFMML( (Element)oElemList.item( nI ) );
+            oRoom.readIFMML( (Element)oElemList.item( nI ), oInterner );
             m_oRoomMap.put( oRoom.getID(), oRoom );
 
             // Update the Map based on the new Room
@@ -386,14 +914,17 @@ public class Map
             m_dmMap.height = Math.max( m_dmMap.height, oRoom.m_rectBounds.y + oRoom.m_rectBounds.height );
         }
 
-        // Loop through all the EDGE elements that are children of the MAP
+        // Size the Edge hashtable for all EDGE elements
         oElemList = oElement.getElementsByTagName( IFMML_ELEM_EDGE );
         nElemCount = oElemList.getLength();
+        m_oEdgeMap = resize( m_oEdgeMap, nElemCount );
+
+        // Loop through all the EDGE elements that are children of the MAP
         for( nI = 0; nI < nElemCount; nI++ )
         {
             // Create a new Edge and initialize it
             oEdge = new Edge( this );
-            oEdge.readIFMML( (Element)oElemList.item( nI ) );
+            oEdge.readIFMML( (Element)oElemList.item( nI ), oInterner );
             m_oEdgeMap.put( oEdge.getID(), oEdge );
 
             // Update the Map based on the new Edge
@@ -403,6 +934,14 @@ public class Map
         // Update next available IDs for Rooms and Edges
         Room.setNextRoomID( nNextRoomID + 1 );
         Edge.setNextEdgeID( nNextEdgeID + 1 );
+
+        // Keep the statistics of the load
+        m_oLoadStatistics = oInterner.getStatistics();
+        m_oLoadStatistics.m_nRoomCount = m_oRoomMap.size();
+        m_oLoadStatistics.m_nEdgeCount = m_oEdgeMap.size();
+
+        // Notify listeners once for all the Rooms and Edges read
+        fireMapReset();
     }
 
     /**
@@ -439,4 +978,28 @@ public class Map
         oWriter.write( str, 0, str.length() );
         oWriter.newLine();
     }
+
+
+    // **********************************************************************
+    // *********************    Private Class Methods    ********************
+    // **********************************************************************
+
+    /**
+     * Creates a hashtable containing the entries of the specified hashtable
+     * with enough capacity to add the specified number of entries without
+     * rehashing.
+     *
+     * @param  oMap  The hashtable to be resized.
+     * @param  nAdded  The number of entries to be added.
+     *
+     * @return  The resized hashtable.
+     */
+
+    private static <V> HashMap<String, V> resize( HashMap<String, V> oMap, int nAdded )
+    {
+        // Size the new hashtable for the default load factor of 0.75
+        HashMap<String, V> oResized = new HashMap<String, V>( (int)((oMap.size() + nAdded) / 0.75f) + 1 );
+        oResized.putAll( oMap );
+        return( oResized );
+    }
 }
@@ -0,0 +1,871 @@
+/*
+ * MapDiff.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Color;
+import java.awt.Rectangle;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The object that holds the changes that turn one Map into another, as
+ * when two copies of the same IFMML file are compared.  Rooms and Edges
+ * are matched by their identifiers: a Room or Edge is added if only the
+ * new Map has its identifier, removed if only the old Map has it, and
+ * changed if both have it but differ in some property, such as the name
+ * or the bounds of a Room or the ends or bends of an Edge.
+ *
+ * <p>Each Room and Edge of either Map is looked up in the other Map by its
+ * identifier in a hashtable, so the Maps are compared in time linear in
+ * their size rather than by comparing every Room with every other.  The
+ * changes are kept in the order of their identifiers and can be written as
+ * a compact change set of one line per change.
+ */
+
+public class MapDiff
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The kind of change of a Room or Edge only in the new Map.
+     */
+    public static final int ADDED = 0;
+
+    /**
+     * The kind of change of a Room or Edge only in the old Map.
+     */
+    public static final int REMOVED = 1;
+
+    /**
+     * The kind of change of a Room or Edge whose properties differ.
+     */
+    public static final int CHANGED = 2;
+
+    /**
+     * The property flag for the name of a Room.
+     */
+    public static final int ROOM_NAME = 0x01;
+
+    /**
+     * The property flag for the description of a Room.
+     */
+    public static final int ROOM_DESCRIPTION = 0x02;
+
+    /**
+     * The property flag for the bounds of a Room.
+     */
+    public static final int ROOM_BOUNDS = 0x04;
+
+    /**
+     * The property flag for the foreground color of a Room.
+     */
+    public static final int ROOM_FOREGROUND = 0x08;
+
+    /**
+     * The property flag for the background color of a Room.
+     */
+    public static final int ROOM_BACKGROUND = 0x10;
+
+    /**
+     * The property flag for the rooms and exits an Edge connects.
+     */
+    public static final int EDGE_ENDS = 0x01;
+
+    /**
+     * The property flag for the one-way flag of an Edge.
+     */
+    public static final int EDGE_ONE_WAY = 0x02;
+
+    /**
+     * The property flag for the secret flag of an Edge.
+     */
+    public static final int EDGE_SECRET = 0x04;
+
+    /**
+     * The property flag for the bends of an Edge.
+     */
+    public static final int EDGE_BENDS = 0x08;
+
+    /**
+     * The flags of all the properties of a Room.
+     */
+    public static final int ROOM_ALL = ROOM_NAME | ROOM_DESCRIPTION | ROOM_BOUNDS | ROOM_FOREGROUND |
+        ROOM_BACKGROUND;
+
+    /**
+     * The flags of all the properties of an Edge.
+     */
+    public static final int EDGE_ALL = EDGE_ENDS | EDGE_ONE_WAY | EDGE_SECRET | EDGE_BENDS;
+
+    /**
+     * The mark that begins the line of each kind of change in a change set.
+     */
+    protected static final char[] KIND_MARKS = { '+', '-', '~' };
+
+    /**
+     * The name of each kind of change in the summary of a change set.
+     */
+    protected static final String[] KIND_NAMES = { "added", "removed", "changed" };
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The changes of the Rooms in the order of their identifiers.
+     */
+    protected ArrayList<Change<Room>> m_alRoomChanges;
+
+    /**
+     * The changes of the Edges in the order of their identifiers.
+     */
+    protected ArrayList<Change<Edge>> m_alEdgeChanges;
+
+    /**
+     * The change of each Room that changed keyed by its identifier.
+     */
+    protected HashMap<String, Change<Room>> m_oRoomChangeMap;
+
+    /**
+     * The change of each Edge that changed keyed by its identifier.
+     */
+    protected HashMap<String, Change<Edge>> m_oEdgeChangeMap;
+
+    /**
+     * The number of Room changes of each kind.
+     */
+    protected int[] m_anRoomCounts;
+
+    /**
+     * The number of Edge changes of each kind.
+     */
+    protected int[] m_anEdgeCounts;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapDiff object holding the changes that turn the
+     * specified old Map into the specified new Map.
+     *
+     * @param  oOldMap  The Map before the changes.
+     * @param  oNewMap  The Map after the changes.
+     *
+     * @exception  IllegalArgumentException  If oOldMap or oNewMap is null.
+     */
+
+    public MapDiff( Map oOldMap, Map oNewMap )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent oEvent;        // Event describing the comparison
+        Room           oNewRoom;      // Room of the new Map
+        Edge           oNewEdge;      // Edge of the new Map
+        int            nProperties;   // Properties that differ
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oOldMap == null || oNewMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        oEvent = OperationEvent.begin( OperationEvent.DIFF_MAPS );
+        m_alRoomChanges = new ArrayList<Change<Room>>();
+        m_alEdgeChanges = new ArrayList<Change<Edge>>();
+        m_oRoomChangeMap = new HashMap<String, Change<Room>>();
+        m_oEdgeChangeMap = new HashMap<String, Change<Edge>>();
+        m_anRoomCounts = new int[ KIND_NAMES.length ];
+        m_anEdgeCounts = new int[ KIND_NAMES.length ];
+
+        // Look up each Room of the old Map in the new Map, then find the
+        // Rooms only in the new Map
+        for( final Room oOldRoom : oOldMap.m_oRoomMap.values() )
+        {
+            oNewRoom = oNewMap.m_oRoomMap.get( oOldRoom.m_strID );
+            if( oNewRoom == null )
+                addRoomChange( new Change<Room>( REMOVED, oOldRoom.m_strID, oOldRoom, null, 0 ) );
+            else if( (nProperties = getDifferences( oOldRoom, oNewRoom )) != 0 )
+                addRoomChange( new Change<Room>( CHANGED, oOldRoom.m_strID, oOldRoom, oNewRoom, nProperties ) );
+        }
+        for( final Room oRoom : oNewMap.m_oRoomMap.values() )
+        {
+            if( !oOldMap.m_oRoomMap.containsKey( oRoom.m_strID ) )
+                addRoomChange( new Change<Room>( ADDED, oRoom.m_strID, null, oRoom, ROOM_ALL ) );
+        }
+
+        // Do the same for the Edges
+        for( final Edge oOldEdge : oOldMap.m_oEdgeMap.values() )
+        {
+            oNewEdge = oNewMap.m_oEdgeMap.get( oOldEdge.m_strID );
+            if( oNewEdge == null )
+                addEdgeChange( new Change<Edge>( REMOVED, oOldEdge.m_strID, oOldEdge, null, 0 ) );
+            else if( (nProperties = getDifferences( oOldEdge, oNewEdge )) != 0 )
+                addEdgeChange( new Change<Edge>( CHANGED, oOldEdge.m_strID, oOldEdge, oNewEdge, nProperties ) );
+        }
+        for( final Edge oEdge : oNewMap.m_oEdgeMap.values() )
+        {
+            if( !oOldMap.m_oEdgeMap.containsKey( oEdge.m_strID ) )
+                addEdgeChange( new Change<Edge>( ADDED, oEdge.m_strID, null, oEdge, EDGE_ALL ) );
+        }
+
+        // Put the changes in the order of their identifiers
+        Collections.sort( m_alRoomChanges, new ChangeComparator<Room>() );
+        Collections.sort( m_alEdgeChanges, new ChangeComparator<Edge>() );
+
+        // Record the comparison
+        oEvent.set( "oldRooms", oOldMap.m_oRoomMap.size() );
+        oEvent.set( "newRooms", oNewMap.m_oRoomMap.size() );
+        oEvent.set( "roomChanges", m_alRoomChanges.size() );
+        oEvent.set( "edgeChanges", m_alEdgeChanges.size() );
+        oEvent.commit();
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the changes of the Rooms in the order of their identifiers.
+     *
+     * @return  The unmodifiable list of Room changes.
+     */
+
+    public List<Change<Room>> getRoomChanges()
+    {
+        // Return the Room changes
+        return( Collections.unmodifiableList( m_alRoomChanges ) );
+    }
+
+    /**
+     * Gets the changes of the Edges in the order of their identifiers.
+     *
+     * @return  The unmodifiable list of Edge changes.
+     */
+
+    public List<Change<Edge>> getEdgeChanges()
+    {
+        // Return the Edge changes
+        return( Collections.unmodifiableList( m_alEdgeChanges ) );
+    }
+
+    /**
+     * Gets the change of the Room with the specified identifier.
+     *
+     * @param  strRoomID  The identifier of the Room.
+     *
+     * @return  The change of the Room, or null if it did not change.
+     */
+
+    public Change<Room> getRoomChange( String strRoomID )
+    {
+        // Look up the change of the Room
+        return( m_oRoomChangeMap.get( strRoomID ) );
+    }
+
+    /**
+     * Gets the change of the Edge with the specified identifier.
+     *
+     * @param  strEdgeID  The identifier of the Edge.
+     *
+     * @return  The change of the Edge, or null if it did not change.
+     */
+
+    public Change<Edge> getEdgeChange( String strEdgeID )
+    {
+        // Look up the change of the Edge
+        return( m_oEdgeChangeMap.get( strEdgeID ) );
+    }
+
+    /**
+     * Gets the number of Room changes of the specified kind.
+     *
+     * @param  nKind  The kind of change: ADDED, REMOVED or CHANGED.
+     *
+     * @return  The number of Room changes of the kind.
+     *
+     * @exception  IllegalArgumentException  If nKind is not a kind of
+     *     change.
+     */
+
+    public int getRoomCount( int nKind )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nKind < ADDED || nKind > CHANGED )
+            throw new IllegalArgumentException();
+
+        // Return the number of changes
+        return( m_anRoomCounts[ nKind ] );
+    }
+
+    /**
+     * Gets the number of Edge changes of the specified kind.
+     *
+     * @param  nKind  The kind of change: ADDED, REMOVED or CHANGED.
+     *
+     * @return  The number of Edge changes of the kind.
+     *
+     * @exception  IllegalArgumentException  If nKind is not a kind of
+     *     change.
+     */
+
+    public int getEdgeCount( int nKind )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nKind < ADDED || nKind > CHANGED )
+            throw new IllegalArgumentException();
+
+        // Return the number of changes
+        return( m_anEdgeCounts[ nKind ] );
+    }
+
+    /**
+     * Indicates if the Maps are the same.
+     *
+     * @return  A flag indicating if there are no changes.
+     */
+
+    public boolean isEmpty()
+    {
+        // The Maps are the same if nothing changed
+        return( m_alRoomChanges.isEmpty() && m_alEdgeChanges.isEmpty() );
+    }
+
+    /**
+     * Gets a one-line summary of the number of changes of each kind.
+     *
+     * @return  The summary.
+     */
+
+    public String getSummary()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        StringBuilder sb;  // Buffer used to build the summary
+        int           nI;  // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Count the Room changes and then the Edge changes of each kind
+        sb = new StringBuilder( "rooms" );
+        for( nI = 0; nI < KIND_NAMES.length; nI++ )
+            sb.append( nI == 0 ? ": " : ", " ).append( m_anRoomCounts[ nI ] ).append( ' ' ).append( KIND_NAMES[ nI ] );
+        sb.append( "; edges" );
+        for( nI = 0; nI < KIND_NAMES.length; nI++ )
+            sb.append( nI == 0 ? ": " : ", " ).append( m_anEdgeCounts[ nI ] ).append( ' ' ).append( KIND_NAMES[ nI ] );
+        return( sb.toString() );
+    }
+
+    /**
+     * Writes the changes as a change set of one line per change, the Room
+     * changes before the Edge changes.  Each line begins with '+', '-' or
+     * '~' for a Room or Edge that was added, removed or changed, followed
+     * by "room" or "edge" and the identifier.  An added Room or Edge is
+     * followed by all its properties and a changed one by the properties
+     * that changed, with their new values, except that the new description
+     * of a Room is not written.  The writer is not flushed or closed.
+     *
+     * @param  oWriter  The writer to which the change set is written.
+     *
+     * @exception  IllegalArgumentException  If oWriter is null.
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    public void write( BufferedWriter oWriter )
+        throws IllegalArgumentException, IOException
+    {
+        // Make sure arguments are valid
+        if( oWriter == null )
+            throw new IllegalArgumentException();
+
+        // Write a line for each change
+        for( final Change<Room> oChange : m_alRoomChanges )
+        {
+            oWriter.write( formatChange( oChange ) );
+            oWriter.newLine();
+        }
+        for( final Change<Edge> oChange : m_alEdgeChanges )
+        {
+            oWriter.write( formatChange( oChange ) );
+            oWriter.newLine();
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************    Package Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the properties in which the specified Rooms differ.
+     *
+     * @param  oRoom1  The first Room.
+     * @param  oRoom2  The second Room.
+     *
+     * @return  The flags of the properties that differ.
+     */
+
+    static int getDifferences( Room oRoom1, Room oRoom2 )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nProperties;  // Properties that differ
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Compare each property, comparing compressed descriptions without
+        // inflating them when they are the same
+        nProperties = 0;
+        if( !oRoom1.m_strName.equals( oRoom2.m_strName ) )
+            nProperties |= ROOM_NAME;
+        if( !(oRoom1.m_abDescription != null && oRoom2.m_abDescription != null &&
+                Arrays.equals( oRoom1.m_abDescription, oRoom2.m_abDescription )) &&
+            !oRoom1.getDescription().equals( oRoom2.getDescription() ) )
+            nProperties |= ROOM_DESCRIPTION;
+        if( !oRoom1.m_rectBounds.equals( oRoom2.m_rectBounds ) )
+            nProperties |= ROOM_BOUNDS;
+        if( !isSameColor( oRoom1.m_clrForeground, oRoom2.m_clrForeground ) )
+            nProperties |= ROOM_FOREGROUND;
+        if( !isSameColor( oRoom1.m_clrBackground, oRoom2.m_clrBackground ) )
+            nProperties |= ROOM_BACKGROUND;
+        return( nProperties );
+    }
+
+    /**
+     * Gets the properties in which the specified Edges differ.
+     *
+     * @param  oEdge1  The first Edge.
+     * @param  oEdge2  The second Edge.
+     *
+     * @return  The flags of the properties that differ.
+     */
+
+    static int getDifferences( Edge oEdge1, Edge oEdge2 )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nProperties;  // Properties that differ
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Compare each property
+        nProperties = 0;
+        if( !oEdge1.m_strStartRoomID.equals( oEdge2.m_strStartRoomID ) ||
+            !oEdge1.m_strEndRoomID.equals( oEdge2.m_strEndRoomID ) ||
+            oEdge1.m_nStartExit != oEdge2.m_nStartExit || oEdge1.m_nEndExit != oEdge2.m_nEndExit )
+            nProperties |= EDGE_ENDS;
+        if( oEdge1.m_bOneWay != oEdge2.m_bOneWay )
+            nProperties |= EDGE_ONE_WAY;
+        if( oEdge1.m_bSecret != oEdge2.m_bSecret )
+            nProperties |= EDGE_SECRET;
+        if( !Arrays.equals( oEdge1.m_aptBends, oEdge2.m_aptBends ) )
+            nProperties |= EDGE_BENDS;
+        return( nProperties );
+    }
+
+    /**
+     * Formats the specified Room or Edge change as a line of a change set.
+     *
+     * @param  oChange  The change to be formatted.
+     *
+     * @return  The line of the change set, without a line separator.
+     */
+
+    static String formatChange( Change<?> oChange )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        StringBuilder sb;           // Buffer used to build the line
+        Object        oObject;      // Room or Edge described
+        Room          oRoom;        // Room described
+        Edge          oEdge;        // Edge described
+        Rectangle     rect;         // Bounds of the Room
+        int           nProperties;  // Properties written
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Begin the line with the kind of change, the type and the ID
+        sb = new StringBuilder( 64 );
+        oObject = oChange.m_nKind == REMOVED ? oChange.m_oOld : oChange.m_oNew;
+        sb.append( KIND_MARKS[ oChange.m_nKind ] ).append( oObject instanceof Room ? " room " : " edge " );
+        sb.append( oChange.m_strID );
+        nProperties = oChange.m_nProperties;
+
+        // Append the properties of a Room; the name of a removed Room is
+        // written to make it easy to recognize
+        if( oObject instanceof Room )
+        {
+            oRoom = (Room)oObject;
+            if( oChange.m_nKind == REMOVED || (nProperties & ROOM_NAME) != 0 )
+                appendQuoted( sb.append( " name=" ), oRoom.m_strName );
+            if( (nProperties & ROOM_DESCRIPTION) != 0 )
+                sb.append( " description" );
+            if( (nProperties & ROOM_BOUNDS) != 0 )
+            {
+                rect = oRoom.m_rectBounds;
+                sb.append( " bounds=" ).append( rect.x ).append( ',' ).append( rect.y ).append( ',' );
+                sb.append( rect.width ).append( ',' ).append( rect.height );
+            }
+            if( (nProperties & ROOM_FOREGROUND) != 0 )
+                sb.append( " foreground=" ).append( formatColor( oRoom.m_clrForeground ) );
+            if( (nProperties & ROOM_BACKGROUND) != 0 )
+                sb.append( " background=" ).append( formatColor( oRoom.m_clrBackground ) );
+        }
+
+        // Append the properties of an Edge; the flags of an added Edge are
+        // only written when they are set
+        else
+        {
+            oEdge = (Edge)oObject;
+            if( oChange.m_nKind == ADDED )
+                nProperties = EDGE_ENDS | (oEdge.m_bOneWay ? EDGE_ONE_WAY : 0) |
+                    (oEdge.m_bSecret ? EDGE_SECRET : 0) | (oEdge.m_aptBends != null ? EDGE_BENDS : 0);
+            if( oChange.m_nKind == REMOVED || (nProperties & EDGE_ENDS) != 0 )
+            {
+                sb.append( " ends=" ).append( oEdge.m_strStartRoomID ).append( '.' );
+                sb.append( Room.getExitName( oEdge.m_nStartExit ) ).append( '>' );
+                sb.append( oEdge.m_strEndRoomID ).append( '.' ).append( Room.getExitName( oEdge.m_nEndExit ) );
+            }
+            if( (nProperties & EDGE_ONE_WAY) != 0 )
+                sb.append( " oneway=" ).append( oEdge.m_bOneWay );
+            if( (nProperties & EDGE_SECRET) != 0 )
+                sb.append( " secret=" ).append( oEdge.m_bSecret );
+            if( (nProperties & EDGE_BENDS) != 0 )
+            {
+                if( oEdge.m_aptBends == null )
+                    sb.append( " bends=none" );
+                else
+                    appendQuoted( sb.append( " bends=" ), Edge.formatBends( oEdge.m_aptBends ) );
+            }
+        }
+        return( sb.toString() );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Indicates if the specified colors are the same.
+     *
+     * @param  clr1  The first color; may be null.
+     * @param  clr2  The second color; may be null.
+     *
+     * @return  A flag indicating if the colors are the same.
+     */
+
+    protected static boolean isSameColor( Color clr1, Color clr2 )
+    {
+        // Compare the colors, either of which may be inherited
+        return( clr1 == null ? clr2 == null : clr1.equals( clr2 ) );
+    }
+
+    /**
+     * Formats the specified color as it is written to IFMML.
+     *
+     * @param  clr  The color; may be null.
+     *
+     * @return  The formatted color, or "none" if the color is null.
+     */
+
+    protected static String formatColor( Color clr )
+    {
+        // Format the RGB value as six hexadecimal digits
+        if( clr == null )
+            return( "none" );
+        return( String.format( "#%06X", clr.getRGB() & 0x00FFFFFF ) );
+    }
+
+    /**
+     * Appends the specified text in double quotes, escaping quotes,
+     * backslashes and line breaks so that the text fits on one line.
+     *
+     * @param  sb  The buffer to which the text is appended.
+     * @param  str  The text to be appended.
+     *
+     * @return  The buffer.
+     */
+
+    protected static StringBuilder appendQuoted( StringBuilder sb, String str )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        char c;   // Character of the text
+        int  nI;  // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Append each character, escaping those that would end the text
+        sb.append( '"' );
+        for( nI = 0; nI < str.length(); nI++ )
+        {
+            c = str.charAt( nI );
+            if( c == '"' || c == '\\' )
+                sb.append( '\\' ).append( c );
+            else if( c == '\n' )
+                sb.append( "\\n" );
+            else if( c == '\r' )
+                sb.append( "\\r" );
+            else
+                sb.append( c );
+        }
+        return( sb.append( '"' ) );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Adds the specified Room change.
+     *
+     * @param  oChange  The Room change to be added.
+     */
+
+    protected void addRoomChange( Change<Room> oChange )
+    {
+        // Add and count the change
+        m_alRoomChanges.add( oChange );
+        m_oRoomChangeMap.put( oChange.m_strID, oChange );
+        m_anRoomCounts[ oChange.m_nKind ]++;
+    }
+
+    /**
+     * Adds the specified Edge change.
+     *
+     * @param  oChange  The Edge change to be added.
+     */
+
+    protected void addEdgeChange( Change<Edge> oChange )
+    {
+        // Add and count the change
+        m_alEdgeChanges.add( oChange );
+        m_oEdgeChangeMap.put( oChange.m_strID, oChange );
+        m_anEdgeCounts[ oChange.m_nKind ]++;
+    }
+
+
+    // **********************************************************************
+    // *********************        Inner Classes       *********************
+    // **********************************************************************
+
+    /**
+     * The change of a Room or Edge between the old and the new Map.
+     *
+     * @param  <T>  The type of object changed: Room or Edge.
+     */
+
+    public static class Change<T>
+        extends Object
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The kind of change: ADDED, REMOVED or CHANGED.
+         */
+        int m_nKind;
+
+        /**
+         * The identifier of the Room or Edge.
+         */
+        String m_strID;
+
+        /**
+         * The Room or Edge of the old Map; null if it was added.
+         */
+        T m_oOld;
+
+        /**
+         * The Room or Edge of the new Map; null if it was removed.
+         */
+        T m_oNew;
+
+        /**
+         * The flags of the properties that changed.
+         */
+        int m_nProperties;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new Change.
+         *
+         * @param  nKind  The kind of change.
+         * @param  strID  The identifier of the Room or Edge.
+         * @param  oOld  The Room or Edge of the old Map.
+         * @param  oNew  The Room or Edge of the new Map.
+         * @param  nProperties  The flags of the properties that changed.
+         */
+
+        Change( int nKind, String strID, T oOld, T oNew, int nProperties )
+        {
+            // Initialize instance variables
+            m_nKind = nKind;
+            m_strID = strID;
+            m_oOld = oOld;
+            m_oNew = oNew;
+            m_nProperties = nProperties;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Public Instance Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Gets the kind of change.
+         *
+         * @return  ADDED, REMOVED or CHANGED.
+         */
+
+        public int getKind()
+        {
+            // Return the kind of change
+            return( m_nKind );
+        }
+
+        /**
+         * Gets the identifier of the Room or Edge that changed.
+         *
+         * @return  The identifier.
+         */
+
+        public String getID()
+        {
+            // Return the identifier
+            return( m_strID );
+        }
+
+        /**
+         * Gets the Room or Edge of the old Map.
+         *
+         * @return  The Room or Edge, or null if it was added.
+         */
+
+        public T getOld()
+        {
+            // Return the old Room or Edge
+            return( m_oOld );
+        }
+
+        /**
+         * Gets the Room or Edge of the new Map.
+         *
+         * @return  The Room or Edge, or null if it was removed.
+         */
+
+        public T getNew()
+        {
+            // Return the new Room or Edge
+            return( m_oNew );
+        }
+
+        /**
+         * Gets the properties that changed.  All the properties of an
+         * added Room or Edge are changed and none of a removed one.
+         *
+         * @return  The flags of the properties that changed.
+         */
+
+        public int getProperties()
+        {
+            // Return the properties
+            return( m_nProperties );
+        }
+
+        /**
+         * @see  java.lang.Object#toString  toString
+         */
+
+        public String toString()
+        {
+            // Format the change as a line of a change set
+            return( formatChange( this ) );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************        Comparators         *********************
+    // **********************************************************************
+
+    /**
+     * The object that orders changes by their identifiers, so that "Room9"
+     * comes before "Room10".
+     *
+     * @param  <T>  The type of object changed: Room or Edge.
+     */
+
+    protected static class ChangeComparator<T>
+        extends Object
+        implements Comparator<Change<T>>
+    {
+        // ------------------------------------------------------------------
+        // -----------------    Comparator Methods    -----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.Comparator#compare  compare
+         */
+
+        public int compare( Change<T> oChange1, Change<T> oChange2 )
+        {
+            // Compare shorter identifiers first, then the characters
+            int nDiff = oChange1.m_strID.length() - oChange2.m_strID.length();
+            return( nDiff != 0 ? nDiff : oChange1.m_strID.compareTo( oChange2.m_strID ) );
+        }
+    }
+}
@@ -0,0 +1,859 @@
+/*
+ * MapGenerator.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Rectangle;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * The object that generates synthetic maps for benchmarking and soak
+ * testing.  The rooms of each level are laid out in a square grid and
+ * connected to their compass neighbors, and the levels are stacked
+ * vertically and connected by up/down exits.  A share of the edges are
+ * one-way or secret, some rooms have an edge that loops back to the same
+ * room, and every room has a generated description.  The same settings and
+ * seed always generate the same map.
+ *
+ * <p>The generator may also be run from the command line to write a map
+ * to an IFMML file:
+ *
+ * <pre>
+ *     java soloff.steven.ifmap.MapGenerator [options] file
+ * </pre>
+ *
+ * Run it without arguments for a list of options.
+ */
+
+public class MapGenerator
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The default number of rooms.
+     */
+    public static final int DEFAULT_ROOM_COUNT = 1000;
+
+    /**
+     * The default number of levels.
+     */
+    public static final int DEFAULT_LEVEL_COUNT = 1;
+
+    /**
+     * The default average number of compass edges per room.
+     */
+    public static final double DEFAULT_EDGE_DENSITY = 2.0;
+
+    /**
+     * The default fraction of edges that are one-way.
+     */
+    public static final double DEFAULT_ONE_WAY_RATIO = 0.1;
+
+    /**
+     * The default fraction of edges that are secret.
+     */
+    public static final double DEFAULT_SECRET_RATIO = 0.05;
+
+    /**
+     * The default fraction of rooms that have a self-loop.
+     */
+    public static final double DEFAULT_SELF_LOOP_RATIO = 0.02;
+
+    /**
+     * The default fraction of rooms that are connected to the level below.
+     */
+    public static final double DEFAULT_STAIR_RATIO = 0.05;
+
+    /**
+     * The default average number of words in a room description.
+     */
+    public static final int DEFAULT_DESCRIPTION_LENGTH = 60;
+
+    /**
+     * The maximum average number of compass edges per room.  Each room has
+     * four forward compass neighbors (east, south, southeast, and
+     * northeast).
+     */
+    public static final double MAX_EDGE_DENSITY = 4.0;
+
+    /**
+     * The horizontal distance between the origins of adjacent rooms.
+     */
+    protected static final int ROOM_SPACING_X = RoomUI.MIN_ROOM_WIDTH * 2;
+
+    /**
+     * The vertical distance between the origins of adjacent rooms.
+     */
+    protected static final int ROOM_SPACING_Y = RoomUI.MIN_ROOM_HEIGHT * 2;
+
+    /**
+     * The vertical distance between adjacent levels.
+     */
+    protected static final int LEVEL_SPACING = ROOM_SPACING_Y * 2;
+
+    /**
+     * The offsets (column, row) of the forward compass neighbors of a room
+     * and the exits that connect them.  Each entry is { column offset, row
+     * offset, start exit, end exit }.
+     */
+    protected static final int[][] COMPASS_NEIGHBORS =
+    {
+        { 1, 0, Room.EXIT_E, Room.EXIT_W },
+        { 0, 1, Room.EXIT_S, Room.EXIT_N },
+        { 1, 1, Room.EXIT_SE, Room.EXIT_NW },
+        { 1, -1, Room.EXIT_NE, Room.EXIT_SW }
+    };
+
+    /**
+     * The adjectives used to generate room names.
+     */
+    protected static final String[] NAME_ADJECTIVES =
+    {
+        "Dusty", "Narrow", "Grand", "Damp", "Dark", "Quiet", "Ruined",
+        "Hidden", "Twisty", "Cold", "Sunlit", "Forgotten", "Echoing", "Low"
+    };
+
+    /**
+     * The nouns used to generate room names.
+     */
+    protected static final String[] NAME_NOUNS =
+    {
+        "Cellar", "Passage", "Hall", "Cave", "Chamber", "Library", "Kitchen",
+        "Garden", "Attic", "Tunnel", "Crypt", "Gallery", "Landing", "Study"
+    };
+
+    /**
+     * The words used to generate room descriptions.
+     */
+    protected static final String[] DESCRIPTION_WORDS =
+    {
+        "the", "a", "room", "wall", "floor", "door", "dust", "light", "old",
+        "stone", "wooden", "passage", "leads", "north", "south", "east",
+        "west", "up", "down", "you", "see", "here", "is", "of", "and", "with",
+        "lamp", "table", "shadow", "faint", "smell", "damp", "cold", "narrow",
+        "stairs", "window", "broken", "heavy", "carved", "symbols", "quiet"
+    };
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The number of rooms.
+     */
+    protected int m_nRoomCount;
+
+    /**
+     * The number of levels.
+     */
+    protected int m_nLevelCount;
+
+    /**
+     * The average number of compass edges per room.
+     */
+    protected double m_dEdgeDensity;
+
+    /**
+     * The fraction of edges that are one-way.
+     */
+    protected double m_dOneWayRatio;
+
+    /**
+     * The fraction of edges that are secret.
+     */
+    protected double m_dSecretRatio;
+
+    /**
+     * The fraction of rooms that have a self-loop.
+     */
+    protected double m_dSelfLoopRatio;
+
+    /**
+     * The fraction of rooms that are connected to the level below.
+     */
+    protected double m_dStairRatio;
+
+    /**
+     * The average number of words in a room description.
+     */
+    protected int m_nDescriptionLength;
+
+    /**
+     * The seed of the random number generator.
+     */
+    protected long m_lSeed;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapGenerator object that uses the default settings.
+     */
+
+    public MapGenerator()
+    {
+        // Initialize instance variables
+        m_nRoomCount = DEFAULT_ROOM_COUNT;
+        m_nLevelCount = DEFAULT_LEVEL_COUNT;
+        m_dEdgeDensity = DEFAULT_EDGE_DENSITY;
+        m_dOneWayRatio = DEFAULT_ONE_WAY_RATIO;
+        m_dSecretRatio = DEFAULT_SECRET_RATIO;
+        m_dSelfLoopRatio = DEFAULT_SELF_LOOP_RATIO;
+        m_dStairRatio = DEFAULT_STAIR_RATIO;
+        m_nDescriptionLength = DEFAULT_DESCRIPTION_LENGTH;
+        m_lSeed = 0L;
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Sets the number of rooms.
+     *
+     * @param  nRoomCount  The number of rooms.
+     *
+     * @exception  IllegalArgumentException  If nRoomCount is less than 1.
+     */
+
+    public void setRoomCount( int nRoomCount )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nRoomCount < 1 )
+            throw new IllegalArgumentException();
+
+        // Set the room count
+        m_nRoomCount = nRoomCount;
+    }
+
+    /**
+     * Sets the number of levels.  The rooms are divided evenly among the
+     * levels.
+     *
+     * @param  nLevelCount  The number of levels.
+     *
+     * @exception  IllegalArgumentException  If nLevelCount is less than 1.
+     */
+
+    public void setLevelCount( int nLevelCount )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nLevelCount < 1 )
+            throw new IllegalArgumentException();
+
+        // Set the level count
+        m_nLevelCount = nLevelCount;
+    }
+
+    /**
+     * Sets the average number of compass edges per room.  Rooms on the
+     * border of a level have fewer neighbors, so the actual density is
+     * slightly lower.
+     *
+     * @param  dEdgeDensity  The average number of compass edges per room.
+     *
+     * @exception  IllegalArgumentException  If dEdgeDensity is not between
+     *     0 and MAX_EDGE_DENSITY.
+     */
+
+    public void setEdgeDensity( double dEdgeDensity )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( dEdgeDensity < 0.0 || dEdgeDensity > MAX_EDGE_DENSITY )
+            throw new IllegalArgumentException();
+
+        // Set the edge density
+        m_dEdgeDensity = dEdgeDensity;
+    }
+
+    /**
+     * Sets the fraction of edges that are one-way.
+     *
+     * @param  dOneWayRatio  The fraction of edges that are one-way.
+     *
+     * @exception  IllegalArgumentException  If dOneWayRatio is not between
+     *     0 and 1.
+     */
+
+    public void setOneWayRatio( double dOneWayRatio )
+        throws IllegalArgumentException
+    {
+        // Set the one-way ratio
+        m_dOneWayRatio = checkRatio( dOneWayRatio );
+    }
+
+    /**
+     * Sets the fraction of edges that are secret.
+     *
+     * @param  dSecretRatio  The fraction of edges that are secret.
+     *
+     * @exception  IllegalArgumentException  If dSecretRatio is not between
+     *     0 and 1.
+     */
+
+    public void setSecretRatio( double dSecretRatio )
+        throws IllegalArgumentException
+    {
+        // Set the secret ratio
+        m_dSecretRatio = checkRatio( dSecretRatio );
+    }
+
+    /**
+     * Sets the fraction of rooms that have an edge that loops back to the
+     * same room.
+     *
+     * @param  dSelfLoopRatio  The fraction of rooms that have a self-loop.
+     *
+     * @exception  IllegalArgumentException  If dSelfLoopRatio is not between
+     *     0 and 1.
+     */
+
+    public void setSelfLoopRatio( double dSelfLoopRatio )
+        throws IllegalArgumentException
+    {
+        // Set the self-loop ratio
+        m_dSelfLoopRatio = checkRatio( dSelfLoopRatio );
+    }
+
+    /**
+     * Sets the fraction of rooms that are connected to the room in the same
+     * position on the level below by their down exit.
+     *
+     * @param  dStairRatio  The fraction of rooms connected to the level
+     *     below.
+     *
+     * @exception  IllegalArgumentException  If dStairRatio is not between
+     *     0 and 1.
+     */
+
+    public void setStairRatio( double dStairRatio )
+        throws IllegalArgumentException
+    {
+        // Set the stair ratio
+        m_dStairRatio = checkRatio( dStairRatio );
+    }
+
+    /**
+     * Sets the average number of words in a room description.
+     *
+     * @param  nDescriptionLength  The average number of words in a room
+     *     description.
+     *
+     * @exception  IllegalArgumentException  If nDescriptionLength is
+     *     negative.
+     */
+
+    public void setDescriptionLength( int nDescriptionLength )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nDescriptionLength < 0 )
+            throw new IllegalArgumentException();
+
+        // Set the description length
+        m_nDescriptionLength = nDescriptionLength;
+    }
+
+    /**
+     * Sets the seed of the random number generator.
+     *
+     * @param  lSeed  The seed of the random number generator.
+     */
+
+    public void setSeed( long lSeed )
+    {
+        // Set the seed
+        m_lSeed = lSeed;
+    }
+
+    /**
+     * Generates a new Map using the current settings.  The room and edge
+     * identifier counters are reset, so the same settings always generate
+     * identical maps.
+     *
+     * @return  The new Map.
+     */
+
+    public Map generate()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Map    oMap;             // The new map
+        Room[] aoRooms;          // The rooms of the map in level/grid order
+        int[]  anUsedExits;      // Bit set of the exits used by each room
+        Random oRandom;          // Random number generator
+        int    nRoomsPerLevel,   // Number of rooms on each level
+               nColumns,         // Number of columns in the grid of a level
+               nRows,            // Number of rows in the grid of a level
+               nLevel,           // Level of the current room
+               nRow,             // Grid row of the current room
+               nColumn,          // Grid column of the current room
+               nNeighbor,        // Index of a neighbor of the current room
+               nI;               // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Create an empty map and reset the identifier counters
+        oMap = new Map();
+        oMap.clear();
+        oRandom = new Random( m_lSeed );
+
+        // Compute the grid dimensions of each level
+        nRoomsPerLevel = (m_nRoomCount + m_nLevelCount - 1) / m_nLevelCount;
+        nColumns = (int)Math.ceil( Math.sqrt( nRoomsPerLevel ) );
+        nRows = (nRoomsPerLevel + nColumns - 1) / nColumns;
+
+        // Create the rooms, stacking the levels vertically
+        aoRooms = new Room[ m_nRoomCount ];
+        anUsedExits = new int[ m_nRoomCount ];
+        for( nI = 0; nI < m_nRoomCount; nI++ )
+        {
+            nLevel = nI / nRoomsPerLevel;
+            nRow = (nI % nRoomsPerLevel) / nColumns;
+            nColumn = (nI % nRoomsPerLevel) % nColumns;
+            aoRooms[ nI ] = oMap.createRoom();
+            aoRooms[ nI ].setName( generateName( oRandom, nLevel, nRow, nColumn ) );
+            aoRooms[ nI ].setDescription( generateDescription( oRandom ) );
+            aoRooms[ nI ].setBounds( new Rectangle( nColumn * ROOM_SPACING_X,
+                nLevel * (nRows * ROOM_SPACING_Y + LEVEL_SPACING) + nRow * ROOM_SPACING_Y,
+                RoomUI.MIN_ROOM_WIDTH, RoomUI.MIN_ROOM_HEIGHT ) );
+        }
+
+        // Connect each room to its forward compass neighbors on the same
+        // level and to the room in the same position on the level below
+        for( nI = 0; nI < m_nRoomCount; nI++ )
+        {
+            nRow = (nI % nRoomsPerLevel) / nColumns;
+            nColumn = (nI % nRoomsPerLevel) % nColumns;
+            for( final int[] neighbor : COMPASS_NEIGHBORS )
+            {
+                if( oRandom.nextDouble() * MAX_EDGE_DENSITY >= m_dEdgeDensity )
+                    continue;
+                if( nColumn + neighbor[ 0 ] >= nColumns || nRow + neighbor[ 1 ] < 0 )
+                    continue;
+                nNeighbor = getRoomIndex( nI - nI % nRoomsPerLevel, nRoomsPerLevel,
+                    (nRow + neighbor[ 1 ]) * nColumns + nColumn + neighbor[ 0 ] );
+                if( nNeighbor >= 0 )
+                    connect( oMap, oRandom, aoRooms, anUsedExits, nI, neighbor[ 2 ], nNeighbor, neighbor[ 3 ] );
+            }
+            if( oRandom.nextDouble() < m_dStairRatio && nI + nRoomsPerLevel < m_nRoomCount )
+                connect( oMap, oRandom, aoRooms, anUsedExits, nI, Room.EXIT_D, nI + nRoomsPerLevel, Room.EXIT_U );
+        }
+
+        // Add self-loops on unused exits
+        for( nI = 0; nI < m_nRoomCount; nI++ )
+        {
+            if( oRandom.nextDouble() < m_dSelfLoopRatio )
+                addSelfLoop( oMap, oRandom, aoRooms, anUsedExits, nI );
+        }
+
+        // Size the map to hold all rooms and return it
+        for( final Room room : aoRooms )
+        {
+            oMap.m_dmMap.width = Math.max( oMap.m_dmMap.width, room.m_rectBounds.x + room.m_rectBounds.width );
+            oMap.m_dmMap.height = Math.max( oMap.m_dmMap.height, room.m_rectBounds.y + room.m_rectBounds.height );
+        }
+        return( oMap );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Gets the index of the room at the specified position within a level.
+     *
+     * @param  nLevelStart  The index of the first room of the level.
+     * @param  nRoomsPerLevel  The number of rooms on each level.
+     * @param  nIndex  The index of the room within the level.
+     *
+     * @return  The index of the room or -1 if there is no room at the
+     *     position.
+     */
+
+    protected int getRoomIndex( int nLevelStart, int nRoomsPerLevel, int nIndex )
+    {
+        // Make sure the room lies within the level and the map
+        if( nIndex < 0 || nIndex >= nRoomsPerLevel || nLevelStart + nIndex >= m_nRoomCount )
+            return( -1 );
+        return( nLevelStart + nIndex );
+    }
+
+    /**
+     * Connects the specified exits of two rooms with a new edge.  The edge
+     * is randomly made one-way (in either direction) or secret.
+     *
+     * @param  oMap  The map in which the edge is created.
+     * @param  oRandom  The random number generator.
+     * @param  aoRooms  The rooms of the map in level/grid order.
+     * @param  anUsedExits  The bit set of the exits used by each room.
+     * @param  nStartRoom  The index of the first room.
+     * @param  nStartExit  The exit of the first room.
+     * @param  nEndRoom  The index of the second room.
+     * @param  nEndExit  The exit of the second room.
+     */
+
+    protected void connect( Map oMap, Random oRandom, Room[] aoRooms, int[] anUsedExits, int nStartRoom,
+        int nStartExit, int nEndRoom, int nEndExit )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Edge    oEdge;     // The new edge
+        boolean bOneWay;   // Indicates the edge is one-way
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Create the edge, reversing one-way edges half of the time so that
+        // they point in both directions
+        bOneWay = oRandom.nextDouble() < m_dOneWayRatio;
+        if( bOneWay && oRandom.nextBoolean() )
+            oEdge = oMap.createEdge( aoRooms[ nEndRoom ], nEndExit, aoRooms[ nStartRoom ], nStartExit );
+        else
+            oEdge = oMap.createEdge( aoRooms[ nStartRoom ], nStartExit, aoRooms[ nEndRoom ], nEndExit );
+        oEdge.setOneWay( bOneWay );
+        oEdge.setSecret( oRandom.nextDouble() < m_dSecretRatio );
+
+        // Mark the exits as used
+        anUsedExits[ nStartRoom ] |= 1 << nStartExit;
+        anUsedExits[ nEndRoom ] |= 1 << nEndExit;
+    }
+
+    /**
+     * Adds an edge that starts and ends at the specified room.  The edge
+     * connects two randomly chosen unused exits of the room, or loops from
+     * an unused exit back to itself if the room has only one unused exit.
+     *
+     * @param  oMap  The map in which the edge is created.
+     * @param  oRandom  The random number generator.
+     * @param  aoRooms  The rooms of the map in level/grid order.
+     * @param  anUsedExits  The bit set of the exits used by each room.
+     * @param  nRoom  The index of the room.
+     */
+
+    protected void addSelfLoop( Map oMap, Random oRandom, Room[] aoRooms, int[] anUsedExits, int nRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nStartExit,  // Exit at which the self-loop starts
+            nEndExit;    // Exit at which the self-loop ends
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Choose the exits of the self-loop
+        nStartExit = chooseUnusedExit( oRandom, anUsedExits[ nRoom ] );
+        if( nStartExit < 0 )
+            return;
+        nEndExit = chooseUnusedExit( oRandom, anUsedExits[ nRoom ] | (1 << nStartExit) );
+        if( nEndExit < 0 || oRandom.nextBoolean() )
+            nEndExit = nStartExit;
+
+        // Create the self-loop
+        connect( oMap, oRandom, aoRooms, anUsedExits, nRoom, nStartExit, nRoom, nEndExit );
+    }
+
+    /**
+     * Chooses a random exit that is not in the specified set of used exits.
+     *
+     * @param  oRandom  The random number generator.
+     * @param  nUsedExits  The bit set of used exits.
+     *
+     * @return  The unused exit or -1 if all exits are used.
+     */
+
+    protected int chooseUnusedExit( Random oRandom, int nUsedExits )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nUnusedCount,  // Number of unused exits
+            nChoice,       // Index of the chosen exit among unused exits
+            nExit;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Count the unused exits
+        nUnusedCount = Room.NUM_EXITS - Integer.bitCount( nUsedExits & ((1 << Room.NUM_EXITS) - 1) );
+        if( nUnusedCount == 0 )
+            return( -1 );
+
+        // Find the chosen unused exit
+        nChoice = oRandom.nextInt( nUnusedCount );
+        for( nExit = Room.EXIT_FIRST; nExit <= Room.EXIT_LAST; nExit++ )
+        {
+            if( (nUsedExits & (1 << nExit)) == 0 && nChoice-- == 0 )
+                return( nExit );
+        }
+        return( -1 );
+    }
+
+    /**
+     * Generates the name of a room.
+     *
+     * @param  oRandom  The random number generator.
+     * @param  nLevel  The level of the room.
+     * @param  nRow  The grid row of the room.
+     * @param  nColumn  The grid column of the room.
+     *
+     * @return  The name of the room.
+     */
+
+    protected String generateName( Random oRandom, int nLevel, int nRow, int nColumn )
+    {
+        // Combine a random adjective and noun with the room position
+        return( NAME_ADJECTIVES[ oRandom.nextInt( NAME_ADJECTIVES.length ) ] + " " +
+            NAME_NOUNS[ oRandom.nextInt( NAME_NOUNS.length ) ] + " " +
+            (nLevel + 1) + "-" + (nRow + 1) + "-" + (nColumn + 1) );
+    }
+
+    /**
+     * Generates the description of a room.  The number of words is chosen
+     * uniformly between half and one and a half times the average
+     * description length.
+     *
+     * @param  oRandom  The random number generator.
+     *
+     * @return  The description of the room.
+     */
+
+    protected String generateDescription( Random oRandom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        StringBuilder sb;            // Buffer holding the description
+        String        strWord;       // The next word
+        int           nWordCount,    // Number of words in the description
+                      nSentenceEnd,  // Index of the word that ends the sentence
+                      nI;            // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure there is something to generate
+        if( m_nDescriptionLength == 0 )
+            return( "" );
+
+        // Generate sentences of random words
+        nWordCount = m_nDescriptionLength / 2 + oRandom.nextInt( m_nDescriptionLength + 1 );
+        sb = new StringBuilder( nWordCount * 8 );
+        for( nI = 0, nSentenceEnd = -1; nI < nWordCount; nI++ )
+        {
+            strWord = DESCRIPTION_WORDS[ oRandom.nextInt( DESCRIPTION_WORDS.length ) ];
+            if( nI > nSentenceEnd )
+            {
+                // Begin a new sentence
+                if( nI > 0 )
+                    sb.append( ' ' );
+                sb.append( Character.toUpperCase( strWord.charAt( 0 ) ) ).append( strWord, 1, strWord.length() );
+                nSentenceEnd = nI + 4 + oRandom.nextInt( 12 );
+            }
+            else
+                sb.append( ' ' ).append( strWord );
+            if( nI == nSentenceEnd || nI == nWordCount - 1 )
+                sb.append( '.' );
+        }
+        return( sb.toString() );
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Writes the specified Map to the specified file as an IFMML document.
+     *
+     * @param  oMap  The Map to be written.
+     * @param  oFile  The file to which the Map is written.
+     *
+     * @exception  IllegalArgumentException  If oMap or oFile is null.
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    public static void write( Map oMap, File oFile )
+        throws IllegalArgumentException, IOException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || oFile == null )
+            throw new IllegalArgumentException();
+
+        // Write the document to the file
+        BufferedWriter oWriter = new BufferedWriter( new FileWriter( oFile ) );
+        try
+        {
+            IFMapDoc.writeDocument( oMap, oWriter );
+        }
+        finally
+        {
+            oWriter.close();
+        }
+    }
+
+    /**
+     * Generates a Map and writes it to an IFMML file.
+     *
+     * @param  args  Array of command-line arguments.  The last argument is
+     *     the name of the file to be written and the others are pairs of
+     *     option names and values.
+     */
+
+    public static void main( String[] args )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapGenerator oGenerator;  // The generator
+        Map          oMap;        // The generated map
+        File         oFile;       // The file to be written
+        int          nI;          // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure there is an output file and the options are paired
+        if( args.length % 2 == 0 )
+            exitWithUsage( null );
+
+        // Apply the options
+        oGenerator = new MapGenerator();
+        for( nI = 0; nI < args.length - 1; nI += 2 )
+        {
+            try
+            {
+                if( args[ nI ].equals( "-rooms" ) )
+                    oGenerator.setRoomCount( Integer.parseInt( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-levels" ) )
+                    oGenerator.setLevelCount( Integer.parseInt( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-density" ) )
+                    oGenerator.setEdgeDensity( Double.parseDouble( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-oneway" ) )
+                    oGenerator.setOneWayRatio( Double.parseDouble( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-secret" ) )
+                    oGenerator.setSecretRatio( Double.parseDouble( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-selfloops" ) )
+                    oGenerator.setSelfLoopRatio( Double.parseDouble( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-stairs" ) )
+                    oGenerator.setStairRatio( Double.parseDouble( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-words" ) )
+                    oGenerator.setDescriptionLength( Integer.parseInt( args[ nI + 1 ] ) );
+                else if( args[ nI ].equals( "-seed" ) )
+                    oGenerator.setSeed( Long.parseLong( args[ nI + 1 ] ) );
+                else
+                    exitWithUsage( "Unknown option: " + args[ nI ] );
+            }
+            catch( IllegalArgumentException e )
+            {
+                // NumberFormatException is also an IllegalArgumentException
+                exitWithUsage( "Invalid value for " + args[ nI ] + ": " + args[ nI + 1 ] );
+            }
+        }
+
+        // Generate the map and write it
+        oFile = new File( args[ args.length - 1 ] );
+        oMap = oGenerator.generate();
+        try
+        {
+            write( oMap, oFile );
+        }
+        catch( IOException e )
+        {
+            System.err.println( e.getMessage() );
+            System.exit( 1 );
+        }
+        System.out.println( "Generated " + oMap.m_oRoomMap.size() + " rooms and " +
+            oMap.m_oEdgeMap.size() + " edges in " + oFile.getPath() );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Checks that the specified ratio is between 0 and 1.
+     *
+     * @param  dRatio  The ratio to be checked.
+     *
+     * @return  The ratio.
+     *
+     * @exception  IllegalArgumentException  If dRatio is not between 0 and 1.
+     */
+
+    protected static double checkRatio( double dRatio )
+        throws IllegalArgumentException
+    {
+        // Make sure the ratio is valid
+        if( !(dRatio >= 0.0 && dRatio <= 1.0) )
+            throw new IllegalArgumentException();
+        return( dRatio );
+    }
+
+    /**
+     * Prints the command-line usage and exits with an error status.
+     *
+     * @param  strError  The error to be printed before the usage; null if
+     *     there is no error.
+     */
+
+    protected static void exitWithUsage( String strError )
+    {
+        // Print the error and the usage and exit
+        if( strError != null )
+            System.err.println( strError );
+        System.err.println( "Usage: java soloff.steven.ifmap.MapGenerator [options] file" );
+        System.err.println( "Options:" );
+        System.err.println( "  -rooms <n>        number of rooms (default " + DEFAULT_ROOM_COUNT + ")" );
+        System.err.println( "  -levels <n>       number of levels (default " + DEFAULT_LEVEL_COUNT + ")" );
+        System.err.println( "  -density <d>      compass edges per room, 0 to " + MAX_EDGE_DENSITY +
+            " (default " + DEFAULT_EDGE_DENSITY + ")" );
+        System.err.println( "  -oneway <r>       fraction of one-way edges (default " + DEFAULT_ONE_WAY_RATIO + ")" );
+        System.err.println( "  -secret <r>       fraction of secret edges (default " + DEFAULT_SECRET_RATIO + ")" );
+        System.err.println( "  -selfloops <r>    fraction of rooms with a self-loop (default " +
+            DEFAULT_SELF_LOOP_RATIO + ")" );
+        System.err.println( "  -stairs <r>       fraction of rooms connected to the level below (default " +
+            DEFAULT_STAIR_RATIO + ")" );
+        System.err.println( "  -words <n>        average words per description (default " +
+            DEFAULT_DESCRIPTION_LENGTH + ")" );
+        System.err.println( "  -seed <n>         random seed (default 0)" );
+        System.exit( 1 );
+    }
+}
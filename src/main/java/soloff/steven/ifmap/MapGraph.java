@@ -0,0 +1,630 @@
+/*
+ * MapGraph.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.HashMap;
+
+/**
+ * The object that holds the adjacency of the rooms on a Map in a form
+ * suited to searching it.  Each room and each edge is given a small
+ * integer index, and the endpoints, exits and flags of the edges, and the
+ * edges incident to each room, are kept in arrays indexed by them, so that
+ * a search touches no hashtables and allocates no objects.
+ *
+ * <p>The adjacency is built from the Map when it is first used and is
+ * then kept up to date as a MapListener: adding or removing a single room
+ * or edge only updates the entries concerned, while clearing or loading
+ * the Map causes the adjacency to be rebuilt when it is next used.  The
+ * indices of removed rooms and edges are reused.  Like the Map itself,
+ * the adjacency must only be used on the event dispatch thread.
+ */
+
+public class MapGraph
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * Index used for a room or edge that is not in the adjacency.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The flag bit of a one-way edge.
+     */
+    protected static final int FLAG_ONEWAY = 1 << 8;
+
+    /**
+     * The flag bit of a secret edge.
+     */
+    protected static final int FLAG_SECRET = 1 << 9;
+
+    /**
+     * The mask of the start exit of an edge (the end exit is held in the
+     * following four bits).
+     */
+    protected static final int MASK_EXIT = 0x0f;
+
+    /**
+     * The initial capacity of the list of edges incident to a room.
+     */
+    protected static final int INITIAL_INCIDENT_CAPACITY = 4;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map whose adjacency is held.
+     */
+    protected Map m_oMap;
+
+    /**
+     * Indicates if the adjacency must be rebuilt before it is next used.
+     */
+    protected boolean m_bStale;
+
+    /**
+     * The number of times the indices have been reassigned as a whole or
+     * the arrays have grown.  Searches use it to tell when their own
+     * arrays must be resized.
+     */
+    protected int m_nModCount;
+
+    /**
+     * The index of each room keyed by room ID.
+     */
+    protected HashMap<String, Integer> m_oRoomIndex;
+
+    /**
+     * The room at each room index; null for an unused index.
+     */
+    protected Room[] m_aoRooms;
+
+    /**
+     * The indices of the edges incident to each room.
+     */
+    protected int[][] m_aanIncident;
+
+    /**
+     * The number of edges incident to each room.
+     */
+    protected int[] m_anIncidentCount;
+
+    /**
+     * The number of room indices in use or freed.
+     */
+    protected int m_nRoomLimit;
+
+    /**
+     * The freed room indices available for reuse.
+     */
+    protected int[] m_anFreeRooms;
+
+    /**
+     * The number of freed room indices.
+     */
+    protected int m_nFreeRoomCount;
+
+    /**
+     * The index of each edge keyed by edge ID.
+     */
+    protected HashMap<String, Integer> m_oEdgeIndex;
+
+    /**
+     * The edge at each edge index; null for an unused index.
+     */
+    protected Edge[] m_aoEdges;
+
+    /**
+     * The index of the start room of each edge.
+     */
+    protected int[] m_anEdgeStart;
+
+    /**
+     * The index of the end room of each edge.
+     */
+    protected int[] m_anEdgeEnd;
+
+    /**
+     * The exits and flags of each edge: the start exit in bits 0-3, the
+     * end exit in bits 4-7, and the FLAG_ONEWAY and FLAG_SECRET bits.
+     */
+    protected int[] m_anEdgeFlags;
+
+    /**
+     * The number of edge indices in use or freed.
+     */
+    protected int m_nEdgeLimit;
+
+    /**
+     * The freed edge indices available for reuse.
+     */
+    protected int[] m_anFreeEdges;
+
+    /**
+     * The number of freed edge indices.
+     */
+    protected int m_nFreeEdgeCount;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapGraph object for the specified Map.  The
+     * adjacency is built when it is first used; the caller is responsible
+     * for adding the object as a listener of the Map.
+     *
+     * @param  oMap  The Map whose adjacency is to be held.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public MapGraph( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_bStale = true;
+        m_nModCount = 0;
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Rebuilds the adjacency if the Map has been cleared or loaded since
+     * it was last used.  Searches call this before reading the arrays.
+     */
+
+    public void validate()
+    {
+        // Rebuild the adjacency if necessary
+        if( m_bStale )
+            rebuild();
+    }
+
+    /**
+     * Gets the index of the specified room.
+     *
+     * @param  oRoom  The room whose index is to be returned.
+     *
+     * @return  The index of the room, or NONE if it is not on the Map.
+     */
+
+    public int getRoomIndex( Room oRoom )
+    {
+        // Look up the index and make sure it belongs to the same Room
+        validate();
+        Integer oIndex = m_oRoomIndex.get( oRoom.getID() );
+        if( oIndex == null || m_aoRooms[ oIndex.intValue() ] != oRoom )
+            return( NONE );
+        return( oIndex.intValue() );
+    }
+
+    /**
+     * Gets the room at the specified index.
+     *
+     * @param  nRoom  The index of the room.
+     *
+     * @return  The room, or null if the index is not in use.
+     */
+
+    public Room getRoom( int nRoom )
+    {
+        // Return the room
+        validate();
+        return( m_aoRooms[ nRoom ] );
+    }
+
+    /**
+     * Gets the edge at the specified index.
+     *
+     * @param  nEdge  The index of the edge.
+     *
+     * @return  The edge, or null if the index is not in use.
+     */
+
+    public Edge getEdge( int nEdge )
+    {
+        // Return the edge
+        validate();
+        return( m_aoEdges[ nEdge ] );
+    }
+
+    /**
+     * Gets the number of room indices in use or freed.  All room indices
+     * are less than this limit.
+     *
+     * @return  The limit of the room indices.
+     */
+
+    public int getRoomLimit()
+    {
+        // Return the limit
+        validate();
+        return( m_nRoomLimit );
+    }
+
+    /**
+     * Gets the exit of the specified room to which the specified edge is
+     * connected.
+     *
+     * @param  nEdge  The index of the edge.
+     * @param  nRoom  The index of a room the edge is connected to.
+     *
+     * @return  The exit identifier.
+     */
+
+    public int getExit( int nEdge, int nRoom )
+    {
+        // Return the start exit if the room is the start room of the edge
+        int nFlags = m_anEdgeFlags[ nEdge ];
+        return( m_anEdgeStart[ nEdge ] == nRoom ? nFlags & MASK_EXIT : (nFlags >> 4) & MASK_EXIT );
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // Index the room unless the adjacency will be rebuilt anyway
+        if( !m_bStale )
+            indexRoom( oRoom );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        // Make sure the room is indexed
+        if( m_bStale )
+            return;
+        Integer oIndex = m_oRoomIndex.remove( oRoom.getID() );
+        if( oIndex == null )
+            return;
+
+        // Free the index of the room (its edges have already been removed)
+        int nRoom = oIndex.intValue();
+        m_aoRooms[ nRoom ] = null;
+        m_anIncidentCount[ nRoom ] = 0;
+        if( m_nFreeRoomCount == m_anFreeRooms.length )
+            m_anFreeRooms = grow( m_anFreeRooms, m_nFreeRoomCount + 1 );
+        m_anFreeRooms[ m_nFreeRoomCount++ ] = nRoom;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+        // Index the edge unless the adjacency will be rebuilt anyway
+        if( !m_bStale )
+            indexEdge( oEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+        // Make sure the edge is indexed
+        if( m_bStale )
+            return;
+        Integer oIndex = m_oEdgeIndex.remove( oEdge.getID() );
+        if( oIndex == null )
+            return;
+
+        // Remove the edge from the lists of its rooms and free its index
+        int nEdge = oIndex.intValue();
+        removeIncident( m_anEdgeStart[ nEdge ], nEdge );
+        if( m_anEdgeEnd[ nEdge ] != m_anEdgeStart[ nEdge ] )
+            removeIncident( m_anEdgeEnd[ nEdge ], nEdge );
+        m_aoEdges[ nEdge ] = null;
+        m_anEdgeStart[ nEdge ] = m_anEdgeEnd[ nEdge ] = NONE;
+        if( m_nFreeEdgeCount == m_anFreeEdges.length )
+            m_anFreeEdges = grow( m_anFreeEdges, m_nFreeEdgeCount + 1 );
+        m_anFreeEdges[ m_nFreeEdgeCount++ ] = nEdge;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+        // Update the flags of the edge
+        if( m_bStale )
+            return;
+        Integer oIndex = m_oEdgeIndex.get( oEdge.getID() );
+        if( oIndex != null )
+            m_anEdgeFlags[ oIndex.intValue() ] = getFlags( oEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Rebuild the adjacency when it is next used, and release the old
+        // arrays in the meantime
+        m_bStale = true;
+        m_oRoomIndex = m_oEdgeIndex = null;
+        m_aoRooms = null;
+        m_aoEdges = null;
+        m_aanIncident = null;
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Rebuilds the adjacency from all rooms and edges on the Map.
+     */
+
+    protected void rebuild()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nRoomCapacity,  // Initial capacity of the room arrays
+            nEdgeCapacity;  // Initial capacity of the edge arrays
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Allocate the arrays with some room to grow
+        nRoomCapacity = Math.max( 16, m_oMap.m_oRoomMap.size() + m_oMap.m_oRoomMap.size() / 8 );
+        nEdgeCapacity = Math.max( 16, m_oMap.m_oEdgeMap.size() + m_oMap.m_oEdgeMap.size() / 8 );
+        m_oRoomIndex = new HashMap<String, Integer>( (int)(nRoomCapacity / 0.75f) + 1 );
+        m_aoRooms = new Room[ nRoomCapacity ];
+        m_aanIncident = new int[ nRoomCapacity ][];
+        m_anIncidentCount = new int[ nRoomCapacity ];
+        m_anFreeRooms = new int[ 16 ];
+        m_nRoomLimit = m_nFreeRoomCount = 0;
+        m_oEdgeIndex = new HashMap<String, Integer>( (int)(nEdgeCapacity / 0.75f) + 1 );
+        m_aoEdges = new Edge[ nEdgeCapacity ];
+        m_anEdgeStart = new int[ nEdgeCapacity ];
+        m_anEdgeEnd = new int[ nEdgeCapacity ];
+        m_anEdgeFlags = new int[ nEdgeCapacity ];
+        m_anFreeEdges = new int[ 16 ];
+        m_nEdgeLimit = m_nFreeEdgeCount = 0;
+        m_bStale = false;
+        m_nModCount++;
+
+        // Index all rooms, then all edges between them
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+            indexRoom( oRoom );
+        for( final Edge oEdge : m_oMap.m_oEdgeMap.values() )
+            indexEdge( oEdge );
+    }
+
+    /**
+     * Gives the specified room an index.
+     *
+     * @param  oRoom  The room to be indexed.
+     */
+
+    protected void indexRoom( Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nRoom;  // Index of the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Reuse a freed index, or take the next one and grow the arrays if
+        // they are full
+        if( m_nFreeRoomCount > 0 )
+            nRoom = m_anFreeRooms[ --m_nFreeRoomCount ];
+        else
+        {
+            nRoom = m_nRoomLimit++;
+            if( nRoom == m_aoRooms.length )
+            {
+                int nCapacity = nRoom * 2;
+                Room[] aoRooms = new Room[ nCapacity ];
+                System.arraycopy( m_aoRooms, 0, aoRooms, 0, nRoom );
+                m_aoRooms = aoRooms;
+                int[][] aanIncident = new int[ nCapacity ][];
+                System.arraycopy( m_aanIncident, 0, aanIncident, 0, nRoom );
+                m_aanIncident = aanIncident;
+                m_anIncidentCount = grow( m_anIncidentCount, nCapacity );
+                m_nModCount++;
+            }
+        }
+
+        // Store the room
+        m_aoRooms[ nRoom ] = oRoom;
+        m_anIncidentCount[ nRoom ] = 0;
+        m_oRoomIndex.put( oRoom.getID(), Integer.valueOf( nRoom ) );
+    }
+
+    /**
+     * Gives the specified edge an index and adds it to the lists of its
+     * rooms.  An edge whose rooms are not indexed is ignored.
+     *
+     * @param  oEdge  The edge to be indexed.
+     */
+
+    protected void indexEdge( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Integer oStart,  // Index of the start room
+                oEnd;    // Index of the end room
+        int     nEdge;   // Index of the edge
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure both rooms are indexed
+        oStart = m_oRoomIndex.get( oEdge.m_strStartRoomID );
+        oEnd = m_oRoomIndex.get( oEdge.m_strEndRoomID );
+        if( oStart == null || oEnd == null )
+            return;
+
+        // Reuse a freed index, or take the next one and grow the arrays if
+        // they are full
+        if( m_nFreeEdgeCount > 0 )
+            nEdge = m_anFreeEdges[ --m_nFreeEdgeCount ];
+        else
+        {
+            nEdge = m_nEdgeLimit++;
+            if( nEdge == m_aoEdges.length )
+            {
+                int nCapacity = nEdge * 2;
+                Edge[] aoEdges = new Edge[ nCapacity ];
+                System.arraycopy( m_aoEdges, 0, aoEdges, 0, nEdge );
+                m_aoEdges = aoEdges;
+                m_anEdgeStart = grow( m_anEdgeStart, nCapacity );
+                m_anEdgeEnd = grow( m_anEdgeEnd, nCapacity );
+                m_anEdgeFlags = grow( m_anEdgeFlags, nCapacity );
+                m_nModCount++;
+            }
+        }
+
+        // Store the edge and add it to the lists of its rooms
+        m_aoEdges[ nEdge ] = oEdge;
+        m_anEdgeStart[ nEdge ] = oStart.intValue();
+        m_anEdgeEnd[ nEdge ] = oEnd.intValue();
+        m_anEdgeFlags[ nEdge ] = getFlags( oEdge );
+        m_oEdgeIndex.put( oEdge.getID(), Integer.valueOf( nEdge ) );
+        addIncident( oStart.intValue(), nEdge );
+        if( oEnd.intValue() != oStart.intValue() )
+            addIncident( oEnd.intValue(), nEdge );
+    }
+
+    /**
+     * Adds the specified edge to the list of edges incident to the
+     * specified room.
+     *
+     * @param  nRoom  The index of the room.
+     * @param  nEdge  The index of the edge.
+     */
+
+    protected void addIncident( int nRoom, int nEdge )
+    {
+        // Grow the list if it is full and append the edge
+        int[] anIncident = m_aanIncident[ nRoom ];
+        int nCount = m_anIncidentCount[ nRoom ];
+        if( anIncident == null )
+            anIncident = m_aanIncident[ nRoom ] = new int[ INITIAL_INCIDENT_CAPACITY ];
+        else if( nCount == anIncident.length )
+            anIncident = m_aanIncident[ nRoom ] = grow( anIncident, nCount * 2 );
+        anIncident[ nCount ] = nEdge;
+        m_anIncidentCount[ nRoom ] = nCount + 1;
+    }
+
+    /**
+     * Removes the specified edge from the list of edges incident to the
+     * specified room.
+     *
+     * @param  nRoom  The index of the room.
+     * @param  nEdge  The index of the edge.
+     */
+
+    protected void removeIncident( int nRoom, int nEdge )
+    {
+        // Replace the edge with the last edge of the list
+        int[] anIncident = m_aanIncident[ nRoom ];
+        int nCount = m_anIncidentCount[ nRoom ];
+        for( int nI = 0; nI < nCount; nI++ )
+        {
+            if( anIncident[ nI ] == nEdge )
+            {
+                anIncident[ nI ] = anIncident[ nCount - 1 ];
+                m_anIncidentCount[ nRoom ] = nCount - 1;
+                return;
+            }
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Packs the exits and flags of the specified edge.
+     *
+     * @param  oEdge  The edge.
+     *
+     * @return  The packed exits and flags.
+     */
+
+    protected static int getFlags( Edge oEdge )
+    {
+        // Pack the exits and flags
+        return( (oEdge.m_nStartExit & MASK_EXIT) | ((oEdge.m_nEndExit & MASK_EXIT) << 4) |
+            (oEdge.m_bOneWay ? FLAG_ONEWAY : 0) | (oEdge.m_bSecret ? FLAG_SECRET : 0) );
+    }
+
+    /**
+     * Copies the specified array into a larger array.
+     *
+     * @param  an  The array to be copied.
+     * @param  nMinCapacity  The minimum capacity of the new array.
+     *
+     * @return  The new array.
+     */
+
+    protected static int[] grow( int[] an, int nMinCapacity )
+    {
+        // Copy the array into one at least twice as large
+        int[] anGrown = new int[ Math.max( nMinCapacity, an.length * 2 ) ];
+        System.arraycopy( an, 0, anGrown, 0, an.length );
+        return( anGrown );
+    }
+}
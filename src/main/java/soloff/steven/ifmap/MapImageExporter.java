@@ -0,0 +1,829 @@
+/*
+ * MapImageExporter.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * The object that exports a Map to a PNG image.  The image is rendered
+ * directly from the model in horizontal bands of tiles.  The tiles of each
+ * band are rendered in parallel on a fork-join pool and the rows of each
+ * band are streamed to the PNG encoder in order while the next band is
+ * being rendered.  Therefore, the amount of memory required is bounded by
+ * the tile size and the width of the image rather than by the size of the
+ * entire image.
+ */
+
+public class MapImageExporter
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The resolution (in dots per inch) at which one map coordinate is
+     * rendered as exactly one pixel.
+     */
+    public static final int BASE_RESOLUTION = 96;
+
+    /**
+     * The default size (both height and width) of a tile in pixels.
+     */
+    public static final int DEFAULT_TILE_SIZE = 256;
+
+    /**
+     * The signature that begins every PNG file.
+     */
+    protected static final byte[] PNG_SIGNATURE =
+    {
+        (byte)0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'
+    };
+
+    /**
+     * The maximum size in bytes of the data portion of an IDAT chunk.
+     */
+    protected static final int MAX_IDAT_SIZE = 65536;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map to be exported.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The object used to render the Map.
+     */
+    protected MapRenderer m_oRenderer;
+
+    /**
+     * The size (both height and width) of a tile in pixels.
+     */
+    protected int m_nTileSize;
+
+    /**
+     * The number of threads used to render tiles.
+     */
+    protected int m_nParallelism;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapImageExporter object.
+     *
+     * @param  oMap  The Map to be exported.
+     * @param  oFont  The font used to render room text.
+     *
+     * @exception  IllegalArgumentException  If oMap or oFont is null.
+     */
+
+    public MapImageExporter( Map oMap, Font oFont )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || oFont == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_oRenderer = new MapRenderer( oMap, oFont );
+        m_nTileSize = DEFAULT_TILE_SIZE;
+        m_nParallelism = Runtime.getRuntime().availableProcessors();
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Sets the size (both height and width) of a tile in pixels.
+     *
+     * @param  nTileSize  The size of a tile in pixels.
+     *
+     * @exception  IllegalArgumentException  If nTileSize is less than 1.
+     */
+
+    public void setTileSize( int nTileSize )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nTileSize < 1 )
+            throw new IllegalArgumentException();
+
+        // Set the tile size
+        m_nTileSize = nTileSize;
+    }
+
+    /**
+     * Sets the number of threads used to render tiles.
+     *
+     * @param  nParallelism  The number of threads used to render tiles.
+     *
+     * @exception  IllegalArgumentException  If nParallelism is less than 1.
+     */
+
+    public void setParallelism( int nParallelism )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nParallelism < 1 )
+            throw new IllegalArgumentException();
+
+        // Set the parallelism
+        m_nParallelism = nParallelism;
+    }
+
+    /**
+     * Computes the dimensions of the image that will be exported at the
+     * specified resolution.
+     *
+     * @param  nResolution  The resolution of the image in dots per inch.
+     *
+     * @return  The dimensions of the image in pixels.
+     *
+     * @exception  IllegalArgumentException  If nResolution is less than 1.
+     */
+
+    public Dimension getImageSize( int nResolution )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( nResolution < 1 )
+            throw new IllegalArgumentException();
+
+        // Scale the map dimensions by the resolution
+        double dScale = (double)nResolution / BASE_RESOLUTION;
+        return( new Dimension( (int)Math.ceil( m_oMap.m_dmMap.width * dScale ),
+            (int)Math.ceil( m_oMap.m_dmMap.height * dScale ) ) );
+    }
+
+    /**
+     * Exports the Map as a PNG image to the specified file.
+     *
+     * @param  oFile  The file to which the image is written.
+     * @param  nResolution  The resolution of the image in dots per inch.
+     *
+     * @exception  IllegalArgumentException  If oFile is null or if
+     *     nResolution is less than 1.
+     * @exception  IllegalStateException  If the Map is empty.
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    public void export( File oFile, int nResolution )
+        throws IllegalArgumentException, IllegalStateException, IOException
+    {
+        // Make sure arguments are valid
+        if( oFile == null )
+            throw new IllegalArgumentException();
+
+        // Export the image to the file
+        OutputStream oStream = new BufferedOutputStream( new FileOutputStream( oFile ) );
+        try
+        {
+            export( oStream, nResolution );
+        }
+        finally
+        {
+            oStream.close();
+        }
+    }
+
+    /**
+     * Exports the Map as a PNG image to the specified stream.  The stream is
+     * not closed.
+     *
+     * @param  oStream  The stream to which the image is written.
+     * @param  nResolution  The resolution of the image in dots per inch.
+     *
+     * @exception  IllegalArgumentException  If oStream is null or if
+     *     nResolution is less than 1.
+     * @exception  IllegalStateException  If the Map is empty.
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    public void export( OutputStream oStream, int nResolution )
+        throws IllegalArgumentException, IllegalStateException, IOException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        DataOutputStream     oDataStream;   // Stream used to write PNG chunks
+        DeflaterOutputStream oIDATStream;   // Stream used to write compressed image data
+        Deflater             oDeflater;     // Compressor for image data
+        ForkJoinPool         oPool;         // Pool used to render tiles
+        ForkJoinTask<?>      oNextBand;     // Band currently being rendered
+        BandTask             oBand;         // Band whose rows are being encoded
+        Dimension            dmImage;       // Dimensions of the image
+        double               dScale;        // Scale from map to image coordinates
+        byte[]               abRow;         // Encoded image row
+        int                  nY,            // y-coordinate of the current band
+                             nRow,          // Row within the current band
+                             nI, nJ;        // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oStream == null )
+            throw new IllegalArgumentException();
+
+        // Compute the image dimensions, making sure there is something to
+        // export (PNG does not allow an image without pixels)
+        dmImage = getImageSize( nResolution );
+        dScale = (double)nResolution / BASE_RESOLUTION;
+        if( m_oMap.m_oRoomMap.isEmpty() || dmImage.width < 1 || dmImage.height < 1 )
+            throw new IllegalStateException();
+
+        // Write the PNG signature and header chunks
+        oDataStream = new DataOutputStream( oStream );
+        oDataStream.write( PNG_SIGNATURE );
+        writeHeaderChunk( oDataStream, dmImage );
+        writePhysicalDimensionsChunk( oDataStream, nResolution );
+
+        // Create the stream used to compress the image data (the encoded row
+        // includes the leading filter type byte)
+        oDeflater = new Deflater( Deflater.DEFAULT_COMPRESSION );
+        oIDATStream = new DeflaterOutputStream( new IDATOutputStream( oDataStream ), oDeflater, MAX_IDAT_SIZE );
+        abRow = new byte[ 1 + 3 * dmImage.width ];
+
+        oPool = new ForkJoinPool( m_nParallelism );
+        try
+        {
+            // Start rendering the first band
+            oBand = new BandTask( 0, dmImage, dScale );
+            oNextBand = oPool.submit( oBand );
+
+            for( nY = 0; nY < dmImage.height; nY += m_nTileSize )
+            {
+                // Wait for the current band to be rendered and immediately
+                // start rendering the next band while this one is encoded
+                oNextBand.join();
+                BandTask oCurrentBand = oBand;
+                if( nY + m_nTileSize < dmImage.height )
+                {
+                    oBand = new BandTask( nY + m_nTileSize, dmImage, dScale );
+                    oNextBand = oPool.submit( oBand );
+                }
+
+                // Stream the rows of the current band to the encoder
+                for( nRow = 0; nRow < oCurrentBand.m_nHeight; nRow++ )
+                {
+                    abRow[ 0 ] = 0;  // Filter type None
+                    for( nI = 0, nJ = 1; nI < dmImage.width; nI++ )
+                    {
+                        int nRGB = oCurrentBand.m_anPixels[ nRow * dmImage.width + nI ];
+                        abRow[ nJ++ ] = (byte)(nRGB >> 16);
+                        abRow[ nJ++ ] = (byte)(nRGB >> 8);
+                        abRow[ nJ++ ] = (byte)nRGB;
+                    }
+                    oIDATStream.write( abRow, 0, abRow.length );
+                }
+                bandExported( nY + oCurrentBand.m_nHeight, dmImage.height );
+            }
+        }
+        finally
+        {
+            // Stop rendering and wait for a band still being rendered, so
+            // that the Map is not read after the export returns
+            oPool.shutdownNow();
+            try
+            {
+                oPool.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Flush the compressed image data and finish the PNG file
+        oIDATStream.finish();
+        oIDATStream.flush();
+        oDeflater.end();
+        writeChunk( oDataStream, "IEND", new byte[ 0 ], 0 );
+        oDataStream.flush();
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Called after each band of the image has been encoded.  Subclasses
+     * may override this method to report the progress of the export, or
+     * to stop the export by throwing an exception.
+     *
+     * @param  nRowsExported  The number of rows of the image encoded so
+     *     far.
+     * @param  nRows  The number of rows of the image.
+     *
+     * @exception  IOException  If the export is to be stopped.
+     */
+
+    protected void bandExported( int nRowsExported, int nRows )
+        throws IOException
+    {
+        // Do nothing by default
+    }
+
+    /**
+     * Writes the IHDR chunk for an 8-bit RGB image.
+     *
+     * @param  oStream  The stream to which the chunk is written.
+     * @param  dmImage  The dimensions of the image.
+     *
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    protected void writeHeaderChunk( DataOutputStream oStream, Dimension dmImage )
+        throws IOException
+    {
+        // Width, height, bit depth, color type (RGB), compression, filter
+        // and interlace methods
+        byte[] ab = new byte[ 13 ];
+        putInt( ab, 0, dmImage.width );
+        putInt( ab, 4, dmImage.height );
+        ab[ 8 ] = 8;
+        ab[ 9 ] = 2;
+        writeChunk( oStream, "IHDR", ab, ab.length );
+    }
+
+    /**
+     * Writes the pHYs chunk that records the resolution of the image.
+     *
+     * @param  oStream  The stream to which the chunk is written.
+     * @param  nResolution  The resolution of the image in dots per inch.
+     *
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    protected void writePhysicalDimensionsChunk( DataOutputStream oStream, int nResolution )
+        throws IOException
+    {
+        // Pixels per meter in each direction and the unit specifier (meter)
+        int nPixelsPerMeter = (int)Math.round( nResolution / 0.0254 );
+        byte[] ab = new byte[ 9 ];
+        putInt( ab, 0, nPixelsPerMeter );
+        putInt( ab, 4, nPixelsPerMeter );
+        ab[ 8 ] = 1;
+        writeChunk( oStream, "pHYs", ab, ab.length );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Writes a PNG chunk to the specified stream.
+     *
+     * @param  oStream  The stream to which the chunk is written.
+     * @param  strType  The four character type of the chunk.
+     * @param  abData  The data of the chunk.
+     * @param  nLength  The number of bytes of abData to be written.
+     *
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    protected static void writeChunk( DataOutputStream oStream, String strType, byte[] abData, int nLength )
+        throws IOException
+    {
+        // Compute the CRC of the chunk type and data
+        byte[] abType = strType.getBytes( "US-ASCII" );
+        CRC32 oCRC = new CRC32();
+        oCRC.update( abType );
+        oCRC.update( abData, 0, nLength );
+
+        // Write the chunk
+        oStream.writeInt( nLength );
+        oStream.write( abType );
+        oStream.write( abData, 0, nLength );
+        oStream.writeInt( (int)oCRC.getValue() );
+    }
+
+    /**
+     * Stores the specified integer in big-endian order.
+     *
+     * @param  ab  The array in which the integer is stored.
+     * @param  nOffset  The offset within ab at which the integer is stored.
+     * @param  nValue  The integer to be stored.
+     */
+
+    protected static void putInt( byte[] ab, int nOffset, int nValue )
+    {
+        // Store each byte of the integer
+        ab[ nOffset ] = (byte)(nValue >>> 24);
+        ab[ nOffset + 1 ] = (byte)(nValue >>> 16);
+        ab[ nOffset + 2 ] = (byte)(nValue >>> 8);
+        ab[ nOffset + 3 ] = (byte)nValue;
+    }
+
+
+    // **********************************************************************
+    // *********************           Tasks            *********************
+    // **********************************************************************
+
+    /**
+     * The task that renders one horizontal band of the image.  Each tile in
+     * the band is rendered by a separate TileTask.
+     */
+
+    protected class BandTask
+        extends RecursiveAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The y-coordinate of the band within the image.
+         */
+        int m_nY;
+
+        /**
+         * The height of the band in pixels.
+         */
+        int m_nHeight;
+
+        /**
+         * The width of the band in pixels.
+         */
+        int m_nWidth;
+
+        /**
+         * The scale from map to image coordinates.
+         */
+        double m_dScale;
+
+        /**
+         * The pixels of the band in row-major order.
+         */
+        int[] m_anPixels;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = 4411938406250416129L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new BandTask.
+         *
+         * @param  nY  The y-coordinate of the band within the image.
+         * @param  dmImage  The dimensions of the image.
+         * @param  dScale  The scale from map to image coordinates.
+         */
+
+        BandTask( int nY, Dimension dmImage, double dScale )
+        {
+            // Initialize instance variables
+            m_nY = nY;
+            m_nHeight = Math.min( m_nTileSize, dmImage.height - nY );
+            m_nWidth = dmImage.width;
+            m_dScale = dScale;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   RecursiveAction Methods   --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.concurrent.RecursiveAction#compute()  compute
+         */
+
+        protected void compute()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            List<TileTask> aoTiles;  // Tasks that render each tile
+            List<Edge>     aoEdges;  // Edges that intersect the band
+            List<Room>     aoRooms;  // Rooms that intersect the band
+            Rectangle      rectBand; // Bounds of the band in map coordinates
+            int            nX;       // x-coordinate of the current tile
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Compute the bounds of the band in map coordinates (inflated
+            // slightly to account for line widths and rounding)
+            rectBand = toMapBounds( new Rectangle( 0, m_nY, m_nWidth, m_nHeight ) );
+
+            // Collect the edges and rooms that intersect the band so each
+            // tile only has to consider those
+            aoEdges = new ArrayList<Edge>();
+            for( final Edge oEdge : m_oMap.m_oEdgeMap.values() )
+                if( rectBand.intersects( oEdge.getBounds() ) )
+                    aoEdges.add( oEdge );
+            aoRooms = new ArrayList<Room>();
+            for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+                if( rectBand.intersects( oRoom.m_rectBounds ) )
+                    aoRooms.add( oRoom );
+
+            // Render all tiles of the band in parallel
+            m_anPixels = new int[ m_nWidth * m_nHeight ];
+            aoTiles = new ArrayList<TileTask>();
+            for( nX = 0; nX < m_nWidth; nX += m_nTileSize )
+                aoTiles.add( new TileTask( this, nX, Math.min( m_nTileSize, m_nWidth - nX ), aoEdges, aoRooms ) );
+            invokeAll( aoTiles );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------    Package Instance Methods    -----------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Converts the specified rectangle from image coordinates to map
+         * coordinates.
+         *
+         * @param  rect  The rectangle in image coordinates.
+         *
+         * @return  The corresponding rectangle in map coordinates.
+         */
+
+        Rectangle toMapBounds( Rectangle rect )
+        {
+            // Scale the rectangle and inflate it to account for rounding
+            Rectangle rectMap = new Rectangle(
+                (int)Math.floor( rect.x / m_dScale ), (int)Math.floor( rect.y / m_dScale ),
+                (int)Math.ceil( rect.width / m_dScale ), (int)Math.ceil( rect.height / m_dScale ) );
+            rectMap.grow( 2, 2 );
+            return( rectMap );
+        }
+    }
+
+    /**
+     * The task that renders one tile of the image into its band.
+     */
+
+    protected class TileTask
+        extends RecursiveAction
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The band that contains this tile.
+         */
+        BandTask m_oBand;
+
+        /**
+         * The x-coordinate of the tile within the image.
+         */
+        int m_nX;
+
+        /**
+         * The width of the tile in pixels.
+         */
+        int m_nWidth;
+
+        /**
+         * The Edges that intersect the band.
+         */
+        List<Edge> m_aoEdges;
+
+        /**
+         * The Rooms that intersect the band.
+         */
+        List<Room> m_aoRooms;
+
+
+        // ------------------------------------------------------------------
+        // -----------------       Class Variables      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Serializable class version number.
+         */
+        private static final long serialVersionUID = -2650983164180916373L;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new TileTask.
+         *
+         * @param  oBand  The band that contains this tile.
+         * @param  nX  The x-coordinate of the tile within the image.
+         * @param  nWidth  The width of the tile in pixels.
+         * @param  aoEdges  The Edges that intersect the band.
+         * @param  aoRooms  The Rooms that intersect the band.
+         */
+
+        TileTask( BandTask oBand, int nX, int nWidth, List<Edge> aoEdges, List<Room> aoRooms )
+        {
+            // Initialize instance variables
+            m_oBand = oBand;
+            m_nX = nX;
+            m_nWidth = nWidth;
+            m_aoEdges = aoEdges;
+            m_aoRooms = aoRooms;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   RecursiveAction Methods   --------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.concurrent.RecursiveAction#compute()  compute
+         */
+
+        protected void compute()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            BufferedImage oTile;     // Image into which the tile is rendered
+            Graphics2D    g;         // Graphics context of the tile
+            Rectangle     rectClip;  // Bounds of the tile in map coordinates
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Create the tile and clear it to the map background
+            oTile = new BufferedImage( m_nWidth, m_oBand.m_nHeight, BufferedImage.TYPE_INT_RGB );
+            g = oTile.createGraphics();
+            g.setColor( Color.white );
+            g.fillRect( 0, 0, m_nWidth, m_oBand.m_nHeight );
+
+            // Transform the tile so that it maps onto its region of the map
+            g.setRenderingHint( RenderingHints.KEY_STROKE_CONTROL, RenderingHints.VALUE_STROKE_PURE );
+            g.translate( -m_nX, -m_oBand.m_nY );
+            g.scale( m_oBand.m_dScale, m_oBand.m_dScale );
+            rectClip = m_oBand.toMapBounds( new Rectangle( m_nX, m_oBand.m_nY, m_nWidth, m_oBand.m_nHeight ) );
+
+            // Render the tile and copy it into the band
+            m_oRenderer.paintEdges( g, rectClip, m_aoEdges );
+            m_oRenderer.paintRooms( g, rectClip, m_aoRooms );
+            g.dispose();
+            oTile.getRGB( 0, 0, m_nWidth, m_oBand.m_nHeight, m_oBand.m_anPixels, m_nX, m_oBand.m_nWidth );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************          Streams           *********************
+    // **********************************************************************
+
+    /**
+     * The stream that packages compressed image data into IDAT chunks.
+     */
+
+    protected static class IDATOutputStream
+        extends OutputStream
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The stream to which chunks are written.
+         */
+        DataOutputStream m_oStream;
+
+        /**
+         * Buffer for the data of the current chunk.
+         */
+        byte[] m_abBuffer;
+
+        /**
+         * Number of bytes in the buffer.
+         */
+        int m_nCount;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new IDATOutputStream.
+         *
+         * @param  oStream  The stream to which chunks are written.
+         */
+
+        IDATOutputStream( DataOutputStream oStream )
+        {
+            // Initialize instance variables
+            m_oStream = oStream;
+            m_abBuffer = new byte[ MAX_IDAT_SIZE ];
+            m_nCount = 0;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------    OutputStream Overrides    -------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.io.OutputStream#write( int )  write
+         */
+
+        public void write( int n )
+            throws IOException
+        {
+            // Buffer the byte and write a chunk if the buffer is full
+            m_abBuffer[ m_nCount++ ] = (byte)n;
+            if( m_nCount == m_abBuffer.length )
+                flush();
+        }
+
+        /**
+         * @see  java.io.OutputStream#write( byte[], int, int )  write
+         */
+
+        public void write( byte[] ab, int nOffset, int nLength )
+            throws IOException
+        {
+            // Buffer the bytes, writing a chunk each time the buffer fills
+            while( nLength > 0 )
+            {
+                int nCopy = Math.min( nLength, m_abBuffer.length - m_nCount );
+                System.arraycopy( ab, nOffset, m_abBuffer, m_nCount, nCopy );
+                m_nCount += nCopy;
+                nOffset += nCopy;
+                nLength -= nCopy;
+                if( m_nCount == m_abBuffer.length )
+                    flush();
+            }
+        }
+
+        /**
+         * @see  java.io.OutputStream#flush()  flush
+         */
+
+        public void flush()
+            throws IOException
+        {
+            // Write the buffered data as an IDAT chunk
+            if( m_nCount > 0 )
+            {
+                writeChunk( m_oStream, "IDAT", m_abBuffer, m_nCount );
+                m_nCount = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * MapListener.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+/**
+ * The interface that is supported by objects that are notified of changes
+ * to the topology of a Map: rooms and edges being added or removed, and
+ * edges changing direction or visibility.  Changes to the position, size,
+ * or text of a room are not reported.
+ */
+
+public interface MapListener
+{
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Invoked after a Room has been added to the Map.
+     *
+     * @param  oMap  The Map that changed.
+     * @param  oRoom  The Room added.
+     */
+
+    public abstract void roomAdded( Map oMap, Room oRoom );
+
+    /**
+     * Invoked after a Room has been removed from the Map.  The Edges that
+     * were connected to the Room have already been removed and reported.
+     *
+     * @param  oMap  The Map that changed.
+     * @param  oRoom  The Room removed.
+     */
+
+    public abstract void roomRemoved( Map oMap, Room oRoom );
+
+    /**
+     * Invoked after an Edge has been added to the Map.
+     *
+     * @param  oMap  The Map that changed.
+     * @param  oEdge  The Edge added.
+     */
+
+    public abstract void edgeAdded( Map oMap, Edge oEdge );
+
+    /**
+     * Invoked after an Edge has been removed from the Map.
+     *
+     * @param  oMap  The Map that changed.
+     * @param  oEdge  The Edge removed.
+     */
+
+    public abstract void edgeRemoved( Map oMap, Edge oEdge );
+
+    /**
+     * Invoked after the one-way or secret flag of an Edge on the Map has
+     * changed.
+     *
+     * @param  oMap  The Map that changed.
+     * @param  oEdge  The Edge changed.
+     */
+
+    public abstract void edgeChanged( Map oMap, Edge oEdge );
+
+    /**
+     * Invoked after the contents of the Map have been replaced as a whole,
+     * either by clearing the Map or by loading it.  No individual room or
+     * edge events are reported for such a change.
+     *
+     * @param  oMap  The Map that changed.
+     */
+
+    public abstract void mapReset( Map oMap );
+}
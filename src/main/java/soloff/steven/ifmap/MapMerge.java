@@ -0,0 +1,1130 @@
+/*
+ * MapMerge.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The object that merges the changes made to two copies of the same Map,
+ * as when two people edit copies of the same IFMML file.  The changes each
+ * copy made to the common ancestor of both, the base Map, are found with
+ * a MapDiff.  The merged Map starts as a copy of our Map, and the changes
+ * made to their Map are applied to it:
+ *
+ * <ul>
+ * <li>A property of a Room or Edge changed on their side takes their value
+ *     unless our side changed it to a different value, which is a
+ *     conflict that keeps our value.</li>
+ * <li>A Room or Edge removed on one side but changed on the other is a
+ *     conflict that keeps the changed Room or Edge.</li>
+ * <li>Rooms added on both sides with the same name and bounds are taken
+ *     to be the same Room.  A Room added on their side with the identifier
+ *     of a different Room added on our side is added with a new
+ *     identifier, and their Edges are reconnected to it; Edges are
+ *     treated the same way.</li>
+ * <li>An Edge of their side that would connect a removed Room or an exit
+ *     already used by our side is a conflict that drops their Edge, as is
+ *     an Edge of our side that connects a Room removed on their side.</li>
+ * </ul>
+ *
+ * <p>Rooms and Edges are matched by looking them up in hashtables by their
+ * identifiers, and by their names and bounds for added Rooms, so the time
+ * taken is linear in the size of the Maps.  The base and their Maps are
+ * not changed, and neither is our Map, whose Rooms and Edges are copied.
+ *
+ * <p>The class can also be run from the command line to compare two IFMML
+ * files or to merge three.  A merge exits with a status of 1 if there are
+ * conflicts, so it can be used as the merge driver of a version control
+ * system.
+ */
+
+public class MapMerge
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The names of the properties of a Room indexed by the bit of their
+     * flags.
+     */
+    protected static final String[] ROOM_PROPERTY_NAMES =
+    {
+        "name", "description", "bounds", "foreground", "background"
+    };
+
+    /**
+     * The names of the properties of an Edge indexed by the bit of their
+     * flags.
+     */
+    protected static final String[] EDGE_PROPERTY_NAMES =
+    {
+        "ends", "oneway", "secret", "bends"
+    };
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The changes our side made to the base Map.
+     */
+    protected MapDiff m_oOurDiff;
+
+    /**
+     * The changes their side made to the base Map.
+     */
+    protected MapDiff m_oTheirDiff;
+
+    /**
+     * The merged Map.
+     */
+    protected Map m_oMergedMap;
+
+    /**
+     * The conflicts found by the merge.
+     */
+    protected ArrayList<Conflict> m_alConflicts;
+
+    /**
+     * The identifier in the merged Map of each Room added on their side
+     * whose identifier is different there.
+     */
+    protected HashMap<String, String> m_oRoomIDMap;
+
+    /**
+     * The Room added on our side keyed by its name and bounds; null until
+     * it is first needed.
+     */
+    protected HashMap<String, Room> m_oOurAddedRooms;
+
+    /**
+     * The Edges of the merged Map at the exits of each Room, keyed by the
+     * ID of the Room and indexed by the exit; null until it is first
+     * needed.
+     */
+    protected HashMap<String, Edge[]> m_oExitMap;
+
+    /**
+     * The integral portion of the identifier given to the next Room added
+     * with a new identifier.
+     */
+    protected int m_nNextRoomID;
+
+    /**
+     * The integral portion of the identifier given to the next Edge added
+     * with a new identifier.
+     */
+    protected int m_nNextEdgeID;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapMerge object that merges the changes made to the
+     * specified base Map by our and their Maps.
+     *
+     * @param  oBaseMap  The common ancestor of both Maps.
+     * @param  oOurMap  Our Map, whose values are kept in a conflict.
+     * @param  oTheirMap  Their Map, whose changes are applied to ours.
+     *
+     * @exception  IllegalArgumentException  If any Map is null.
+     */
+
+    public MapMerge( Map oBaseMap, Map oOurMap, Map oTheirMap )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent oEvent;  // Event describing the merge
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oBaseMap == null || oOurMap == null || oTheirMap == null )
+            throw new IllegalArgumentException();
+
+        // Find the changes made by each side
+        oEvent = OperationEvent.begin( OperationEvent.MERGE_MAPS );
+        m_oOurDiff = new MapDiff( oBaseMap, oOurMap );
+        m_oTheirDiff = new MapDiff( oBaseMap, oTheirMap );
+        oEvent.mark( "diffedAt" );
+
+        // Initialize instance variables, giving new identifiers above those
+        // of all three Maps
+        m_oMergedMap = new Map();
+        m_oMergedMap.setDescriptionCompressionEnabled( oOurMap.isDescriptionCompressionEnabled() );
+        m_alConflicts = new ArrayList<Conflict>();
+        m_oRoomIDMap = new HashMap<String, String>();
+        m_oOurAddedRooms = null;
+        m_nNextRoomID = m_nNextEdgeID = 1;
+        for( final Map oMap : new Map[] { oBaseMap, oOurMap, oTheirMap } )
+        {
+            for( final String strRoomID : oMap.m_oRoomMap.keySet() )
+                m_nNextRoomID = Math.max( m_nNextRoomID, parseID( strRoomID, true ) + 1 );
+            for( final String strEdgeID : oMap.m_oEdgeMap.keySet() )
+                m_nNextEdgeID = Math.max( m_nNextEdgeID, parseID( strEdgeID, false ) + 1 );
+        }
+
+        // Start from a copy of our Map and apply their changes
+        copyMap( oOurMap );
+        mergeRooms();
+        mergeEdges();
+        dropDanglingEdges();
+        Collections.sort( m_alConflicts, new ConflictComparator() );
+
+        // Size the merged Map to hold all its Rooms
+        for( final Room room : m_oMergedMap.m_oRoomMap.values() )
+        {
+            m_oMergedMap.m_dmMap.width = Math.max( m_oMergedMap.m_dmMap.width,
+                room.m_rectBounds.x + room.m_rectBounds.width );
+            m_oMergedMap.m_dmMap.height = Math.max( m_oMergedMap.m_dmMap.height,
+                room.m_rectBounds.y + room.m_rectBounds.height );
+        }
+
+        // Record the merge
+        oEvent.set( "rooms", m_oMergedMap.m_oRoomMap.size() );
+        oEvent.set( "edges", m_oMergedMap.m_oEdgeMap.size() );
+        oEvent.set( "conflicts", m_alConflicts.size() );
+        oEvent.commit();
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the merged Map.
+     *
+     * @return  The merged Map.
+     */
+
+    public Map getMergedMap()
+    {
+        // Return the merged Map
+        return( m_oMergedMap );
+    }
+
+    /**
+     * Gets the changes our side made to the base Map.
+     *
+     * @return  Our changes.
+     */
+
+    public MapDiff getOurChanges()
+    {
+        // Return our changes
+        return( m_oOurDiff );
+    }
+
+    /**
+     * Gets the changes their side made to the base Map.
+     *
+     * @return  Their changes.
+     */
+
+    public MapDiff getTheirChanges()
+    {
+        // Return their changes
+        return( m_oTheirDiff );
+    }
+
+    /**
+     * Gets the conflicts found by the merge, those of Rooms before those of
+     * Edges, in the order of their identifiers.
+     *
+     * @return  The unmodifiable list of conflicts.
+     */
+
+    public List<Conflict> getConflicts()
+    {
+        // Return the conflicts
+        return( Collections.unmodifiableList( m_alConflicts ) );
+    }
+
+    /**
+     * Gets the integral portion of an identifier for the next Room created
+     * that is used by none of the merged Maps.
+     *
+     * @return  The next Room ID.
+     */
+
+    public int getNextRoomID()
+    {
+        // Return the next Room ID
+        return( m_nNextRoomID );
+    }
+
+    /**
+     * Gets the integral portion of an identifier for the next Edge created
+     * that is used by none of the merged Maps.
+     *
+     * @return  The next Edge ID.
+     */
+
+    public int getNextEdgeID()
+    {
+        // Return the next Edge ID
+        return( m_nNextEdgeID );
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Compares two IFMML files, or merges the changes made to a base file
+     * by two others, and writes the result.
+     *
+     * @param  args  Array of command-line arguments: the old and new files
+     *     to be compared, or the base, our and their files to be merged
+     *     followed by the file to which the merged Map is written.
+     */
+
+    public static void main( String[] args )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        IFMapDoc       oDoc;      // Document used to read the files
+        Map[]          aoMaps;    // Maps read from the files
+        MapDiff        oDiff;     // Changes between the files compared
+        MapMerge       oMerge;    // Merge of the files merged
+        BufferedWriter oWriter;   // Writer for the standard output
+        File           oFile;     // File to which the merged Map is written
+        int            nI;        // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure there are two files to compare or four to merge
+        if( args.length != 2 && args.length != 4 )
+            exitWithUsage( null );
+
+        // Read the Maps to be compared or merged
+        oDoc = new IFMapDoc();
+        aoMaps = new Map[ args.length == 2 ? 2 : 3 ];
+        for( nI = 0; nI < aoMaps.length; nI++ )
+        {
+            try
+            {
+                aoMaps[ nI ] = oDoc.readMap( new File( args[ nI ] ) );
+            }
+            catch( Exception e )
+            {
+                System.err.println( args[ nI ] + ": " + e.getMessage() );
+                System.exit( 1 );
+            }
+        }
+
+        try
+        {
+            // Write the change set between the two files
+            oWriter = new BufferedWriter( new OutputStreamWriter( System.out ) );
+            if( args.length == 2 )
+            {
+                oDiff = new MapDiff( aoMaps[ 0 ], aoMaps[ 1 ] );
+                oWriter.write( "# " + oDiff.getSummary() );
+                oWriter.newLine();
+                oDiff.write( oWriter );
+                oWriter.flush();
+                return;
+            }
+
+            // Merge the three files, write the merged Map and list the
+            // conflicts
+            oMerge = new MapMerge( aoMaps[ 0 ], aoMaps[ 1 ], aoMaps[ 2 ] );
+            oFile = new File( args[ 3 ] );
+            MapGenerator.write( oMerge.m_oMergedMap, oFile );
+            for( final Conflict oConflict : oMerge.m_alConflicts )
+            {
+                oWriter.write( oConflict.toString() );
+                oWriter.newLine();
+            }
+            oWriter.write( "Merged " + oMerge.m_oMergedMap.m_oRoomMap.size() + " rooms and " +
+                oMerge.m_oMergedMap.m_oEdgeMap.size() + " edges in " + oFile.getPath() + " with " +
+                oMerge.m_alConflicts.size() + " conflicts" );
+            oWriter.newLine();
+            oWriter.flush();
+            if( !oMerge.m_alConflicts.isEmpty() )
+                System.exit( 1 );
+        }
+        catch( IOException e )
+        {
+            System.err.println( e.getMessage() );
+            System.exit( 1 );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Parses the specified Room or Edge identifier, ignoring identifiers
+     * that are not numbered.
+     *
+     * @param  strID  The identifier to parse.
+     * @param  bRoom  Indicates if the identifier is that of a Room.
+     *
+     * @return  The integral portion of the identifier, or 0 if it has none.
+     */
+
+    protected static int parseID( String strID, boolean bRoom )
+    {
+        // Parse the integral portion of the ID
+        try
+        {
+            return( bRoom ? Room.parseRoomID( strID ) : Edge.parseEdgeID( strID ) );
+        }
+        catch( IllegalArgumentException eIA )
+        {
+            return( 0 );
+        }
+    }
+
+    /**
+     * Gets the key by which Rooms added on both sides are taken to be the
+     * same Room.
+     *
+     * @param  oRoom  The Room.
+     *
+     * @return  The key made of the name and bounds of the Room.
+     */
+
+    protected static String getRoomKey( Room oRoom )
+    {
+        // Join the name and the bounds
+        return( oRoom.m_strName + '\n' + oRoom.m_rectBounds.x + ',' + oRoom.m_rectBounds.y + ',' +
+            oRoom.m_rectBounds.width + ',' + oRoom.m_rectBounds.height );
+    }
+
+    /**
+     * Formats the names of the specified properties.
+     *
+     * @param  astrNames  The names of the properties indexed by the bit of
+     *     their flags.
+     * @param  nProperties  The flags of the properties.
+     *
+     * @return  The names of the properties, separated by commas.
+     */
+
+    protected static String formatProperties( String[] astrNames, int nProperties )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        StringBuilder sb;  // Buffer used to build the names
+        int           nI;  // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Append the name of each property flagged
+        sb = new StringBuilder();
+        for( nI = 0; nI < astrNames.length; nI++ )
+        {
+            if( (nProperties & (1 << nI)) != 0 )
+                sb.append( sb.length() > 0 ? ", " : "" ).append( astrNames[ nI ] );
+        }
+        return( sb.toString() );
+    }
+
+    /**
+     * Prints the command-line usage and exits with an error status.
+     *
+     * @param  strError  The error to be printed before the usage; null if
+     *     there is no error.
+     */
+
+    protected static void exitWithUsage( String strError )
+    {
+        // Print the error and the usage and exit
+        if( strError != null )
+            System.err.println( strError );
+        System.err.println( "Usage: java soloff.steven.ifmap.MapMerge old new" );
+        System.err.println( "       java soloff.steven.ifmap.MapMerge base ours theirs merged" );
+        System.err.println( "The first form writes the changes that turn old into new.  The second" );
+        System.err.println( "merges the changes ours and theirs made to base, writes the result to" );
+        System.err.println( "merged (which may be ours) and exits with status 1 if there are conflicts." );
+        System.exit( 1 );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Copies the Rooms and Edges of the specified Map into the merged Map.
+     *
+     * @param  oMap  The Map to be copied.
+     */
+
+    protected void copyMap( Map oMap )
+    {
+        // Copy the Rooms, sizing the hashtables so they are not rehashed
+        m_oMergedMap.m_oRoomMap = new HashMap<String, Room>( (int)(oMap.m_oRoomMap.size() / 0.75f) + 1 );
+        for( final Room room : oMap.m_oRoomMap.values() )
+            m_oMergedMap.m_oRoomMap.put( room.m_strID, new Room( m_oMergedMap, room.m_strID, room ) );
+
+        // Copy the Edges
+        m_oMergedMap.m_oEdgeMap = new HashMap<String, Edge>( (int)(oMap.m_oEdgeMap.size() / 0.75f) + 1 );
+        for( final Edge edge : oMap.m_oEdgeMap.values() )
+        {
+            m_oMergedMap.m_oEdgeMap.put( edge.m_strID,
+                new Edge( m_oMergedMap, edge.m_strID, edge, edge.m_strStartRoomID, edge.m_strEndRoomID ) );
+        }
+        m_oExitMap = null;
+    }
+
+    /**
+     * Applies the Room changes made on their side to the merged Map.
+     */
+
+    protected void mergeRooms()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapDiff.Change<Room> oOurChange;  // Change of the Room on our side
+        Room                 oRoom,       // Room of the merged Map
+                             oTheirRoom;  // Room of their Map
+        String               strID,       // ID of the Room
+                             strNewID;    // New ID given to their Room
+        int                  nConflicts;  // Properties changed differently
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Apply each change made on their side in the order of the IDs
+        for( final MapDiff.Change<Room> oChange : m_oTheirDiff.m_alRoomChanges )
+        {
+            strID = oChange.m_strID;
+            oTheirRoom = oChange.m_oNew;
+            oOurChange = m_oOurDiff.m_oRoomChangeMap.get( strID );
+            switch( oChange.m_nKind )
+            {
+            case MapDiff.ADDED:
+                // A Room added on both sides with the same name and bounds
+                // is the same Room; their Edges are connected to ours
+                if( m_oOurAddedRooms == null )
+                {
+                    m_oOurAddedRooms = new HashMap<String, Room>();
+                    for( final MapDiff.Change<Room> oAdded : m_oOurDiff.m_alRoomChanges )
+                    {
+                        if( oAdded.m_nKind == MapDiff.ADDED )
+                            m_oOurAddedRooms.put( getRoomKey( oAdded.m_oNew ), oAdded.m_oNew );
+                    }
+                }
+                oRoom = m_oOurAddedRooms.get( getRoomKey( oTheirRoom ) );
+                if( oRoom != null )
+                {
+                    if( !oRoom.m_strID.equals( strID ) )
+                        m_oRoomIDMap.put( strID, oRoom.m_strID );
+                    nConflicts = MapDiff.getDifferences( oRoom, oTheirRoom );
+                    if( nConflicts != 0 )
+                        addConflict( true, strID, "added on both sides with different " +
+                            formatProperties( ROOM_PROPERTY_NAMES, nConflicts ) + "; kept ours" +
+                            (oRoom.m_strID.equals( strID ) ? "" : " (" + oRoom.m_strID + ")") );
+                    break;
+                }
+
+                // Give their Room a new ID if our side added a different
+                // Room with the same ID
+                strNewID = strID;
+                if( oOurChange != null )
+                {
+                    strNewID = Room.INSTANCE_ID_PREFIX + m_nNextRoomID++;
+                    m_oRoomIDMap.put( strID, strNewID );
+                    addConflict( true, strID, "added on both sides as different rooms; added theirs as " +
+                        strNewID );
+                }
+                m_oMergedMap.m_oRoomMap.put( strNewID, new Room( m_oMergedMap, strNewID, oTheirRoom ) );
+                break;
+
+            case MapDiff.REMOVED:
+                // Remove the Room unless our side changed it; its Edges are
+                // removed by their side or dropped later
+                if( oOurChange == null )
+                    m_oMergedMap.m_oRoomMap.remove( strID );
+                else if( oOurChange.m_nKind == MapDiff.CHANGED )
+                    addConflict( true, strID, "removed on their side but changed on ours; kept ours" );
+                break;
+
+            case MapDiff.CHANGED:
+                // Restore the Room if our side removed it
+                if( oOurChange != null && oOurChange.m_nKind == MapDiff.REMOVED )
+                {
+                    m_oMergedMap.m_oRoomMap.put( strID, new Room( m_oMergedMap, strID, oTheirRoom ) );
+                    addConflict( true, strID, "changed on their side but removed on ours; kept theirs" );
+                    break;
+                }
+
+                // Apply the properties changed on their side, except those
+                // our side changed to a different value
+                nConflicts = oOurChange == null ? 0 :
+                    oChange.m_nProperties & oOurChange.m_nProperties &
+                    MapDiff.getDifferences( oOurChange.m_oNew, oTheirRoom );
+                applyRoomProperties( m_oMergedMap.m_oRoomMap.get( strID ), oTheirRoom,
+                    oChange.m_nProperties & ~nConflicts );
+                if( nConflicts != 0 )
+                    addConflict( true, strID, "changed differently on both sides: " +
+                        formatProperties( ROOM_PROPERTY_NAMES, nConflicts ) + "; kept ours" );
+                break;
+            }
+        }
+    }
+
+    /**
+     * Applies the Edge changes made on their side to the merged Map.
+     */
+
+    protected void mergeEdges()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapDiff.Change<Edge> oOurChange;     // Change of the Edge on our side
+        Edge                 oEdge,          // Edge of the merged Map
+                             oTheirEdge;     // Their Edge with merged ends
+        String               strID,          // ID of the Edge
+                             strNewID,       // New ID given to their Edge
+                             strError;       // Why their Edge was dropped
+        int                  nConflicts;     // Properties changed differently
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Apply each change made on their side in the order of the IDs
+        for( final MapDiff.Change<Edge> oChange : m_oTheirDiff.m_alEdgeChanges )
+        {
+            strID = oChange.m_strID;
+            oOurChange = m_oOurDiff.m_oEdgeChangeMap.get( strID );
+            oEdge = m_oMergedMap.m_oEdgeMap.get( strID );
+
+            // Connect their Edge to the Rooms of the merged Map
+            oTheirEdge = null;
+            if( oChange.m_oNew != null )
+            {
+                oTheirEdge = new Edge( m_oMergedMap, strID, oChange.m_oNew,
+                    getMergedRoomID( oChange.m_oNew.m_strStartRoomID ),
+                    getMergedRoomID( oChange.m_oNew.m_strEndRoomID ) );
+            }
+
+            switch( oChange.m_nKind )
+            {
+            case MapDiff.ADDED:
+                // Skip their Edge if our side added it with the same ends,
+                // and give it a new ID if our side added a different Edge
+                // with its ID
+                strNewID = strID;
+                if( oOurChange != null )
+                {
+                    nConflicts = MapDiff.getDifferences( oOurChange.m_oNew, oTheirEdge );
+                    if( nConflicts == 0 )
+                        break;
+                    if( (nConflicts & MapDiff.EDGE_ENDS) == 0 )
+                    {
+                        addConflict( false, strID, "added on both sides with different " +
+                            formatProperties( EDGE_PROPERTY_NAMES, nConflicts ) + "; kept ours" );
+                        break;
+                    }
+                    strNewID = Edge.INSTANCE_ID_PREFIX + m_nNextEdgeID++;
+                    oTheirEdge.m_strID = strNewID;
+                }
+                strError = checkEnds( oTheirEdge );
+                if( strError != null )
+                {
+                    if( !isAlreadyMerged( oTheirEdge ) )
+                        addConflict( false, strID, "added on their side but " + strError + "; dropped theirs" );
+                    break;
+                }
+                addEdge( oTheirEdge );
+                if( !strNewID.equals( strID ) )
+                    addConflict( false, strID, "added on both sides as different edges; added theirs as " +
+                        strNewID );
+                break;
+
+            case MapDiff.REMOVED:
+                // Remove the Edge unless our side changed it; an Edge kept
+                // that connects a removed Room is reported when dropped
+                if( oOurChange == null )
+                {
+                    m_oMergedMap.m_oEdgeMap.remove( strID );
+                    releaseExits( oEdge );
+                }
+                else if( oOurChange.m_nKind == MapDiff.CHANGED &&
+                         m_oMergedMap.m_oRoomMap.containsKey( oEdge.m_strStartRoomID ) &&
+                         m_oMergedMap.m_oRoomMap.containsKey( oEdge.m_strEndRoomID ) )
+                    addConflict( false, strID, "removed on their side but changed on ours; kept ours" );
+                break;
+
+            case MapDiff.CHANGED:
+                // Restore the Edge if our side removed it and it still fits
+                if( oOurChange != null && oOurChange.m_nKind == MapDiff.REMOVED )
+                {
+                    strError = checkEnds( oTheirEdge );
+                    if( strError == null )
+                        addEdge( oTheirEdge );
+                    addConflict( false, strID, "changed on their side but removed on ours; " +
+                        (strError == null ? "kept theirs" : "dropped since it " + strError) );
+                    break;
+                }
+
+                // Apply the properties changed on their side, except those
+                // our side changed to a different value
+                nConflicts = oOurChange == null ? 0 :
+                    oChange.m_nProperties & oOurChange.m_nProperties &
+                    MapDiff.getDifferences( oOurChange.m_oNew, oTheirEdge );
+                if( (oChange.m_nProperties & ~nConflicts & MapDiff.EDGE_ENDS) != 0 )
+                {
+                    // Move the Edge only if its new exits are free
+                    releaseExits( oEdge );
+                    strError = checkEnds( oTheirEdge );
+                    if( strError == null )
+                    {
+                        oEdge.m_strStartRoomID = oTheirEdge.m_strStartRoomID;
+                        oEdge.m_nStartExit = oTheirEdge.m_nStartExit;
+                        oEdge.m_strEndRoomID = oTheirEdge.m_strEndRoomID;
+                        oEdge.m_nEndExit = oTheirEdge.m_nEndExit;
+                    }
+                    else
+                        addConflict( false, strID, "moved on their side but " + strError + "; kept ours" );
+                    occupyExits( oEdge );
+                }
+                if( (oChange.m_nProperties & ~nConflicts & MapDiff.EDGE_ONE_WAY) != 0 )
+                    oEdge.m_bOneWay = oTheirEdge.m_bOneWay;
+                if( (oChange.m_nProperties & ~nConflicts & MapDiff.EDGE_SECRET) != 0 )
+                    oEdge.m_bSecret = oTheirEdge.m_bSecret;
+                if( (oChange.m_nProperties & ~nConflicts & MapDiff.EDGE_BENDS) != 0 )
+                    oEdge.setBends( oTheirEdge.m_aptBends );
+                if( nConflicts != 0 )
+                    addConflict( false, strID, "changed differently on both sides: " +
+                        formatProperties( EDGE_PROPERTY_NAMES, nConflicts ) + "; kept ours" );
+                break;
+            }
+        }
+    }
+
+    /**
+     * Drops the Edges of the merged Map that connect a Room removed on
+     * their side.
+     */
+
+    protected void dropDanglingEdges()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Iterator<Edge> iter;        // Iterator for the merged Edges
+        Edge           oEdge;       // Edge of the merged Map
+        String         strRoomID;   // ID of the removed Room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Remove each Edge with a Room missing from the merged Map
+        for( iter = m_oMergedMap.m_oEdgeMap.values().iterator(); iter.hasNext(); )
+        {
+            oEdge = iter.next();
+            strRoomID = !m_oMergedMap.m_oRoomMap.containsKey( oEdge.m_strStartRoomID ) ? oEdge.m_strStartRoomID :
+                (!m_oMergedMap.m_oRoomMap.containsKey( oEdge.m_strEndRoomID ) ? oEdge.m_strEndRoomID : null);
+            if( strRoomID != null )
+            {
+                iter.remove();
+                addConflict( false, oEdge.m_strID, "connects " + strRoomID +
+                    ", which was removed on their side; dropped ours" );
+            }
+        }
+    }
+
+    /**
+     * Adds the specified Edge to the merged Map, noting its exits.
+     *
+     * @param  oEdge  The Edge to be added.
+     */
+
+    protected void addEdge( Edge oEdge )
+    {
+        // Add the Edge and note its exits
+        m_oMergedMap.m_oEdgeMap.put( oEdge.m_strID, oEdge );
+        occupyExits( oEdge );
+    }
+
+    /**
+     * Checks that the Rooms of the specified Edge are on the merged Map
+     * and that their exits are free.
+     *
+     * @param  oEdge  The Edge to be checked.
+     *
+     * @return  Null if the Edge fits, or else the reason it does not.
+     */
+
+    protected String checkEnds( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Edge oOtherEdge;  // Edge already at an exit
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure both Rooms are on the Map
+        if( !m_oMergedMap.m_oRoomMap.containsKey( oEdge.m_strStartRoomID ) )
+            return( "connects " + oEdge.m_strStartRoomID + ", which was removed" );
+        if( !m_oMergedMap.m_oRoomMap.containsKey( oEdge.m_strEndRoomID ) )
+            return( "connects " + oEdge.m_strEndRoomID + ", which was removed" );
+
+        // Make sure both exits are free
+        oOtherEdge = getEdgeAtExit( oEdge.m_strStartRoomID, oEdge.m_nStartExit );
+        if( oOtherEdge == null )
+            oOtherEdge = getEdgeAtExit( oEdge.m_strEndRoomID, oEdge.m_nEndExit );
+        if( oOtherEdge != null && oOtherEdge != oEdge )
+            return( "uses an exit of " + oOtherEdge.m_strID );
+        return( null );
+    }
+
+    /**
+     * Indicates if the merged Map already has an Edge that connects the
+     * same exits as the specified Edge, as when both sides added it.
+     *
+     * @param  oEdge  The Edge.
+     *
+     * @return  A flag indicating if the same Edge is on the merged Map.
+     */
+
+    protected boolean isAlreadyMerged( Edge oEdge )
+    {
+        // Compare the Edge at the start exit, which may run either way
+        Edge oOtherEdge = getEdgeAtExit( oEdge.m_strStartRoomID, oEdge.m_nStartExit );
+        if( oOtherEdge == null )
+            return( false );
+        return( (oOtherEdge.m_strStartRoomID.equals( oEdge.m_strStartRoomID ) &&
+                oOtherEdge.m_nStartExit == oEdge.m_nStartExit &&
+                oOtherEdge.m_strEndRoomID.equals( oEdge.m_strEndRoomID ) &&
+                oOtherEdge.m_nEndExit == oEdge.m_nEndExit) ||
+            (oOtherEdge.m_strStartRoomID.equals( oEdge.m_strEndRoomID ) &&
+                oOtherEdge.m_nStartExit == oEdge.m_nEndExit &&
+                oOtherEdge.m_strEndRoomID.equals( oEdge.m_strStartRoomID ) &&
+                oOtherEdge.m_nEndExit == oEdge.m_nStartExit) );
+    }
+
+    /**
+     * Gets the Edges of the merged Map at the exits of each Room, finding
+     * them when they are first needed.
+     *
+     * @return  The Edges at the exits keyed by the ID of the Room.
+     */
+
+    protected HashMap<String, Edge[]> getExitMap()
+    {
+        // Note the Edges at the exits of each Room on first use, since
+        // their changes may not touch any Edge
+        if( m_oExitMap == null )
+        {
+            m_oExitMap = new HashMap<String, Edge[]>( (int)(m_oMergedMap.m_oRoomMap.size() / 0.75f) + 1 );
+            for( final Edge edge : m_oMergedMap.m_oEdgeMap.values() )
+                occupyExits( edge );
+        }
+        return( m_oExitMap );
+    }
+
+    /**
+     * Gets the Edge of the merged Map at the specified exit of a Room.
+     *
+     * @param  strRoomID  The ID of the Room.
+     * @param  nExitID  The exit of the Room.
+     *
+     * @return  The Edge at the exit, or null if the exit is free.
+     */
+
+    protected Edge getEdgeAtExit( String strRoomID, int nExitID )
+    {
+        // Look up the Edge at the exit
+        Edge[] aoEdges = getExitMap().get( strRoomID );
+        return( aoEdges != null ? aoEdges[ nExitID ] : null );
+    }
+
+    /**
+     * Notes that the exits of the specified Edge are used by it.
+     *
+     * @param  oEdge  The Edge.
+     */
+
+    protected void occupyExits( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Edge[] aoEdges;  // Edges at the exits of a Room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Note both exits, unless the Edges at the exits are not yet known,
+        // in which case they are found with this Edge
+        if( m_oExitMap == null )
+            return;
+        if( (aoEdges = m_oExitMap.get( oEdge.m_strStartRoomID )) == null )
+            m_oExitMap.put( oEdge.m_strStartRoomID, aoEdges = new Edge[ Room.NUM_EXITS ] );
+        aoEdges[ oEdge.m_nStartExit ] = oEdge;
+        if( (aoEdges = m_oExitMap.get( oEdge.m_strEndRoomID )) == null )
+            m_oExitMap.put( oEdge.m_strEndRoomID, aoEdges = new Edge[ Room.NUM_EXITS ] );
+        aoEdges[ oEdge.m_nEndExit ] = oEdge;
+    }
+
+    /**
+     * Notes that the exits of the specified Edge are no longer used by it.
+     *
+     * @param  oEdge  The Edge; may be null.
+     */
+
+    protected void releaseExits( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Edge[] aoEdges;  // Edges at the exits of a Room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Forget each exit still noted as used by the Edge
+        if( oEdge == null )
+            return;
+        aoEdges = getExitMap().get( oEdge.m_strStartRoomID );
+        if( aoEdges != null && aoEdges[ oEdge.m_nStartExit ] == oEdge )
+            aoEdges[ oEdge.m_nStartExit ] = null;
+        aoEdges = m_oExitMap.get( oEdge.m_strEndRoomID );
+        if( aoEdges != null && aoEdges[ oEdge.m_nEndExit ] == oEdge )
+            aoEdges[ oEdge.m_nEndExit ] = null;
+    }
+
+    /**
+     * Gets the ID in the merged Map of the specified Room of their Map.
+     *
+     * @param  strRoomID  The ID of their Room.
+     *
+     * @return  The ID of the Room in the merged Map.
+     */
+
+    protected String getMergedRoomID( String strRoomID )
+    {
+        // Look up the ID of a Room given a new ID
+        String strMergedID = m_oRoomIDMap.get( strRoomID );
+        return( strMergedID != null ? strMergedID : strRoomID );
+    }
+
+    /**
+     * Sets the specified properties of a Room to those of another Room.
+     *
+     * @param  oRoom  The Room to be changed.
+     * @param  oSource  The Room whose properties are taken.
+     * @param  nProperties  The flags of the properties to be set.
+     */
+
+    protected void applyRoomProperties( Room oRoom, Room oSource, int nProperties )
+    {
+        // Set each property flagged
+        if( (nProperties & MapDiff.ROOM_NAME) != 0 )
+            oRoom.setName( oSource.m_strName );
+        if( (nProperties & MapDiff.ROOM_DESCRIPTION) != 0 )
+            oRoom.setDescription( oSource.getDescription() );
+        if( (nProperties & MapDiff.ROOM_BOUNDS) != 0 )
+            oRoom.setBounds( oSource.m_rectBounds );
+        if( (nProperties & MapDiff.ROOM_FOREGROUND) != 0 )
+            oRoom.setForeground( oSource.m_clrForeground );
+        if( (nProperties & MapDiff.ROOM_BACKGROUND) != 0 )
+            oRoom.setBackground( oSource.m_clrBackground );
+    }
+
+    /**
+     * Adds a conflict found by the merge.
+     *
+     * @param  bRoom  Indicates if the conflict is that of a Room.
+     * @param  strID  The ID of the Room or Edge.
+     * @param  strMessage  The description of the conflict.
+     */
+
+    protected void addConflict( boolean bRoom, String strID, String strMessage )
+    {
+        // Add the conflict
+        m_alConflicts.add( new Conflict( bRoom, strID, strMessage ) );
+    }
+
+
+    // **********************************************************************
+    // *********************        Inner Classes       *********************
+    // **********************************************************************
+
+    /**
+     * A conflict between the changes made on both sides to a Room or Edge,
+     * and how it was resolved.
+     */
+
+    public static class Conflict
+        extends Object
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Indicates if the conflict is that of a Room rather than an Edge.
+         */
+        boolean m_bRoom;
+
+        /**
+         * The ID of the Room or Edge in the base Map, or as added.
+         */
+        String m_strID;
+
+        /**
+         * The description of the conflict.
+         */
+        String m_strMessage;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new Conflict.
+         *
+         * @param  bRoom  Indicates if the conflict is that of a Room.
+         * @param  strID  The ID of the Room or Edge.
+         * @param  strMessage  The description of the conflict.
+         */
+
+        Conflict( boolean bRoom, String strID, String strMessage )
+        {
+            // Initialize instance variables
+            m_bRoom = bRoom;
+            m_strID = strID;
+            m_strMessage = strMessage;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Public Instance Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Indicates if the conflict is that of a Room.
+         *
+         * @return  True for a Room, false for an Edge.
+         */
+
+        public boolean isRoom()
+        {
+            // Return the type of the conflict
+            return( m_bRoom );
+        }
+
+        /**
+         * Gets the ID of the Room or Edge in conflict.
+         *
+         * @return  The ID.
+         */
+
+        public String getID()
+        {
+            // Return the ID
+            return( m_strID );
+        }
+
+        /**
+         * Gets the description of the conflict and how it was resolved.
+         *
+         * @return  The description.
+         */
+
+        public String getMessage()
+        {
+            // Return the description
+            return( m_strMessage );
+        }
+
+        /**
+         * @see  java.lang.Object#toString  toString
+         */
+
+        public String toString()
+        {
+            // Describe the Room or Edge and the conflict
+            return( "! " + (m_bRoom ? "room " : "edge ") + m_strID + ": " + m_strMessage );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************        Comparators         *********************
+    // **********************************************************************
+
+    /**
+     * The object that orders the conflicts of Rooms before those of Edges
+     * and then by their identifiers.
+     */
+
+    protected static class ConflictComparator
+        extends Object
+        implements Comparator<Conflict>
+    {
+        // ------------------------------------------------------------------
+        // -----------------    Comparator Methods    -----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.Comparator#compare  compare
+         */
+
+        public int compare( Conflict oConflict1, Conflict oConflict2 )
+        {
+            // Compare the types, then shorter identifiers first, then the
+            // characters
+            if( oConflict1.m_bRoom != oConflict2.m_bRoom )
+                return( oConflict1.m_bRoom ? -1 : 1 );
+            int nDiff = oConflict1.m_strID.length() - oConflict2.m_strID.length();
+            return( nDiff != 0 ? nDiff : oConflict1.m_strID.compareTo( oConflict2.m_strID ) );
+        }
+    }
+}
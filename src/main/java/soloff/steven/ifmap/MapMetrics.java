@@ -0,0 +1,632 @@
+/*
+ * MapMetrics.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.EventQueue;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The MBean that exposes live metrics of a map and its rendering.  The
+ * metrics are recorded by the document and the MapUI on the event dispatch
+ * thread and read by JMX clients (such as JConsole) on other threads, so
+ * all recorded values are accessed under the lock of this object.  The map
+ * and its view may only be used on the event dispatch thread, so the
+ * attributes computed from them are read there; a JMX client waits a
+ * limited time for them and gets a placeholder value if the event dispatch
+ * thread is busy.  The lock of this object is never held while waiting,
+ * because the event dispatch thread needs it to record paints.
+ */
+
+public class MapMetrics
+    extends Object
+    implements MapMetricsMBean
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The name under which the MBean is registered.
+     */
+    public static final String OBJECT_NAME = "soloff.steven.ifmap:type=MapMetrics";
+
+    /**
+     * The upper limit (in milliseconds) of each bucket of the paint time
+     * histogram except the last.
+     */
+    protected static final long[] PAINT_TIME_BUCKET_LIMITS =
+    {
+        1, 2, 4, 8, 16, 33, 66, 133, 266, 533
+    };
+
+    /**
+     * The estimated size in bytes of a Room excluding its strings
+     * (including its bounds and its entry in the room map).
+     */
+    protected static final int ESTIMATED_ROOM_SIZE = 152;
+
+    /**
+     * The estimated size in bytes of an Edge excluding its strings
+     * (including its entry in the edge map).
+     */
+    protected static final int ESTIMATED_EDGE_SIZE = 88;
+
+    /**
+     * The estimated size in bytes of an empty String.
+     */
+    protected static final int ESTIMATED_STRING_SIZE = 40;
+
+    /**
+     * The estimated size in bytes of an empty array.
+     */
+    protected static final int ESTIMATED_ARRAY_SIZE = 16;
+
+    /**
+     * The longest time (in milliseconds) a JMX client waits for the event
+     * dispatch thread to read the map or its view.
+     */
+    protected static final long EVENT_THREAD_TIMEOUT_MILLIS = 1000;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The map whose metrics are exposed.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The UI of the map.
+     */
+    protected MapUI m_oMapUI;
+
+    /**
+     * The number of paints in each bucket of the paint time histogram.
+     */
+    protected long[] m_anPaintHistogram;
+
+    /**
+     * The number of paints.
+     */
+    protected long m_nPaintCount;
+
+    /**
+     * The total time (in nanoseconds) taken by all paints.
+     */
+    protected long m_lTotalPaintNanos;
+
+    /**
+     * The longest time (in nanoseconds) taken by a paint.
+     */
+    protected long m_lMaxPaintNanos;
+
+    /**
+     * The time (in nanoseconds) taken by the last load; -1 if none.
+     */
+    protected long m_lLastLoadNanos;
+
+    /**
+     * The time (in nanoseconds) taken by the last save; -1 if none.
+     */
+    protected long m_lLastSaveNanos;
+
+    /**
+     * The time (in milliseconds) from the start of the virtual machine until
+     * the main window was opened; -1 if not recorded.
+     */
+    protected long m_lTimeToWindow;
+
+    /**
+     * The repaint request count when the repaint request rate was last
+     * read.
+     */
+    protected long m_nLastRequestedCount;
+
+    /**
+     * The value of the nanosecond timer when the repaint request rate was
+     * last read.
+     */
+    protected long m_lLastRateNanos;
+
+    /**
+     * The last model heap estimate computed on the event dispatch thread.
+     */
+    protected long m_lModelHeap;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapMetrics object.
+     *
+     * @param  oMap  The map whose metrics are exposed.
+     * @param  oMapUI  The UI of the map.
+     *
+     * @exception  IllegalArgumentException  If oMap or oMapUI is null.
+     */
+
+    public MapMetrics( Map oMap, MapUI oMapUI )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || oMapUI == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_oMapUI = oMapUI;
+        m_anPaintHistogram = new long[ PAINT_TIME_BUCKET_LIMITS.length + 1 ];
+        m_lLastLoadNanos = -1;
+        m_lLastSaveNanos = -1;
+        m_lTimeToWindow = -1;
+        m_nLastRequestedCount = 0;
+        m_lLastRateNanos = System.nanoTime();
+        m_lModelHeap = 0;
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Registers this MBean with the platform MBean server.
+     *
+     * @exception  JMException  If the MBean cannot be registered.
+     */
+
+    public void register()
+        throws JMException
+    {
+        // Register this MBean under its well-known name
+        ManagementFactory.getPlatformMBeanServer().registerMBean( this, new ObjectName( OBJECT_NAME ) );
+    }
+
+    /**
+     * Records the time taken to paint the map.
+     *
+     * @param  lNanos  The paint time in nanoseconds.
+     */
+
+    public synchronized void recordPaint( long lNanos )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        long lMillis;  // The paint time in milliseconds
+        int  nBucket;  // Histogram bucket of the paint time
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the histogram bucket of the paint time
+        lMillis = lNanos / 1000000L;
+        for( nBucket = 0; nBucket < PAINT_TIME_BUCKET_LIMITS.length; nBucket++ )
+        {
+            if( lMillis < PAINT_TIME_BUCKET_LIMITS[ nBucket ] )
+                break;
+        }
+
+        // Update the paint statistics
+        m_anPaintHistogram[ nBucket ]++;
+        m_nPaintCount++;
+        m_lTotalPaintNanos += lNanos;
+        m_lMaxPaintNanos = Math.max( m_lMaxPaintNanos, lNanos );
+    }
+
+    /**
+     * Records the time taken to load a document.
+     *
+     * @param  lNanos  The load time in nanoseconds.
+     */
+
+    public synchronized void recordLoad( long lNanos )
+    {
+        // Store the load time
+        m_lLastLoadNanos = lNanos;
+    }
+
+    /**
+     * Records the time taken to save a document.
+     *
+     * @param  lNanos  The save time in nanoseconds.
+     */
+
+    public synchronized void recordSave( long lNanos )
+    {
+        // Store the save time
+        m_lLastSaveNanos = lNanos;
+    }
+
+    /**
+     * Records the time at which the main window was opened.
+     *
+     * @param  lOpenedMillis  The wall clock time (in milliseconds) at which
+     *     the main window was opened.
+     */
+
+    public synchronized void recordWindowOpened( long lOpenedMillis )
+    {
+        // Measure from the start of the virtual machine
+        m_lTimeToWindow = lOpenedMillis - ManagementFactory.getRuntimeMXBean().getStartTime();
+    }
+
+
+    // **********************************************************************
+    // *********************  MapMetricsMBean Methods   *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getRoomCount()  getRoomCount
+     */
+
+    public int getRoomCount()
+    {
+        // Count the rooms on the event dispatch thread
+        return( readOnEventThread( new Callable<Integer>()
+        {
+            public Integer call()
+            {
+                return( m_oMap.m_oRoomMap.size() );
+            }
+        }, -1 ).intValue() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getEdgeCount()  getEdgeCount
+     */
+
+    public int getEdgeCount()
+    {
+        // Count the edges on the event dispatch thread
+        return( readOnEventThread( new Callable<Integer>()
+        {
+            public Integer call()
+            {
+                return( m_oMap.m_oEdgeMap.size() );
+            }
+        }, -1 ).intValue() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getRoomUICount()
+     *     getRoomUICount
+     */
+
+    public int getRoomUICount()
+    {
+        // Count the RoomUI components on the event dispatch thread
+        return( readOnEventThread( new Callable<Integer>()
+        {
+            public Integer call()
+            {
+                return( m_oMapUI.m_oRoomUIMap.size() );
+            }
+        }, -1 ).intValue() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getPaintCount()  getPaintCount
+     */
+
+    public synchronized long getPaintCount()
+    {
+        // Return the number of paints
+        return( m_nPaintCount );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getMeanPaintTime()
+     *     getMeanPaintTime
+     */
+
+    public synchronized double getMeanPaintTime()
+    {
+        // Return the mean paint time in milliseconds
+        return( m_nPaintCount > 0 ? m_lTotalPaintNanos / 1.0e6 / m_nPaintCount : 0.0 );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getMaxPaintTime()
+     *     getMaxPaintTime
+     */
+
+    public synchronized double getMaxPaintTime()
+    {
+        // Return the longest paint time in milliseconds
+        return( m_lMaxPaintNanos / 1.0e6 );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getPaintTimeBucketLimits()
+     *     getPaintTimeBucketLimits
+     */
+
+    public long[] getPaintTimeBucketLimits()
+    {
+        // Return a copy of the bucket limits
+        return( PAINT_TIME_BUCKET_LIMITS.clone() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getPaintTimeHistogram()
+     *     getPaintTimeHistogram
+     */
+
+    public synchronized long[] getPaintTimeHistogram()
+    {
+        // Return a copy of the histogram
+        return( m_anPaintHistogram.clone() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getLastLoadDuration()
+     *     getLastLoadDuration
+     */
+
+    public synchronized double getLastLoadDuration()
+    {
+        // Return the last load time in milliseconds
+        return( m_lLastLoadNanos < 0 ? -1.0 : m_lLastLoadNanos / 1.0e6 );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getLastSaveDuration()
+     *     getLastSaveDuration
+     */
+
+    public synchronized double getLastSaveDuration()
+    {
+        // Return the last save time in milliseconds
+        return( m_lLastSaveNanos < 0 ? -1.0 : m_lLastSaveNanos / 1.0e6 );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getLastLoadHeapSaved()
+     *     getLastLoadHeapSaved
+     */
+
+    public long getLastLoadHeapSaved()
+    {
+        // Read the statistics of the last load on the event dispatch thread
+        return( readOnEventThread( new Callable<Long>()
+        {
+            public Long call()
+            {
+                LoadStatistics oStatistics = m_oMap.getLoadStatistics();
+                return( oStatistics != null ? oStatistics.getEstimatedBytesSaved() : -1L );
+            }
+        }, -1L ).longValue() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getTimeToWindow()
+     *     getTimeToWindow
+     */
+
+    public synchronized long getTimeToWindow()
+    {
+        // Return the time to window
+        return( m_lTimeToWindow );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getRepaintRequestsPerSecond()
+     *     getRepaintRequestsPerSecond
+     */
+
+    public double getRepaintRequestsPerSecond()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        long nRequestedCount,  // Current repaint request count
+             lNow;             // Current value of the nanosecond timer
+        double dRate;          // Repaint requests per second
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Read the repaint request count on the event dispatch thread
+        nRequestedCount = readOnEventThread( new Callable<Long>()
+        {
+            public Long call()
+            {
+                return( m_oMapUI.getRepaintCoalescer().getRequestedCount() );
+            }
+        }, -1L ).longValue();
+        if( nRequestedCount < 0 )
+            return( -1.0 );
+
+        synchronized( this )
+        {
+            // Compute the rate since the last reading (the coalescer
+            // statistics may have been reset in the meantime)
+            lNow = System.nanoTime();
+            dRate = Math.max( 0L, nRequestedCount - m_nLastRequestedCount ) /
+                Math.max( 1.0e-3, (lNow - m_lLastRateNanos) / 1.0e9 );
+
+            // Start the next reading from now
+            m_nLastRequestedCount = nRequestedCount;
+            m_lLastRateNanos = lNow;
+        }
+        return( dRate );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getEstimatedModelHeap()
+     *     getEstimatedModelHeap
+     */
+
+    public long getEstimatedModelHeap()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        long lBytes;  // Estimated model heap size
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Sum the estimated size of each room and edge with its strings on
+        // the event dispatch thread
+        lBytes = readOnEventThread( new Callable<Long>()
+        {
+            public Long call()
+            {
+                long lTotal = 0;
+                for( final Room room : m_oMap.m_oRoomMap.values() )
+                    lTotal += ESTIMATED_ROOM_SIZE + estimateSize( room.m_strID ) +
+                        estimateSize( room.m_strName ) + estimateSize( room.m_strDescription ) +
+                        estimateSize( room.m_abDescription );
+                for( final Edge edge : m_oMap.m_oEdgeMap.values() )
+                    lTotal += ESTIMATED_EDGE_SIZE + estimateSize( edge.m_strID );
+                return( lTotal );
+            }
+        }, -1L ).longValue();
+
+        synchronized( this )
+        {
+            // Report the previous estimate if the event dispatch thread was
+            // too busy to compute a new one
+            if( lBytes >= 0 )
+                m_lModelHeap = lBytes;
+            return( m_lModelHeap );
+        }
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#getUsedHeap()  getUsedHeap
+     */
+
+    public long getUsedHeap()
+    {
+        // Return the used heap size
+        return( ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapMetricsMBean#resetStatistics()
+     *     resetStatistics
+     */
+
+    public synchronized void resetStatistics()
+    {
+        // Reset the paint statistics
+        m_anPaintHistogram = new long[ PAINT_TIME_BUCKET_LIMITS.length + 1 ];
+        m_nPaintCount = 0;
+        m_lTotalPaintNanos = 0;
+        m_lMaxPaintNanos = 0;
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Reads a value of the map or its view on the event dispatch thread,
+     * waiting at most EVENT_THREAD_TIMEOUT_MILLIS for it.  If the value is
+     * not read in time, the read is abandoned and the default value is
+     * returned instead.
+     *
+     * @param  oReader  The object that reads the value.
+     * @param  oDefault  The value returned if the value is not read in
+     *     time.
+     *
+     * @return  The value read, or oDefault.
+     */
+
+    protected static <T> T readOnEventThread( Callable<T> oReader, T oDefault )
+    {
+        // Read the value on the event dispatch thread, directly if this is
+        // that thread
+        FutureTask<T> oTask = new FutureTask<T>( oReader );
+        if( EventQueue.isDispatchThread() )
+            oTask.run();
+        else
+            EventQueue.invokeLater( oTask );
+
+        try
+        {
+            // Wait for the value
+            return( oTask.get( EVENT_THREAD_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS ) );
+        }
+        catch( TimeoutException e )
+        {
+            // Give up rather than stall the JMX client (the task does nothing
+            // if it runs later)
+            oTask.cancel( false );
+            return( oDefault );
+        }
+        catch( InterruptedException e )
+        {
+            // Give up, keeping the interrupt for the caller
+            oTask.cancel( false );
+            Thread.currentThread().interrupt();
+            return( oDefault );
+        }
+        catch( ExecutionException e )
+        {
+            throw new RuntimeException( e.getCause() );
+        }
+    }
+
+    /**
+     * Estimates the number of bytes of heap used by the specified string.
+     *
+     * @param  str  The string; may be null.
+     *
+     * @return  The estimated size of the string.
+     */
+
+    protected static long estimateSize( String str )
+    {
+        // Account for the object headers and two bytes per character
+        return( str == null ? 0 : ESTIMATED_STRING_SIZE + 2L * str.length() );
+    }
+
+    /**
+     * Estimates the number of bytes of heap used by the specified byte
+     * array.
+     *
+     * @param  ab  The byte array; may be null.
+     *
+     * @return  The estimated size of the byte array.
+     */
+
+    protected static long estimateSize( byte[] ab )
+    {
+        // Account for the object header and one byte per element
+        return( ab == null ? 0 : ESTIMATED_ARRAY_SIZE + (long)ab.length );
+    }
+}
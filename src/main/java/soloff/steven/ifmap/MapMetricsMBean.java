@@ -0,0 +1,173 @@
+/*
+ * MapMetricsMBean.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+/**
+ * The management interface that exposes live metrics of the map and its
+ * rendering over JMX.  The attributes computed from the map or its view are
+ * read on the event dispatch thread; if that thread is too busy to read
+ * them within a second, a placeholder value is returned.
+ */
+
+public interface MapMetricsMBean
+{
+    // **********************************************************************
+    // *********************  Public Interface Methods  *********************
+    // **********************************************************************
+
+    /**
+     * Gets the number of rooms in the map.
+     *
+     * @return  The number of rooms in the map; -1 if the event dispatch
+     *     thread is busy.
+     */
+
+    public abstract int getRoomCount();
+
+    /**
+     * Gets the number of edges in the map.
+     *
+     * @return  The number of edges in the map; -1 if the event dispatch
+     *     thread is busy.
+     */
+
+    public abstract int getEdgeCount();
+
+    /**
+     * Gets the number of RoomUI components in the view.
+     *
+     * @return  The number of RoomUI components; -1 if the event dispatch
+     *     thread is busy.
+     */
+
+    public abstract int getRoomUICount();
+
+    /**
+     * Gets the number of times the map has been painted.
+     *
+     * @return  The number of paints.
+     */
+
+    public abstract long getPaintCount();
+
+    /**
+     * Gets the mean time (in milliseconds) taken to paint the map.
+     *
+     * @return  The mean paint time.
+     */
+
+    public abstract double getMeanPaintTime();
+
+    /**
+     * Gets the longest time (in milliseconds) taken to paint the map.
+     *
+     * @return  The longest paint time.
+     */
+
+    public abstract double getMaxPaintTime();
+
+    /**
+     * Gets the upper limit (in milliseconds) of each bucket of the paint
+     * time histogram.  The last bucket has no upper limit.
+     *
+     * @return  The upper limit of each bucket except the last.
+     */
+
+    public abstract long[] getPaintTimeBucketLimits();
+
+    /**
+     * Gets the number of paints that fell in each bucket of the paint time
+     * histogram.
+     *
+     * @return  The number of paints in each bucket.
+     */
+
+    public abstract long[] getPaintTimeHistogram();
+
+    /**
+     * Gets the time (in milliseconds) taken by the last load of a document.
+     *
+     * @return  The last load duration; -1 if no document has been loaded.
+     */
+
+    public abstract double getLastLoadDuration();
+
+    /**
+     * Gets the time (in milliseconds) taken by the last save of a document.
+     *
+     * @return  The last save duration; -1 if no document has been saved.
+     */
+
+    public abstract double getLastSaveDuration();
+
+    /**
+     * Gets the estimated number of bytes of heap saved by sharing equal
+     * strings and colors during the last load of a document.
+     *
+     * @return  The heap saved by the last load; -1 if no document has been
+     *     loaded or the event dispatch thread is busy.
+     */
+
+    public abstract long getLastLoadHeapSaved();
+
+    /**
+     * Gets the time (in milliseconds) from the start of the virtual machine
+     * until the main window was opened.
+     *
+     * @return  The time to window; -1 if it has not been recorded.
+     */
+
+    public abstract long getTimeToWindow();
+
+    /**
+     * Gets the number of regions requested to be repainted per second since
+     * this attribute was last read.
+     *
+     * @return  The repaint request rate; -1 if the event dispatch thread is
+     *     busy.
+     */
+
+    public abstract double getRepaintRequestsPerSecond();
+
+    /**
+     * Gets the estimated number of bytes of heap used by the rooms and
+     * edges of the map.
+     *
+     * @return  The estimated model heap size; the previous estimate if the
+     *     event dispatch thread is busy.
+     */
+
+    public abstract long getEstimatedModelHeap();
+
+    /**
+     * Gets the number of bytes of heap currently used by the application.
+     *
+     * @return  The used heap size.
+     */
+
+    public abstract long getUsedHeap();
+
+    /**
+     * Resets the paint statistics.
+     */
+
+    public abstract void resetStatistics();
+}
@@ -0,0 +1,586 @@
+/*
+ * MapRenderer.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.geom.Arc2D;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Line2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import soloff.steven.text.MultiLineTextLayout;
+
+/**
+ * The object that renders a Map directly from the model.  Unlike MapUI and
+ * RoomUI, a MapRenderer does not require any user interface components, so
+ * it may be used to render a Map off-screen (e.g. to an image) from any
+ * thread, provided the Map is not modified while it is being rendered.
+ */
+
+public class MapRenderer
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The font used to render room text when none is specified.
+     */
+    protected static final Font DEFAULT_FONT = new Font( "Dialog", Font.PLAIN, 12 );
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map rendered by this object.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The font used to render room text.
+     */
+    protected Font m_oFont;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new MapRenderer object that renders room text using the
+     * default font.
+     *
+     * @param  oMap  The Map to be rendered.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public MapRenderer( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Call overloaded constructor
+        this( oMap, DEFAULT_FONT );
+    }
+
+    /**
+     * Constructs a new MapRenderer object.
+     *
+     * @param  oMap  The Map to be rendered.
+     * @param  oFont  The font used to render room text.
+     *
+     * @exception  IllegalArgumentException  If oMap or oFont is null.
+     */
+
+    public MapRenderer( Map oMap, Font oFont )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || oFont == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_oFont = oFont;
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Paints all Edges and Rooms that intersect the specified clipping
+     * rectangle.  The graphics context is expected to use the coordinate
+     * system of the map.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The region of the map to be painted.
+     */
+
+    public void paint( Graphics g, Rectangle rectClip )
+    {
+        // Paint the edges first so the rooms are drawn on top of them
+        paintEdges( g, rectClip, m_oMap.m_oEdgeMap.values() );
+        paintRooms( g, rectClip, m_oMap.m_oRoomMap.values() );
+    }
+
+    /**
+     * Paints each of the specified Edges that intersects the specified
+     * clipping rectangle.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The region of the map to be painted.
+     * @param  aoEdges  The Edges to be painted.
+     */
+
+    public void paintEdges( Graphics g, Rectangle rectClip, Iterable<Edge> aoEdges )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        EdgeBatch oNormalBatch,  // Batch of normal edges
+                  oSecretBatch;  // Batch of secret edges
+        Rectangle rectEdge;      // Bounding rectangle of the current edge
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Accumulate the edges that intersect the clipping rectangle into
+        // one batch per style
+        oNormalBatch = new EdgeBatch();
+        oSecretBatch = new EdgeBatch();
+        for( final Edge oEdge : aoEdges )
+        {
+            rectEdge = oEdge.getBounds();
+            if( rectClip.intersects( rectEdge ) )
+                addEdge( oEdge.isSecret() ? oSecretBatch : oNormalBatch, oEdge, rectEdge );
+        }
+
+        // Paint each batch in a single pass
+        g.setColor( Color.black );
+        oNormalBatch.paint( g );
+        g.setColor( Color.gray );
+        oSecretBatch.paint( g );
+    }
+
+    /**
+     * Adds the specified Edge to the specified batch.
+     *
+     * @param  oBatch  The batch to which the Edge is added.
+     * @param  oEdge  The Edge to be added.
+     * @param  rectEdge  The bounding rectangle of the Edge.
+     */
+
+    public void addEdge( EdgeBatch oBatch, Edge oEdge, Rectangle rectEdge )
+    {
+        // Append the edge and its head (if any) to the batch paths
+        oBatch.m_oLinePath.append( createEdgeShape( oEdge, rectEdge ), false );
+        if( hasEdgeHead( oEdge ) )
+            oBatch.m_oHeadPath.append( createEdgeHead( oEdge ), false );
+        oBatch.m_nEdgeCount++;
+    }
+
+    /**
+     * Paints each of the specified Rooms that intersects the specified
+     * clipping rectangle.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The region of the map to be painted.
+     * @param  aoRooms  The Rooms to be painted.
+     */
+
+    public void paintRooms( Graphics g, Rectangle rectClip, Iterable<Room> aoRooms )
+    {
+        // Iterate through all the specified rooms
+        for( final Room oRoom : aoRooms )
+        {
+            // Paint the room if it intersects the clipping rectangle
+            if( rectClip.intersects( oRoom.m_rectBounds ) )
+                paintRoom( g, oRoom, Color.black );
+        }
+    }
+
+    /**
+     * Paints the specified Edge using the current color of the graphics
+     * context.  This includes the one-way head if applicable.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  oEdge  The Edge to be painted.
+     * @param  rectEdge  The bounding rectangle of the Edge.
+     */
+
+    public void paintEdge( Graphics g, Edge oEdge, Rectangle rectEdge )
+    {
+        // Draw the edge and the arrowhead if the edge is one-way
+        ((Graphics2D)g).draw( createEdgeShape( oEdge, rectEdge ) );
+        if( hasEdgeHead( oEdge ) )
+            paintEdgeHead( g, oEdge );
+    }
+
+    /**
+     * Indicates if a one-way head is drawn for the specified Edge.  Heads
+     * are not drawn for 360 degree circular edges since both ends of such
+     * an edge are at the same exit.
+     *
+     * @param  oEdge  The Edge to be tested.
+     *
+     * @return  A flag indicating if a head is drawn for the Edge.
+     */
+
+    public boolean hasEdgeHead( Edge oEdge )
+    {
+        // Only one-way edges that are not 360 degree circles have heads
+        return( oEdge.isOneWay() &&
+            !(oEdge.isCircular() && oEdge.getStartExit() == oEdge.getEndExit()) );
+    }
+
+    /**
+     * Computes the shape used to draw the specified Edge.  Line edges are
+     * represented by a line, or a path through their bends if they have
+     * any, circular edges that connect the same exit by a
+     * circle, and all other circular edges by the longest arc between their
+     * endpoints.  The one-way head is not included.
+     *
+     * @param  oEdge  The Edge whose shape is to be computed.
+     * @param  rectEdge  The bounding rectangle of the Edge.
+     *
+     * @return  The shape of the Edge.
+     */
+
+    public Shape createEdgeShape( Edge oEdge, Rectangle rectEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Point2D.Double pt1;        // Starting point of circular (arc) edge
+        Point2D.Double pt2;        // Ending point of circular (arc) edge
+        Point2D.Double ptCenter;   // Center of bounding rectangle
+        Point          ptStart,    // Starting point of edge
+                       ptEnd;      // Ending point of edge
+        double         dAngle1,    // Smaller angle of circular (arc) edge
+                       dAngle2,    // Larger angle of circular (arc) edge
+                       dArcAngle;  // Angle made by circular (arc) edge
+
+        // CONSTANT DECLARATIONS                                           //
+
+        final double RAD2DEG = 180.0 / Math.PI;  // Conversion from radians to degress
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Get the endpoints of the edge
+        ptStart = oEdge.getStartPoint();
+        ptEnd = oEdge.getEndPoint();
+
+        // Line edges are simply a line between the endpoints, or a line
+        // through each bend if the edge has been routed
+        if( !oEdge.isCircular() )
+        {
+            if( !oEdge.hasBends() )
+                return( new Line2D.Float( ptStart.x, ptStart.y, ptEnd.x, ptEnd.y ) );
+            Path2D.Float oPath = new Path2D.Float();
+            oPath.moveTo( ptStart.x, ptStart.y );
+            for( final Point ptBend : oEdge.m_aptBends )
+                oPath.lineTo( ptBend.x, ptBend.y );
+            oPath.lineTo( ptEnd.x, ptEnd.y );
+            return( oPath );
+        }
+
+        // Determine if the circular edge connects to the same exit
+        if( oEdge.getStartExit() == oEdge.getEndExit() )
+            return( new Ellipse2D.Float( rectEdge.x, rectEdge.y, rectEdge.width, rectEdge.height ) );
+
+        // Initialize locations of edge start, end, and bounding rectangle center
+        pt1 = new Point2D.Double( ptStart.x, ptStart.y );
+        pt2 = new Point2D.Double( ptEnd.x, ptEnd.y );
+        ptCenter = new Point2D.Double( rectEdge.getCenterX(), rectEdge.getCenterY() );
+
+        // Compute the angle the starting and end points make with the
+        // center of the edge's bounding rectangle (remember that y is
+        // positive downward)
+        dAngle1 = Math.atan2( ptCenter.y - pt1.y, pt1.x - ptCenter.x ) * RAD2DEG;
+        dAngle2 = Math.atan2( ptCenter.y - pt2.y, pt2.x - ptCenter.x ) * RAD2DEG;
+
+        // Since atan2() returns angles in the range {-PI,PI}, we move
+        // them into the range {0,2*PI} since that is the system we
+        // are working in.
+        if( dAngle1 < 0.0 )
+            dAngle1 += 360.0;
+        if( dAngle2 < 0.0 )
+            dAngle2 += 360.0;
+
+        // Ensure that angle 1 is the smaller of the two angles
+        if( dAngle1 > dAngle2 )
+        {
+            double dTemp = dAngle1;
+            dAngle1 = dAngle2;
+            dAngle2 = dTemp;
+        }
+
+        // Determine which arc to draw and compute its coverage (if
+        // angle 2 leads angle 1 by more than 180 degrees, draw the CCW
+        // arc; otherwise draw the CW arc; i.e. we draw the longest arc).
+        if( dAngle2 - dAngle1 >= 180.0 )
+            dArcAngle = dAngle2 - dAngle1;
+        else
+            dArcAngle = -(dAngle1 - (dAngle2 - 360.0));
+
+        // Return the sub-360 degree circular edge
+        return( new Arc2D.Float( rectEdge.x, rectEdge.y, rectEdge.width, rectEdge.height,
+            (int)dAngle1, (int)dArcAngle, Arc2D.OPEN ) );
+    }
+
+    /**
+     * Paints the one-way head at the endpoint of the specified Edge using
+     * the current color of the graphics context.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  oEdge  The Edge whose one-way head is to be painted.
+     */
+
+    public void paintEdgeHead( Graphics g, Edge oEdge )
+    {
+        // Fill the edge head polygon
+        g.fillPolygon( createEdgeHead( oEdge ) );
+    }
+
+    /**
+     * Computes the polygon that represents the one-way head at the endpoint
+     * of the specified Edge.
+     *
+     * @param  oEdge  The Edge whose one-way head is to be computed.
+     *
+     * @return  The polygon that represents the one-way head of the Edge.
+     */
+
+    public Polygon createEdgeHead( Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Point  ptEdgeStart,  // Starting point of edge
+               ptEdgeEnd,    // Ending point of edge
+               pt;           // Reference point along edge head
+        int[]  anPolyX;      // x-coordinates of edge head polygon
+        int[]  anPolyY;      // y-coordinates of edge head polygon
+        double dTheta,       // Angle of edge head
+               dSinTheta,    // Sine of dTheta
+               dCosTheta;    // Cosine of dTheta
+        int    nDX,          // x-distance between reference point and head butt corners
+               nDY;          // y-distance between reference point and head butt corners
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Get the starting and ending points of the edge
+        ptEdgeStart = oEdge.getStartPoint();
+        ptEdgeEnd = oEdge.getEndPoint();
+
+        // Determine if the edge is a line edge or a circular edge
+        if( oEdge.isCircular() )
+        {
+            // Compute various quantities
+            Rectangle rectEdge = oEdge.getBounds();
+            double dXCenter = rectEdge.getCenterX();
+            double dYCenter = rectEdge.getCenterY();
+            double dThetaEnd = Math.atan2( dYCenter - ptEdgeEnd.y, ptEdgeEnd.x - dXCenter );
+            double dThetaStart = Math.atan2( dYCenter - ptEdgeStart.y, ptEdgeStart.x - dXCenter );
+            double dAbsThetaDiff = Math.abs( dThetaEnd - dThetaStart );
+
+            // Compute the angle of the edge head
+            if( (dThetaEnd > dThetaStart && dAbsThetaDiff < Math.PI) ||
+                (dThetaEnd < dThetaStart && dAbsThetaDiff > Math.PI) )
+                dTheta = dThetaEnd - Math.PI / 2.0;
+            else
+                dTheta = dThetaEnd + Math.PI / 2.0;
+        }
+        else
+        {
+            // Compute the angle of the edge head (along the last segment if
+            // the edge bends)
+            if( oEdge.hasBends() )
+                ptEdgeStart = oEdge.m_aptBends[ oEdge.m_aptBends.length - 1 ];
+            dTheta = Math.atan2( ptEdgeStart.y - ptEdgeEnd.y, ptEdgeEnd.x - ptEdgeStart.x );
+        }
+
+        // Compute the bounding polygon of the edge head
+        dSinTheta = Math.sin( dTheta );
+        dCosTheta = Math.cos( dTheta );
+        nDX = (int)(MapUI.EDGE_HEAD_HEIGHT * dSinTheta);
+        nDY = (int)(MapUI.EDGE_HEAD_HEIGHT * dCosTheta);
+        pt = new Point();
+        pt.x = ptEdgeEnd.x - (int)(MapUI.EDGE_HEAD_WIDTH * dCosTheta);
+        pt.y = ptEdgeEnd.y + (int)(MapUI.EDGE_HEAD_WIDTH * dSinTheta);
+        anPolyX = new int[ 3 ];
+        anPolyY = new int[ 3 ];
+        anPolyX[ 0 ] = ptEdgeEnd.x;
+        anPolyX[ 1 ] = pt.x - nDX;
+        anPolyX[ 2 ] = pt.x + nDX;
+        anPolyY[ 0 ] = ptEdgeEnd.y;
+        anPolyY[ 1 ] = pt.y - nDY;
+        anPolyY[ 2 ] = pt.y + nDY;
+
+        // Return the edge head polygon
+        return( new Polygon( anPolyX, anPolyY, 3 ) );
+    }
+
+    /**
+     * Paints the specified Room at its location on the map.  The Room is
+     * rendered in the same manner as a RoomUI component.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  oRoom  The Room to be painted.
+     * @param  clrBorder  The color used to draw the room border and exits.
+     */
+
+    public void paintRoom( Graphics g, Room oRoom, Color clrBorder )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Graphics2D          gText;        // Graphics context solely for room text
+        MultiLineTextLayout oTextLayout;  // Layout of the room text
+        Rectangle           rectRoom;     // Bounds of the room
+        Dimension           dmText,       // Dimensions of room text
+                            dmInterior;   // Dimensions of room interior
+        Point               ptExit;       // Top-left coordinate of an exit
+        int                 nI;           // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Compute the dimensions of the room interior
+        rectRoom = oRoom.m_rectBounds;
+        dmInterior = new Dimension( rectRoom.width - 2 * RoomUI.EXIT_WIDTH,
+            rectRoom.height - 2 * RoomUI.EXIT_HEIGHT );
+
+        // Draw the room interior
+        g.setColor( oRoom.m_clrBackground );
+        g.fillRect( rectRoom.x + RoomUI.EXIT_WIDTH, rectRoom.y + RoomUI.EXIT_HEIGHT,
+            dmInterior.width, dmInterior.height );
+
+        // Draw the room border
+        g.setColor( clrBorder );
+        g.drawRect( rectRoom.x + RoomUI.EXIT_WIDTH - 1, rectRoom.y + RoomUI.EXIT_HEIGHT - 1,
+            dmInterior.width + 1, dmInterior.height + 1 );
+
+        // Draw the exits (color is identical to border color)
+        for( nI = 0; nI < Room.NUM_EXITS; nI++ )
+        {
+            ptExit = oRoom.getExitLocation( nI );
+            g.fillRect( rectRoom.x + ptExit.x, rectRoom.y + ptExit.y,
+                RoomUI.EXIT_WIDTH, RoomUI.EXIT_HEIGHT );
+        }
+
+        // Create a Graphics context for the text and lay out the text
+        gText = (Graphics2D)g.create( rectRoom.x + RoomUI.EXIT_WIDTH, rectRoom.y + RoomUI.EXIT_HEIGHT,
+            dmInterior.width - 1, dmInterior.height - 1 );
+        gText.setColor( oRoom.m_clrForeground );
+        oTextLayout = new MultiLineTextLayout(
+            soloff.steven.text.Utilities.splitStringByLines( oRoom.m_strName ),
+            m_oFont, gText.getFontRenderContext() );
+
+        // Draw text centered within the room interior
+        dmText = oTextLayout.getSize();
+        oTextLayout.draw( gText, (dmInterior.width - dmText.width - 1) / 2,
+            (dmInterior.height - dmText.height - 1) / 2 );
+        gText.dispose();
+    }
+
+
+    // **********************************************************************
+    // *********************          Batches           *********************
+    // **********************************************************************
+
+    /**
+     * A batch of Edges that are drawn with the same style.  The outlines of
+     * all Edges in the batch are accumulated into one path and their one-way
+     * heads into another, so the entire batch can be stroked and filled with
+     * a single call each rather than one call per Edge.  A batch may be kept
+     * and painted again as long as none of its Edges change.
+     */
+
+    public static class EdgeBatch
+        extends Object
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The path that contains the outlines of the Edges.
+         */
+        Path2D.Float m_oLinePath;
+
+        /**
+         * The path that contains the one-way heads of the Edges.
+         */
+        Path2D.Float m_oHeadPath;
+
+        /**
+         * The number of Edges in the batch.
+         */
+        int m_nEdgeCount;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new, empty EdgeBatch.
+         */
+
+        public EdgeBatch()
+        {
+            // Initialize instance variables
+            m_oLinePath = new Path2D.Float();
+            m_oHeadPath = new Path2D.Float();
+            m_nEdgeCount = 0;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------    Public Instance Methods    ------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Gets the number of Edges in the batch.
+         *
+         * @return  The number of Edges in the batch.
+         */
+
+        public int getEdgeCount()
+        {
+            // Return the number of edges
+            return( m_nEdgeCount );
+        }
+
+        /**
+         * Paints all Edges in the batch using the current color of the
+         * graphics context.
+         *
+         * @param  g  The graphics context used for drawing.
+         */
+
+        public void paint( Graphics g )
+        {
+            // Stroke the outlines and fill the heads (if any)
+            if( m_nEdgeCount > 0 )
+            {
+                Graphics2D g2 = (Graphics2D)g;
+                g2.draw( m_oLinePath );
+                g2.fill( m_oHeadPath );
+            }
+        }
+    }
+}
@@ -20,19 +20,24 @@
 
 package soloff.steven.ifmap;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Cursor;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Polygon;
 import java.awt.Rectangle;
+import java.awt.Stroke;
 import java.awt.event.FocusAdapter;
 import java.awt.event.FocusEvent;
 import java.awt.event.MouseEvent;
-import java.awt.geom.Point2D;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.SwingUtilities;
@@ -81,6 +86,46 @@ public class MapUI
      */
     protected static final int EDGE_HEAD_HEIGHT = 4;
 
+    /**
+     * The color in which the highlighted route is painted.
+     */
+    protected static final Color ROUTE_COLOR = new Color( 255, 140, 0 );
+
+    /**
+     * The stroke with which the edges of the highlighted route are painted.
+     */
+    protected static final Stroke ROUTE_STROKE = new BasicStroke( 3.0f );
+
+    /**
+     * The distance in pixels by which the outline painted around each room
+     * of the highlighted route extends beyond the room.
+     */
+    protected static final int ROUTE_ROOM_MARGIN = 3;
+
+    /**
+     * The color painted over rooms that cannot be reached from the start
+     * room.
+     */
+    protected static final Color UNREACHABLE_COLOR = new Color( 96, 96, 96, 128 );
+
+    /**
+     * The color painted over rooms from which the start room cannot be
+     * reached again.
+     */
+    protected static final Color DEAD_END_COLOR = new Color( 255, 160, 0, 96 );
+
+    /**
+     * The color painted over rooms that overlap other rooms.
+     */
+    protected static final Color OVERLAP_COLOR = new Color( 255, 0, 0, 96 );
+
+    /**
+     * The largest area (in square pixels) of the map captured by the
+     * snapshot of a group move, which bounds the memory the snapshot uses
+     * to 32 MB.
+     */
+    protected static final long GROUP_MOVE_IMAGE_MAX_AREA = 4096L * 2048L;
+
 
     // **********************************************************************
     // *********************     Instance Variables     *********************
@@ -152,6 +197,88 @@ public class MapUI
      */
     protected Point m_ptDragEnd;
 
+    /**
+     * The object used to render the edges of the Map.
+     */
+    protected MapRenderer m_oRenderer;
+
+    /**
+     * The batches of the edges on the map, kept by the tiles of the map.
+     */
+    protected EdgeBatchCache m_oEdgeBatches;
+
+    /**
+     * The snapshot of the rooms and edges painted in place of the actual
+     * rooms and edges while a group move is in progress, or null if no
+     * group move is in progress.
+     */
+    protected BufferedImage m_oGroupMoveImage;
+
+    /**
+     * The region of the map (before the group move began) captured by the
+     * group move snapshot.
+     */
+    protected Rectangle m_rectGroupMoveImage;
+
+    /**
+     * The total distance all rooms have been moved by the group move in
+     * progress.  The rooms themselves are not moved until the group move is
+     * committed.
+     */
+    protected Dimension m_dmGroupMoveDelta;
+
+    /**
+     * The object that merges the regions to be repainted and repaints them
+     * once per frame.
+     */
+    protected RepaintCoalescer m_oRepaintCoalescer;
+
+    /**
+     * The metrics in which the time taken by each paint is recorded; null
+     * if paints are not measured.
+     */
+    protected MapMetrics m_oMetrics;
+
+    /**
+     * The route highlighted on the map, or null if no route is highlighted.
+     */
+    protected Route m_oRoute;
+
+    /**
+     * The batch of the edges of the highlighted route, or null if it has
+     * not been built since the route or its edges last changed.
+     */
+    protected MapRenderer.EdgeBatch m_oRouteEdgeBatch;
+
+    /**
+     * The object that tells which rooms can be reached from the start room;
+     * null until a start room is first set.
+     */
+    protected ReachabilityAnalyzer m_oReachability;
+
+    /**
+     * Indicates if rooms that cannot be reached from the start room, or
+     * from which it cannot be reached again, are shaded.
+     */
+    protected boolean m_bReachabilityShaded;
+
+    /**
+     * The object that routes the edges around the rooms, or null if edges
+     * are drawn straight.
+     */
+    protected EdgeRouter m_oEdgeRouter;
+
+    /**
+     * The object that finds the rooms that overlap other rooms.
+     */
+    protected OverlapDetector m_oOverlapDetector;
+
+    /**
+     * Indicates if rooms may have been moved or sized since the overlapping
+     * rooms were last found.
+     */
+    protected boolean m_bOverlapsStale;
+
 
     // **********************************************************************
     // *********************       Class Variables      *********************
@@ -185,6 +312,16 @@ public class MapUI
         // Initialize instance variables
         m_oMap = oMap;
         m_oRoomUIMap = new HashMap<String, RoomUI>();
+        m_oRenderer = new MapRenderer( oMap );
+        m_oEdgeBatches = new EdgeBatchCache( oMap, m_oRenderer );
+        m_oGroupMoveImage = null;
+        m_rectGroupMoveImage = null;
+        m_dmGroupMoveDelta = null;
+        m_oRepaintCoalescer = new RepaintCoalescer( this );
+        m_oRoute = null;
+        m_oRouteEdgeBatch = null;
+        m_oReachability = null;
+        m_bReachabilityShaded = false;
         m_oActiveComponent = null;
         m_oFocusEdge = null;
         m_bDraggingRoom = false;
@@ -192,6 +329,10 @@ public class MapUI
         m_bDraggingEdge = false;
         m_bGridEnabled = Boolean.valueOf( IFMap.getProperty( IFMap.PROP_VIEW_GRID ) ).booleanValue();
         m_bGroupMoveEnabled = Boolean.valueOf( IFMap.getProperty( IFMap.PROP_VIEW_GROUPMOVE ) ).booleanValue();
+        m_oEdgeRouter = Boolean.valueOf( IFMap.getProperty( IFMap.PROP_VIEW_ROUTEEDGES ) ).booleanValue() ?
+            new EdgeRouter( oMap ) : null;
+        m_oOverlapDetector = new OverlapDetector( oMap );
+        m_bOverlapsStale = true;
 
         // Remove layout manager
         setLayout( null );
@@ -201,6 +342,7 @@ public class MapUI
         addMouseListener( m_oMouseInputListener );
         addMouseMotionListener( m_oMouseInputListener );
         addFocusListener( new FocusListener() );
+        m_oMap.addMapListener( new RouteListener() );
     }
 
 
@@ -233,7 +375,7 @@ public class MapUI
         {
             // Set the grid enabled flag and repaint the component
             m_bGridEnabled = bEnable;
-            repaint();
+            repaintAll();
         }
     }
 
@@ -261,6 +403,49 @@ public class MapUI
         m_bGroupMoveEnabled = bEnable;
     }
 
+    /**
+     * Indicates if edges are routed around the rooms.
+     *
+     * @return  A flag indicating if edge routing is enabled.
+     */
+
+    public boolean isEdgeRoutingEnabled()
+    {
+        // Edges are routed while there is a router
+        return( m_oEdgeRouter != null );
+    }
+
+    /**
+     * Enables or disables routing the edges around the rooms.  The routes
+     * are computed the next time the map is painted, and kept up to date as
+     * rooms and edges change from then on.  Disabling routing makes every
+     * edge straight again.
+     *
+     * @param  bEnable  Indicates edge routing is to be enabled or disabled.
+     */
+
+    public void enableEdgeRouting( boolean bEnable )
+    {
+        // Make sure the flag is changing
+        if( isEdgeRoutingEnabled() == bEnable )
+            return;
+
+        // Create the router, or discard it and straighten the edges
+        if( bEnable )
+            m_oEdgeRouter = new EdgeRouter( m_oMap );
+        else
+        {
+            m_oEdgeRouter.dispose();
+            m_oEdgeRouter = null;
+            for( final Edge oEdge : m_oMap.m_oEdgeMap.values() )
+                oEdge.setBends( null );
+        }
+
+        // Repaint the component with the new edges
+        invalidateEdgeBatches();
+        repaintAll();
+    }
+
     /**
      * Indicates whether or not a ComponentUI object is currently active
      * (selected) so that various generic ComponentUI operations can be
@@ -276,6 +461,341 @@ public class MapUI
         return( m_oActiveComponent != null );
     }
 
+    /**
+     * Gets the Room of the active component.
+     *
+     * @return  The Room of the active RoomUI, or null if no room is active.
+     */
+
+    public Room getActiveRoom()
+    {
+        // Return the Room if the active component is a RoomUI
+        if( m_oActiveComponent instanceof RoomUI )
+            return( ((RoomUI)m_oActiveComponent).m_oRoom );
+        return( null );
+    }
+
+    /**
+     * Gets the object that merges the regions to be repainted.  Its
+     * statistics indicate how much repainting was saved by merging.
+     *
+     * @return  The repaint coalescer of this MapUI.
+     */
+
+    public RepaintCoalescer getRepaintCoalescer()
+    {
+        // Return the repaint coalescer
+        return( m_oRepaintCoalescer );
+    }
+
+    /**
+     * Sets the metrics in which the time taken by each paint is recorded.
+     *
+     * @param  oMetrics  The metrics; null if paints are not to be measured.
+     */
+
+    public void setMetrics( MapMetrics oMetrics )
+    {
+        // Store the metrics
+        m_oMetrics = oMetrics;
+    }
+
+    /**
+     * Gets the route highlighted on the map.
+     *
+     * @return  The highlighted route, or null if no route is highlighted.
+     */
+
+    public Route getRoute()
+    {
+        // Return the highlighted route
+        return( m_oRoute );
+    }
+
+    /**
+     * Highlights the specified route on the map, replacing any route
+     * highlighted before, and scrolls the first room of the route into
+     * view.  The route is no longer highlighted once any room or edge is
+     * removed from the map or any edge changes.
+     *
+     * @param  oRoute  The route to be highlighted, or null to highlight no
+     *     route.
+     */
+
+    public void setRoute( Route oRoute )
+    {
+        // Repaint the old route, if any, without its highlight
+        if( m_oRoute != null )
+            repaintRegion( getRouteBounds( m_oRoute ) );
+
+        // Highlight the new route, if any
+        m_oRoute = oRoute;
+        m_oRouteEdgeBatch = null;
+        if( m_oRoute != null )
+        {
+            repaintRegion( getRouteBounds( m_oRoute ) );
+            scrollRectToVisible( m_oRoute.getRooms().get( 0 ).m_rectBounds );
+        }
+    }
+
+    /**
+     * Scrolls the specified room into view and makes it the active
+     * component, as if it had been clicked.
+     *
+     * @param  oRoom  The room to be shown.
+     *
+     * @exception  IllegalArgumentException  If oRoom is null or is not on
+     *     the map.
+     */
+
+    public void showRoom( Room oRoom )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oRoom == null )
+            throw new IllegalArgumentException();
+        RoomUI oRoomUI = m_oRoomUIMap.get( oRoom.m_strID );
+        if( oRoomUI == null || oRoomUI.m_oRoom != oRoom )
+            throw new IllegalArgumentException();
+
+        // Clear the focus of any edge and give it to the room
+        if( m_oFocusEdge != null )
+        {
+            repaintEdge( m_oFocusEdge );
+            m_oFocusEdge = null;
+        }
+        m_oActiveComponent = oRoomUI;
+        scrollRectToVisible( oRoom.m_rectBounds );
+        oRoomUI.requestFocus();
+    }
+
+    /**
+     * Merges a duplicate of a room into it (see Map.mergeRooms) and removes
+     * the UI object of the duplicate.
+     *
+     * @param  oKeptRoom  The room to be kept.
+     * @param  oDuplicateRoom  The room to be merged into oKeptRoom and
+     *     deleted.
+     *
+     * @return  The number of edges of the duplicate that were deleted,
+     *     either because they ran to the kept room or because the kept room
+     *     already had an edge at their exit.
+     *
+     * @exception  IllegalArgumentException  If either room is null or is
+     *     not on the map, or if they are the same room.
+     */
+
+    public int mergeRooms( Room oKeptRoom, Room oDuplicateRoom )
+        throws IllegalArgumentException
+    {
+        // Merge the rooms in the Map
+        int nDropped = m_oMap.mergeRooms( oKeptRoom, oDuplicateRoom );
+
+        // Remove the UI object of the duplicate and repaint the whole map,
+        // since the edges of the duplicate have moved
+        RoomUI oRoomUI = m_oRoomUIMap.remove( oDuplicateRoom.m_strID );
+        if( oRoomUI != null )
+        {
+            remove( oRoomUI );
+            if( oRoomUI == m_oActiveComponent )
+                m_oActiveComponent = null;
+        }
+        if( m_oFocusEdge != null && m_oMap.getEdge( m_oFocusEdge.m_strID ) != m_oFocusEdge )
+            m_oFocusEdge = null;
+        invalidateEdgeBatches();
+        repaintAll();
+        return( nDropped );
+    }
+
+    /**
+     * Gets the object that tells which rooms can be reached from the start
+     * room.
+     *
+     * @return  The reachability analyzer, or null if no start room has been
+     *     set.
+     */
+
+    public ReachabilityAnalyzer getReachabilityAnalyzer()
+    {
+        // Return the analyzer
+        return( m_oReachability );
+    }
+
+    /**
+     * Sets the room from which reachability is measured, and shades the
+     * rooms that cannot be reached from it.
+     *
+     * @param  oRoom  The start room, or null for none.
+     * @param  bIncludeSecret  Indicates if secret edges may be followed.
+     */
+
+    public void setStartRoom( Room oRoom, boolean bIncludeSecret )
+    {
+        // Create the analyzer the first time, listening for the changes it
+        // makes after it has made them
+        if( m_oReachability == null )
+        {
+            m_oReachability = new ReachabilityAnalyzer( m_oMap, bIncludeSecret );
+            m_oMap.addMapListener( new ReachabilityListener() );
+        }
+
+        // Measure from the room and repaint the shading
+        m_oReachability.setStartRoom( oRoom );
+        m_oReachability.setSecretIncluded( bIncludeSecret );
+        m_bReachabilityShaded = oRoom != null;
+        repaintRegion( getVisibleRect() );
+    }
+
+    /**
+     * Indicates if rooms that cannot be reached from the start room are
+     * shaded.
+     *
+     * @return  A flag indicating if reachability is shaded.
+     */
+
+    public boolean isReachabilityShaded()
+    {
+        // Return the flag
+        return( m_bReachabilityShaded );
+    }
+
+    /**
+     * Sets whether rooms that cannot be reached from the start room are
+     * shaded.  Nothing is shaded until a start room is set.
+     *
+     * @param  bShaded  Indicates if reachability is to be shaded.
+     */
+
+    public void setReachabilityShaded( boolean bShaded )
+    {
+        // Store the flag and repaint the shading
+        m_bReachabilityShaded = bShaded && m_oReachability != null &&
+            m_oReachability.getStartRoom() != null;
+        repaintRegion( getVisibleRect() );
+    }
+
+    /**
+     * Moves many rooms at once, as a layout does, and sizes the map to the
+     * rooms' new extent.  The map is repainted once rather than for each
+     * room.
+     *
+     * @param  aoRooms  The rooms to move.  Rooms without a UI object are
+     *     ignored.
+     * @param  anX  The new horizontal coordinate of each room.
+     * @param  anY  The new vertical coordinate of each room.
+     *
+     * @exception  IllegalArgumentException  If any argument is null or if
+     *     either coordinate array is shorter than aoRooms.
+     */
+
+    public void setRoomLocations( Room[] aoRooms, int[] anX, int[] anY )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        RoomUI oRoomUI;  // UI object of a room
+        int    nMaxX,    // Right edge of the rooms
+               nMaxY,    // Bottom edge of the rooms
+               nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( aoRooms == null || anX == null || anY == null )
+            throw new IllegalArgumentException();
+        if( anX.length < aoRooms.length || anY.length < aoRooms.length )
+            throw new IllegalArgumentException();
+
+        // Move each room
+        for( nI = 0; nI < aoRooms.length; nI++ )
+        {
+            oRoomUI = m_oRoomUIMap.get( aoRooms[ nI ].m_strID );
+            if( oRoomUI != null )
+                oRoomUI.setLocation( anX[ nI ], anY[ nI ] );
+        }
+
+        // Size the map to the rooms
+        nMaxX = MIN_MAP_WIDTH;
+        nMaxY = MIN_MAP_HEIGHT;
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+        {
+            nMaxX = Math.max( nMaxX, oRoom.m_rectBounds.x + oRoom.m_rectBounds.width );
+            nMaxY = Math.max( nMaxY, oRoom.m_rectBounds.y + oRoom.m_rectBounds.height );
+        }
+        m_oMap.m_dmMap.setSize( nMaxX, nMaxY );
+
+        // Revalidate and repaint the component
+        invalidateEdgeBatches();
+        m_bOverlapsStale = true;
+        revalidate();
+        repaintAll();
+    }
+
+    /**
+     * Gets the object that finds the rooms that overlap other rooms.  It is
+     * updated when the map is next painted after rooms are added, removed,
+     * moved, or sized.
+     *
+     * @return  The overlap detector.
+     */
+
+    public OverlapDetector getOverlapDetector()
+    {
+        // Return the detector
+        return( m_oOverlapDetector );
+    }
+
+    /**
+     * Pushes the rooms that overlap other rooms apart by the smallest moves
+     * that are multiples of the grid size (see
+     * OverlapDetector.computeSeparation).
+     *
+     * @return  The number of rooms moved.
+     */
+
+    public int separateRooms()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        LinkedHashMap<Room, Point> oLocations;  // New locations of the rooms
+        OperationEvent             oEvent;      // Event recording the separation
+        Room[]                     aoRooms;     // Rooms to be moved
+        int[]                      anX,         // New horizontal location of each room
+                                   anY;         // New vertical location of each room
+        int                        nI;          // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the current overlaps and the moves that clear them
+        oEvent = OperationEvent.begin( OperationEvent.SEPARATE_ROOMS );
+        updateOverlaps( null );
+        oEvent.set( "overlapsBefore", m_oOverlapDetector.getOverlapCount() );
+        oLocations = m_oOverlapDetector.computeSeparation();
+
+        // Move the rooms and find the overlaps that remain
+        aoRooms = oLocations.keySet().toArray( new Room[ oLocations.size() ] );
+        anX = new int[ aoRooms.length ];
+        anY = new int[ aoRooms.length ];
+        for( nI = 0; nI < aoRooms.length; nI++ )
+        {
+            anX[ nI ] = oLocations.get( aoRooms[ nI ] ).x;
+            anY[ nI ] = oLocations.get( aoRooms[ nI ] ).y;
+        }
+        if( aoRooms.length > 0 )
+        {
+            setRoomLocations( aoRooms, anX, anY );
+            updateOverlaps( null );
+        }
+        oEvent.set( "moved", aoRooms.length );
+        oEvent.set( "overlapsAfter", m_oOverlapDetector.getOverlapCount() );
+        oEvent.commit();
+        return( aoRooms.length );
+    }
+
     /**
      * Clears the contents of the map user interface.
      */
@@ -287,10 +807,15 @@ public class MapUI
         m_oRoomUIMap.clear();
         m_oActiveComponent = null;
         m_oFocusEdge = null;
+        m_oRoute = null;
+        m_bReachabilityShaded = false;
+        if( m_oReachability != null )
+            m_oReachability.setStartRoom( null );
+        invalidateEdgeBatches();
 
         // Revalidate and repaint the component
         revalidate();
-        repaint();
+        repaintAll();
     }
 
     /**
@@ -307,7 +832,7 @@ public class MapUI
         RoomUI oRoomUI = new RoomUI( this, oRoom );
         m_oRoomUIMap.put( oRoom.m_strID, oRoomUI );
         add( oRoomUI );
-        oRoomUI.repaint();
+        repaintRegion( oRoomUI.getBounds() );
 
         // Add event listeners for the new RoomUI
         oRoomUI.addMouseListener( m_oMouseInputListener );
@@ -339,7 +864,7 @@ public class MapUI
         RoomUI oRoomUI = new RoomUI( this, oRoom );
         m_oRoomUIMap.put( oRoom.m_strID, oRoomUI );
         add( oRoomUI );
-        oRoomUI.repaint();
+        repaintRegion( oRoomUI.getBounds() );
 
         // Add event listeners for the new RoomUI
         oRoomUI.addMouseListener( m_oMouseInputListener );
@@ -369,7 +894,8 @@ public class MapUI
         remove( oRoomUI );
         if( oRoomUI == m_oActiveComponent )
             m_oActiveComponent = null;
-        repaint();
+        invalidateEdgeBatches();
+        repaintAll();
     }
 
     /**
@@ -388,6 +914,7 @@ public class MapUI
             m_oActiveComponent = null;
         if( oEdge == m_oFocusEdge )
             m_oFocusEdge = null;
+        invalidateEdge( oEdge );
         repaintEdge( oEdge );
     }
 
@@ -429,7 +956,8 @@ public class MapUI
         Rectangle rect;         // Bounding rectangle of circular Edge
         Polygon   poly;         // Bounding polygon of line Edge
         Point     ptEdgeStart,  // Start point of an Edge
-                  ptEdgeEnd;    // End point of an Edge
+                  ptEdgeEnd,    // End point of an Edge
+                  ptFrom;       // Start of a segment of a bent Edge
         double    dTheta;       // Angle the edge makes with the horizontal
         int[]     anPolyX,      // Array of x-coordinates for polygon vertices
                   anPolyY;      // Array of y-coordinates for polygon vertices
@@ -453,6 +981,21 @@ public class MapUI
                         rect.getWidth() / 2.0 ) <= EDGE_HIT_THRESHOLD )
                     return( oEdge );
             }
+            else if( oEdge.hasBends() )
+            {
+                // Determine if any segment of the bent edge passes near the
+                // specified point
+                ptFrom = oEdge.getStartPoint();
+                for( final Point ptBend : oEdge.m_aptBends )
+                {
+                    if( Line2D.ptSegDist( ptFrom.x, ptFrom.y, ptBend.x, ptBend.y, pt.x, pt.y ) <= EDGE_HIT_THRESHOLD )
+                        return( oEdge );
+                    ptFrom = ptBend;
+                }
+                ptEdgeEnd = oEdge.getEndPoint();
+                if( Line2D.ptSegDist( ptFrom.x, ptFrom.y, ptEdgeEnd.x, ptEdgeEnd.y, pt.x, pt.y ) <= EDGE_HIT_THRESHOLD )
+                    return( oEdge );
+            }
             else
             {
                 // Compute the height and width of the bounding polygon for the edge
@@ -481,27 +1024,429 @@ public class MapUI
             }
         }
 
-        // No edge is under the specified point
-        return( null );
+        // No edge is under the specified point
+        return( null );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Reroutes the edges whose routes may have changed, and repaints those
+     * outside the region being painted.
+     *
+     * @param  rectClip  The region of the map being painted.
+     */
+
+    protected void updateEdgeRoutes( Rectangle rectClip )
+    {
+        // Reroute the edges, recording how many were routed
+        OperationEvent oEvent = OperationEvent.begin( OperationEvent.ROUTE_EDGES );
+        Rectangle rectChanged = m_oEdgeRouter.update();
+        oEvent.set( "edges", m_oEdgeRouter.getLastRoutedCount() );
+        oEvent.commit();
+
+        // Batch the rerouted edges again
+        for( final Edge oEdge : m_oEdgeRouter.getLastRoutedEdges() )
+            invalidateEdge( oEdge );
+
+        // The region being painted is painted with the new routes; the
+        // rest of the edges that changed are repainted in the next frame
+        if( rectChanged != null && !rectClip.contains( rectChanged ) )
+            repaintRegion( rectChanged );
+    }
+
+    /**
+     * Discards all cached edge batches so that they are rebuilt the next
+     * time the map is painted.  This must be called whenever many edges or
+     * rooms may have changed at once, such as after a layout.
+     */
+
+    protected void invalidateEdgeBatches()
+    {
+        // Discard the edge batches
+        m_oEdgeBatches.invalidate();
+        m_oRouteEdgeBatch = null;
+    }
+
+    /**
+     * Marks the batch of the specified edge to be rebuilt the next time the
+     * map is painted.  This must be called whenever an edge is added,
+     * removed, or modified.
+     *
+     * @param  oEdge  The edge that changed.
+     */
+
+    protected void invalidateEdge( Edge oEdge )
+    {
+        // Discard the batch holding the edge
+        m_oEdgeBatches.invalidateEdge( oEdge );
+        m_oRouteEdgeBatch = null;
+    }
+
+    /**
+     * Marks the batches of the edges connected to the specified room to be
+     * rebuilt the next time the map is painted.  This must be called
+     * whenever the room is moved or sized.
+     *
+     * @param  oRoom  The room that was moved or sized.
+     */
+
+    protected void invalidateRoomEdges( Room oRoom )
+    {
+        // Discard the batches holding the edges of the room
+        m_oEdgeBatches.invalidateRoomEdges( oRoom );
+        m_oRouteEdgeBatch = null;
+    }
+
+    /**
+     * Computes the bounding rectangle of the specified route, including the
+     * outlines painted around its rooms.
+     *
+     * @param  oRoute  The route whose bounding rectangle is to be computed.
+     *
+     * @return  The bounding rectangle of the route.
+     */
+
+    protected Rectangle getRouteBounds( Route oRoute )
+    {
+        // Combine the bounds of all rooms and edges of the route
+        Rectangle rectRoute = new Rectangle( oRoute.getRooms().get( 0 ).m_rectBounds );
+        for( final Room oRoom : oRoute.getRooms() )
+            rectRoute.add( oRoom.m_rectBounds );
+        for( final Edge oEdge : oRoute.getEdges() )
+            rectRoute.add( getEdgeBounds( oEdge ) );
+        rectRoute.grow( ROUTE_ROOM_MARGIN + 1, ROUTE_ROOM_MARGIN + 1 );
+        return( rectRoute );
+    }
+
+    /**
+     * Paints the highlighted route: its edges are painted over their
+     * batches with a wider stroke, and an outline is painted around each
+     * of its rooms that shows beyond the room itself.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The current clipping rectangle.
+     */
+
+    protected void paintRoute( Graphics g, Rectangle rectClip )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Graphics2D g2;           // The graphics context used for drawing
+        Stroke     oOldStroke;   // The stroke of the graphics context
+        Rectangle  rectOutline;  // Outline around a room of the route
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Build the batch of the edges of the route if necessary
+        if( m_oRouteEdgeBatch == null )
+        {
+            m_oRouteEdgeBatch = new MapRenderer.EdgeBatch();
+            for( final Edge oEdge : m_oRoute.getEdges() )
+                m_oRenderer.addEdge( m_oRouteEdgeBatch, oEdge, getEdgeBounds( oEdge ) );
+        }
+
+        // Paint the edges and the outlines of the rooms
+        g2 = (Graphics2D)g;
+        oOldStroke = g2.getStroke();
+        g2.setColor( ROUTE_COLOR );
+        g2.setStroke( ROUTE_STROKE );
+        m_oRouteEdgeBatch.paint( g2 );
+        for( final Room oRoom : m_oRoute.getRooms() )
+        {
+            rectOutline = new Rectangle( oRoom.m_rectBounds );
+            rectOutline.grow( ROUTE_ROOM_MARGIN, ROUTE_ROOM_MARGIN );
+            if( rectClip.intersects( rectOutline ) )
+                g2.fillRect( rectOutline.x, rectOutline.y, rectOutline.width, rectOutline.height );
+        }
+        g2.setStroke( oOldStroke );
+    }
+
+    /**
+     * Shades the rooms that cannot be reached from the start room, and
+     * those from which it cannot be reached again, over the rooms
+     * themselves.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The current clipping rectangle.
+     */
+
+    protected void paintReachability( Graphics g, Rectangle rectClip )
+    {
+        // Shade each room in the clipping rectangle that is unreachable or
+        // a dead end, unless the start room has been removed
+        if( m_oReachability.getStartRoom() == null )
+            return;
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+        {
+            if( !rectClip.intersects( oRoom.m_rectBounds ) )
+                continue;
+            if( !m_oReachability.isReachable( oRoom ) )
+                g.setColor( UNREACHABLE_COLOR );
+            else if( !m_oReachability.canReturn( oRoom ) )
+                g.setColor( DEAD_END_COLOR );
+            else
+                continue;
+            g.fillRect( oRoom.m_rectBounds.x, oRoom.m_rectBounds.y,
+                oRoom.m_rectBounds.width, oRoom.m_rectBounds.height );
+        }
+    }
+
+    /**
+     * Finds the rooms that began or stopped overlapping other rooms since
+     * the overlaps were last found, and repaints those outside the region
+     * being painted.
+     *
+     * @param  rectClip  The region of the map being painted, or null if the
+     *     map is not being painted.
+     */
+
+    protected void updateOverlaps( Rectangle rectClip )
+    {
+        // Update the overlaps, recording how many rooms were checked
+        OperationEvent oEvent = OperationEvent.begin( OperationEvent.DETECT_OVERLAPS );
+        Rectangle rectChanged = m_oOverlapDetector.update();
+        m_bOverlapsStale = false;
+        oEvent.set( "rooms", m_oOverlapDetector.getLastCheckedCount() );
+        oEvent.set( "overlaps", m_oOverlapDetector.getOverlapCount() );
+        oEvent.commit();
+
+        // The region being painted is painted with the new overlaps; the
+        // rest of the rooms that changed are repainted in the next frame
+        if( rectChanged != null && (rectClip == null || !rectClip.contains( rectChanged )) )
+            repaintRegion( rectChanged );
+    }
+
+    /**
+     * Shades the rooms that overlap other rooms, over the rooms themselves.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The current clipping rectangle.
+     */
+
+    protected void paintOverlaps( Graphics g, Rectangle rectClip )
+    {
+        // Shade each overlapping room in the clipping rectangle
+        g.setColor( OVERLAP_COLOR );
+        for( final Room oRoom : m_oOverlapDetector.getOverlappingRooms() )
+        {
+            if( rectClip.intersects( oRoom.m_rectBounds ) )
+                g.fillRect( oRoom.m_rectBounds.x, oRoom.m_rectBounds.y,
+                    oRoom.m_rectBounds.width, oRoom.m_rectBounds.height );
+        }
+    }
+
+    /**
+     * Begins a group move.  A snapshot of the rooms and edges of the map is
+     * taken, and the snapshot is painted in place of the actual rooms and
+     * edges until the group move is committed.
+     */
+
+    protected void beginGroupMove()
+    {
+        // Initialize the group move and capture the map around the visible
+        // region
+        m_dmGroupMoveDelta = new Dimension( 0, 0 );
+        captureGroupMoveImage( getVisibleRect() );
+    }
+
+    /**
+     * Takes the snapshot of the group move in progress.  The whole map is
+     * captured unless its area exceeds GROUP_MOVE_IMAGE_MAX_AREA, in which
+     * case the specified region is captured together with as much of the
+     * map around it as fits in that area.
+     *
+     * @param  rectView  The region of the map (before the group move
+     *     began) that must be captured.
+     */
+
+    protected void captureGroupMoveImage( Rectangle rectView )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapRenderer oRenderer;  // Object used to render the snapshot
+        Graphics2D  g;          // Graphics context of the snapshot
+        Rectangle   rectMap,    // Region of the whole map
+                    rectImage;  // Region of the map captured by the snapshot
+        RoomUI      oRoomUI;    // UI object of a room in the snapshot
+        double      dScale;     // Factor by which the region is enlarged
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Compute the region of the map to be captured: the whole map if it
+        // is small enough, and otherwise the specified region enlarged by
+        // the same factor in both directions up to the area limit, and
+        // shifted to lie within the map
+        rectMap = new Rectangle( getSize() );
+        if( (long)rectMap.width * rectMap.height <= GROUP_MOVE_IMAGE_MAX_AREA )
+            rectImage = rectMap;
+        else
+        {
+            dScale = Math.sqrt( (double)GROUP_MOVE_IMAGE_MAX_AREA /
+                Math.max( 1L, (long)rectView.width * rectView.height ) );
+            rectImage = new Rectangle( rectView );
+            if( dScale > 1.0 )
+                rectImage.grow( (int)(rectView.width * (dScale - 1.0) / 2.0),
+                    (int)(rectView.height * (dScale - 1.0) / 2.0) );
+            rectImage.width = Math.min( rectImage.width, rectMap.width );
+            rectImage.height = Math.min( rectImage.height, rectMap.height );
+            rectImage.x = Math.max( 0, Math.min( rectImage.x, rectMap.width - rectImage.width ) );
+            rectImage.y = Math.max( 0, Math.min( rectImage.y, rectMap.height - rectImage.height ) );
+        }
+        if( rectImage.isEmpty() )
+            rectImage = new Rectangle( 0, 0, 1, 1 );
+
+        // Render the rooms and edges in the region to a transparent image
+        m_oGroupMoveImage = new BufferedImage( rectImage.width, rectImage.height,
+            BufferedImage.TYPE_INT_ARGB );
+        g = m_oGroupMoveImage.createGraphics();
+        g.translate( -rectImage.x, -rectImage.y );
+        oRenderer = new MapRenderer( m_oMap, getFont() );
+        oRenderer.paintEdges( g, rectImage, m_oMap.m_oEdgeMap.values() );
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+        {
+            if( rectImage.intersects( oRoom.m_rectBounds ) )
+            {
+                oRoomUI = m_oRoomUIMap.get( oRoom.m_strID );
+                oRenderer.paintRoom( g, oRoom,
+                    oRoomUI != null && oRoomUI.hasFocus() ? Color.red : Color.black );
+            }
+        }
+        g.dispose();
+        m_rectGroupMoveImage = rectImage;
+    }
+
+    /**
+     * Paints the group move in progress: the snapshot of the rooms and
+     * edges, moved by the distance of the group move, and the highlighted
+     * route and the reachability and overlap shading over it.  The map is
+     * captured again first if the group has been dragged far enough to
+     * bring parts of the map that are not in the snapshot into view.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  rectClip  The current clipping rectangle.
+     */
+
+    protected void paintGroupMove( Graphics g, Rectangle rectClip )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Graphics   gMoved;     // Graphics context translated by the move
+        Rectangle  rectView,   // Region of the map (before the move) in view
+                   rectMoved;  // Clipping rectangle before the move
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Capture the map again if the region in view is not in the snapshot
+        rectView = getVisibleRect();
+        rectView.translate( -m_dmGroupMoveDelta.width, -m_dmGroupMoveDelta.height );
+        rectView = rectView.intersection( new Rectangle( getSize() ) );
+        if( !rectView.isEmpty() && !m_rectGroupMoveImage.contains( rectView ) )
+            captureGroupMoveImage( rectView );
+
+        // Paint the snapshot
+        g.drawImage( m_oGroupMoveImage,
+            m_rectGroupMoveImage.x + m_dmGroupMoveDelta.width,
+            m_rectGroupMoveImage.y + m_dmGroupMoveDelta.height, null );
+
+        // Paint the route and the shading where the rooms will be once they
+        // are moved
+        gMoved = g.create();
+        gMoved.translate( m_dmGroupMoveDelta.width, m_dmGroupMoveDelta.height );
+        rectMoved = new Rectangle( rectClip );
+        rectMoved.translate( -m_dmGroupMoveDelta.width, -m_dmGroupMoveDelta.height );
+        if( m_oRoute != null )
+            paintRoute( gMoved, rectMoved );
+        if( m_bReachabilityShaded )
+            paintReachability( gMoved, rectMoved );
+        if( m_oOverlapDetector.getOverlapCount() > 0 )
+            paintOverlaps( gMoved, rectMoved );
+        gMoved.dispose();
+    }
+
+    /**
+     * Commits the group move in progress.  Every room is moved by the total
+     * distance of the group move and the snapshot is discarded.  Does
+     * nothing if no group move is in progress.
+     */
+
+    protected void commitGroupMove()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Point ptRoom;  // Location of a room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure a group move is in progress
+        if( m_dmGroupMoveDelta == null )
+            return;
+
+        // Move each room by the total distance of the group move
+        if( m_dmGroupMoveDelta.width != 0 || m_dmGroupMoveDelta.height != 0 )
+        {
+            for( final RoomUI oRoomUI : m_oRoomUIMap.values() )
+            {
+                ptRoom = oRoomUI.getLocation();
+                ptRoom.translate( m_dmGroupMoveDelta.width, m_dmGroupMoveDelta.height );
+                oRoomUI.setLocation( ptRoom );
+            }
+        }
+
+        // Discard the snapshot and repaint the entire client area
+        m_oGroupMoveImage = null;
+        m_rectGroupMoveImage = null;
+        m_dmGroupMoveDelta = null;
+        invalidateEdgeBatches();
+        m_bOverlapsStale = true;
+        repaintAll();
     }
 
+    /**
+     * Causes the entire component to be repainted.  Any regions waiting to
+     * be repainted are discarded since they are covered by the repaint.
+     */
 
-    // **********************************************************************
-    // ********************* Protected Instance Methods *********************
-    // **********************************************************************
+    protected void repaintAll()
+    {
+        // Discard the pending regions (which may only be done on the event
+        // dispatch thread) and repaint the component
+        if( SwingUtilities.isEventDispatchThread() )
+            m_oRepaintCoalescer.discard();
+        repaint();
+    }
 
     /**
-     * Causes a repaint to occur in the region specified by rect.
+     * Causes a repaint to occur in the region specified by rect.  This
+     * method may be called from any thread; only repaints requested on the
+     * event dispatch thread are coalesced.
      *
      * @param  rect  Rectangle that defines the region to be repainted.
      */
 
     protected void repaintRegion( Rectangle rect )
     {
-        // Inflate the specified rectangle by one pixel on all sides and repaint
+        // Inflate the specified rectangle by one pixel on all sides
         Rectangle rectClone = new Rectangle( rect );
         rectClone.grow( 1, 1 );
-        repaint( rectClone );
+
+        // Add it to the regions to be repainted in the next frame, or let
+        // Swing repaint it if this is not the event dispatch thread
+        if( SwingUtilities.isEventDispatchThread() )
+            m_oRepaintCoalescer.addDirtyRegion( rectClone );
+        else
+            repaint( rectClone );
     }
 
     /**
@@ -527,169 +1472,8 @@ public class MapUI
 
     protected Rectangle getEdgeBounds( Edge oEdge )
     {
-        /////////////////////////////////////////////////////////////////////
-        // VARIABLE DECLARATIONS                                           //
-
-        Rectangle rectEdge;
-        Point ptStart = oEdge.getStartPoint();
-        Point ptEnd = oEdge.getEndPoint();
-
-        // CONSTANT DECLARATIONS                                           //
-
-        final double SQRT2           = Math.sqrt( 2.0 );  // Square root of 2
-        final int    MIN_EDGE_RADIUS = 10;                // Minimum radius for circular edges
-
-        //                                                                 //
-        /////////////////////////////////////////////////////////////////////
-
-        // Determine if the edge is a line edge or a circular edge
-        if( oEdge.getStartRoomID().equals( oEdge.getEndRoomID() ) )
-        {
-            // Determine if the circular edge connects the same exit
-            if( oEdge.getStartExit() == oEdge.getEndExit() )
-            {
-                // Adjust left coordinate of edge bounds so it properly intersects exit
-                switch( oEdge.getStartExit() )
-                {
-                    case Room.EXIT_NW:
-                    case Room.EXIT_SW:
-                        ptStart.x -= (int)(MIN_EDGE_RADIUS * (SQRT2 + 1.0) * SQRT2 / 2.0);
-                        break;
-
-                    case Room.EXIT_NE:
-                    case Room.EXIT_SE:
-                        ptStart.x -= (int)(MIN_EDGE_RADIUS * (SQRT2 - 1.0)) * SQRT2 / 2.0;
-                        break;
-
-                    case Room.EXIT_W:
-                        ptStart.x -= 2 * MIN_EDGE_RADIUS;
-                        break;
-
-                    case Room.EXIT_U:
-                    case Room.EXIT_N:
-                    case Room.EXIT_D:
-                    case Room.EXIT_S:
-                        ptStart.x -= MIN_EDGE_RADIUS;
-                        break;
-                }
-
-                // Adjust top coordinate of edge bounds so it properly intersects exit
-                switch( oEdge.getStartExit() )
-                {
-                    case Room.EXIT_NW:
-                    case Room.EXIT_NE:
-                        ptStart.y -= (int)(MIN_EDGE_RADIUS * (SQRT2 + 1.0) * SQRT2 / 2.0);
-                        break;
-
-                    case Room.EXIT_U:
-                    case Room.EXIT_N:
-                        ptStart.y -= 2 * MIN_EDGE_RADIUS;
-                        break;
-
-                    case Room.EXIT_W:
-                    case Room.EXIT_E:
-                        ptStart.y -= MIN_EDGE_RADIUS;
-                        break;
-
-                    case Room.EXIT_SW:
-                    case Room.EXIT_SE:
-                        ptStart.y -= MIN_EDGE_RADIUS * (SQRT2 - 1.0) * SQRT2 / 2.0;
-                        break;
-                }
-
-                // Compute bounding rectangle of edge
-                rectEdge = new Rectangle( ptStart.x, ptStart.y,
-                    2 * MIN_EDGE_RADIUS + 1, 2 * MIN_EDGE_RADIUS + 1 );
-            }
-            else
-            {
-                Point2D.Double pt1 = new Point2D.Double();
-                Point2D.Double pt2 = new Point2D.Double();
-                Point2D.Double ptCenter1 = new Point2D.Double();
-                Point2D.Double ptCenter2 = new Point2D.Double();
-                Point2D.Double ptCenter = new Point2D.Double();
-                Point2D.Double ptMid = new Point2D.Double();
-                Point2D.Double ptRoomMid = new Point2D.Double();
-
-                RoomUI oRoomUI;
-                Rectangle rectRoom;
-                double dAlpha, dA, dB, dC, dR, dDiscrim;
-
-                pt1.setLocation( oEdge.getStartPoint() );
-                pt2.setLocation( oEdge.getEndPoint() );
-
-                oRoomUI = (RoomUI)m_oRoomUIMap.get( oEdge.getStartRoomID() );
-                rectRoom = oRoomUI.getBounds();
-
-                double rTemp = Math.max( rectRoom.width, rectRoom.height );
-                rTemp = Math.max( rTemp, Math.sqrt( (pt2.x - pt1.x) * (pt2.x - pt1.x) + (pt2.y - pt1.y) * (pt2.y - pt1.y) ) );
-                //dR = 0.75 * pt1.distance( pt2 ); //Math.sqrt( (pt2.x - x1) * (x2 - x1) + (pt2.y - pt1.y) * (pt2.y - pt1.y) );
-// !!!!!!!!!!!!!!! go back to original R since most exits will look weird so large
-                dR = 0.55 * rTemp;
-                dAlpha = 0.5 * (pt2.x * pt2.x - pt1.x * pt1.x + pt2.y * pt2.y - pt1.y * pt1.y);
-
-                // Compute the two solutions for the x-coordinate of circle center
-                dA = (pt2.x - pt1.x) * (pt2.x - pt1.x) + (pt2.y - pt1.y) * (pt2.y - pt1.y);
-                dB = 2.0 * (pt2.y - pt1.y) * (pt1.y * (pt2.x - pt1.x) - pt1.x * (pt2.y - pt1.y)) -
-                    2.0 * dAlpha * (pt2.x - pt1.x);
-                dC = (pt2.y - pt1.y) * (pt2.y - pt1.y) * (pt1.x * pt1.x + pt1.y * pt1.y - dR * dR) +
-                    dAlpha * (dAlpha - 2.0 * pt1.y * (pt2.y - pt1.y));
-                dDiscrim = Math.sqrt( dB * dB - 4.0 * dA * dC );
-                ptCenter1.x = (-dB + dDiscrim) / (2.0 * dA);
-                ptCenter2.x = (-dB - dDiscrim) / (2.0 * dA);
-
-                // Compute the two solutions for the y-coordinate of circle center
-                // (the same as above) dA = (pt2.x - pt1.x) * (pt2.x - pt1.x) + (pt2.y - pt1.y) * (pt2.y - pt1.y);
-                dB = 2.0 * (pt2.x - pt1.x) * (pt1.x * (pt2.y - pt1.y) - pt1.y * (pt2.x - pt1.x)) -
-                    2.0 * dAlpha * (pt2.y - pt1.y);
-                dC = (pt2.x - pt1.x) * (pt2.x - pt1.x) * (pt1.x * pt1.x + pt1.y * pt1.y - dR * dR) +
-                    dAlpha * (dAlpha - 2.0 * pt1.x * (pt2.x - pt1.x));
-                dDiscrim = Math.sqrt( dB * dB - 4.0 * dA * dC );
-                ptCenter1.y = (-dB + dDiscrim) / (2.0 * dA);
-                ptCenter2.y = (-dB - dDiscrim) / (2.0 * dA);
-
-                // Compute the midpoints of the room and the line that connects the
-                // edge exits
-                ptRoomMid.setLocation( rectRoom.getCenterX(), rectRoom.getCenterY() );
-                ptMid.setLocation( (pt1.x + pt2.x) / 2.0, (pt1.y + pt2.y) / 2.0 );
-
-                // Arbitrarily use the x- and y- solutions that are skewed the most in the
-                // direction of the midpoint of the line that connects the starting and
-                // ending points of the edge relative to the midpoint of the room for the
-                // center of the arc.
-                ptCenter.x = ptMid.x < ptRoomMid.x ? Math.min( ptCenter1.x, ptCenter2.x ) :
-                    Math.max( ptCenter1.x, ptCenter2.x );
-                ptCenter.y = ptMid.y < ptRoomMid.y ? Math.min( ptCenter1.y, ptCenter2.y ) :
-                    Math.max( ptCenter1.y, ptCenter2.y );
-
-                // Make sure the point that was arbitrarily chosen is actually a circle
-                // (if it is it will be equidistant from the starting and ending points
-                // of the edge).
-                if( Math.abs( ptCenter.distance( pt1 ) - ptCenter.distance( pt2 ) ) > 1.0 )
-                {
-                    // Otherwise switch the solution of the coordinate that is closer to
-                    // the midpoint of the room (we want the coordinate furthest away to
-                    // dominate the solution).
-                    if( Math.abs( ptMid.x - ptRoomMid.x ) > Math.abs( ptMid.y - ptRoomMid.y ) )
-                        ptCenter.y = ptCenter.y == ptCenter1.y ? ptCenter2.y : ptCenter1.y;
-                    else
-                        ptCenter.x = ptCenter.x == ptCenter1.x ? ptCenter2.x : ptCenter1.x;
-                }
-
-                // Compute bounding rectangle of edge
-                rectEdge = new Rectangle();
-                rectEdge.setRect( ptCenter.x - dR, ptCenter.y - dR, 2.0 * dR + 1.0, 2.0 * dR + 1.0 );
-            }
-        }
-        else
-        {
-            // Compute bounding rectangle of edge
-            rectEdge = new Rectangle( ptStart );
-            rectEdge.add( ptEnd );
-        }
-
-        // Return bounding rectangle of edge
-        return( rectEdge );
+        // Return the bounding rectangle of the edge
+        return( oEdge.getBounds() );
     }
 
     /**
@@ -702,70 +1486,8 @@ public class MapUI
 
     protected void drawEdgeHead( Graphics g, Edge oEdge )
     {
-        /////////////////////////////////////////////////////////////////////
-        // VARIABLE DECLARATIONS                                           //
-
-        Point  ptEdgeStart,  // Starting point of edge
-               ptEdgeEnd,    // Ending point of edge
-               pt;           // Reference point along edge head
-        int[]  anPolyX;      // x-coordinates of edge head polygon
-        int[]  anPolyY;      // y-coordinates of edge head polygon
-        double dTheta,       // Angle of edge head
-               dSinTheta,    // Sine of dTheta
-               dCosTheta;    // Cosine of dTheta
-        int    nDX,          // x-distance between reference point and head butt corners
-               nDY;          // y-distance between reference point and head butt corners
-
-        //                                                                 //
-        /////////////////////////////////////////////////////////////////////
-
-        // Get the starting and ending points of the edge
-        ptEdgeStart = oEdge.getStartPoint();
-        ptEdgeEnd = oEdge.getEndPoint();
-
-        // Determine if the edge is a line edge or a circular edge
-        if( oEdge.getStartRoomID().equals( oEdge.getEndRoomID() ) )
-        {
-            // Compute various quantities
-            Rectangle rectEdge = getEdgeBounds( oEdge );
-            double dXCenter = rectEdge.getCenterX();
-            double dYCenter = rectEdge.getCenterY();
-            double dThetaEnd = Math.atan2( dYCenter - ptEdgeEnd.y, ptEdgeEnd.x - dXCenter );
-            double dThetaStart = Math.atan2( dYCenter - ptEdgeStart.y, ptEdgeStart.x - dXCenter );
-            double dAbsThetaDiff = Math.abs( dThetaEnd - dThetaStart );
-
-            // Compute the angle of the edge head
-            if( (dThetaEnd > dThetaStart && dAbsThetaDiff < Math.PI) ||
-                (dThetaEnd < dThetaStart && dAbsThetaDiff > Math.PI) )
-                dTheta = dThetaEnd - Math.PI / 2.0;
-            else
-                dTheta = dThetaEnd + Math.PI / 2.0;
-        }
-        else
-        {
-            // Compute the angle of the edge head
-            dTheta = Math.atan2( ptEdgeStart.y - ptEdgeEnd.y, ptEdgeEnd.x - ptEdgeStart.x );
-        }
-
-        // Compute the bounding polygon of the edge head
-        dSinTheta = Math.sin( dTheta );
-        dCosTheta = Math.cos( dTheta );
-        nDX = (int)(EDGE_HEAD_HEIGHT * dSinTheta);
-        nDY = (int)(EDGE_HEAD_HEIGHT * dCosTheta);
-        pt = new Point();
-        pt.x = ptEdgeEnd.x - (int)(EDGE_HEAD_WIDTH * dCosTheta);
-        pt.y = ptEdgeEnd.y + (int)(EDGE_HEAD_WIDTH * dSinTheta);
-        anPolyX = new int[ 3 ];
-        anPolyY = new int[ 3 ];
-        anPolyX[ 0 ] = ptEdgeEnd.x;
-        anPolyX[ 1 ] = pt.x - nDX;
-        anPolyX[ 2 ] = pt.x + nDX;
-        anPolyY[ 0 ] = ptEdgeEnd.y;
-        anPolyY[ 1 ] = pt.y - nDY;
-        anPolyY[ 2 ] = pt.y + nDY;
-
         // Draw the edge head polygon
-        g.fillPolygon( anPolyX, anPolyY, 3 );
+        m_oRenderer.paintEdgeHead( g, oEdge );
     }
 
 
@@ -788,6 +1510,7 @@ public class MapUI
             dlg.setVisible( true );
 
             // Repaint the edge
+            invalidateEdge( m_oFocusEdge );
             repaintEdge( m_oFocusEdge );
         }
     }
@@ -832,34 +1555,28 @@ public class MapUI
         /////////////////////////////////////////////////////////////////////
         // VARIABLE DECLARATIONS                                           //
 
-        Rectangle      rectClip,   // The current clipping rectangle
-                       rectEdge;   // Bounding rectangle of the current edge
-        Point2D.Double pt1;        // Starting point of current circular (arc) edge
-        Point2D.Double pt2;        // Ending point of current circular (arc) edge
-        Point2D.Double ptCenter;   // Center of bounding rectangle
-        Point          ptStart,    // Starting point of current edge
-                       ptEnd;      // Ending point of current edge
-        double         dAngle1,    // Smaller angle of circular (arc) edge
-                       dAngle2,    // Larger angle of circular (arc) edge
-                       dArcAngle;  // Angle made by circular (arc) edge
-        int            nXMin,      // Minimum grid x-cooddinate
-                       nXMax,      // Maximum grid x-coordinate
-                       nYMin,      // Minimum grid y-coordinate
-                       nYMax,      // Maximum grid y-coordinate
-                       nX, nY;     // Loop control variables
-
-        // CONSTANT DECLARATIONS                                           //
-
-        final double RAD2DEG = 180.0 / Math.PI;  // Conversion from radians to degress
+        OperationEvent oEvent;        // Event describing the paint
+        long           lStartNanos;   // Time at which the paint began
+        Rectangle      rectClip,      // The current clipping rectangle
+                       rectEdge;      // Bounding rectangle of the focus edge
+        int            nXMin,         // Minimum grid x-cooddinate
+                       nXMax,         // Maximum grid x-coordinate
+                       nYMin,         // Minimum grid y-coordinate
+                       nYMax,         // Maximum grid y-coordinate
+                       nEdgesPainted, // Number of edges within the clip
+                       nX, nY;        // Loop control variables
 
         //                                                                 //
         /////////////////////////////////////////////////////////////////////
 
         // Call base class implementation
+        lStartNanos = m_oMetrics != null ? System.nanoTime() : 0;
+        oEvent = OperationEvent.begin( OperationEvent.PAINT );
         super.paintComponent( g );
 
         // Get the current clipping rectangle
         rectClip = g.getClipBounds();
+        oEvent.set( "clipArea", (long)rectClip.width * rectClip.height );
 
         // Draw the grid if necessary
         if( m_bGridEnabled )
@@ -877,90 +1594,43 @@ public class MapUI
                     g.drawLine( nX, nY, nX, nY );
         }
 
-        // Allocate helpers for circular (arc) edges
-        pt1 = new Point2D.Double();
-        pt2 = new Point2D.Double();
-        ptCenter = new Point2D.Double();
+        // Paint the snapshot in place of the rooms and edges if a group move
+        // is in progress
+        if( m_oGroupMoveImage != null )
+        {
+            paintGroupMove( g, rectClip );
+            oEvent.set( "snapshot", 1 );
+            oEvent.commit();
+            if( m_oMetrics != null )
+                m_oMetrics.recordPaint( System.nanoTime() - lStartNanos );
+            return;
+        }
 
-        // Iterate through all the edges on the map
-        for( final Edge oEdge : m_oMap.m_oEdgeMap.values() )
+        // Rebuild the edge batches of the tiles in which edges have changed
+        // since they were last built, and paint the batches of the tiles
+        // within the clipping rectangle
+        if( m_oEdgeBatches.isUpdateNeeded() )
         {
-            // Get the bounds of the next Edge
-            rectEdge = getEdgeBounds( oEdge );
-            ptStart = oEdge.getStartPoint();
-            ptEnd = oEdge.getEndPoint();
+            if( m_oEdgeRouter != null )
+                updateEdgeRoutes( rectClip );
+            m_oEdgeBatches.update();
+            oEvent.set( "tilesBuilt", m_oEdgeBatches.getLastBuiltCount() );
+            oEvent.mark( "batchedAt" );
+        }
+        oEvent.set( "tilesPainted", m_oEdgeBatches.paint( g, rectClip ) );
+
+        // Paint the highlighted route, if any, over the batches
+        if( m_oRoute != null )
+            paintRoute( g, rectClip );
 
-            // Determine if the edge intersects the clipping rectangle
+        // Paint the edge with focus over its batch
+        if( hasFocus() && m_oFocusEdge != null )
+        {
+            rectEdge = getEdgeBounds( m_oFocusEdge );
             if( rectClip.intersects( rectEdge ) )
             {
-                // Set the color for the edge
-                g.setColor( hasFocus() && oEdge == m_oFocusEdge ? Color.red :
-                    oEdge.isSecret() ? Color.gray : Color.black );
-
-                // Determine if the edge is a line edge or a circular edge
-                if( oEdge.getStartRoomID().equals( oEdge.getEndRoomID() ) )
-                {
-                    // Determine if the circular edge connects to the same exit
-                    if( oEdge.getStartExit() == oEdge.getEndExit() )
-                    {
-                        // Draw the 360� circular edge
-                        g.drawOval( rectEdge.x, rectEdge.y, rectEdge.width, rectEdge.height );
-                    }
-                    else
-                    {
-                        // Initialize locations of edge start, end, and bounding rectangle center
-                        pt1.setLocation( ptStart );
-                        pt2.setLocation( ptEnd );
-                        ptCenter.setLocation( rectEdge.getCenterX(), rectEdge.getCenterY() );
-
-                        // Compute the angle the starting and end points make with the
-                        // center of the edge's bounding rectangle (remember that y is
-                        // positive downward)
-                        dAngle1 = Math.atan2( ptCenter.y - pt1.y, pt1.x - ptCenter.x ) * RAD2DEG;
-                        dAngle2 = Math.atan2( ptCenter.y - pt2.y, pt2.x - ptCenter.x ) * RAD2DEG;
-
-                        // Since atan2() returns angles in the range {-PI,PI}, we move
-                        // them into the range {0,2*PI} since that is the system we
-                        // are working in.
-                        if( dAngle1 < 0.0 )
-                            dAngle1 += 360.0;
-                        if( dAngle2 < 0.0 )
-                            dAngle2 += 360.0;
-
-                        // Ensure that angle 1 is the smaller of the two angles
-                        if( dAngle1 > dAngle2 )
-                        {
-                            double dTemp = dAngle1;
-                            dAngle1 = dAngle2;
-                            dAngle2 = dTemp;
-                        }
-
-                        // Determine which arc to draw and compute its coverage (if
-                        // angle 2 leads angle 1 by more than 180�, draw the CCW arc;
-                        // otherwise draw the CW arc; i.e. we draw the longest arc).
-                        if( dAngle2 - dAngle1 >= 180.0 )
-                            dArcAngle = dAngle2 - dAngle1;
-                        else
-                            dArcAngle = -(dAngle1 - (dAngle2 - 360.0));
-
-                        // Draw the sub-360� circular edge
-                        g.drawArc( rectEdge.x, rectEdge.y, rectEdge.width, rectEdge.height,
-                            (int)dAngle1, (int)dArcAngle );
-
-                        // Draw the arrowhead if the edge is one-way
-                        if( oEdge.isOneWay() )
-                            drawEdgeHead( g, oEdge );
-                    }
-                }
-                else
-                {
-                    // Draw the edge
-                    g.drawLine( ptStart.x, ptStart.y, ptEnd.x, ptEnd.y );
-
-                    // Draw the arrowhead if the edge is one-way
-                    if( oEdge.isOneWay() )
-                        drawEdgeHead( g, oEdge );
-                }
+                g.setColor( Color.red );
+                m_oRenderer.paintEdge( g, m_oFocusEdge, rectEdge );
             }
         }
 
@@ -970,6 +1640,51 @@ public class MapUI
             g.setColor( Color.black );
             g.drawLine( m_ptDragStart.x, m_ptDragStart.y, m_ptDragEnd.x, m_ptDragEnd.y );
         }
+
+        // Record the paint (the edges are counted by the tiles painted)
+        if( oEvent.isEnabled() )
+        {
+            nEdgesPainted = m_oEdgeBatches.getLastPaintedEdgeCount();
+            oEvent.set( "edgesPainted", nEdgesPainted );
+            oEvent.set( "edgesCulled", m_oMap.m_oEdgeMap.size() - nEdgesPainted );
+            oEvent.commit();
+        }
+
+        // Measure the paint
+        if( m_oMetrics != null )
+            m_oMetrics.recordPaint( System.nanoTime() - lStartNanos );
+    }
+
+    /**
+     * @see  javax.swing.JComponent#paintChildren( Graphics )  paintChildren
+     */
+
+    protected void paintChildren( Graphics g )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rectClip;  // The current clipping rectangle
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // The rooms are part of the snapshot while a group move is in
+        // progress, so only paint them otherwise
+        if( m_oGroupMoveImage == null )
+        {
+            super.paintChildren( g );
+            rectClip = g.getClipBounds() != null ? g.getClipBounds() : getVisibleRect();
+            if( m_bReachabilityShaded )
+                paintReachability( g, rectClip );
+
+            // Find the overlapping rooms if rooms may have changed, and shade
+            // them
+            if( m_bOverlapsStale || m_oOverlapDetector.isUpdateNeeded() )
+                updateOverlaps( rectClip );
+            if( m_oOverlapDetector.getOverlapCount() > 0 )
+                paintOverlaps( g, rectClip );
+        }
     }
 
 
@@ -1012,6 +1727,202 @@ public class MapUI
         }
     }
 
+    /**
+     * The object that is responsible for removing the highlighted route
+     * once the rooms and edges it follows may no longer exist or allow it.
+     * Rooms and edges being added do not affect the route.
+     */
+
+    protected class RouteListener
+        extends Object
+        implements MapListener
+    {
+        // ------------------------------------------------------------------
+        // -----------------    MapListener Methods    ----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+         *     roomAdded
+         */
+
+        public void roomAdded( Map oMap, Room oRoom )
+        {
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+         *     roomRemoved
+         */
+
+        public void roomRemoved( Map oMap, Room oRoom )
+        {
+            // Remove the highlighted route
+            if( m_oRoute != null )
+                setRoute( null );
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+         *     edgeAdded
+         */
+
+        public void edgeAdded( Map oMap, Edge oEdge )
+        {
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+         *     edgeRemoved
+         */
+
+        public void edgeRemoved( Map oMap, Edge oEdge )
+        {
+            // Remove the highlighted route
+            if( m_oRoute != null )
+                setRoute( null );
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+         *     edgeChanged
+         */
+
+        public void edgeChanged( Map oMap, Edge oEdge )
+        {
+            // Remove the highlighted route
+            if( m_oRoute != null )
+                setRoute( null );
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+         */
+
+        public void mapReset( Map oMap )
+        {
+            // Forget the highlighted route (the view is cleared and
+            // repainted with the map)
+            m_oRoute = null;
+            m_oRouteEdgeBatch = null;
+        }
+    }
+
+    /**
+     * The object that is responsible for repainting the shading of rooms
+     * once the rooms that can be reached from the start room change.  It
+     * listens after the reachability analyzer, so the analyzer has already
+     * been updated when it is notified.
+     */
+
+    protected class ReachabilityListener
+        extends Object
+        implements MapListener
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The change count of the analyzer when the shading was last
+         * repainted.
+         */
+        protected int m_nChangeCount;
+
+
+        // ------------------------------------------------------------------
+        // -----------------    MapListener Methods    ----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+         *     roomAdded
+         */
+
+        public void roomAdded( Map oMap, Room oRoom )
+        {
+            // A new room cannot be reached until an edge leads to it
+            if( m_bReachabilityShaded )
+                repaintRegion( oRoom.m_rectBounds );
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+         *     roomRemoved
+         */
+
+        public void roomRemoved( Map oMap, Room oRoom )
+        {
+            // Repaint if anything has changed
+            repaintIfChanged();
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+         *     edgeAdded
+         */
+
+        public void edgeAdded( Map oMap, Edge oEdge )
+        {
+            // Repaint if anything has changed
+            repaintIfChanged();
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+         *     edgeRemoved
+         */
+
+        public void edgeRemoved( Map oMap, Edge oEdge )
+        {
+            // Repaint if anything has changed
+            repaintIfChanged();
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+         *     edgeChanged
+         */
+
+        public void edgeChanged( Map oMap, Edge oEdge )
+        {
+            // Repaint if anything has changed
+            repaintIfChanged();
+        }
+
+        /**
+         * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+         */
+
+        public void mapReset( Map oMap )
+        {
+            // The view is cleared and repainted with the map
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   Protected Instance Methods   -----------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Repaints the visible region if rooms are shaded and the rooms
+         * that can be reached have changed since it was last repainted.
+         */
+
+        protected void repaintIfChanged()
+        {
+            // Compare the change count of the analyzer
+            if( !m_bReachabilityShaded )
+                return;
+            int nChangeCount = m_oReachability.getChangeCount();
+            if( nChangeCount != m_nChangeCount )
+            {
+                m_nChangeCount = nChangeCount;
+                repaintRegion( getVisibleRect() );
+            }
+        }
+    }
+
     /**
      * The object that is responsible for listening for mouse input events
      * fired by the enclosing MapUI component.
@@ -1133,10 +2044,8 @@ public class MapUI
             //                                                             //
             /////////////////////////////////////////////////////////////////
 
-            // Compute the old bounds of the room as well as the bounds of
-            // all edges that intersect the room
+            // Get the room being dragged
             oComponent = evt.getComponent();
-            rectOld = includeEdges( oComponent.getBounds() );
 
             // Compute the new location of the room
             ptCurrent = SwingUtilities.convertPoint( oComponent, evt.getPoint(), MapUI.this );
@@ -1158,8 +2067,14 @@ public class MapUI
             // Check if group move is enabled
             if( m_bGroupMoveEnabled )
             {
+                // Take a snapshot of the map if this is the start of the move
+                if( m_dmGroupMoveDelta == null )
+                    beginGroupMove();
+
                 // Compute the offset that all rooms will be translated by
+                // (relative to where the room has been dragged so far)
                 ptTemp = oComponent.getLocation();
+                ptTemp.translate( m_dmGroupMoveDelta.width, m_dmGroupMoveDelta.height );
                 dmDelta = new Dimension( ptRoom.x - ptTemp.x, ptRoom.y - ptTemp.y );
 
                 // Ensure global minimum does not go negative
@@ -1168,23 +2083,24 @@ public class MapUI
                 if( m_ptGlobalMin.y + dmDelta.height < 0 )
                     dmDelta.height = -m_ptGlobalMin.y;
 
-                // Set the new global minimum
+                // Set the new global minimum and accumulate the offset (the
+                // rooms are not actually moved until the mouse is released)
                 m_ptGlobalMin.translate( dmDelta.width, dmDelta.height );
-
-                // Iterate through all rooms
-                for( final RoomUI oRoomUI : m_oRoomUIMap.values() )
-                {
-                    // Move this room by the specified amount
-                    ptTemp = oRoomUI.getLocation();
-                    ptTemp.translate( dmDelta.width, dmDelta.height );
-                    oRoomUI.setLocation( ptTemp );
-                }
-
-                // Repaint the entire client area
-                repaint();
+                m_dmGroupMoveDelta.width += dmDelta.width;
+                m_dmGroupMoveDelta.height += dmDelta.height;
+
+                // Repaint the visible client area (only the snapshot and its
+                // overlays are drawn so this is inexpensive regardless of
+                // map size)
+                if( dmDelta.width != 0 || dmDelta.height != 0 )
+                    repaintRegion( getVisibleRect() );
             }
             else
             {
+                // Compute the old bounds of the room as well as the bounds of
+                // all edges that intersect the room
+                rectOld = includeEdges( oComponent.getBounds() );
+
                 // Set the new location of the room
                 oComponent.setLocation( ptRoom );
 
@@ -1192,6 +2108,7 @@ public class MapUI
                 // the old and new bounds, as well as the bounds of all edges
                 // that intersect the room
                 rectNew = oComponent.getBounds();
+                invalidateRoomEdges( ((RoomUI)oComponent).m_oRoom );
                 repaintRegion( includeEdges( rectNew.union( rectOld ) ) );
             }
         }
@@ -1268,6 +2185,7 @@ public class MapUI
                 // the old and new bounds, as well as the bounds of all edges
                 // that intersect the room
                 rectNew = oComponent.getBounds();
+                invalidateRoomEdges( ((RoomUI)oComponent).m_oRoom );
                 repaintRegion( includeEdges( rectNew.union( rectOld ) ) );
             }
         }
@@ -1431,8 +2349,9 @@ public class MapUI
                             RoomUI.EXIT_HEIGHT / 2 );
                         m_ptDragStart.x = roomUI.m_oRoom.m_rectBounds.x + ptExit.x;
                         m_ptDragStart.y = roomUI.m_oRoom.m_rectBounds.y + ptExit.y;
-                        m_oMap.m_oEdgeMap.remove( oEdge.getID() );
+                        m_oMap.deleteEdge( oEdge );
 
+                        invalidateEdge( oEdge );
                         repaintEdge( oEdge );
                     }
                 }
@@ -1445,6 +2364,14 @@ public class MapUI
 
         public void mouseReleased( MouseEvent evt )
         {
+            // Record a drop only if a room, an edge or the group was being
+            // dragged, not for a plain click
+            OperationEvent oEvent = null;
+            if( m_bDraggingRoom || m_bSizingRoom || m_bDraggingEdge || m_dmGroupMoveDelta != null )
+            {
+                oEvent = OperationEvent.begin( OperationEvent.DROP );
+                oEvent.set( "groupMove", m_dmGroupMoveDelta != null ? 1 : 0 );
+            }
             Point pt = SwingUtilities.convertPoint( evt.getComponent(), evt.getPoint(), MapUI.this );
             Component comp = getComponentAt( pt );
 
@@ -1465,6 +2392,7 @@ public class MapUI
                         oRoomUIEnd.m_oRoom, nEndExit );
                     edge.setOneWay( m_bOneWay );
                     edge.setSecret( m_bSecret );
+                    invalidateEdge( edge );
 
                     //rectPaint = new Rectangle( edge.getStartPoint() );
                     //rectPaint.add( edge.getEndPoint() );
@@ -1474,8 +2402,12 @@ public class MapUI
                 }
             }
 
+            // Move all rooms if a group move was in progress
+            commitGroupMove();
+
             if( m_bDraggingRoom || m_bSizingRoom )
             {
+                m_bOverlapsStale = true;
                 Rectangle rectNew = evt.getComponent().getBounds();
                 boolean bChanged = false;
 
@@ -1528,6 +2460,14 @@ public class MapUI
             // If necessary repaint the specified region
             if( rectPaint != null )
                 repaintRegion( rectPaint );
+
+            // Record the drop
+            if( oEvent != null )
+            {
+                oEvent.set( "rooms", m_oRoomUIMap.size() );
+                oEvent.set( "edges", m_oMap.m_oEdgeMap.size() );
+                oEvent.commit();
+            }
         }
 
         /**
@@ -1582,13 +2522,37 @@ public class MapUI
 
         public void mouseDragged( MouseEvent evt )
         {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            OperationEvent oEvent;  // Event describing the drag step
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
             // change booleans to states that are located within the mouse listener
             if( m_bDraggingRoom )
+            {
+                oEvent = OperationEvent.begin( OperationEvent.DRAG_ROOM );
                 roomDragged( evt );
+                oEvent.set( "groupMove", m_bGroupMoveEnabled ? 1 : 0 );
+            }
             else if( m_bSizingRoom )
+            {
+                oEvent = OperationEvent.begin( OperationEvent.SIZE_ROOM );
                 roomSized( evt );
+            }
             else if( m_bDraggingEdge )
+            {
+                oEvent = OperationEvent.begin( OperationEvent.DRAG_EDGE );
                 edgeDragged( evt );
+            }
+            else
+                return;
+
+            // Record the drag step
+            oEvent.set( "edges", m_oMap.m_oEdgeMap.size() );
+            oEvent.commit();
         }
     }
 }
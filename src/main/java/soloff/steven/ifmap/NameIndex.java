@@ -0,0 +1,975 @@
+/*
+ * NameIndex.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.PriorityQueue;
+
+/**
+ * The object that finds the rooms on a Map whose names are like a given
+ * name, allowing for typing mistakes and differences in case and
+ * punctuation.  Names are compared after being normalized: put in lower
+ * case, with each run of characters other than letters and digits
+ * replaced by a single space.  Two names are alike if few characters must
+ * be inserted, deleted or replaced to turn one into the other (their
+ * edit distance).
+ *
+ * <p>Rather than measuring the distance to every name on the Map, the
+ * index maps each trigram (three consecutive characters of a normalized
+ * name, padded at both ends) to a posting list of the rooms whose names
+ * contain it.  Each edit changes at most three trigrams, so a name within
+ * distance k of the query shares all but 3k of the query's trigrams, and
+ * therefore at least one of its 3k + 1 rarest trigrams.  Only the rooms in
+ * those posting lists are considered, and only those sharing enough
+ * trigrams are measured, with a distance computation that gives up as soon
+ * as the distance exceeds k.
+ *
+ * <p>The index is built from the Map when it is first used and is then
+ * kept up to date: as a MapListener for rooms being added and removed, and
+ * by the Room itself when its name is set.  Clearing or loading the Map
+ * causes the index to be rebuilt when it is next used.  Like the Map
+ * itself, the index must only be used on the event dispatch thread.
+ */
+
+public class NameIndex
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The number of characters of a normalized name per edit allowed by
+     * the default maximum distance.
+     */
+    public static final int CHARS_PER_EDIT = 4;
+
+    /**
+     * The character that pads a normalized name before it is split into
+     * trigrams.
+     */
+    protected static final char PAD = '\u0000';
+
+    /**
+     * The number of trigrams changed by at most one edit.
+     */
+    protected static final int TRIGRAMS_PER_EDIT = 3;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map whose rooms are indexed.
+     */
+    protected Map m_oMap;
+
+    /**
+     * Indicates if the index must be rebuilt before it is next used.
+     */
+    protected boolean m_bStale;
+
+    /**
+     * The posting list of each trigram keyed by trigram.
+     */
+    protected HashMap<String, TextIndex.Posting> m_oPostings;
+
+    /**
+     * The index of each room keyed by room ID.
+     */
+    protected HashMap<String, Integer> m_oRoomIndex;
+
+    /**
+     * The room at each room index; null for an unused index.
+     */
+    protected Room[] m_aoRooms;
+
+    /**
+     * The normalized name of the room at each room index, as it was
+     * indexed.
+     */
+    protected String[] m_astrNames;
+
+    /**
+     * The number of room indices in use or freed.
+     */
+    protected int m_nRoomLimit;
+
+    /**
+     * The freed room indices available for reuse.
+     */
+    protected int[] m_anFreeRooms;
+
+    /**
+     * The number of freed room indices.
+     */
+    protected int m_nFreeRoomCount;
+
+    /**
+     * The number of query trigrams shared by each room index; zero between
+     * queries.
+     */
+    protected int[] m_anShared;
+
+    /**
+     * The two rows of the edit distance computation, reused between
+     * queries.
+     */
+    protected int[] m_anRow,
+                    m_anPreviousRow;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new NameIndex object.  The caller is responsible for
+     * adding the object as a listener of the Map.
+     *
+     * @param  oMap  The Map whose rooms are to be indexed.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public NameIndex( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_bStale = true;
+        m_anRow = new int[ 16 ];
+        m_anPreviousRow = new int[ 16 ];
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Rebuilds the index if the Map has been cleared or loaded since it
+     * was last used.  Queries call this before reading the index.
+     */
+
+    public void validate()
+    {
+        // Rebuild the index if necessary
+        if( m_bStale )
+            rebuild();
+    }
+
+    /**
+     * Finds the rooms whose names are like the specified name, allowing
+     * one edit for every CHARS_PER_EDIT characters of the name.
+     *
+     * @param  strName  The name to be found.
+     * @param  nMaxRooms  The maximum number of rooms to be returned.
+     *
+     * @return  The rooms found, closest first.
+     *
+     * @exception  IllegalArgumentException  If strName is null or if
+     *     nMaxRooms is negative.
+     */
+
+    public Match[] find( String strName, int nMaxRooms )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( strName == null )
+            throw new IllegalArgumentException();
+
+        // Find the rooms within the default distance
+        return( find( strName, getDefaultMaxDistance( strName ), nMaxRooms ) );
+    }
+
+    /**
+     * Finds the rooms whose names are within the specified edit distance
+     * of the specified name.  The rooms are ordered by their distance, then
+     * by name.  A room whose name shares no trigram with the specified name
+     * is never found.
+     *
+     * @param  strName  The name to be found.
+     * @param  nMaxDistance  The greatest edit distance allowed.
+     * @param  nMaxRooms  The maximum number of rooms to be returned.
+     *
+     * @return  The rooms found, closest first.
+     *
+     * @exception  IllegalArgumentException  If strName is null or if
+     *     nMaxDistance or nMaxRooms is negative.
+     */
+
+    public Match[] find( String strName, int nMaxDistance, int nMaxRooms )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent       oEvent;        // Event describing the query
+        String               strQuery;      // Normalized name
+        String[]             astrTrigrams;  // Distinct trigrams of the name
+        TextIndex.Posting[]  aoPostings;    // Posting list of each trigram
+        int                  nProbed,       // Number of rare trigrams counted
+                             nMinShared,    // Trigrams a match must share
+                             nBound,        // Greatest distance still wanted
+                             nCandidates,   // Number of rooms counted
+                             nI;            // Loop control
+        int[]                anCandidates,  // Rooms sharing a rare trigram
+                             anOrder,       // Rooms by rare trigrams shared
+                             anBucket;      // Start of each number shared
+        PriorityQueue<Match> oMatches;      // Closest rooms, farthest first
+        Match[]              aoMatches;     // Closest rooms, closest first
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( strName == null || nMaxDistance < 0 || nMaxRooms < 0 )
+            throw new IllegalArgumentException();
+        if( nMaxRooms == 0 )
+            return( new Match[ 0 ] );
+
+        // Look up the posting list of each trigram of the name, dropping
+        // those no room shares, and order them from the rarest
+        validate();
+        oEvent = OperationEvent.begin( OperationEvent.FIND_NAME );
+        strQuery = normalize( strName );
+        astrTrigrams = getTrigrams( strQuery );
+        aoPostings = new TextIndex.Posting[ astrTrigrams.length ];
+        nI = 0;
+        for( final String strTrigram : astrTrigrams )
+        {
+            TextIndex.Posting oPosting = m_oPostings.get( strTrigram );
+            if( oPosting != null )
+                aoPostings[ nI++ ] = oPosting;
+        }
+        aoPostings = Arrays.copyOf( aoPostings, nI );
+        Arrays.sort( aoPostings, new PostingSizeComparator() );
+
+        // Count the rare trigrams shared by each room; a match must share
+        // one of the 3k + 1 rarest trigrams of the name
+        nMinShared = Math.max( 1, astrTrigrams.length - TRIGRAMS_PER_EDIT * nMaxDistance );
+        nProbed = Math.min( aoPostings.length, astrTrigrams.length - nMinShared + 1 );
+        anCandidates = new int[ 16 ];
+        nCandidates = 0;
+        for( nI = 0; nI < nProbed; nI++ )
+        {
+            TextIndex.Posting oPosting = aoPostings[ nI ];
+            for( int nJ = 0; nJ < oPosting.m_nCount; nJ++ )
+            {
+                int nRoom = oPosting.m_anRooms[ nJ ];
+                if( m_anShared[ nRoom ]++ == 0 )
+                {
+                    if( nCandidates == anCandidates.length )
+                        anCandidates = MapGraph.grow( anCandidates, nCandidates + 1 );
+                    anCandidates[ nCandidates++ ] = nRoom;
+                }
+            }
+        }
+
+        // Visit the rooms from those sharing the most rare trigrams, which
+        // are likely to be the closest
+        anBucket = new int[ nProbed + 2 ];
+        for( nI = 0; nI < nCandidates; nI++ )
+            anBucket[ nProbed - m_anShared[ anCandidates[ nI ] ] + 1 ]++;
+        for( nI = 1; nI < anBucket.length; nI++ )
+            anBucket[ nI ] += anBucket[ nI - 1 ];
+        anOrder = new int[ nCandidates ];
+        for( nI = 0; nI < nCandidates; nI++ )
+            anOrder[ anBucket[ nProbed - m_anShared[ anCandidates[ nI ] ] ]++ ] = anCandidates[ nI ];
+
+        // Skip the rooms whose names differ too much in length, complete
+        // the count of the others from the common trigrams until they share
+        // enough or no longer can, and measure the distance to those that
+        // share enough; once enough rooms have been found, only rooms at
+        // most as far as the farthest of them are wanted
+        oMatches = new PriorityQueue<Match>( Math.min( nMaxRooms, nCandidates ) + 1,
+            Collections.reverseOrder( new MatchComparator() ) );
+        nBound = nMaxDistance;
+        for( nI = 0; nI < nCandidates; nI++ )
+        {
+            // Stop once the rest cannot share enough trigrams, since they
+            // share no more rare trigrams than this room
+            int nRoom = anOrder[ nI ],
+                nShared = m_anShared[ nRoom ];
+            if( nShared + aoPostings.length - nProbed < nMinShared )
+                break;
+            m_anShared[ nRoom ] = 0;
+            if( Math.abs( m_astrNames[ nRoom ].length() - strQuery.length() ) > nBound )
+                continue;
+            for( int nJ = nProbed; nJ < aoPostings.length && nShared < nMinShared &&
+                nShared + aoPostings.length - nJ >= nMinShared; nJ++ )
+            {
+                if( Arrays.binarySearch( aoPostings[ nJ ].m_anRooms, 0, aoPostings[ nJ ].m_nCount, nRoom ) >= 0 )
+                    nShared++;
+            }
+            if( nShared < nMinShared )
+                continue;
+            int nDistance = getDistance( strQuery, m_astrNames[ nRoom ], nBound );
+            if( nDistance > nBound )
+                continue;
+            oMatches.add( new Match( m_aoRooms[ nRoom ], nDistance ) );
+            if( oMatches.size() > nMaxRooms )
+                oMatches.poll();
+            if( oMatches.size() == nMaxRooms )
+            {
+                nBound = oMatches.peek().m_nDistance;
+                nMinShared = Math.max( 1, astrTrigrams.length - TRIGRAMS_PER_EDIT * nBound );
+            }
+        }
+
+        // Clear the counts of the rooms not visited, and return the closest
+        // rooms
+        for( ; nI < nCandidates; nI++ )
+            m_anShared[ anOrder[ nI ] ] = 0;
+        aoMatches = new Match[ oMatches.size() ];
+        for( nI = aoMatches.length - 1; nI >= 0; nI-- )
+            aoMatches[ nI ] = oMatches.poll();
+        oEvent.set( "trigrams", astrTrigrams.length );
+        oEvent.set( "candidates", nCandidates );
+        oEvent.set( "rooms", aoMatches.length );
+        oEvent.commit();
+        return( aoMatches );
+    }
+
+    /**
+     * Finds the room whose name is closest to the specified name.  This is
+     * meant for importers that must decide if a room they read is one they
+     * already created under a slightly different name.
+     *
+     * @param  strName  The name to be found.
+     * @param  nMaxDistance  The greatest edit distance allowed.
+     *
+     * @return  The closest room, or null if no room is within the
+     *     distance.
+     *
+     * @exception  IllegalArgumentException  If strName is null or if
+     *     nMaxDistance is negative.
+     */
+
+    public Room findClosest( String strName, int nMaxDistance )
+        throws IllegalArgumentException
+    {
+        // Return the first room found, if any
+        Match[] aoMatches = find( strName, nMaxDistance, 1 );
+        return( aoMatches.length > 0 ? aoMatches[ 0 ].getRoom() : null );
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // Index the room unless the index will be rebuilt anyway
+        if( !m_bStale )
+            indexRoom( oRoom );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        // Make sure the room is indexed
+        if( m_bStale )
+            return;
+        int nRoom = getRoomIndex( oRoom );
+        if( nRoom == MapGraph.NONE )
+            return;
+
+        // Remove the name of the room and free its index
+        removeName( nRoom );
+        m_oRoomIndex.remove( oRoom.m_strID );
+        m_aoRooms[ nRoom ] = null;
+        if( m_nFreeRoomCount == m_anFreeRooms.length )
+            m_anFreeRooms = MapGraph.grow( m_anFreeRooms, m_nFreeRoomCount + 1 );
+        m_anFreeRooms[ m_nFreeRoomCount++ ] = nRoom;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+        // Edges have no names to index
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+        // Edges have no names to index
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+        // Edges have no names to index
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Rebuild the index when it is next used, and release the old one
+        // in the meantime
+        m_bStale = true;
+        m_oPostings = null;
+        m_oRoomIndex = null;
+        m_aoRooms = null;
+        m_astrNames = null;
+        m_anShared = null;
+    }
+
+
+    // **********************************************************************
+    // *********************  Package Instance Methods  *********************
+    // **********************************************************************
+
+    /**
+     * Indexes the name of the specified room again if it has changed.  The
+     * Room calls this after its name or description is set.
+     *
+     * @param  oRoom  The room whose name may have changed.
+     */
+
+    void updateName( Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        String strName;  // New normalized name of the room
+        int    nRoom;    // Index of the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure the room is indexed and its normalized name changed
+        if( m_bStale || (nRoom = getRoomIndex( oRoom )) == MapGraph.NONE )
+            return;
+        strName = normalize( oRoom.getName() );
+        if( strName.equals( m_astrNames[ nRoom ] ) )
+            return;
+
+        // Replace the trigrams of the old name with those of the new one
+        removeName( nRoom );
+        addName( nRoom, strName );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Rebuilds the index from all rooms on the Map.
+     */
+
+    protected void rebuild()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent oEvent;     // Event describing the build
+        int            nCapacity;  // Initial capacity of the room arrays
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Allocate the arrays with some room to grow
+        oEvent = OperationEvent.begin( OperationEvent.INDEX_NAMES );
+        nCapacity = Math.max( 16, m_oMap.m_oRoomMap.size() + m_oMap.m_oRoomMap.size() / 8 );
+        m_oRoomIndex = new HashMap<String, Integer>( (int)(nCapacity / 0.75f) + 1 );
+        m_aoRooms = new Room[ nCapacity ];
+        m_astrNames = new String[ nCapacity ];
+        m_anShared = new int[ nCapacity ];
+        m_anFreeRooms = new int[ 16 ];
+        m_nRoomLimit = m_nFreeRoomCount = 0;
+        m_oPostings = new HashMap<String, TextIndex.Posting>();
+        m_bStale = false;
+
+        // Index all rooms; each is given the next index, so appending it to
+        // the posting lists keeps them sorted
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+            indexRoom( oRoom );
+
+        // Record the build
+        oEvent.set( "rooms", m_nRoomLimit );
+        oEvent.set( "trigrams", m_oPostings.size() );
+        oEvent.commit();
+    }
+
+    /**
+     * Gives the specified room an index and adds its name to the index.
+     *
+     * @param  oRoom  The room to be indexed.
+     */
+
+    protected void indexRoom( Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nRoom;  // Index of the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Reuse a freed index, or take the next one and grow the arrays if
+        // they are full
+        if( m_nFreeRoomCount > 0 )
+            nRoom = m_anFreeRooms[ --m_nFreeRoomCount ];
+        else
+        {
+            nRoom = m_nRoomLimit++;
+            if( nRoom == m_aoRooms.length )
+            {
+                m_aoRooms = Arrays.copyOf( m_aoRooms, nRoom * 2 );
+                m_astrNames = Arrays.copyOf( m_astrNames, nRoom * 2 );
+                m_anShared = MapGraph.grow( m_anShared, nRoom * 2 );
+            }
+        }
+
+        // Store the room and add its name
+        m_aoRooms[ nRoom ] = oRoom;
+        m_oRoomIndex.put( oRoom.m_strID, Integer.valueOf( nRoom ) );
+        addName( nRoom, normalize( oRoom.getName() ) );
+    }
+
+    /**
+     * Adds the specified room to the posting lists of the trigrams of its
+     * normalized name.
+     *
+     * @param  nRoom  The index of the room.
+     * @param  strName  The normalized name of the room.
+     */
+
+    protected void addName( int nRoom, String strName )
+    {
+        // Add the room to the posting list of each trigram, creating the
+        // lists of new trigrams
+        m_astrNames[ nRoom ] = strName;
+        for( final String strTrigram : getTrigrams( strName ) )
+        {
+            TextIndex.Posting oPosting = m_oPostings.get( strTrigram );
+            if( oPosting == null )
+            {
+                oPosting = new TextIndex.Posting();
+                m_oPostings.put( strTrigram, oPosting );
+            }
+            if( oPosting.m_nCount == 0 || oPosting.m_anRooms[ oPosting.m_nCount - 1 ] < nRoom )
+                oPosting.append( nRoom );
+            else
+                oPosting.insert( nRoom );
+        }
+    }
+
+    /**
+     * Removes the specified room from the posting lists of the trigrams of
+     * the name it was indexed with.
+     *
+     * @param  nRoom  The index of the room.
+     */
+
+    protected void removeName( int nRoom )
+    {
+        // Remove the room from the posting list of each trigram, and drop
+        // the lists that become empty
+        for( final String strTrigram : getTrigrams( m_astrNames[ nRoom ] ) )
+        {
+            TextIndex.Posting oPosting = m_oPostings.get( strTrigram );
+            if( oPosting != null && oPosting.remove( nRoom ) && oPosting.m_nCount == 0 )
+                m_oPostings.remove( strTrigram );
+        }
+        m_astrNames[ nRoom ] = null;
+    }
+
+    /**
+     * Gets the index of the specified room.
+     *
+     * @param  oRoom  The room whose index is to be returned.
+     *
+     * @return  The index of the room, or MapGraph.NONE if it is not
+     *     indexed.
+     */
+
+    protected int getRoomIndex( Room oRoom )
+    {
+        // Look up the index and make sure it belongs to the same Room
+        Integer oIndex = m_oRoomIndex.get( oRoom.m_strID );
+        if( oIndex == null || m_aoRooms[ oIndex.intValue() ] != oRoom )
+            return( MapGraph.NONE );
+        return( oIndex.intValue() );
+    }
+
+    /**
+     * Computes the edit distance between two strings, giving up once it is
+     * known to exceed the specified maximum.  Only the cells of the
+     * distance table within nMaxDistance of its diagonal are computed.
+     *
+     * @param  str1  The first string.
+     * @param  str2  The second string.
+     * @param  nMaxDistance  The greatest distance of interest.
+     *
+     * @return  The edit distance, or nMaxDistance + 1 if it is greater than
+     *     nMaxDistance.
+     */
+
+    protected int getDistance( String str1, String str2, int nMaxDistance )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int   nLength1,  // Length of the first string
+              nLength2,  // Length of the second string
+              nRowMin,   // Least distance in the current row
+              nI,        // Loop control
+              nJ;        // Loop control
+        int[] anSwap;    // Row being swapped
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Strings whose lengths differ by more than the maximum are too far
+        // apart
+        nLength1 = str1.length();
+        nLength2 = str2.length();
+        if( Math.abs( nLength1 - nLength2 ) > nMaxDistance )
+            return( nMaxDistance + 1 );
+
+        // Make sure the rows are long enough; cells outside the band hold a
+        // distance greater than the maximum
+        if( m_anRow.length <= nLength2 )
+        {
+            m_anRow = new int[ nLength2 * 2 + 1 ];
+            m_anPreviousRow = new int[ nLength2 * 2 + 1 ];
+        }
+        for( nJ = 0; nJ <= nLength2; nJ++ )
+            m_anPreviousRow[ nJ ] = nJ <= nMaxDistance ? nJ : nMaxDistance + 1;
+
+        // Compute each row from the one before, within the band
+        for( nI = 1; nI <= nLength1; nI++ )
+        {
+            int nFrom = Math.max( 1, nI - nMaxDistance ),
+                nTo = Math.min( nLength2, nI + nMaxDistance );
+            char ch = str1.charAt( nI - 1 );
+            m_anRow[ nFrom - 1 ] = nFrom == 1 && nI <= nMaxDistance ? nI : nMaxDistance + 1;
+            nRowMin = m_anRow[ nFrom - 1 ];
+            for( nJ = nFrom; nJ <= nTo; nJ++ )
+            {
+                int nDistance = m_anPreviousRow[ nJ - 1 ] + (ch == str2.charAt( nJ - 1 ) ? 0 : 1);
+                nDistance = Math.min( nDistance, m_anPreviousRow[ nJ ] + 1 );
+                nDistance = Math.min( nDistance, m_anRow[ nJ - 1 ] + 1 );
+                m_anRow[ nJ ] = Math.min( nDistance, nMaxDistance + 1 );
+                nRowMin = Math.min( nRowMin, m_anRow[ nJ ] );
+            }
+            if( nTo < nLength2 )
+                m_anRow[ nTo + 1 ] = nMaxDistance + 1;
+            if( nRowMin > nMaxDistance )
+                return( nMaxDistance + 1 );
+            anSwap = m_anPreviousRow;
+            m_anPreviousRow = m_anRow;
+            m_anRow = anSwap;
+        }
+        return( m_anPreviousRow[ nLength2 ] );
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Normalizes the specified name for comparison: puts it in lower case
+     * and replaces each run of characters other than letters and digits
+     * with a single space, dropping those at either end.
+     *
+     * @param  strName  The name to be normalized.
+     *
+     * @return  The normalized name.
+     *
+     * @exception  IllegalArgumentException  If strName is null.
+     */
+
+    public static String normalize( String strName )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<String> alTokens;  // Words of the name
+        StringBuilder     sb;        // Normalized name
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( strName == null )
+            throw new IllegalArgumentException();
+
+        // Join the words of the name with single spaces
+        alTokens = new ArrayList<String>();
+        TextIndex.tokenize( strName.toLowerCase( Locale.ROOT ), alTokens, false );
+        if( alTokens.size() == 1 )
+            return( alTokens.get( 0 ) );
+        sb = new StringBuilder( strName.length() );
+        for( final String strToken : alTokens )
+        {
+            if( sb.length() > 0 )
+                sb.append( ' ' );
+            sb.append( strToken );
+        }
+        return( sb.toString() );
+    }
+
+    /**
+     * Gets the greatest edit distance allowed by default when finding the
+     * specified name: one edit for every CHARS_PER_EDIT characters of the
+     * normalized name, and at least one.
+     *
+     * @param  strName  The name to be found.
+     *
+     * @return  The default maximum distance.
+     *
+     * @exception  IllegalArgumentException  If strName is null.
+     */
+
+    public static int getDefaultMaxDistance( String strName )
+        throws IllegalArgumentException
+    {
+        // Allow an edit for every few characters
+        return( Math.max( 1, normalize( strName ).length() / CHARS_PER_EDIT ) );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the distinct trigrams of the specified normalized name, padded
+     * at both ends so that its first and last characters belong to as many
+     * trigrams as the others.
+     *
+     * @param  strName  The normalized name.
+     *
+     * @return  The distinct trigrams of the name; empty if the name is
+     *     empty.
+     */
+
+    protected static String[] getTrigrams( String strName )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        String   strPadded;     // Name with padding at both ends
+        String[] astrTrigrams;  // Trigrams of the name
+        int      nCount,        // Number of distinct trigrams
+                 nI;            // Loop control
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Take each three consecutive characters of the padded name
+        if( strName.length() == 0 )
+            return( new String[ 0 ] );
+        strPadded = PAD + strName + PAD;
+        astrTrigrams = new String[ strPadded.length() - 2 ];
+        for( nI = 0; nI < astrTrigrams.length; nI++ )
+            astrTrigrams[ nI ] = strPadded.substring( nI, nI + 3 );
+
+        // Drop repeated trigrams
+        Arrays.sort( astrTrigrams );
+        nCount = 0;
+        for( nI = 0; nI < astrTrigrams.length; nI++ )
+        {
+            if( nCount == 0 || !astrTrigrams[ nI ].equals( astrTrigrams[ nCount - 1 ] ) )
+                astrTrigrams[ nCount++ ] = astrTrigrams[ nI ];
+        }
+        return( nCount < astrTrigrams.length ? Arrays.copyOf( astrTrigrams, nCount ) : astrTrigrams );
+    }
+
+
+    // **********************************************************************
+    // *********************       Inner Classes        *********************
+    // **********************************************************************
+
+    /**
+     * A room found by its name, and how close its name is.
+     */
+
+    public static class Match
+        extends Object
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The room found.
+         */
+        protected Room m_oRoom;
+
+        /**
+         * The edit distance between the name found and the name of the
+         * room.
+         */
+        protected int m_nDistance;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new Match.
+         *
+         * @param  oRoom  The room found.
+         * @param  nDistance  The edit distance to the name of the room.
+         */
+
+        Match( Room oRoom, int nDistance )
+        {
+            // Initialize instance variables
+            m_oRoom = oRoom;
+            m_nDistance = nDistance;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   Public Instance Methods  ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Gets the room found.
+         *
+         * @return  The room found.
+         */
+
+        public Room getRoom()
+        {
+            // Return the room
+            return( m_oRoom );
+        }
+
+        /**
+         * Gets the edit distance between the name found and the normalized
+         * name of the room.
+         *
+         * @return  The edit distance.
+         */
+
+        public int getDistance()
+        {
+            // Return the distance
+            return( m_nDistance );
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************        Comparators         *********************
+    // **********************************************************************
+
+    /**
+     * The object that orders posting lists from the shortest to the
+     * longest.
+     */
+
+    protected static class PostingSizeComparator
+        extends Object
+        implements Comparator<TextIndex.Posting>
+    {
+        // ------------------------------------------------------------------
+        // -----------------    Comparator Methods    -----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.Comparator#compare  compare
+         */
+
+        public int compare( TextIndex.Posting oPosting1, TextIndex.Posting oPosting2 )
+        {
+            // Compare the number of rooms in the lists
+            return( oPosting1.m_nCount < oPosting2.m_nCount ? -1 :
+                (oPosting1.m_nCount > oPosting2.m_nCount ? 1 : 0) );
+        }
+    }
+
+    /**
+     * The object that orders matches from the closest to the farthest.
+     */
+
+    protected static class MatchComparator
+        extends Object
+        implements Comparator<Match>
+    {
+        // ------------------------------------------------------------------
+        // -----------------    Comparator Methods    -----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.Comparator#compare  compare
+         */
+
+        public int compare( Match oMatch1, Match oMatch2 )
+        {
+            // Compare the distances, then the names and identifiers
+            if( oMatch1.m_nDistance != oMatch2.m_nDistance )
+                return( oMatch1.m_nDistance < oMatch2.m_nDistance ? -1 : 1 );
+            int nCompare = oMatch1.m_oRoom.getName().compareTo( oMatch2.m_oRoom.getName() );
+            if( nCompare != 0 )
+                return( nCompare );
+            return( oMatch1.m_oRoom.m_strID.compareTo( oMatch2.m_oRoom.m_strID ) );
+        }
+    }
+}
@@ -0,0 +1,575 @@
+/*
+ * OperationEvent.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.EventQueue;
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * A timed event describing one operation (such as loading a file or
+ * painting the map) and its attributes.  Events are only recorded if the
+ * <code>ifmap.events</code> system property names the file to which they
+ * are written, for example:
+ *
+ * <pre>
+ *     java -Difmap.events=ifmap-events.log -jar ifmap.jar
+ * </pre>
+ *
+ * Each event is written as one line containing the time the operation
+ * started, its duration, the thread it ran on (marked <code>EDT</code> for
+ * the event dispatch thread), its name, and its attributes.  Events are
+ * written by a background thread so that recording does not block the
+ * event dispatch thread on file I/O.
+ *
+ * <p>When recording is disabled, begin returns a shared inactive event
+ * whose methods do nothing, so an instrumented operation costs only a
+ * static field read.  Attributes that are expensive to compute should only
+ * be computed if isEnabled returns true.
+ */
+
+public class OperationEvent
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The system property that names the file to which events are written.
+     */
+    public static final String PROP_EVENTS_FILE = "ifmap.events";
+
+    /**
+     * The name of the event for starting the application, from entering
+     * main until the main window is opened.
+     */
+    public static final String STARTUP = "startup";
+
+    /**
+     * The name of the event for loading a document.
+     */
+    public static final String LOAD = "load";
+
+    /**
+     * The name of the event for saving a document.
+     */
+    public static final String SAVE = "save";
+
+    /**
+     * The name of the event for rebuilding the view of a loaded document.
+     */
+    public static final String LOAD_VIEW = "loadView";
+
+    /**
+     * The name of the event for painting the map background and edges.
+     */
+    public static final String PAINT = "paint";
+
+    /**
+     * The name of the event for one step of dragging a room.
+     */
+    public static final String DRAG_ROOM = "dragRoom";
+
+    /**
+     * The name of the event for one step of sizing a room.
+     */
+    public static final String SIZE_ROOM = "sizeRoom";
+
+    /**
+     * The name of the event for one step of dragging an edge.
+     */
+    public static final String DRAG_EDGE = "dragEdge";
+
+    /**
+     * The name of the event for completing a drag when the mouse is
+     * released.
+     */
+    public static final String DROP = "drop";
+
+    /**
+     * The name of the event for computing the distances of a
+     * DistanceOracle.
+     */
+    public static final String BUILD_ORACLE = "buildOracle";
+
+    /**
+     * The name of the event for computing a force-directed layout.
+     */
+    public static final String FORCE_LAYOUT = "forceLayout";
+
+    /**
+     * The name of the event for computing a compass layout.
+     */
+    public static final String COMPASS_LAYOUT = "compassLayout";
+
+    /**
+     * The name of the event for rerouting the edges of a map.
+     */
+    public static final String ROUTE_EDGES = "routeEdges";
+
+    /**
+     * The name of the event for finding the rooms that overlap.
+     */
+    public static final String DETECT_OVERLAPS = "detectOverlaps";
+
+    /**
+     * The name of the event for pushing overlapping rooms apart.
+     */
+    public static final String SEPARATE_ROOMS = "separateRooms";
+
+    /**
+     * The name of the event for building the word index of the rooms.
+     */
+    public static final String INDEX_TEXT = "indexText";
+
+    /**
+     * The name of the event for finding the rooms that contain words.
+     */
+    public static final String FIND_ROOMS = "findRooms";
+
+    /**
+     * The name of the event for building the trigram index of the room
+     * names.
+     */
+    public static final String INDEX_NAMES = "indexNames";
+
+    /**
+     * The name of the event for finding the rooms with names like a name.
+     */
+    public static final String FIND_NAME = "findName";
+
+    /**
+     * The name of the event for merging a duplicate room into another.
+     */
+    public static final String MERGE_ROOMS = "mergeRooms";
+
+    /**
+     * The name of the event for comparing two maps.
+     */
+    public static final String DIFF_MAPS = "diffMaps";
+
+    /**
+     * The name of the event for merging the changes made to two copies of
+     * a map.
+     */
+    public static final String MERGE_MAPS = "mergeMaps";
+
+    /**
+     * The inactive event returned when recording is disabled.
+     */
+    protected static final OperationEvent INACTIVE_EVENT = new OperationEvent( null );
+
+
+    // **********************************************************************
+    // *********************      Class Variables       *********************
+    // **********************************************************************
+
+    /**
+     * The recorder that writes events; null if recording is disabled.
+     */
+    protected static final Recorder c_oRecorder = Recorder.create();
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The name of the event; null if the event is inactive.
+     */
+    protected String m_strName;
+
+    /**
+     * The wall clock time (in milliseconds) at which the operation began.
+     */
+    protected long m_lStartMillis;
+
+    /**
+     * The value of the nanosecond timer when the operation began.
+     */
+    protected long m_lStartNanos;
+
+    /**
+     * The duration of the operation in microseconds (set when the event is
+     * committed).
+     */
+    protected long m_lDuration;
+
+    /**
+     * The name of the thread that performed the operation (set when the
+     * event is committed).
+     */
+    protected String m_strThread;
+
+    /**
+     * The attributes of the event formatted as name=value pairs.
+     */
+    protected StringBuilder m_sbAttributes;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new OperationEvent object that begins now.
+     *
+     * @param  strName  The name of the event; null for the inactive event.
+     */
+
+    protected OperationEvent( String strName )
+    {
+        // Initialize instance variables
+        m_strName = strName;
+        if( strName != null )
+        {
+            m_lStartMillis = System.currentTimeMillis();
+            m_lStartNanos = System.nanoTime();
+            m_sbAttributes = new StringBuilder();
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Begins a new event.
+     *
+     * @param  strName  The name of the event.
+     *
+     * @return  The new event, or the inactive event if recording is
+     *     disabled.
+     *
+     * @exception  IllegalArgumentException  If strName is null.
+     */
+
+    public static OperationEvent begin( String strName )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( strName == null )
+            throw new IllegalArgumentException();
+
+        // Only create an event if events are being recorded
+        if( c_oRecorder == null )
+            return( INACTIVE_EVENT );
+        return( new OperationEvent( strName ) );
+    }
+
+    /**
+     * Indicates if events are being recorded.
+     *
+     * @return  A flag indicating if events are being recorded.
+     */
+
+    public static boolean isRecording()
+    {
+        // Events are recorded if there is a recorder
+        return( c_oRecorder != null );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Indicates if this event will be recorded.
+     *
+     * @return  A flag indicating if this event will be recorded.
+     */
+
+    public boolean isEnabled()
+    {
+        // The inactive event has no name
+        return( m_strName != null );
+    }
+
+    /**
+     * Sets an attribute of this event.
+     *
+     * @param  strAttribute  The name of the attribute.
+     * @param  lValue  The value of the attribute.
+     */
+
+    public void set( String strAttribute, long lValue )
+    {
+        // Append the attribute to an active event
+        if( m_strName != null )
+            m_sbAttributes.append( ' ' ).append( strAttribute ).append( '=' ).append( lValue );
+    }
+
+    /**
+     * Sets an attribute of this event to the time elapsed (in microseconds)
+     * since the operation began.  This is used to mark the end of each
+     * phase of an operation.
+     *
+     * @param  strAttribute  The name of the attribute.
+     */
+
+    public void mark( String strAttribute )
+    {
+        // Append the elapsed time to an active event
+        if( m_strName != null )
+            set( strAttribute, (System.nanoTime() - m_lStartNanos) / 1000L );
+    }
+
+    /**
+     * Ends this event and records it.
+     */
+
+    public void commit()
+    {
+        // Make sure the event is active
+        if( m_strName == null )
+            return;
+
+        // Complete the event and queue it for writing
+        m_lDuration = (System.nanoTime() - m_lStartNanos) / 1000L;
+        m_strThread = EventQueue.isDispatchThread() ? "EDT" : Thread.currentThread().getName();
+        c_oRecorder.record( this );
+    }
+
+
+    // **********************************************************************
+    // *********************          Threads           *********************
+    // **********************************************************************
+
+    /**
+     * The thread that writes recorded events to the events file.
+     */
+
+    protected static class Recorder
+        extends Thread
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The writer for the events file.
+         */
+        private BufferedWriter m_oWriter;
+
+        /**
+         * The events waiting to be written.
+         */
+        private BlockingQueue<OperationEvent> m_aoPending;
+
+        /**
+         * The format of the time at which each operation began.
+         */
+        private SimpleDateFormat m_oDateFormat;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new Recorder object.
+         *
+         * @param  oWriter  The writer for the events file.
+         */
+
+        private Recorder( BufferedWriter oWriter )
+        {
+            // Initialize the thread
+            super( "IFMap Event Recorder" );
+            setDaemon( true );
+
+            // Initialize instance variables
+            m_oWriter = oWriter;
+            m_aoPending = new LinkedBlockingQueue<OperationEvent>();
+            m_oDateFormat = new SimpleDateFormat( "yyyy-MM-dd HH:mm:ss.SSS" );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------     Public Class Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Creates and starts the recorder if recording is enabled.
+         *
+         * @return  The recorder, or null if recording is disabled or the
+         *     events file cannot be opened.
+         */
+
+        public static Recorder create()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            final Recorder oRecorder;  // The new recorder
+            String         strFile;    // Name of the events file
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            // Make sure recording is enabled
+            strFile = System.getProperty( PROP_EVENTS_FILE );
+            if( strFile == null || strFile.length() == 0 )
+                return( null );
+
+            // Open the events file (appending to any earlier sessions) and
+            // start the recorder
+            try
+            {
+                oRecorder = new Recorder( new BufferedWriter( new FileWriter( strFile, true ) ) );
+            }
+            catch( IOException e )
+            {
+                System.err.println( e.getMessage() );
+                return( null );
+            }
+            oRecorder.start();
+
+            // Write any pending events when the application exits
+            Runtime.getRuntime().addShutdownHook( new Thread()
+            {
+                public void run()
+                {
+                    oRecorder.drain();
+                }
+            } );
+            return( oRecorder );
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------   Public Instance Methods  ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Queues the specified committed event to be written.
+         *
+         * @param  oEvent  The event to be written.
+         */
+
+        public void record( OperationEvent oEvent )
+        {
+            // Queue the event
+            m_aoPending.offer( oEvent );
+        }
+
+        /**
+         * Writes all pending events and flushes the events file.
+         */
+
+        public synchronized void drain()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            OperationEvent oEvent;  // The next pending event
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            try
+            {
+                // Write each pending event
+                while( (oEvent = m_aoPending.poll()) != null )
+                    write( oEvent );
+                m_oWriter.flush();
+            }
+            catch( IOException e )
+            {
+                System.err.println( e.getMessage() );
+            }
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------      Thread Overrides      ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.lang.Thread#run()  run
+         */
+
+        public void run()
+        {
+            /////////////////////////////////////////////////////////////////
+            // VARIABLE DECLARATIONS                                       //
+
+            OperationEvent oEvent;  // The next pending event
+
+            //                                                             //
+            /////////////////////////////////////////////////////////////////
+
+            try
+            {
+                // Wait for each event, write it, and write any others that
+                // arrived in the meantime
+                while( true )
+                {
+                    oEvent = m_aoPending.take();
+                    synchronized( this )
+                    {
+                        write( oEvent );
+                    }
+                    drain();
+                }
+            }
+            catch( IOException e )
+            {
+                System.err.println( e.getMessage() );
+            }
+            catch( InterruptedException e )
+            {
+                // The recorder was stopped
+            }
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Private Instance Methods  ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Writes the specified event as a single line.
+         *
+         * @param  oEvent  The event to be written.
+         *
+         * @exception  IOException  If an I/O error occurs.
+         */
+
+        private void write( OperationEvent oEvent )
+            throws IOException
+        {
+            // Write the start time, duration, thread, name, and attributes
+            m_oWriter.write( m_oDateFormat.format( new Date( oEvent.m_lStartMillis ) ) );
+            m_oWriter.write( " " + oEvent.m_lDuration + "us " + oEvent.m_strThread + " " + oEvent.m_strName );
+            m_oWriter.write( oEvent.m_sbAttributes.toString() );
+            m_oWriter.newLine();
+        }
+    }
+}
@@ -0,0 +1,1060 @@
+/*
+ * OverlapDetector.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+
+/**
+ * The object that finds the rooms of a Map that overlap one another, and
+ * computes the smallest moves that push them apart.  Rooms overlap when
+ * their bounds share some area; rooms that only touch do not overlap.
+ *
+ * <p>All overlaps are found by sweeping a vertical line across the map
+ * from left to right.  The rooms the line crosses are kept in horizontal
+ * bands by the rows of the map they cover, and each room the line reaches
+ * is compared only with the rooms in its own bands, so that the work grows
+ * with the number of rooms and the overlaps found rather than with the
+ * square of the number of rooms.  Rooms the line has passed are dropped
+ * from a band as the band is next searched.
+ *
+ * <p>The rooms are kept in the order the line reaches them, by their left
+ * sides, and the detector keeps the number of rooms each room overlaps.
+ * After the sweep only the rooms that were added, removed, moved, or sized
+ * are checked again: the rooms a changed room may overlap are those whose
+ * left sides lie within the width of the widest room to the left of its
+ * right side, which are found in the order by a binary search.  The
+ * detector listens to the Map for rooms being added and removed, and finds
+ * the rooms that moved by comparing their bounds with those it kept when
+ * it is updated, since moving a room is not reported to the listeners of
+ * the Map.  When many rooms changed, as after a layout, the map is swept
+ * again.  The detector is updated on the thread that edits the Map.
+ */
+
+public class OverlapDetector
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The height in pixels of the bands of the sweep.
+     */
+    protected static final int BAND_SIZE = RoomUI.MIN_ROOM_HEIGHT * 4;
+
+    /**
+     * The largest number of bands of the sweep; the bands of a very tall
+     * map are made taller.
+     */
+    protected static final int MAX_BANDS = 65536;
+
+    /**
+     * The largest number of changed rooms checked by an update; more
+     * changed rooms are found by sweeping the map again.
+     */
+    protected static final int MAX_CHANGED_ROOMS = 256;
+
+    /**
+     * The largest number of times one room is pushed while the rooms are
+     * separated.
+     */
+    protected static final int MAX_PUSHES = 256;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map whose rooms are checked.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The room in each slot of the detector, or null if the slot is free.
+     */
+    protected Room[] m_aoRooms;
+
+    /**
+     * The bounds of the room in each slot when it was last checked.
+     */
+    protected Rectangle[] m_arectBounds;
+
+    /**
+     * The number of rooms the room in each slot overlaps.
+     */
+    protected int[] m_anCounts;
+
+    /**
+     * The number of slots used, including those freed since the last
+     * sweep.
+     */
+    protected int m_nSlotCount;
+
+    /**
+     * The slot of each room.
+     */
+    protected IdentityHashMap<Room, Integer> m_oSlots;
+
+    /**
+     * The slots of the rooms in order of their left sides, each combined
+     * with the left side of its room (see getOrderKey).
+     */
+    protected long[] m_alOrder;
+
+    /**
+     * The number of rooms in the order.
+     */
+    protected int m_nOrderCount;
+
+    /**
+     * The width of the widest room checked since the last sweep.
+     */
+    protected int m_nMaxWidth;
+
+    /**
+     * The rooms added since the last update.
+     */
+    protected ArrayList<Room> m_aoAddedRooms;
+
+    /**
+     * The region of the rooms that began or stopped overlapping as rooms
+     * were removed since the last update, or null if it is empty.
+     */
+    protected Rectangle m_rectRemovedChanged;
+
+    /**
+     * The sum of the number of rooms each room overlaps, which counts each
+     * overlapping pair twice.
+     */
+    protected int m_nOverlapSum;
+
+    /**
+     * Indicates if the map is to be swept by the next update.
+     */
+    protected boolean m_bSweepNeeded;
+
+    /**
+     * The number of rooms checked by the last update.
+     */
+    protected int m_nLastCheckedCount;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new OverlapDetector for the specified Map.  The rooms
+     * are not checked until the detector is first updated.
+     *
+     * @param  oMap  The Map whose rooms are to be checked.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public OverlapDetector( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_aoRooms = new Room[ 0 ];
+        m_arectBounds = new Rectangle[ 0 ];
+        m_anCounts = new int[ 0 ];
+        m_nSlotCount = 0;
+        m_oSlots = new IdentityHashMap<Room, Integer>();
+        m_alOrder = new long[ 0 ];
+        m_nOrderCount = 0;
+        m_nMaxWidth = 0;
+        m_aoAddedRooms = new ArrayList<Room>();
+        m_rectRemovedChanged = null;
+        m_nOverlapSum = 0;
+        m_bSweepNeeded = true;
+        m_nLastCheckedCount = 0;
+
+        // Listen for changes to the Map
+        m_oMap.addMapListener( this );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Indicates if rooms were added or removed, or the Map was reset, since
+     * the last update.  Rooms that moved are not known until the detector
+     * is updated.
+     *
+     * @return  true if the detector must be updated; otherwise false.
+     */
+
+    public boolean isUpdateNeeded()
+    {
+        // Return the flag
+        return( m_bSweepNeeded || !m_aoAddedRooms.isEmpty() || m_rectRemovedChanged != null );
+    }
+
+    /**
+     * Finds the overlaps that began or ended since the last update: those
+     * of the rooms added, removed, moved, or sized since.
+     *
+     * @return  The region of the map covering each room that began or
+     *     stopped overlapping other rooms, or null if no room did.
+     */
+
+    public Rectangle update()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rectChanged,  // Region of rooms that changed state
+                  rectSwept;    // Region found by sweeping the rooms
+        int[]     anChanged;    // Slots of the rooms that changed
+        int       nChanged,     // Number of rooms that changed
+                  nSlot,        // Slot of a room
+                  nI;           // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Sweep the map if it was reset
+        if( m_bSweepNeeded )
+            return( sweep() );
+
+        // Find the rooms that moved or were sized
+        anChanged = new int[ MAX_CHANGED_ROOMS ];
+        nChanged = 0;
+        for( nSlot = 0; nSlot < m_nSlotCount && nChanged + m_aoAddedRooms.size() <= MAX_CHANGED_ROOMS; nSlot++ )
+        {
+            if( m_aoRooms[ nSlot ] == null || m_arectBounds[ nSlot ].equals( m_aoRooms[ nSlot ].m_rectBounds ) )
+                continue;
+            if( nChanged < MAX_CHANGED_ROOMS )
+                anChanged[ nChanged ] = nSlot;
+            nChanged++;
+        }
+        rectChanged = m_rectRemovedChanged;
+        m_rectRemovedChanged = null;
+
+        // Sweep the rooms again, with the added rooms, if many rooms changed
+        if( nChanged + m_aoAddedRooms.size() > MAX_CHANGED_ROOMS )
+        {
+            for( final Room oRoom : m_aoAddedRooms )
+                addSlot( oRoom );
+            m_aoAddedRooms.clear();
+            rectSwept = sweepSlots();
+            return( rectSwept != null ? EdgeRouter.addBounds( rectChanged, rectSwept ) : rectChanged );
+        }
+
+        // Remove the overlaps of the changed rooms where they were, and give
+        // the added rooms slots
+        for( nI = 0; nI < nChanged; nI++ )
+            rectChanged = unlinkRoom( anChanged[ nI ], rectChanged );
+        for( final Room oRoom : m_aoAddedRooms )
+            anChanged[ nChanged++ ] = addSlot( oRoom );
+        m_aoAddedRooms.clear();
+        // Add the overlaps of the changed and added rooms where they are now
+        for( nI = 0; nI < nChanged; nI++ )
+        {
+            nSlot = anChanged[ nI ];
+            m_arectBounds[ nSlot ].setBounds( m_aoRooms[ nSlot ].m_rectBounds );
+            rectChanged = linkRoom( nSlot, rectChanged );
+        }
+        m_nLastCheckedCount = nChanged;
+        return( rectChanged );
+    }
+
+    /**
+     * Indicates if a room overlaps another room, as of the last update.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  true if the room overlaps another room; otherwise false.
+     */
+
+    public boolean isOverlapping( Room oRoom )
+    {
+        // Look up the room
+        Integer oSlot = m_oSlots.get( oRoom );
+        return( oSlot != null && m_anCounts[ oSlot.intValue() ] > 0 );
+    }
+
+    /**
+     * Gets the rooms that overlap another room, as of the last update.
+     *
+     * @return  The overlapping rooms, in no particular order.
+     */
+
+    public Room[] getOverlappingRooms()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<Room> aoRooms;  // Overlapping rooms
+        int             nSlot;    // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Collect the rooms that overlap any room
+        aoRooms = new ArrayList<Room>();
+        for( nSlot = 0; nSlot < m_nSlotCount; nSlot++ )
+        {
+            if( m_anCounts[ nSlot ] > 0 )
+                aoRooms.add( m_aoRooms[ nSlot ] );
+        }
+        return( aoRooms.toArray( new Room[ aoRooms.size() ] ) );
+    }
+
+    /**
+     * Gets the number of pairs of rooms that overlap, as of the last
+     * update.
+     *
+     * @return  The number of overlapping pairs.
+     */
+
+    public int getOverlapCount()
+    {
+        // Each pair is counted for both of its rooms
+        return( m_nOverlapSum / 2 );
+    }
+
+    /**
+     * Gets the number of rooms checked by the last update: every room if
+     * the map was swept, or only the rooms that changed.
+     *
+     * @return  The number of rooms checked.
+     */
+
+    public int getLastCheckedCount()
+    {
+        // Return the number of rooms
+        return( m_nLastCheckedCount );
+    }
+
+    /**
+     * Computes new locations for the overlapping rooms, as of the last
+     * update, that push them apart.  Each room is pushed left, right, up,
+     * or down, whichever is the shortest move that clears the rooms it
+     * overlaps, by a multiple of the grid size; a room is not pushed to a
+     * negative coordinate.  A pushed room that comes to overlap other rooms
+     * is pushed again the same way, so that it cannot be pushed back and
+     * forth between two rooms, up to a limit, so a few overlaps may remain
+     * in a crowded map.  The rooms are not moved.
+     *
+     * @return  The new location of each room to be moved.
+     */
+
+    public LinkedHashMap<Room, Point> computeSeparation()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        LinkedHashMap<Room, Point> oLocations;  // New locations of the moved rooms
+        Rectangle[]                arect;       // Bounds of each room as pushed
+        Integer[]                  aoQueue;     // Slots of the rooms to be pushed
+        long[]                     alOrder;     // Rooms as pushed by left side
+        Rectangle                  rect,        // Bounds of a pushed room
+                                   rectOthers;  // Bounds of the rooms it overlaps
+        int[][]                    aanMoves;    // Moves that clear the rooms
+        int                        nSlot,       // Slot of a pushed room
+                                   nDirection,  // Way the room is pushed
+                                   nPushes,     // Times the room was pushed
+                                   nI;          // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Push copies of the bounds and order, leaving those kept as they are
+        arect = Arrays.copyOf( m_arectBounds, m_nSlotCount );
+        alOrder = Arrays.copyOf( m_alOrder, m_nOrderCount );
+
+        // Push each overlapping room, those furthest down and right first,
+        // until it overlaps no other room
+        aoQueue = new Integer[ m_nSlotCount ];
+        nI = 0;
+        for( nSlot = 0; nSlot < m_nSlotCount; nSlot++ )
+        {
+            if( m_anCounts[ nSlot ] > 0 )
+                aoQueue[ nI++ ] = Integer.valueOf( nSlot );
+        }
+        aoQueue = Arrays.copyOf( aoQueue, nI );
+        Arrays.sort( aoQueue, new PositionComparator( m_aoRooms, m_arectBounds ) );
+        oLocations = new LinkedHashMap<Room, Point>();
+        for( nI = aoQueue.length - 1; nI >= 0; nI-- )
+        {
+            nSlot = aoQueue[ nI ].intValue();
+            rect = new Rectangle( arect[ nSlot ] );
+            nDirection = -1;
+            for( nPushes = 0; nPushes < MAX_PUSHES; nPushes++ )
+            {
+                // Find the rooms the room overlaps now
+                rectOthers = null;
+                for( final int nOther : findOverlaps( alOrder, alOrder.length, arect, m_nMaxWidth, rect, nSlot ) )
+                    rectOthers = EdgeRouter.addBounds( rectOthers, arect[ nOther ] );
+                if( rectOthers == null )
+                    break;
+
+                // Push the room clear of them, the same way as before unless
+                // that would take it to a negative coordinate
+                aanMoves = getSeparatingMoves( rect, rectOthers );
+                if( nDirection < 0 || rect.x + aanMoves[ nDirection ][ 0 ] < 0 ||
+                    rect.y + aanMoves[ nDirection ][ 1 ] < 0 )
+                    nDirection = getShortestMove( rect, aanMoves );
+                removeOrder( alOrder, alOrder.length, getOrderKey( rect.x, nSlot ) );
+                rect.translate( aanMoves[ nDirection ][ 0 ], aanMoves[ nDirection ][ 1 ] );
+                insertOrder( alOrder, alOrder.length - 1, getOrderKey( rect.x, nSlot ) );
+            }
+            arect[ nSlot ] = rect;
+            if( !rect.getLocation().equals( m_arectBounds[ nSlot ].getLocation() ) )
+                oLocations.put( m_aoRooms[ nSlot ], rect.getLocation() );
+        }
+        return( oLocations );
+    }
+
+    /**
+     * Stops listening to the Map and releases the overlaps kept.
+     */
+
+    public void dispose()
+    {
+        // Stop listening and release the rooms and overlaps
+        m_oMap.removeMapListener( this );
+        m_aoRooms = new Room[ 0 ];
+        m_arectBounds = new Rectangle[ 0 ];
+        m_anCounts = new int[ 0 ];
+        m_nSlotCount = 0;
+        m_oSlots.clear();
+        m_alOrder = new long[ 0 ];
+        m_nOrderCount = 0;
+        m_aoAddedRooms.clear();
+        m_rectRemovedChanged = null;
+        m_nOverlapSum = 0;
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // The new room is checked by the next update, once it is placed
+        if( !m_bSweepNeeded )
+            m_aoAddedRooms.add( oRoom );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Integer oSlot;  // Slot of the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // The room need not be checked if it was never checked
+        if( m_bSweepNeeded || m_aoAddedRooms.remove( oRoom ) )
+            return;
+
+        // Remove the overlaps of the room where it was when last checked,
+        // and free its slot
+        oSlot = m_oSlots.remove( oRoom );
+        if( oSlot != null )
+        {
+            m_rectRemovedChanged = unlinkRoom( oSlot.intValue(), m_rectRemovedChanged );
+            m_aoRooms[ oSlot.intValue() ] = null;
+            m_arectBounds[ oSlot.intValue() ] = null;
+        }
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Sweep the new contents
+        m_bSweepNeeded = true;
+        m_aoAddedRooms.clear();
+        m_rectRemovedChanged = null;
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Discards the rooms and overlaps kept, gives each room of the Map a
+     * slot, and finds every overlap by sweeping the map.
+     *
+     * @return  The region of the map covering each overlapping room, or
+     *     null if no room overlaps another.
+     */
+
+    protected Rectangle sweep()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nI;  // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Give each room a slot
+        m_aoRooms = m_oMap.m_oRoomMap.values().toArray( new Room[ m_oMap.m_oRoomMap.size() ] );
+        m_arectBounds = new Rectangle[ m_aoRooms.length ];
+        m_anCounts = new int[ m_aoRooms.length ];
+        m_nSlotCount = m_aoRooms.length;
+        m_oSlots = new IdentityHashMap<Room, Integer>( m_aoRooms.length * 2 );
+        for( nI = 0; nI < m_aoRooms.length; nI++ )
+        {
+            m_arectBounds[ nI ] = new Rectangle();
+            m_oSlots.put( m_aoRooms[ nI ], Integer.valueOf( nI ) );
+        }
+        m_nOverlapSum = 0;
+        m_aoAddedRooms.clear();
+        m_rectRemovedChanged = null;
+        m_bSweepNeeded = false;
+
+        // Find the overlaps
+        return( sweepSlots() );
+    }
+
+    /**
+     * Finds every overlap between the rooms in the slots by sweeping the
+     * map, taking the current bounds of each room.
+     *
+     * @return  The region of the map covering each room that began or
+     *     stopped overlapping other rooms, or null if no room did.
+     */
+
+    protected Rectangle sweepSlots()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rect,         // Bounds of the room reached
+                  rectOther,    // Bounds of a room in its band
+                  rectChanged;  // Region of rooms that changed state
+        long[]    alOrder;      // Rooms by left side
+        int[][]   aanBands;     // Rooms crossed by the line, by band
+        int[]     anBandSizes,  // Number of rooms in each band
+                  anCounts,     // Overlaps of each room
+                  anBand;       // Rooms of a band
+        int       nOrderCount,  // Number of rooms in the order
+                  nMinY,        // Top of the map
+                  nMaxY,        // Bottom of the map
+                  nBandSize,    // Height of a band
+                  nFirst,       // First band of a room
+                  nLast,        // Last band of a room
+                  nRoom,        // Slot of the room reached
+                  nOther,       // Slot of a room in its band
+                  nI, nJ, nK;   // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Copy the bounds of the rooms and order the rooms by their left
+        // sides
+        alOrder = m_alOrder.length >= m_nSlotCount ? m_alOrder : new long[ m_nSlotCount ];
+        nOrderCount = 0;
+        nMinY = Integer.MAX_VALUE;
+        nMaxY = Integer.MIN_VALUE;
+        m_nMaxWidth = 0;
+        for( nI = 0; nI < m_nSlotCount; nI++ )
+        {
+            if( m_aoRooms[ nI ] == null )
+                continue;
+            rect = m_arectBounds[ nI ];
+            rect.setBounds( m_aoRooms[ nI ].m_rectBounds );
+            alOrder[ nOrderCount++ ] = getOrderKey( rect.x, nI );
+            nMinY = Math.min( nMinY, rect.y );
+            nMaxY = Math.max( nMaxY, rect.y + rect.height );
+            m_nMaxWidth = Math.max( m_nMaxWidth, rect.width );
+        }
+        Arrays.sort( alOrder, 0, nOrderCount );
+
+        // Divide the height of the map into bands
+        nBandSize = BAND_SIZE;
+        if( nOrderCount > 0 && ((long)nMaxY - nMinY) / nBandSize >= MAX_BANDS )
+            nBandSize = (int)(((long)nMaxY - nMinY) / (MAX_BANDS - 1)) + 1;
+        aanBands = new int[ nOrderCount > 0 ? (int)(((long)nMaxY - nMinY) / nBandSize) + 1 : 0 ][];
+        anBandSizes = new int[ aanBands.length ];
+
+        // Sweep the line across the rooms; each room reached is compared
+        // with the rooms the line crosses in each band it covers, and an
+        // overlap is counted in the band of the lower of the two tops so it
+        // is counted once
+        anCounts = new int[ m_aoRooms.length ];
+        for( nI = 0; nI < nOrderCount; nI++ )
+        {
+            nRoom = (int)alOrder[ nI ];
+            rect = m_arectBounds[ nRoom ];
+            if( rect.width <= 0 || rect.height <= 0 )
+                continue;
+            nFirst = (rect.y - nMinY) / nBandSize;
+            nLast = (rect.y + rect.height - 1 - nMinY) / nBandSize;
+            for( nJ = nFirst; nJ <= nLast; nJ++ )
+            {
+                // Compare the room with the rooms of the band, dropping those
+                // the line has passed
+                anBand = aanBands[ nJ ];
+                nK = 0;
+                while( nK < anBandSizes[ nJ ] )
+                {
+                    nOther = anBand[ nK ];
+                    rectOther = m_arectBounds[ nOther ];
+                    if( rectOther.x + rectOther.width <= rect.x )
+                    {
+                        anBand[ nK ] = anBand[ --anBandSizes[ nJ ] ];
+                        continue;
+                    }
+                    if( rectOther.y < rect.y + rect.height && rect.y < rectOther.y + rectOther.height &&
+                        (Math.max( rect.y, rectOther.y ) - nMinY) / nBandSize == nJ )
+                    {
+                        anCounts[ nRoom ]++;
+                        anCounts[ nOther ]++;
+                    }
+                    nK++;
+                }
+
+                // Add the room to the band
+                if( anBand == null )
+                    aanBands[ nJ ] = anBand = new int[ 8 ];
+                else if( anBandSizes[ nJ ] == anBand.length )
+                    aanBands[ nJ ] = anBand = Arrays.copyOf( anBand, anBand.length * 2 );
+                anBand[ anBandSizes[ nJ ]++ ] = nRoom;
+            }
+        }
+
+        // Replace the overlaps kept, noting the rooms that began or stopped
+        // overlapping
+        m_nOverlapSum = 0;
+        rectChanged = null;
+        for( nI = 0; nI < m_nSlotCount; nI++ )
+        {
+            m_nOverlapSum += anCounts[ nI ];
+            if( (anCounts[ nI ] > 0) != (m_anCounts[ nI ] > 0) )
+                rectChanged = EdgeRouter.addBounds( rectChanged, m_arectBounds[ nI ] );
+        }
+        m_anCounts = anCounts;
+        m_alOrder = alOrder;
+        m_nOrderCount = nOrderCount;
+        m_nLastCheckedCount = nOrderCount;
+        return( rectChanged );
+    }
+
+    /**
+     * Gives a room the next free slot, growing the slots if necessary.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  The slot of the room.
+     */
+
+    protected int addSlot( Room oRoom )
+    {
+        // Grow the slots if they are full
+        if( m_nSlotCount == m_aoRooms.length )
+        {
+            m_aoRooms = Arrays.copyOf( m_aoRooms, m_nSlotCount * 2 + 16 );
+            m_arectBounds = Arrays.copyOf( m_arectBounds, m_aoRooms.length );
+            m_anCounts = Arrays.copyOf( m_anCounts, m_aoRooms.length );
+        }
+
+        // Take the next slot; the room is given its bounds when it is
+        // checked
+        m_aoRooms[ m_nSlotCount ] = oRoom;
+        m_arectBounds[ m_nSlotCount ] = new Rectangle();
+        m_anCounts[ m_nSlotCount ] = 0;
+        m_oSlots.put( oRoom, Integer.valueOf( m_nSlotCount ) );
+        return( m_nSlotCount++ );
+    }
+
+    /**
+     * Removes a room from the order and removes its overlaps with the rooms
+     * in the order, by its bounds when it was last checked.
+     *
+     * @param  nSlot  The slot of the room.
+     * @param  rectChanged  The region of rooms that began or stopped
+     *     overlapping, or null if it is empty.
+     *
+     * @return  The region, including the rooms that stopped overlapping.
+     */
+
+    protected Rectangle unlinkRoom( int nSlot, Rectangle rectChanged )
+    {
+        // Remove the room, then each overlap with the rooms that remain
+        m_nOrderCount = removeOrder( m_alOrder, m_nOrderCount, getOrderKey( m_arectBounds[ nSlot ].x, nSlot ) );
+        for( final int nOther : findOverlaps( m_alOrder, m_nOrderCount, m_arectBounds, m_nMaxWidth,
+            m_arectBounds[ nSlot ], nSlot ) )
+        {
+            rectChanged = adjustOverlapCount( nOther, -1, rectChanged );
+            rectChanged = adjustOverlapCount( nSlot, -1, rectChanged );
+        }
+        return( rectChanged );
+    }
+
+    /**
+     * Adds the overlaps of a room with the rooms in the order, by its
+     * current bounds, and adds it to the order.
+     *
+     * @param  nSlot  The slot of the room.
+     * @param  rectChanged  The region of rooms that began or stopped
+     *     overlapping, or null if it is empty.
+     *
+     * @return  The region, including the rooms that began overlapping.
+     */
+
+    protected Rectangle linkRoom( int nSlot, Rectangle rectChanged )
+    {
+        // Add each overlap with the rooms in the order, then the room
+        m_nMaxWidth = Math.max( m_nMaxWidth, m_arectBounds[ nSlot ].width );
+        for( final int nOther : findOverlaps( m_alOrder, m_nOrderCount, m_arectBounds, m_nMaxWidth,
+            m_arectBounds[ nSlot ], nSlot ) )
+        {
+            rectChanged = adjustOverlapCount( nOther, 1, rectChanged );
+            rectChanged = adjustOverlapCount( nSlot, 1, rectChanged );
+        }
+        if( m_nOrderCount == m_alOrder.length )
+            m_alOrder = Arrays.copyOf( m_alOrder, m_nOrderCount * 2 + 16 );
+        m_nOrderCount = insertOrder( m_alOrder, m_nOrderCount, getOrderKey( m_arectBounds[ nSlot ].x, nSlot ) );
+        return( rectChanged );
+    }
+
+    /**
+     * Changes the number of rooms a room overlaps by an amount.
+     *
+     * @param  nSlot  The slot of the room.
+     * @param  nDelta  The number of overlaps gained, or lost if negative.
+     * @param  rectChanged  The region of rooms that began or stopped
+     *     overlapping, or null if it is empty.
+     *
+     * @return  The region, including the room if it began or stopped
+     *     overlapping.
+     */
+
+    protected Rectangle adjustOverlapCount( int nSlot, int nDelta, Rectangle rectChanged )
+    {
+        // Change the number of overlaps, and include the room in the region
+        // if it changed state
+        int nOld = m_anCounts[ nSlot ];
+        m_anCounts[ nSlot ] += nDelta;
+        m_nOverlapSum += nDelta;
+        if( (nOld > 0) != (m_anCounts[ nSlot ] > 0) )
+            rectChanged = EdgeRouter.addBounds( rectChanged, m_arectBounds[ nSlot ] );
+        return( rectChanged );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Finds the rooms in an order that overlap a rectangle.
+     *
+     * @param  alOrder  The rooms in order of their left sides.
+     * @param  nOrderCount  The number of rooms in the order.
+     * @param  arect  The bounds of the room in each slot.
+     * @param  nMaxWidth  The width of the widest room in the order.
+     * @param  rect  The rectangle.
+     * @param  nExclude  The slot of a room not to be included.
+     *
+     * @return  The slots of the rooms that overlap the rectangle.
+     */
+
+    protected static int[] findOverlaps( long[] alOrder, int nOrderCount, Rectangle[] arect, int nMaxWidth,
+        Rectangle rect, int nExclude )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int[] anFound;  // Slots of the rooms found
+        int   nFound,   // Number of rooms found
+              nSlot,    // Slot of a room
+              nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Search from the first room whose left side is within the widest
+        // room of the rectangle until the rooms begin right of it
+        anFound = new int[ 8 ];
+        nFound = 0;
+        nI = -Arrays.binarySearch( alOrder, 0, nOrderCount,
+            getOrderKey( (int)Math.max( (long)rect.x - nMaxWidth, Integer.MIN_VALUE ), -1 ) ) - 1;
+        for( ; nI < nOrderCount && (int)(alOrder[ nI ] >> 32) < rect.x + rect.width; nI++ )
+        {
+            nSlot = (int)alOrder[ nI ];
+            if( nSlot == nExclude || !arect[ nSlot ].intersects( rect ) )
+                continue;
+            if( nFound == anFound.length )
+                anFound = Arrays.copyOf( anFound, nFound * 2 );
+            anFound[ nFound++ ] = nSlot;
+        }
+        return( Arrays.copyOf( anFound, nFound ) );
+    }
+
+    /**
+     * Gets the key ordering a room by its left side.
+     *
+     * @param  nX  The left side of the room.
+     * @param  nSlot  The slot of the room, or -1 for a key ordered before
+     *     every room with the same left side.
+     *
+     * @return  The key.
+     */
+
+    protected static long getOrderKey( int nX, int nSlot )
+    {
+        // Combine the left side with the slot
+        return( ((long)nX << 32) + nSlot );
+    }
+
+    /**
+     * Inserts a key into an order.  The order must have room for it.
+     *
+     * @param  alOrder  The order.
+     * @param  nOrderCount  The number of keys in the order.
+     * @param  lKey  The key.
+     *
+     * @return  The new number of keys in the order.
+     */
+
+    protected static int insertOrder( long[] alOrder, int nOrderCount, long lKey )
+    {
+        // Shift the later keys up to make room for the key
+        int nI = -Arrays.binarySearch( alOrder, 0, nOrderCount, lKey ) - 1;
+        System.arraycopy( alOrder, nI, alOrder, nI + 1, nOrderCount - nI );
+        alOrder[ nI ] = lKey;
+        return( nOrderCount + 1 );
+    }
+
+    /**
+     * Removes a key from an order.
+     *
+     * @param  alOrder  The order.
+     * @param  nOrderCount  The number of keys in the order.
+     * @param  lKey  The key.
+     *
+     * @return  The new number of keys in the order.
+     */
+
+    protected static int removeOrder( long[] alOrder, int nOrderCount, long lKey )
+    {
+        // Shift the later keys down over the key
+        int nI = Arrays.binarySearch( alOrder, 0, nOrderCount, lKey );
+        if( nI < 0 )
+            return( nOrderCount );
+        System.arraycopy( alOrder, nI + 1, alOrder, nI, nOrderCount - nI - 1 );
+        return( nOrderCount - 1 );
+    }
+
+    /**
+     * Gets the moves right, down, left, and up, each a multiple of the grid
+     * size, that take a room clear of a rectangle.
+     *
+     * @param  rect  The bounds of the room.
+     * @param  rectOthers  The rectangle to be cleared.
+     *
+     * @return  The horizontal and vertical distance of each move.
+     */
+
+    protected static int[][] getSeparatingMoves( Rectangle rect, Rectangle rectOthers )
+    {
+        // Round the overlap on each side up to the grid
+        return( new int[][] {
+            { roundUpToGrid( rectOthers.x + rectOthers.width - rect.x ), 0 },
+            { 0, roundUpToGrid( rectOthers.y + rectOthers.height - rect.y ) },
+            { -roundUpToGrid( rect.x + rect.width - rectOthers.x ), 0 },
+            { 0, -roundUpToGrid( rect.y + rect.height - rectOthers.y ) } } );
+    }
+
+    /**
+     * Gets the shortest of the moves of a room that do not take it to a
+     * negative coordinate.
+     *
+     * @param  rect  The bounds of the room.
+     * @param  aanMoves  The moves right, down, left, and up (see
+     *     getSeparatingMoves).
+     *
+     * @return  The index of the shortest move, the earliest of equal moves.
+     */
+
+    protected static int getShortestMove( Rectangle rect, int[][] aanMoves )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nShortest,  // Index of the shortest move
+            nI;         // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Moving right is always possible, so start from it
+        nShortest = 0;
+        for( nI = 1; nI < aanMoves.length; nI++ )
+        {
+            if( Math.abs( aanMoves[ nI ][ 0 ] ) + Math.abs( aanMoves[ nI ][ 1 ] ) <
+                Math.abs( aanMoves[ nShortest ][ 0 ] ) + Math.abs( aanMoves[ nShortest ][ 1 ] ) &&
+                rect.x + aanMoves[ nI ][ 0 ] >= 0 && rect.y + aanMoves[ nI ][ 1 ] >= 0 )
+                nShortest = nI;
+        }
+        return( nShortest );
+    }
+
+    /**
+     * Rounds a distance up to a multiple of the grid size.
+     *
+     * @param  n  The distance in pixels.
+     *
+     * @return  The smallest multiple of the grid size not less than the
+     *     distance.
+     */
+
+    protected static int roundUpToGrid( int n )
+    {
+        // Round towards positive infinity
+        return( ((Math.max( n, 0 ) + MapUI.GRID_SIZE - 1) / MapUI.GRID_SIZE) * MapUI.GRID_SIZE );
+    }
+
+
+    // **********************************************************************
+    // *********************        Comparators         *********************
+    // **********************************************************************
+
+    /**
+     * The object that orders the slots of rooms from the top of the map to
+     * the bottom, and from left to right within a row.
+     */
+
+    protected static class PositionComparator
+        extends Object
+        implements Comparator<Integer>
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The room in each slot.
+         */
+        protected Room[] m_aoRooms;
+
+        /**
+         * The bounds of the room in each slot.
+         */
+        protected Rectangle[] m_arectBounds;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new PositionComparator.
+         *
+         * @param  aoRooms  The room in each slot.
+         * @param  arectBounds  The bounds of the room in each slot.
+         */
+
+        PositionComparator( Room[] aoRooms, Rectangle[] arectBounds )
+        {
+            // Initialize instance variables
+            m_aoRooms = aoRooms;
+            m_arectBounds = arectBounds;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------    Comparator Methods    -----------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.util.Comparator#compare  compare
+         */
+
+        public int compare( Integer oSlot1, Integer oSlot2 )
+        {
+            // Compare the tops, then the left edges, then the identifiers
+            Rectangle rect1 = m_arectBounds[ oSlot1.intValue() ], rect2 = m_arectBounds[ oSlot2.intValue() ];
+            if( rect1.y != rect2.y )
+                return( rect1.y < rect2.y ? -1 : 1 );
+            if( rect1.x != rect2.x )
+                return( rect1.x < rect2.x ? -1 : 1 );
+            return( m_aoRooms[ oSlot1.intValue() ].m_strID.compareTo( m_aoRooms[ oSlot2.intValue() ].m_strID ) );
+        }
+    }
+}
@@ -0,0 +1,996 @@
+/*
+ * ReachabilityAnalyzer.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.Arrays;
+
+/**
+ * The object that tells which rooms of a Map can be reached from a start
+ * room, and which of those are dead ends: rooms from which the start room
+ * cannot be reached again, because the way back is blocked by one-way
+ * edges.  Edges are followed under the same rules as RouteFinder.
+ *
+ * <p>Two spanning trees are kept, one of the rooms reached from the start
+ * room and one of the rooms from which the start room is reached, each
+ * recording the edge by which every room was first reached.  The trees are
+ * updated as the Map is edited, at a cost that depends on the size of the
+ * change rather than the size of the Map:
+ *
+ * <ul>
+ *   <li>Adding an edge extends the trees from the rooms it newly
+ *   connects, visiting only the rooms that become reachable.</li>
+ *   <li>Removing an edge that is not in a tree changes nothing.  Removing
+ *   an edge of a tree detaches the rooms below it, which are reattached
+ *   through any other edge from a room still reached; only the detached
+ *   rooms are visited.</li>
+ * </ul>
+ *
+ * The rooms reached both ways form the strongly connected component of the
+ * start room.  The strongly connected components of the whole Map are
+ * computed on request and kept until the Map is next changed.
+ */
+
+public class ReachabilityAnalyzer
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The tree of rooms reached from the start room.
+     */
+    protected static final int FORWARD = 0;
+
+    /**
+     * The tree of rooms from which the start room is reached.
+     */
+    protected static final int BACKWARD = 1;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map that is analyzed.
+     */
+    protected Map m_oMap;
+
+    /**
+     * The adjacency of the Map.
+     */
+    protected MapGraph m_oGraph;
+
+    /**
+     * Indicates if secret edges may be followed.
+     */
+    protected boolean m_bIncludeSecret;
+
+    /**
+     * The ID of the start room, or null if there is none.  The ID is kept
+     * rather than the room so that the start room survives the Map being
+     * loaded again.
+     */
+    protected String m_strStartRoomID;
+
+    /**
+     * The index of the start room, or MapGraph.NONE if it is not on the
+     * Map.
+     */
+    protected int m_nStartRoom;
+
+    /**
+     * Indicates if the trees must be recomputed before they are next used.
+     */
+    protected boolean m_bStale;
+
+    /**
+     * Indicates which rooms are in each tree, by room index.
+     */
+    protected boolean[][] m_aabReached;
+
+    /**
+     * The edge by which each room was reached in each tree; null for the
+     * start room and for rooms not reached.
+     */
+    protected Edge[][] m_aaoParent;
+
+    /**
+     * The number of rooms in each tree.
+     */
+    protected int[] m_anReachedCount;
+
+    /**
+     * The rooms waiting to be extended or detached.
+     */
+    protected int[] m_anQueue;
+
+    /**
+     * The number of times the rooms reached have changed.  Views compare
+     * it to tell if they must repaint.
+     */
+    protected int m_nChangeCount;
+
+    /**
+     * The strongly connected component of each room, or null if the
+     * components must be computed again.
+     */
+    protected int[] m_anComponent;
+
+    /**
+     * The number of strongly connected components.
+     */
+    protected int m_nComponentCount;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new ReachabilityAnalyzer object for the specified Map.
+     * No start room is set, so no room is reachable until one is.
+     *
+     * @param  oMap  The Map to be analyzed.
+     * @param  bIncludeSecret  Indicates if secret edges may be followed.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public ReachabilityAnalyzer( Map oMap, boolean bIncludeSecret )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_oGraph = oMap.getGraph();
+        m_bIncludeSecret = bIncludeSecret;
+        m_nStartRoom = MapGraph.NONE;
+        m_anReachedCount = new int[ 2 ];
+        m_bStale = true;
+
+        // Listen for changes to the Map (after the adjacency, which is
+        // already listening)
+        m_oMap.addMapListener( this );
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the start room.
+     *
+     * @return  The start room, or null if there is none or it is no longer
+     *     on the Map.
+     */
+
+    public Room getStartRoom()
+    {
+        // Look up the start room
+        return( m_strStartRoomID != null ? m_oMap.getRoom( m_strStartRoomID ) : null );
+    }
+
+    /**
+     * Sets the start room, from which reachability is measured.
+     *
+     * @param  oRoom  The start room, or null for none.
+     */
+
+    public void setStartRoom( Room oRoom )
+    {
+        // Store the ID of the room and recompute the trees
+        m_strStartRoomID = oRoom != null ? oRoom.getID() : null;
+        m_bStale = true;
+    }
+
+    /**
+     * Indicates if secret edges may be followed.
+     *
+     * @return  A flag indicating if secret edges may be followed.
+     */
+
+    public boolean isSecretIncluded()
+    {
+        // Return the flag
+        return( m_bIncludeSecret );
+    }
+
+    /**
+     * Sets whether secret edges may be followed.
+     *
+     * @param  bIncludeSecret  Indicates if secret edges may be followed.
+     */
+
+    public void setSecretIncluded( boolean bIncludeSecret )
+    {
+        // Store the flag and recompute the trees if it changed
+        if( bIncludeSecret != m_bIncludeSecret )
+        {
+            m_bIncludeSecret = bIncludeSecret;
+            m_bStale = true;
+            m_anComponent = null;
+        }
+    }
+
+    /**
+     * Indicates if the specified room can be reached from the start room.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  A flag indicating if the room is reachable; false if there
+     *     is no start room or the room is not on the Map.
+     */
+
+    public boolean isReachable( Room oRoom )
+    {
+        // Look up the room in the forward tree
+        int nRoom = getRoomIndex( oRoom );
+        return( nRoom != MapGraph.NONE && m_aabReached[ FORWARD ][ nRoom ] );
+    }
+
+    /**
+     * Indicates if the start room can be reached from the specified room.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  A flag indicating if the start room can be reached; false
+     *     if there is no start room or the room is not on the Map.
+     */
+
+    public boolean canReturn( Room oRoom )
+    {
+        // Look up the room in the backward tree
+        int nRoom = getRoomIndex( oRoom );
+        return( nRoom != MapGraph.NONE && m_aabReached[ BACKWARD ][ nRoom ] );
+    }
+
+    /**
+     * Indicates if the specified room is a dead end: it can be reached from
+     * the start room, but the start room cannot be reached from it.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  A flag indicating if the room is a dead end.
+     */
+
+    public boolean isDeadEnd( Room oRoom )
+    {
+        // Look up the room in both trees
+        int nRoom = getRoomIndex( oRoom );
+        return( nRoom != MapGraph.NONE && m_aabReached[ FORWARD ][ nRoom ] &&
+            !m_aabReached[ BACKWARD ][ nRoom ] );
+    }
+
+    /**
+     * Gets the number of rooms that can be reached from the start room,
+     * including the start room itself.
+     *
+     * @return  The number of reachable rooms.
+     */
+
+    public int getReachableCount()
+    {
+        // Return the size of the forward tree
+        validate();
+        return( m_anReachedCount[ FORWARD ] );
+    }
+
+    /**
+     * Gets the number of rooms that cannot be reached from the start room.
+     *
+     * @return  The number of unreachable rooms.
+     */
+
+    public int getUnreachableCount()
+    {
+        // Subtract the size of the forward tree from the number of rooms
+        validate();
+        return( m_oMap.m_oRoomMap.size() - m_anReachedCount[ FORWARD ] );
+    }
+
+    /**
+     * Gets the number of times the rooms that can be reached from, or can
+     * reach, the start room have changed.  The count can be compared with
+     * an earlier one to tell if anything shown of the analysis must be
+     * updated.
+     *
+     * @return  The change count.
+     */
+
+    public int getChangeCount()
+    {
+        // Return the count
+        validate();
+        return( m_nChangeCount );
+    }
+
+    /**
+     * Gets the strongly connected component of the specified room.  Two
+     * rooms are in the same component if each can be reached from the
+     * other.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  The number of the component, from zero to one less than the
+     *     number of components, or MapGraph.NONE if the room is not on the
+     *     Map.
+     */
+
+    public int getComponent( Room oRoom )
+    {
+        // Look up the room and compute the components if necessary
+        int nRoom = getRoomIndex( oRoom );
+        if( nRoom == MapGraph.NONE )
+            return( MapGraph.NONE );
+        if( m_anComponent == null )
+            computeComponents();
+        return( m_anComponent[ nRoom ] );
+    }
+
+    /**
+     * Gets the number of strongly connected components of the Map.
+     *
+     * @return  The number of components.
+     */
+
+    public int getComponentCount()
+    {
+        // Compute the components if necessary
+        validate();
+        if( m_anComponent == null )
+            computeComponents();
+        return( m_nComponentCount );
+    }
+
+    /**
+     * Recomputes the trees if the Map has been loaded or cleared, or the
+     * start room or the secret edge setting has changed, since they were
+     * last used.
+     */
+
+    public void validate()
+    {
+        // Recompute the trees if necessary
+        if( m_bStale )
+            rebuild();
+    }
+
+    /**
+     * Stops listening to the Map.
+     */
+
+    public void dispose()
+    {
+        // Stop listening and release the trees
+        m_oMap.removeMapListener( this );
+        m_aabReached = null;
+        m_aaoParent = null;
+        m_anComponent = null;
+        m_bStale = true;
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // Make room for the new index; a new room has no edges, so it can
+        // only be reached if it is the start room
+        m_anComponent = null;
+        if( m_bStale )
+            return;
+        if( oRoom.getID().equals( m_strStartRoomID ) )
+        {
+            m_bStale = true;
+            return;
+        }
+        ensureCapacity();
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Integer oIndex;  // Index of the room
+        int     nDir;    // Tree being updated
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Removing the start room leaves nothing reachable
+        m_anComponent = null;
+        if( m_bStale )
+            return;
+        oIndex = m_oGraph.m_oRoomIndex.get( oRoom.getID() );
+        if( oIndex == null || oIndex.intValue() == m_nStartRoom )
+        {
+            m_bStale = true;
+            return;
+        }
+
+        // Otherwise its edges have been removed already, so it is in
+        // neither tree; clear its index, which may be reused
+        for( nDir = FORWARD; nDir <= BACKWARD; nDir++ )
+        {
+            m_aabReached[ nDir ][ oIndex.intValue() ] = false;
+            m_aaoParent[ nDir ][ oIndex.intValue() ] = null;
+        }
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+        // Extend the trees through the new edge
+        m_anComponent = null;
+        if( m_bStale )
+            return;
+        Integer oIndex = m_oGraph.m_oEdgeIndex.get( oEdge.getID() );
+        if( oIndex != null )
+            extendThrough( oIndex.intValue() );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Integer oStart,  // Index of the start room of the edge
+                oEnd;    // Index of the end room of the edge
+        int     nDir;    // Tree being updated
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // The rooms of the edge are still indexed even when the edge is
+        // removed with one of them
+        m_anComponent = null;
+        if( m_bStale )
+            return;
+        oStart = m_oGraph.m_oRoomIndex.get( oEdge.m_strStartRoomID );
+        oEnd = m_oGraph.m_oRoomIndex.get( oEdge.m_strEndRoomID );
+        if( oStart == null || oEnd == null )
+            return;
+
+        // Detach and reattach the rooms that were reached by the edge
+        for( nDir = FORWARD; nDir <= BACKWARD; nDir++ )
+        {
+            if( m_aaoParent[ nDir ][ oStart.intValue() ] == oEdge )
+                detach( nDir, oStart.intValue() );
+            if( m_aaoParent[ nDir ][ oEnd.intValue() ] == oEdge )
+                detach( nDir, oEnd.intValue() );
+        }
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Integer oIndex;  // Index of the edge
+        int     nEdge,   // Index of the edge
+                nRoom,   // Room reached by the edge
+                nDir,    // Tree being updated
+                nI;      // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Look up the edge
+        m_anComponent = null;
+        if( m_bStale )
+            return;
+        oIndex = m_oGraph.m_oEdgeIndex.get( oEdge.getID() );
+        if( oIndex == null )
+            return;
+        nEdge = oIndex.intValue();
+
+        // Detach the rooms reached by the edge in a direction it may no
+        // longer be followed in, then extend the trees through it in the
+        // directions it may now be followed in
+        for( nDir = FORWARD; nDir <= BACKWARD; nDir++ )
+        {
+            for( nI = 0; nI < 2; nI++ )
+            {
+                nRoom = nI == 0 ? m_oGraph.m_anEdgeStart[ nEdge ] : m_oGraph.m_anEdgeEnd[ nEdge ];
+                if( m_aaoParent[ nDir ][ nRoom ] == oEdge &&
+                    follow( nDir, nEdge, getOtherRoom( nEdge, nRoom ) ) != nRoom )
+                    detach( nDir, nRoom );
+            }
+        }
+        extendThrough( nEdge );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Recompute the trees when next used
+        m_anComponent = null;
+        m_bStale = true;
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Gets the index of the specified room after making sure the trees are
+     * current.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  The index of the room, or MapGraph.NONE if it is not on the
+     *     Map.
+     *
+     * @exception  IllegalArgumentException  If oRoom is null.
+     */
+
+    protected int getRoomIndex( Room oRoom )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oRoom == null )
+            throw new IllegalArgumentException();
+
+        // Make sure the trees are current and look up the room
+        validate();
+        return( m_oGraph.getRoomIndex( oRoom ) );
+    }
+
+    /**
+     * Recomputes both trees from the start room.
+     */
+
+    protected void rebuild()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Room oStartRoom;  // The start room
+        int  nDir;        // Tree being computed
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Allocate empty trees
+        m_oGraph.validate();
+        m_aabReached = new boolean[ 2 ][ m_oGraph.m_aoRooms.length ];
+        m_aaoParent = new Edge[ 2 ][ m_oGraph.m_aoRooms.length ];
+        m_anQueue = new int[ m_oGraph.m_aoRooms.length ];
+        m_anReachedCount[ FORWARD ] = m_anReachedCount[ BACKWARD ] = 0;
+        m_bStale = false;
+        m_nChangeCount++;
+
+        // Grow both trees from the start room, if it is on the Map
+        oStartRoom = getStartRoom();
+        m_nStartRoom = oStartRoom != null ? m_oGraph.getRoomIndex( oStartRoom ) : MapGraph.NONE;
+        if( m_nStartRoom == MapGraph.NONE )
+            return;
+        for( nDir = FORWARD; nDir <= BACKWARD; nDir++ )
+        {
+            m_aabReached[ nDir ][ m_nStartRoom ] = true;
+            m_anReachedCount[ nDir ] = 1;
+            m_anQueue[ 0 ] = m_nStartRoom;
+            extend( nDir, 1 );
+        }
+    }
+
+    /**
+     * Grows the trees if the adjacency has grown.
+     */
+
+    protected void ensureCapacity()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nCapacity,  // Capacity of the adjacency
+            nDir;       // Tree being grown
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Grow the arrays to the capacity of the adjacency
+        nCapacity = m_oGraph.m_aoRooms.length;
+        if( m_anQueue.length >= nCapacity )
+            return;
+        for( nDir = FORWARD; nDir <= BACKWARD; nDir++ )
+        {
+            m_aabReached[ nDir ] = Arrays.copyOf( m_aabReached[ nDir ], nCapacity );
+            m_aaoParent[ nDir ] = Arrays.copyOf( m_aaoParent[ nDir ], nCapacity );
+        }
+        m_anQueue = new int[ nCapacity ];
+    }
+
+    /**
+     * Extends both trees through the specified edge from whichever of its
+     * rooms is in a tree to the other.
+     *
+     * @param  nEdge  The index of the edge.
+     */
+
+    protected void extendThrough( int nEdge )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nFrom,  // Room followed from
+            nTo,    // Room reached
+            nDir,   // Tree being extended
+            nI;     // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Follow the edge from each of its rooms in each tree
+        ensureCapacity();
+        for( nDir = FORWARD; nDir <= BACKWARD; nDir++ )
+        {
+            for( nI = 0; nI < 2; nI++ )
+            {
+                nFrom = nI == 0 ? m_oGraph.m_anEdgeStart[ nEdge ] : m_oGraph.m_anEdgeEnd[ nEdge ];
+                nTo = follow( nDir, nEdge, nFrom );
+                if( nTo != MapGraph.NONE && m_aabReached[ nDir ][ nFrom ] && !m_aabReached[ nDir ][ nTo ] )
+                {
+                    reach( nDir, nTo, m_oGraph.m_aoEdges[ nEdge ] );
+                    m_anQueue[ 0 ] = nTo;
+                    extend( nDir, 1 );
+                }
+            }
+        }
+    }
+
+    /**
+     * Extends a tree from the rooms in the queue to every room that can be
+     * reached from them and is not yet in the tree.
+     *
+     * @param  nDir  The tree to be extended.
+     * @param  nCount  The number of rooms in the queue.
+     */
+
+    protected void extend( int nDir, int nCount )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapGraph oGraph;   // The adjacency of the Map
+        int[]    anEdges;  // Edges incident to the room being extended
+        int      nHead,    // Next room to extend
+                 nRoom,    // Room being extended
+                 nNext,    // Room reached from nRoom
+                 nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Extend the rooms in the order they are reached
+        oGraph = m_oGraph;
+        for( nHead = 0; nHead < nCount; nHead++ )
+        {
+            nRoom = m_anQueue[ nHead ];
+            anEdges = oGraph.m_aanIncident[ nRoom ];
+            for( nI = 0; nI < oGraph.m_anIncidentCount[ nRoom ]; nI++ )
+            {
+                nNext = follow( nDir, anEdges[ nI ], nRoom );
+                if( nNext != MapGraph.NONE && !m_aabReached[ nDir ][ nNext ] )
+                {
+                    reach( nDir, nNext, oGraph.m_aoEdges[ anEdges[ nI ] ] );
+                    m_anQueue[ nCount++ ] = nNext;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a room and the rooms below it from a tree, then puts back
+     * those of them that can still be reached from a room left in the tree.
+     *
+     * @param  nDir  The tree to be updated.
+     * @param  nRoot  The room whose edge in the tree has been lost.
+     */
+
+    protected void detach( int nDir, int nRoot )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapGraph oGraph;     // The adjacency of the Map
+        Edge[]   aoParent;   // Edge by which each room was reached
+        int[]    anEdges;    // Edges incident to a room
+        int      nCount,     // Number of rooms detached
+                 nAttached,  // Number of rooms put back directly
+                 nRoom,      // Room being examined
+                 nOther,     // Other room of an incident edge
+                 nI, nJ;     // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Collect the room and the rooms below it: those reached by an edge
+        // from a room already collected
+        oGraph = m_oGraph;
+        aoParent = m_aaoParent[ nDir ];
+        unreach( nDir, nRoot );
+        m_anQueue[ 0 ] = nRoot;
+        nCount = 1;
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            nRoom = m_anQueue[ nI ];
+            anEdges = oGraph.m_aanIncident[ nRoom ];
+            for( nJ = 0; nJ < oGraph.m_anIncidentCount[ nRoom ]; nJ++ )
+            {
+                nOther = getOtherRoom( anEdges[ nJ ], nRoom );
+                if( nOther != nRoom && aoParent[ nOther ] == oGraph.m_aoEdges[ anEdges[ nJ ] ] )
+                {
+                    unreach( nDir, nOther );
+                    m_anQueue[ nCount++ ] = nOther;
+                }
+            }
+        }
+
+        // Put back, at the front of the queue, each collected room that an
+        // edge leads to from a room still in the tree
+        nAttached = 0;
+        for( nI = 0; nI < nCount; nI++ )
+        {
+            nRoom = m_anQueue[ nI ];
+            anEdges = oGraph.m_aanIncident[ nRoom ];
+            for( nJ = 0; nJ < oGraph.m_anIncidentCount[ nRoom ]; nJ++ )
+            {
+                nOther = getOtherRoom( anEdges[ nJ ], nRoom );
+                if( m_aabReached[ nDir ][ nOther ] && follow( nDir, anEdges[ nJ ], nOther ) == nRoom )
+                {
+                    reach( nDir, nRoom, oGraph.m_aoEdges[ anEdges[ nJ ] ] );
+                    m_anQueue[ nAttached++ ] = nRoom;
+                    break;
+                }
+            }
+        }
+
+        // Put back the rooms that can be reached from those
+        extend( nDir, nAttached );
+    }
+
+    /**
+     * Adds a room to a tree.
+     *
+     * @param  nDir  The tree.
+     * @param  nRoom  The room.
+     * @param  oEdge  The edge by which the room is reached.
+     */
+
+    protected void reach( int nDir, int nRoom, Edge oEdge )
+    {
+        // Mark the room and count the change
+        m_aabReached[ nDir ][ nRoom ] = true;
+        m_aaoParent[ nDir ][ nRoom ] = oEdge;
+        m_anReachedCount[ nDir ]++;
+        m_nChangeCount++;
+    }
+
+    /**
+     * Removes a room from a tree.
+     *
+     * @param  nDir  The tree.
+     * @param  nRoom  The room.
+     */
+
+    protected void unreach( int nDir, int nRoom )
+    {
+        // Unmark the room and count the change
+        m_aabReached[ nDir ][ nRoom ] = false;
+        m_aaoParent[ nDir ][ nRoom ] = null;
+        m_anReachedCount[ nDir ]--;
+        m_nChangeCount++;
+    }
+
+    /**
+     * Gets the room an edge leads to from one of its rooms when growing a
+     * tree.  The forward tree follows edges as the player would; the
+     * backward tree follows them against their direction.
+     *
+     * @param  nDir  The tree being grown.
+     * @param  nEdge  The index of the edge.
+     * @param  nFrom  The index of the room followed from.
+     *
+     * @return  The index of the room reached, or MapGraph.NONE if the edge
+     *     may not be followed from nFrom in that tree.
+     */
+
+    protected int follow( int nDir, int nEdge, int nFrom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nFlags,  // Exits and flags of the edge
+            nStart,  // Start room of the edge
+            nEnd;    // End room of the edge
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Secret edges and edges leading back to the same room are not
+        // followed
+        nFlags = m_oGraph.m_anEdgeFlags[ nEdge ];
+        if( !m_bIncludeSecret && (nFlags & MapGraph.FLAG_SECRET) != 0 )
+            return( MapGraph.NONE );
+        nStart = m_oGraph.m_anEdgeStart[ nEdge ];
+        nEnd = m_oGraph.m_anEdgeEnd[ nEdge ];
+        if( nStart == nEnd )
+            return( MapGraph.NONE );
+
+        // A one-way edge is only followed from its start room forward and
+        // from its end room backward
+        if( nDir == FORWARD ? nFrom == nStart : nFrom == nEnd )
+            return( nDir == FORWARD ? nEnd : nStart );
+        if( (nFlags & MapGraph.FLAG_ONEWAY) == 0 )
+            return( nFrom == nStart ? nEnd : nStart );
+        return( MapGraph.NONE );
+    }
+
+    /**
+     * Gets the other room of an edge.
+     *
+     * @param  nEdge  The index of the edge.
+     * @param  nRoom  The index of one of its rooms.
+     *
+     * @return  The index of its other room.
+     */
+
+    protected int getOtherRoom( int nEdge, int nRoom )
+    {
+        // Return the room at the other end
+        return( m_oGraph.m_anEdgeStart[ nEdge ] == nRoom ? m_oGraph.m_anEdgeEnd[ nEdge ] : m_oGraph.m_anEdgeStart[ nEdge ] );
+    }
+
+    /**
+     * Computes the strongly connected components of the whole Map with
+     * Tarjan's algorithm, using an explicit stack so that long chains of
+     * rooms do not overflow the call stack.
+     */
+
+    protected void computeComponents()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapGraph  oGraph;       // The adjacency of the Map
+        int[]     anOrder,      // Order in which each room was visited
+                  anLow,        // Lowest order reachable from each room
+                  anNextEdge,   // Next incident edge of each visited room
+                  anCall,       // Rooms being visited, innermost last
+                  anStack;      // Rooms visited but not yet in a component
+        boolean[] abOnStack;    // Indicates if a room is on anStack
+        int       nRooms,       // Number of room indices
+                  nVisited,     // Number of rooms visited
+                  nCallDepth,   // Depth of anCall
+                  nStackDepth,  // Depth of anStack
+                  nRoom,        // Room being visited
+                  nNext,        // Room reached from nRoom
+                  nMember,      // Room being added to a component
+                  nRoot;        // Room from which a visit starts
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Allocate the arrays; order 0 means not visited
+        oGraph = m_oGraph;
+        oGraph.validate();
+        nRooms = oGraph.m_nRoomLimit;
+        m_anComponent = new int[ nRooms ];
+        Arrays.fill( m_anComponent, MapGraph.NONE );
+        m_nComponentCount = 0;
+        anOrder = new int[ nRooms ];
+        anLow = new int[ nRooms ];
+        anNextEdge = new int[ nRooms ];
+        anCall = new int[ nRooms ];
+        anStack = new int[ nRooms ];
+        abOnStack = new boolean[ nRooms ];
+        nVisited = nStackDepth = 0;
+
+        // Visit every room not yet visited
+        for( nRoot = 0; nRoot < nRooms; nRoot++ )
+        {
+            if( oGraph.m_aoRooms[ nRoot ] == null || anOrder[ nRoot ] != 0 )
+                continue;
+            anOrder[ nRoot ] = anLow[ nRoot ] = ++nVisited;
+            anStack[ nStackDepth++ ] = nRoot;
+            abOnStack[ nRoot ] = true;
+            anCall[ 0 ] = nRoot;
+            nCallDepth = 1;
+            while( nCallDepth > 0 )
+            {
+                // Follow the next edge of the innermost room
+                nRoom = anCall[ nCallDepth - 1 ];
+                if( anNextEdge[ nRoom ] < oGraph.m_anIncidentCount[ nRoom ] )
+                {
+                    nNext = follow( FORWARD, oGraph.m_aanIncident[ nRoom ][ anNextEdge[ nRoom ]++ ], nRoom );
+                    if( nNext == MapGraph.NONE )
+                        continue;
+                    if( anOrder[ nNext ] == 0 )
+                    {
+                        anOrder[ nNext ] = anLow[ nNext ] = ++nVisited;
+                        anStack[ nStackDepth++ ] = nNext;
+                        abOnStack[ nNext ] = true;
+                        anCall[ nCallDepth++ ] = nNext;
+                    }
+                    else if( abOnStack[ nNext ] )
+                        anLow[ nRoom ] = Math.min( anLow[ nRoom ], anOrder[ nNext ] );
+                    continue;
+                }
+
+                // All edges followed: close a component rooted here, and
+                // pass the lowest order up to the caller
+                nCallDepth--;
+                if( anLow[ nRoom ] == anOrder[ nRoom ] )
+                {
+                    do
+                    {
+                        nMember = anStack[ --nStackDepth ];
+                        abOnStack[ nMember ] = false;
+                        m_anComponent[ nMember ] = m_nComponentCount;
+                    }
+                    while( nMember != nRoom );
+                    m_nComponentCount++;
+                }
+                if( nCallDepth > 0 )
+                    anLow[ anCall[ nCallDepth - 1 ] ] = Math.min( anLow[ anCall[ nCallDepth - 1 ] ], anLow[ nRoom ] );
+            }
+        }
+    }
+}
@@ -0,0 +1,452 @@
+/*
+ * RepaintCoalescer.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/**
+ * The object that accumulates the dirty regions of a component and paints
+ * them once per frame.  Overlapping regions are merged as they are added so
+ * that the pending regions never overlap, and the number of pending regions
+ * is bounded by merging the pair of regions whose union wastes the least
+ * area.  When the frame timer fires, the pending regions are handed to the
+ * RepaintManager of Swing, which paints them together with any other dirty
+ * regions through its back buffer.
+ *
+ * <p>All methods must be called on the event dispatch thread.
+ */
+
+public class RepaintCoalescer
+    extends Object
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The default interval between frames in milliseconds (approximately
+     * 60 frames per second).
+     */
+    public static final int DEFAULT_FRAME_INTERVAL = 16;
+
+    /**
+     * The maximum number of pending regions.
+     */
+    protected static final int MAX_REGIONS = 8;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The component whose dirty regions are accumulated.
+     */
+    protected JComponent m_oComponent;
+
+    /**
+     * The non-overlapping dirty regions waiting to be painted.
+     */
+    protected List<Rectangle> m_aRegions;
+
+    /**
+     * The timer that paints the pending regions once per frame.
+     */
+    protected Timer m_oTimer;
+
+    /**
+     * The number of regions requested to be repainted.
+     */
+    protected long m_nRequestedCount;
+
+    /**
+     * The total area (in square pixels) of the regions requested to be
+     * repainted.
+     */
+    protected long m_nRequestedArea;
+
+    /**
+     * The number of regions actually repainted.
+     */
+    protected long m_nPaintedCount;
+
+    /**
+     * The total area (in square pixels) of the regions actually repainted.
+     */
+    protected long m_nPaintedArea;
+
+    /**
+     * The number of frames in which at least one region was repainted.
+     */
+    protected long m_nFrameCount;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new RepaintCoalescer object that uses the default frame
+     * interval.
+     *
+     * @param  oComponent  The component whose dirty regions are accumulated.
+     *
+     * @exception  IllegalArgumentException  If oComponent is null.
+     */
+
+    public RepaintCoalescer( JComponent oComponent )
+        throws IllegalArgumentException
+    {
+        // Call overloaded constructor
+        this( oComponent, DEFAULT_FRAME_INTERVAL );
+    }
+
+    /**
+     * Constructs a new RepaintCoalescer object.
+     *
+     * @param  oComponent  The component whose dirty regions are accumulated.
+     * @param  nFrameInterval  The interval between frames in milliseconds.
+     *
+     * @exception  IllegalArgumentException  If oComponent is null or if
+     *     nFrameInterval is less than 1.
+     */
+
+    public RepaintCoalescer( JComponent oComponent, int nFrameInterval )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oComponent == null || nFrameInterval < 1 )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oComponent = oComponent;
+        m_aRegions = new ArrayList<Rectangle>( MAX_REGIONS + 1 );
+        m_oTimer = new Timer( nFrameInterval, new FrameListener() );
+        m_oTimer.setRepeats( false );
+        m_oTimer.setCoalesce( true );
+        resetStatistics();
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Adds the specified region to the regions to be repainted in the next
+     * frame.
+     *
+     * @param  rect  The region to be repainted.
+     *
+     * @exception  IllegalArgumentException  If rect is null.
+     */
+
+    public void addDirtyRegion( Rectangle rect )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( rect == null )
+            throw new IllegalArgumentException();
+
+        // Ignore empty regions
+        if( rect.isEmpty() )
+            return;
+
+        // Update the statistics
+        m_nRequestedCount++;
+        m_nRequestedArea += (long)rect.width * rect.height;
+
+        // Add the region and bound the number of pending regions
+        insertRegion( new Rectangle( rect ) );
+        if( m_aRegions.size() > MAX_REGIONS )
+            mergeCheapestPair();
+
+        // Make sure the frame timer is running
+        if( !m_oTimer.isRunning() )
+            m_oTimer.start();
+    }
+
+    /**
+     * Requests that all pending regions be repainted now, rather than at
+     * the end of the frame.
+     */
+
+    public void flush()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle[] arect;  // The regions to be repainted
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Stop the frame timer
+        m_oTimer.stop();
+
+        // Make sure there is something to repaint
+        if( m_aRegions.isEmpty() )
+            return;
+
+        // Take the pending regions (regions added after this point are
+        // deferred to the next frame)
+        arect = m_aRegions.toArray( new Rectangle[ m_aRegions.size() ] );
+        m_aRegions.clear();
+
+        // Pass each region to the RepaintManager, which paints them in a
+        // single pass
+        m_nFrameCount++;
+        for( final Rectangle rect : arect )
+        {
+            m_nPaintedCount++;
+            m_nPaintedArea += (long)rect.width * rect.height;
+            m_oComponent.repaint( 0, rect.x, rect.y, rect.width, rect.height );
+        }
+    }
+
+    /**
+     * Discards all pending regions without repainting them.  This is
+     * appropriate when the entire component is about to be repainted.
+     */
+
+    public void discard()
+    {
+        // Stop the frame timer and discard the pending regions
+        m_oTimer.stop();
+        m_aRegions.clear();
+    }
+
+    /**
+     * Gets the number of regions requested to be repainted.
+     *
+     * @return  The number of regions requested to be repainted.
+     */
+
+    public long getRequestedCount()
+    {
+        // Return the requested region count
+        return( m_nRequestedCount );
+    }
+
+    /**
+     * Gets the total area (in square pixels) of the regions requested to be
+     * repainted.
+     *
+     * @return  The total requested area.
+     */
+
+    public long getRequestedArea()
+    {
+        // Return the requested area
+        return( m_nRequestedArea );
+    }
+
+    /**
+     * Gets the number of regions actually repainted.
+     *
+     * @return  The number of regions actually repainted.
+     */
+
+    public long getPaintedCount()
+    {
+        // Return the painted region count
+        return( m_nPaintedCount );
+    }
+
+    /**
+     * Gets the total area (in square pixels) of the regions actually
+     * repainted.
+     *
+     * @return  The total painted area.
+     */
+
+    public long getPaintedArea()
+    {
+        // Return the painted area
+        return( m_nPaintedArea );
+    }
+
+    /**
+     * Gets the number of frames in which at least one region was
+     * repainted.
+     *
+     * @return  The number of frames.
+     */
+
+    public long getFrameCount()
+    {
+        // Return the frame count
+        return( m_nFrameCount );
+    }
+
+    /**
+     * Resets all statistics to zero.
+     */
+
+    public void resetStatistics()
+    {
+        // Reset the counters
+        m_nRequestedCount = 0;
+        m_nRequestedArea = 0;
+        m_nPaintedCount = 0;
+        m_nPaintedArea = 0;
+        m_nFrameCount = 0;
+    }
+
+    /**
+     * @see  java.lang.Object#toString()  toString
+     */
+
+    public String toString()
+    {
+        // Summarize the statistics
+        return( "requested " + m_nRequestedCount + " regions (" + m_nRequestedArea +
+            " px), painted " + m_nPaintedCount + " regions (" + m_nPaintedArea +
+            " px) in " + m_nFrameCount + " frames" );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Adds the specified region to the pending regions.  The region is
+     * merged with every pending region it overlaps until it no longer
+     * overlaps any of them.
+     *
+     * @param  rectNew  The region to be added.  This rectangle may be
+     *     modified and retained.
+     */
+
+    protected void insertRegion( Rectangle rectNew )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        boolean bMerged;  // Indicates a region was merged on the last pass
+        int     nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Merge the new region with each overlapping pending region
+        do
+        {
+            for( nI = 0, bMerged = false; nI < m_aRegions.size(); nI++ )
+            {
+                if( m_aRegions.get( nI ).intersects( rectNew ) )
+                {
+                    rectNew.add( m_aRegions.remove( nI ) );
+                    bMerged = true;
+                    break;
+                }
+            }
+        } while( bMerged );
+        m_aRegions.add( rectNew );
+    }
+
+    /**
+     * Merges the two pending regions whose union adds the least area that
+     * is not covered by either region.  Any other regions the union then
+     * overlaps are merged into it as well.
+     */
+
+    protected void mergeCheapestPair()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Rectangle rectUnion;  // Union of a pair of regions
+        long      nWaste,     // Area added by the union of a pair
+                  nMinWaste;  // Least area added by the union of any pair
+        int       nMinI,      // Index of first region of cheapest pair
+                  nMinJ,      // Index of second region of cheapest pair
+                  nI, nJ;     // Loop control variables
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Find the cheapest pair of regions to merge
+        nMinWaste = Long.MAX_VALUE;
+        nMinI = 0;
+        nMinJ = 1;
+        for( nI = 0; nI < m_aRegions.size(); nI++ )
+        {
+            for( nJ = nI + 1; nJ < m_aRegions.size(); nJ++ )
+            {
+                Rectangle rectI = m_aRegions.get( nI );
+                Rectangle rectJ = m_aRegions.get( nJ );
+                rectUnion = rectI.union( rectJ );
+                nWaste = (long)rectUnion.width * rectUnion.height -
+                    (long)rectI.width * rectI.height - (long)rectJ.width * rectJ.height;
+                if( nWaste < nMinWaste )
+                {
+                    nMinWaste = nWaste;
+                    nMinI = nI;
+                    nMinJ = nJ;
+                }
+            }
+        }
+
+        // Merge the pair (the union is re-inserted so that any regions it
+        // now overlaps are merged into it)
+        rectUnion = m_aRegions.get( nMinI ).union( m_aRegions.get( nMinJ ) );
+        m_aRegions.remove( nMinJ );
+        m_aRegions.remove( nMinI );
+        insertRegion( rectUnion );
+    }
+
+
+    // **********************************************************************
+    // *********************         Listeners          *********************
+    // **********************************************************************
+
+    /**
+     * The object that repaints the pending regions when the frame timer
+     * fires.
+     */
+
+    protected class FrameListener
+        extends Object
+        implements ActionListener
+    {
+        // ------------------------------------------------------------------
+        // -----------------   ActionListener Methods   ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * @see  java.awt.event.ActionListener#actionPerformed  actionPerformed
+         */
+
+        public void actionPerformed( ActionEvent evt )
+        {
+            // Repaint the pending regions
+            flush();
+        }
+    }
+}
@@ -25,6 +25,8 @@ import java.awt.Point;
 import java.awt.Rectangle;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
 import org.w3c.dom.Element;
 
 /**
@@ -138,10 +140,19 @@ public class Room
     protected String m_strName;
 
     /**
-     * The description of the room.
+     * The description of the room; null if the description is compressed.
      */
     protected String m_strDescription;
 
+    /**
+     * The compressed description of this Room (see CompressedText) if the
+     * map keeps descriptions compressed; otherwise null.  Only one of
+     * m_strDescription and m_abDescription is set.  Once the room is in
+     * use, both are only changed while holding the lock of the description
+     * cache of the map.
+     */
+    protected byte[] m_abDescription;
+
     /**
      * The bounds of the room on the map.
      */
@@ -200,6 +211,39 @@ public class Room
         c_nNextRoomID++;
     }
 
+    /**
+     * Constructs a new Room object on the specified Map that is a copy of
+     * the specified Room with the specified identifier.  The next room
+     * identifier is not changed.
+     *
+     * @param  oMap  The Map that contains this Room.
+     * @param  strID  The identifier of this Room.
+     * @param  oRoom  The Room to be copied.
+     *
+     * @exception  IllegalArgumentException  If any argument is null.
+     */
+
+    Room( Map oMap, String strID, Room oRoom )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null || strID == null || oRoom == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables, sharing a compressed description
+        // (it is replaced rather than changed) when both maps compress them
+        m_strID = strID;
+        m_oMap = oMap;
+        m_strName = oRoom.m_strName;
+        if( oRoom.m_abDescription != null && oMap.isDescriptionCompressionEnabled() )
+            m_abDescription = oRoom.m_abDescription;
+        else
+            storeDescription( oRoom.getDescription() );
+        m_rectBounds = new Rectangle( oRoom.m_rectBounds );
+        m_clrForeground = oRoom.m_clrForeground;
+        m_clrBackground = oRoom.m_clrBackground;
+    }
+
 
     // **********************************************************************
     // *********************  Public Instance Methods   *********************
@@ -244,20 +288,60 @@ public class Room
         if( strName == null )
             throw new IllegalArgumentException();
 
-        // Set the room name
+        // Set the room name, keeping the indexes of the map up to date
+        m_oMap.fireRoomTextChanging( this );
         m_strName = strName;
+        m_oMap.fireRoomTextChanged( this );
     }
 
     /**
-     * Gets the description of this Room.
+     * Gets the description of this Room.  When the map keeps descriptions
+     * compressed, the inflated description is kept in a cache shared by
+     * all the rooms of the map, and reading it makes it the most recently
+     * used entry, so the least recently read descriptions are evicted
+     * first.  This method may be called from any thread.
      *
      * @return  The description of this Room.
      */
 
     public String getDescription()
     {
-        // Return the description of the room
-        return( m_strDescription );
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        LinkedHashMap<Room, String> oCache;          // Recently used descriptions
+        String                      strDescription;  // The inflated description
+        byte[]                      abDescription;   // The compressed description
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Read the description fields and look up the inflated description
+        // together.  The fields are only changed while holding the lock of
+        // the cache, and the cache is in access order, so even a lookup
+        // changes it and must hold its lock.
+        oCache = m_oMap.m_oDescriptionCache;
+        synchronized( oCache )
+        {
+            // Return the description of the room if it is not compressed
+            abDescription = m_abDescription;
+            if( abDescription == null )
+                return( m_strDescription );
+            strDescription = oCache.get( this );
+        }
+
+        // Inflate the description unless it was recently used, and cache it
+        // only if it was not changed while it was being inflated
+        if( strDescription == null )
+        {
+            strDescription = CompressedText.inflate( abDescription );
+            synchronized( oCache )
+            {
+                if( m_abDescription == abDescription )
+                    oCache.put( this, strDescription );
+            }
+        }
+        return( strDescription );
     }
 
     /**
@@ -275,8 +359,11 @@ public class Room
         if( strDescription == null )
             throw new IllegalArgumentException();
 
-        // Set the room description
-        m_strDescription = strDescription;
+        // Set the room description, keeping the indexes of the map up to
+        // date
+        m_oMap.fireRoomTextChanging( this );
+        storeDescription( strDescription );
+        m_oMap.fireRoomTextChanged( this );
     }
 
     /**
@@ -584,6 +671,23 @@ public class Room
 
     public void readIFMML( Element oElement )
         throws RuntimeException
+    {
+        // Read the room without sharing its values with other rooms
+        readIFMML( oElement, new LoadInterner() );
+    }
+
+    /**
+     * Reads the room from the specified ROOM element, sharing its strings
+     * and colors with equal values read earlier in the same load.
+     *
+     * @param  oElement  The ROOM element.
+     * @param  oInterner  The interner of the load.
+     *
+     * @exception  RuntimeException  If the element is not a valid room.
+     */
+
+    void readIFMML( Element oElement, LoadInterner oInterner )
+        throws RuntimeException
     {
         /////////////////////////////////////////////////////////////////////
         // VARIABLE DECLARATIONS                                           //
@@ -598,9 +702,15 @@ public class Room
         try
         {
             // Parse simple text attributes
-            m_strID = oElement.getAttribute( IFMML_ATTR_ROOM_ID );
-            m_strName = oElement.getAttribute( IFMML_ATTR_ROOM_NAME );
-            m_strDescription = oElement.getAttribute( IFMML_ATTR_ROOM_DESCRIPTION );
+            m_strID = oInterner.intern( oElement.getAttribute( IFMML_ATTR_ROOM_ID ) );
+            m_strName = oInterner.intern( oElement.getAttribute( IFMML_ATTR_ROOM_NAME ) );
+            if( m_oMap.isDescriptionCompressionEnabled() )
+            {
+                m_strDescription = null;
+                m_abDescription = oInterner.compress( oElement.getAttribute( IFMML_ATTR_ROOM_DESCRIPTION ) );
+            }
+            else
+                m_strDescription = oInterner.intern( oElement.getAttribute( IFMML_ATTR_ROOM_DESCRIPTION ) );
             m_rectBounds.x = Integer.parseInt( oElement.getAttribute( IFMML_ATTR_ROOM_X ) );
             m_rectBounds.y = Integer.parseInt( oElement.getAttribute( IFMML_ATTR_ROOM_Y ) );
             m_rectBounds.width = Integer.parseInt( oElement.getAttribute( IFMML_ATTR_ROOM_WIDTH ) );
@@ -614,7 +724,7 @@ public class Room
             }
             else
                 nRadix = 10;
-            m_clrForeground = new Color( Integer.parseInt( strColor, nRadix ) );
+            m_clrForeground = oInterner.getColor( Integer.parseInt( strColor, nRadix ) );
 
             // Parse background color attribute
             if( (strColor = oElement.getAttribute( IFMML_ATTR_ROOM_BACKCOLOR )).startsWith( "#" ) )
@@ -624,7 +734,7 @@ public class Room
             }
             else
                 nRadix = 10;
-            m_clrBackground = new Color( Integer.parseInt( strColor, nRadix ) );
+            m_clrBackground = oInterner.getColor( Integer.parseInt( strColor, nRadix ) );
         }
         catch( NumberFormatException eNF )
         {
@@ -670,8 +780,20 @@ public class Room
         oWriter.write( str, 0, str.length() );
         str = IFMML_ATTR_ROOM_NAME + "=\"" + m_strName + "\" ";
         oWriter.write( str, 0, str.length() );
-        str = IFMML_ATTR_ROOM_DESCRIPTION + "=\"" + m_strDescription.replace( '\n', '|' ) + "\" ";
-        oWriter.write( str, 0, str.length() );
+        if( m_abDescription == null )
+        {
+            str = IFMML_ATTR_ROOM_DESCRIPTION + "=\"" + m_strDescription.replace( '\n', '|' ) + "\" ";
+            oWriter.write( str, 0, str.length() );
+        }
+        else
+        {
+            // Inflate a compressed description straight into the writer
+            str = IFMML_ATTR_ROOM_DESCRIPTION + "=\"";
+            oWriter.write( str, 0, str.length() );
+            writeCompressedDescription( oWriter );
+            str = "\" ";
+            oWriter.write( str, 0, str.length() );
+        }
         str = IFMML_ATTR_ROOM_X + "=\"" + m_rectBounds.x + "\" ";
         oWriter.write( str, 0, str.length() );
         str = IFMML_ATTR_ROOM_Y + "=\"" + m_rectBounds.y + "\" ";
@@ -688,4 +810,77 @@ public class Room
         oWriter.write( str, 0, str.length() );
         oWriter.newLine();
     }
+
+
+    // **********************************************************************
+    // *********************  Package Instance Methods  *********************
+    // **********************************************************************
+
+
+    /**
+     * Stores the specified description in the storage mode of the map.
+     *
+     * @param  strDescription  The description of this Room.
+     */
+
+    void storeDescription( String strDescription )
+    {
+        // Compress the description if the map keeps descriptions compressed
+        byte[] abDescription = null;
+        if( m_oMap.isDescriptionCompressionEnabled() )
+            abDescription = CompressedText.compress( strDescription );
+
+        // Replace the description and drop its inflated copy while holding
+        // the lock of the cache, so getDescription never sees half of the
+        // change
+        synchronized( m_oMap.m_oDescriptionCache )
+        {
+            m_oMap.m_oDescriptionCache.remove( this );
+            m_abDescription = abDescription;
+            m_strDescription = (abDescription == null) ? strDescription : null;
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************  Private Instance Methods  *********************
+    // **********************************************************************
+
+    /**
+     * Writes the compressed description of this Room as the value of an
+     * IFMML attribute, inflating it as it is written so that the whole
+     * description is never held in memory.
+     *
+     * @param  oWriter  The writer to which the description is written.
+     *
+     * @exception  IOException  If an I/O error occurs.
+     */
+
+    private void writeCompressedDescription( BufferedWriter oWriter )
+        throws IOException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        Reader oReader;   // Reader of the compressed description
+        char[] acBuffer;  // Buffer for characters read
+        int    nCount,    // Number of characters read
+               nI;        // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Copy the description, replacing line breaks as writeIFMML does
+        oReader = CompressedText.openReader( m_abDescription );
+        acBuffer = new char[ 512 ];
+        while( (nCount = oReader.read( acBuffer )) != -1 )
+        {
+            for( nI = 0; nI < nCount; nI++ )
+            {
+                if( acBuffer[ nI ] == '\n' )
+                    acBuffer[ nI ] = '|';
+            }
+            oWriter.write( acBuffer, 0, nCount );
+        }
+    }
 }
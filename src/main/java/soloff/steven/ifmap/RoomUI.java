@@ -23,8 +23,8 @@ package soloff.steven.ifmap;
 import java.awt.Color;
 import java.awt.Cursor;
 import java.awt.Dimension;
-import java.awt.FontMetrics;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.Rectangle;
 import java.awt.event.FocusAdapter;
@@ -34,6 +34,7 @@ import javax.swing.JComponent;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import javax.swing.event.MouseInputAdapter;
+import soloff.steven.text.MultiLineTextLayout;
 
 /**
  * The object that provides the user interface for a Room object.
@@ -172,6 +173,12 @@ public class RoomUI
      */
     protected String[] m_astrText;
 
+    /**
+     * The cached layout of the room text, or null if the text has changed
+     * since the layout was last built.
+     */
+    protected MultiLineTextLayout m_oTextLayout;
+
     /**
      * Top-left coordinates of each exit in the room.
      */
@@ -299,8 +306,9 @@ public class RoomUI
 
     protected final void updateText()
     {
-        // Reparse the room text
+        // Reparse the room text and discard its layout
         m_astrText = soloff.steven.text.Utilities.splitStringByLines( m_oRoom.m_strName );
+        m_oTextLayout = null;
     }
 
     /**
@@ -333,7 +341,7 @@ public class RoomUI
 
         // Update the UI
         updateText();
-        repaint();
+        m_oMapUI.repaintRegion( getBounds() );
     }
 
     /**
@@ -411,13 +419,10 @@ public class RoomUI
         /////////////////////////////////////////////////////////////////////
         // VARIABLE DECLARATIONS                                           //
 
-        Graphics    gText;        // Graphics context solely for room text
-        FontMetrics fm;           // Metrics of selected font
-        Dimension   dmText,       // Dimensions of room text
-                    dmInterior;   // Dimensions of room interior
-        Point       ptText;       // Top-left coordinate of room text
-        int         nFontHeight,  // Height of the selected font
-                    nI;           // Loop control variable
+        Graphics2D gText;       // Graphics context solely for room text
+        Dimension  dmText,      // Dimensions of room text
+                   dmInterior;  // Dimensions of room interior
+        int        nI;          // Loop control variable
 
         //                                                                 //
         /////////////////////////////////////////////////////////////////////
@@ -443,20 +448,22 @@ public class RoomUI
             g.fillRect( m_aptExits[ nI ].x, m_aptExits[ nI ].y, EXIT_WIDTH, EXIT_HEIGHT );
 
         // Create a Graphics context for the text and initialize all appropriate members
-        gText = g.create( EXIT_WIDTH, EXIT_HEIGHT, dmInterior.width - 1,
+        gText = (Graphics2D)g.create( EXIT_WIDTH, EXIT_HEIGHT, dmInterior.width - 1,
             dmInterior.height - 1 );
         gText.setColor( m_oRoom.m_clrForeground );
-        fm = gText.getFontMetrics();
-        dmText = soloff.steven.text.Utilities.computeMultiLineStringDimension( fm, m_astrText );
-        ptText = new Point( (dmInterior.width - dmText.width - 1) / 2,
-            (dmInterior.height - dmText.height - 1) / 2 + fm.getAscent() );
-        nFontHeight = fm.getHeight();
-
-        // Draw text
-        for( nI = 0; nI < m_astrText.length; nI++ )
-            gText.drawString( m_astrText[nI], ptText.x + (dmText.width -
-                SwingUtilities.computeStringWidth( fm, m_astrText[ nI ] )) / 2,
-                ptText.y + nI * nFontHeight );
+
+        // Rebuild the text layout only if the text, font, or rendering
+        // context has changed since it was last built
+        if( m_oTextLayout == null ||
+            !m_oTextLayout.isValidFor( m_astrText, gText.getFont(), gText.getFontRenderContext() ) )
+            m_oTextLayout = new MultiLineTextLayout( m_astrText, gText.getFont(),
+                gText.getFontRenderContext() );
+
+        // Draw text centered within the room interior
+        dmText = m_oTextLayout.getSize();
+        m_oTextLayout.draw( gText, (dmInterior.width - dmText.width - 1) / 2,
+            (dmInterior.height - dmText.height - 1) / 2 );
+        gText.dispose();
     }
 
 
@@ -483,7 +490,7 @@ public class RoomUI
         public void focusGained( FocusEvent evt )
         {
             // Repaint the component
-            repaint();
+            m_oMapUI.repaintRegion( getBounds() );
         }
 
         /**
@@ -493,7 +500,7 @@ public class RoomUI
         public void focusLost( FocusEvent evt )
         {
             // Repaint the component
-            repaint();
+            m_oMapUI.repaintRegion( getBounds() );
         }
     }
 
@@ -0,0 +1,174 @@
+/*
+ * Route.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The object that represents a route between two rooms: the rooms passed
+ * through, the edges followed, and the exit taken from each room to
+ * follow them.  A route from a room to itself has one room and no edges.
+ */
+
+public class Route
+    extends Object
+{
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The rooms passed through, from the first room to the last.
+     */
+    protected List<Room> m_oRooms;
+
+    /**
+     * The edges followed; edge i leads from room i to room i + 1.
+     */
+    protected List<Edge> m_oEdges;
+
+    /**
+     * The exit taken from room i to follow edge i.
+     */
+    protected int[] m_anExits;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new Route object.
+     *
+     * @param  oRooms  The rooms passed through.
+     * @param  oEdges  The edges followed.
+     * @param  anExits  The exit taken from each room but the last.
+     *
+     * @exception  IllegalArgumentException  If any argument is null, if
+     *     there are no rooms, or if the number of edges and exits is not one
+     *     less than the number of rooms.
+     */
+
+    public Route( List<Room> oRooms, List<Edge> oEdges, int[] anExits )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oRooms == null || oEdges == null || anExits == null || oRooms.isEmpty() )
+            throw new IllegalArgumentException();
+        if( oEdges.size() != oRooms.size() - 1 || anExits.length != oEdges.size() )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oRooms = Collections.unmodifiableList( new ArrayList<Room>( oRooms ) );
+        m_oEdges = Collections.unmodifiableList( new ArrayList<Edge>( oEdges ) );
+        m_anExits = anExits.clone();
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Gets the rooms passed through, from the first room to the last.
+     *
+     * @return  The unmodifiable list of rooms.
+     */
+
+    public List<Room> getRooms()
+    {
+        // Return the rooms
+        return( m_oRooms );
+    }
+
+    /**
+     * Gets the edges followed, in order.
+     *
+     * @return  The unmodifiable list of edges.
+     */
+
+    public List<Edge> getEdges()
+    {
+        // Return the edges
+        return( m_oEdges );
+    }
+
+    /**
+     * Gets the number of moves along the route.
+     *
+     * @return  The number of edges followed.
+     */
+
+    public int getLength()
+    {
+        // Return the number of edges
+        return( m_anExits.length );
+    }
+
+    /**
+     * Gets the exit taken at the specified move.
+     *
+     * @param  nMove  The index of the move.
+     *
+     * @return  The identifier of the exit taken.
+     */
+
+    public int getExit( int nMove )
+    {
+        // Return the exit
+        return( m_anExits[ nMove ] );
+    }
+
+    /**
+     * Gets the directions of the route: the name of the exit (for example
+     * "N" or "U") taken at each move.
+     *
+     * @return  The list of exit names.
+     */
+
+    public List<String> getDirections()
+    {
+        // Name each exit taken
+        List<String> oDirections = new ArrayList<String>( m_anExits.length );
+        for( int nI = 0; nI < m_anExits.length; nI++ )
+            oDirections.add( Room.getExitName( m_anExits[ nI ] ) );
+        return( oDirections );
+    }
+
+    /**
+     * @see  java.lang.Object#toString()  toString
+     */
+
+    public String toString()
+    {
+        // List the directions separated by spaces
+        StringBuilder sb = new StringBuilder();
+        for( final String strDirection : getDirections() )
+        {
+            if( sb.length() > 0 )
+                sb.append( ' ' );
+            sb.append( strDirection );
+        }
+        return( sb.toString() );
+    }
+}
@@ -0,0 +1,402 @@
+/*
+ * RouteFinder.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The object that finds the shortest route (in moves) between two rooms
+ * of a Map.  One-way edges may only be followed from their start room to
+ * their end room, and secret edges may optionally be excluded.
+ *
+ * <p>The search is a breadth-first search run from both rooms at once
+ * over the adjacency held by a MapGraph: forwards along the edges leaving
+ * the first room and backwards along the edges entering the last room,
+ * always extending the smaller frontier by a whole level, until the two
+ * meet.  Each side only has to explore about half the depth of the route,
+ * which on a large map visits a small fraction of the rooms a one-sided
+ * search would.  The marks, distances and queues of the search are kept
+ * in arrays reused from query to query, and are only reset by advancing a
+ * stamp, so a query allocates nothing until the route is assembled.
+ */
+
+public class RouteFinder
+    extends Object
+{
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The adjacency searched.
+     */
+    protected MapGraph m_oGraph;
+
+    /**
+     * The modification count of the adjacency when the arrays of the
+     * search were last sized.
+     */
+    protected int m_nModCount;
+
+    /**
+     * The stamp of the current query; a room has been reached by a side of
+     * the query if its mark for that side equals the stamp.
+     */
+    protected int m_nStamp;
+
+    /**
+     * The stamp of the query in which each room was reached forwards.
+     */
+    protected int[] m_anForwardMark;
+
+    /**
+     * The stamp of the query in which each room was reached backwards.
+     */
+    protected int[] m_anBackwardMark;
+
+    /**
+     * The number of moves from the first room to each room reached
+     * forwards.
+     */
+    protected int[] m_anForwardDistance;
+
+    /**
+     * The number of moves from each room reached backwards to the last
+     * room.
+     */
+    protected int[] m_anBackwardDistance;
+
+    /**
+     * The edge by which each room was reached forwards.
+     */
+    protected int[] m_anForwardEdge;
+
+    /**
+     * The edge by which each room was reached backwards.
+     */
+    protected int[] m_anBackwardEdge;
+
+    /**
+     * The rooms reached forwards, in order of their distance.
+     */
+    protected int[] m_anForwardQueue;
+
+    /**
+     * The rooms reached backwards, in order of their distance.
+     */
+    protected int[] m_anBackwardQueue;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new RouteFinder object that searches the adjacency of
+     * the specified Map.
+     *
+     * @param  oMap  The Map to be searched.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public RouteFinder( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oGraph = oMap.getGraph();
+        m_nModCount = -1;
+        m_nStamp = 0;
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Finds a shortest route between the specified rooms.
+     *
+     * @param  oFirstRoom  The room the route starts at.
+     * @param  oLastRoom  The room the route ends at.
+     * @param  bIncludeSecret  Indicates if secret edges may be followed.
+     *
+     * @return  A shortest route, or null if the last room cannot be reached
+     *     from the first room or either room is not on the Map.
+     *
+     * @exception  IllegalArgumentException  If oFirstRoom or oLastRoom is
+     *     null.
+     */
+
+    public Route findRoute( Room oFirstRoom, Room oLastRoom, boolean bIncludeSecret )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        MapGraph oGraph;           // The adjacency searched
+        int      nFirst,           // Index of the first room
+                 nLast,            // Index of the last room
+                 nForwardHead,     // Next room to extend forwards
+                 nForwardTail,     // End of the forward queue
+                 nBackwardHead,    // Next room to extend backwards
+                 nBackwardTail,    // End of the backward queue
+                 nLevelEnd,        // End of the level being extended
+                 nRoom,            // Room being extended
+                 nOther,           // Room at the other end of an edge
+                 nEdge,            // Edge followed
+                 nFlags,           // Exits and flags of the edge
+                 nMeet,            // Room at which the two sides meet
+                 nBest,            // Length of the best route found
+                 nI;               // Loop control variable
+        int[]    anIncident;       // Edges incident to the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( oFirstRoom == null || oLastRoom == null )
+            throw new IllegalArgumentException();
+
+        // Look up the rooms
+        oGraph = m_oGraph;
+        nFirst = oGraph.getRoomIndex( oFirstRoom );
+        nLast = oGraph.getRoomIndex( oLastRoom );
+        if( nFirst == MapGraph.NONE || nLast == MapGraph.NONE )
+            return( null );
+        if( nFirst == nLast )
+            return( new Route( Collections.singletonList( oFirstRoom ),
+                Collections.<Edge>emptyList(), new int[ 0 ] ) );
+
+        // Begin a new query
+        prepare();
+        m_anForwardMark[ nFirst ] = m_nStamp;
+        m_anForwardDistance[ nFirst ] = 0;
+        m_anForwardQueue[ 0 ] = nFirst;
+        nForwardHead = 0;
+        nForwardTail = 1;
+        m_anBackwardMark[ nLast ] = m_nStamp;
+        m_anBackwardDistance[ nLast ] = 0;
+        m_anBackwardQueue[ 0 ] = nLast;
+        nBackwardHead = 0;
+        nBackwardTail = 1;
+        nMeet = MapGraph.NONE;
+        nBest = Integer.MAX_VALUE;
+
+        // Extend the smaller frontier a whole level at a time until the two
+        // sides meet or either side runs out of rooms
+        while( nMeet == MapGraph.NONE && nForwardHead < nForwardTail && nBackwardHead < nBackwardTail )
+        {
+            if( nForwardTail - nForwardHead <= nBackwardTail - nBackwardHead )
+            {
+                // Follow the edges leaving each room of the forward level
+                for( nLevelEnd = nForwardTail; nForwardHead < nLevelEnd; nForwardHead++ )
+                {
+                    nRoom = m_anForwardQueue[ nForwardHead ];
+                    anIncident = oGraph.m_aanIncident[ nRoom ];
+                    for( nI = oGraph.m_anIncidentCount[ nRoom ] - 1; nI >= 0; nI-- )
+                    {
+                        // Make sure the edge may be followed from the room
+                        nEdge = anIncident[ nI ];
+                        nFlags = oGraph.m_anEdgeFlags[ nEdge ];
+                        if( !bIncludeSecret && (nFlags & MapGraph.FLAG_SECRET) != 0 )
+                            continue;
+                        if( oGraph.m_anEdgeStart[ nEdge ] == nRoom )
+                            nOther = oGraph.m_anEdgeEnd[ nEdge ];
+                        else if( (nFlags & MapGraph.FLAG_ONEWAY) == 0 )
+                            nOther = oGraph.m_anEdgeStart[ nEdge ];
+                        else
+                            continue;
+                        if( m_anForwardMark[ nOther ] == m_nStamp )
+                            continue;
+
+                        // Reach the room at the other end
+                        m_anForwardMark[ nOther ] = m_nStamp;
+                        m_anForwardDistance[ nOther ] = m_anForwardDistance[ nRoom ] + 1;
+                        m_anForwardEdge[ nOther ] = nEdge;
+                        m_anForwardQueue[ nForwardTail++ ] = nOther;
+
+                        // Keep the shortest route through a room the other
+                        // side has reached
+                        if( m_anBackwardMark[ nOther ] == m_nStamp &&
+                            m_anForwardDistance[ nOther ] + m_anBackwardDistance[ nOther ] < nBest )
+                        {
+                            nMeet = nOther;
+                            nBest = m_anForwardDistance[ nOther ] + m_anBackwardDistance[ nOther ];
+                        }
+                    }
+                }
+            }
+            else
+            {
+                // Follow the edges entering each room of the backward level
+                for( nLevelEnd = nBackwardTail; nBackwardHead < nLevelEnd; nBackwardHead++ )
+                {
+                    nRoom = m_anBackwardQueue[ nBackwardHead ];
+                    anIncident = oGraph.m_aanIncident[ nRoom ];
+                    for( nI = oGraph.m_anIncidentCount[ nRoom ] - 1; nI >= 0; nI-- )
+                    {
+                        // Make sure the edge may be followed to the room
+                        nEdge = anIncident[ nI ];
+                        nFlags = oGraph.m_anEdgeFlags[ nEdge ];
+                        if( !bIncludeSecret && (nFlags & MapGraph.FLAG_SECRET) != 0 )
+                            continue;
+                        if( oGraph.m_anEdgeEnd[ nEdge ] == nRoom )
+                            nOther = oGraph.m_anEdgeStart[ nEdge ];
+                        else if( (nFlags & MapGraph.FLAG_ONEWAY) == 0 )
+                            nOther = oGraph.m_anEdgeEnd[ nEdge ];
+                        else
+                            continue;
+                        if( m_anBackwardMark[ nOther ] == m_nStamp )
+                            continue;
+
+                        // Reach the room at the other end
+                        m_anBackwardMark[ nOther ] = m_nStamp;
+                        m_anBackwardDistance[ nOther ] = m_anBackwardDistance[ nRoom ] + 1;
+                        m_anBackwardEdge[ nOther ] = nEdge;
+                        m_anBackwardQueue[ nBackwardTail++ ] = nOther;
+
+                        // Keep the shortest route through a room the other
+                        // side has reached
+                        if( m_anForwardMark[ nOther ] == m_nStamp &&
+                            m_anForwardDistance[ nOther ] + m_anBackwardDistance[ nOther ] < nBest )
+                        {
+                            nMeet = nOther;
+                            nBest = m_anForwardDistance[ nOther ] + m_anBackwardDistance[ nOther ];
+                        }
+                    }
+                }
+            }
+        }
+
+        // Assemble the route through the meeting room, if any
+        if( nMeet == MapGraph.NONE )
+            return( null );
+        return( buildRoute( nFirst, nMeet ) );
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Advances the stamp of the search, sizing its arrays for the adjacency
+     * first if it has grown or been rebuilt.
+     */
+
+    protected void prepare()
+    {
+        // Size the arrays for the adjacency
+        int nCapacity = m_oGraph.m_aoRooms.length;
+        if( m_nModCount != m_oGraph.m_nModCount )
+        {
+            m_anForwardMark = new int[ nCapacity ];
+            m_anBackwardMark = new int[ nCapacity ];
+            m_anForwardDistance = new int[ nCapacity ];
+            m_anBackwardDistance = new int[ nCapacity ];
+            m_anForwardEdge = new int[ nCapacity ];
+            m_anBackwardEdge = new int[ nCapacity ];
+            m_anForwardQueue = new int[ nCapacity ];
+            m_anBackwardQueue = new int[ nCapacity ];
+            m_nModCount = m_oGraph.m_nModCount;
+            m_nStamp = 0;
+        }
+
+        // Advance the stamp, clearing the marks if it wraps around
+        if( ++m_nStamp == Integer.MAX_VALUE )
+        {
+            Arrays.fill( m_anForwardMark, 0 );
+            Arrays.fill( m_anBackwardMark, 0 );
+            m_nStamp = 1;
+        }
+    }
+
+    /**
+     * Assembles the route found by the last query through the specified
+     * room: back along the forward edges to the first room, and on along
+     * the backward edges to the last room.
+     *
+     * @param  nFirst  The index of the first room.
+     * @param  nMeet  The index of the room at which the two sides met.
+     *
+     * @return  The route.
+     */
+
+    protected Route buildRoute( int nFirst, int nMeet )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<Room>    oRooms;   // Rooms passed through
+        ArrayList<Edge>    oEdges;   // Edges followed
+        ArrayList<Integer> oExits;   // Exits taken
+        MapGraph           oGraph;   // The adjacency searched
+        int[]              anExits;  // Exits taken
+        int                nRoom,    // Room on the route
+                           nEdge,    // Edge on the route
+                           nNext,    // Room next to nRoom on the route
+                           nI;       // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Walk back from the meeting room to the first room
+        oGraph = m_oGraph;
+        oRooms = new ArrayList<Room>();
+        oEdges = new ArrayList<Edge>();
+        oExits = new ArrayList<Integer>();
+        for( nRoom = nMeet; nRoom != nFirst; nRoom = nNext )
+        {
+            nEdge = m_anForwardEdge[ nRoom ];
+            nNext = oGraph.m_anEdgeStart[ nEdge ] == nRoom ? oGraph.m_anEdgeEnd[ nEdge ] : oGraph.m_anEdgeStart[ nEdge ];
+            oRooms.add( oGraph.m_aoRooms[ nRoom ] );
+            oEdges.add( oGraph.m_aoEdges[ nEdge ] );
+            oExits.add( Integer.valueOf( oGraph.getExit( nEdge, nNext ) ) );
+        }
+        oRooms.add( oGraph.m_aoRooms[ nFirst ] );
+        Collections.reverse( oRooms );
+        Collections.reverse( oEdges );
+        Collections.reverse( oExits );
+
+        // Walk on from the meeting room to the last room
+        for( nRoom = nMeet; m_anBackwardDistance[ nRoom ] > 0; nRoom = nNext )
+        {
+            nEdge = m_anBackwardEdge[ nRoom ];
+            nNext = oGraph.m_anEdgeStart[ nEdge ] == nRoom ? oGraph.m_anEdgeEnd[ nEdge ] : oGraph.m_anEdgeStart[ nEdge ];
+            oEdges.add( oGraph.m_aoEdges[ nEdge ] );
+            oExits.add( Integer.valueOf( oGraph.getExit( nEdge, nRoom ) ) );
+            oRooms.add( oGraph.m_aoRooms[ nNext ] );
+        }
+
+        // Create the route
+        anExits = new int[ oExits.size() ];
+        for( nI = 0; nI < anExits.length; nI++ )
+            anExits[ nI ] = oExits.get( nI ).intValue();
+        return( new Route( oRooms, oEdges, anExits ) );
+    }
+}
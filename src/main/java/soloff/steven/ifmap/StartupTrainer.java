@@ -0,0 +1,145 @@
+/*
+ * StartupTrainer.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.awt.EventQueue;
+import java.io.File;
+
+/**
+ * The scripted session used to train the class-data-sharing archive of the
+ * application.  The session starts the application the same way as
+ * {@link IFMap#main}, opens a map once the main window has been created,
+ * renders it, and exits, so that the classes loaded are those of a typical
+ * launch:
+ *
+ * <pre>
+ *     java soloff.steven.ifmap.StartupTrainer file
+ * </pre>
+ *
+ * The session exits without saving the settings, so it does not disturb
+ * the settings of the user.  It requires a display.
+ */
+
+public class StartupTrainer
+    extends IFMap
+{
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The map opened by the session.
+     */
+    private final File m_oFile;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Creates a new training session.
+     *
+     * @param  oFile  The map opened by the session.
+     */
+
+    public StartupTrainer( File oFile )
+    {
+        // Remember the map to open once the application has started
+        m_oFile = oFile;
+    }
+
+
+    // **********************************************************************
+    // *********************    Public Class Methods    *********************
+    // **********************************************************************
+
+    /**
+     * Entry point of the training session.
+     *
+     * @param  args  Array of command-line arguments passed to the session.
+     */
+
+    public static void main( String[] args )
+    {
+        // Make sure there is a map to open
+        if( args.length != 1 )
+        {
+            System.err.println( "Usage: java soloff.steven.ifmap.StartupTrainer file" );
+            System.exit( 1 );
+        }
+        final File oFile = new File( args[ 0 ] );
+        if( !oFile.isFile() )
+        {
+            System.err.println( "File not found: " + oFile );
+            System.exit( 1 );
+        }
+
+        // Begin the startup and load the user settings on this thread, as
+        // the application does
+        final OperationEvent oStartupEvent = beginStartup();
+
+        // Start the session on the event dispatch thread
+        EventQueue.invokeLater( new Runnable()
+        {
+            public void run()
+            {
+                new StartupTrainer( oFile ).startup( oStartupEvent );
+            }
+        } );
+    }
+
+
+    // **********************************************************************
+    // *********************  Package Instance Methods  *********************
+    // **********************************************************************
+
+    /**
+     * Completes the startup of the application, then opens and renders the
+     * map of the session and exits.
+     *
+     * @param  oStartupEvent  The event describing the startup.
+     */
+
+    void startup( OperationEvent oStartupEvent )
+    {
+        // Complete the startup as the application does
+        super.startup( oStartupEvent );
+
+        // Open the map
+        m_oDocument.load( m_oFile.getAbsolutePath() );
+        m_oView.load();
+
+        // Lay out and render the visible part of the map
+        MapUI oMapUI = m_oView.m_oMapUI;
+        m_oView.validate();
+        oMapUI.paintImmediately( oMapUI.getVisibleRect() );
+
+        // Exit once any pending events have been processed
+        EventQueue.invokeLater( new Runnable()
+        {
+            public void run()
+            {
+                System.exit( 0 );
+            }
+        } );
+    }
+}
@@ -0,0 +1,921 @@
+/*
+ * TextIndex.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.ifmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.TreeMap;
+
+/**
+ * The object that finds the rooms on a Map whose name or description
+ * contains given words.  The words of each room are split into tokens
+ * (runs of letters and digits, in lower case), and each token is mapped
+ * to a posting list: the sorted indices of the rooms that contain it.  A
+ * query is answered by walking the posting lists of its words, so its
+ * cost depends on the number of rooms that match rather than the size of
+ * the Map.  A query word ending in <code>*</code> matches every token it
+ * is a prefix of; the tokens are also kept sorted so that these are found
+ * without visiting the others.
+ *
+ * <p>The index is built from the Map when it is first used and is then
+ * kept up to date: as a MapListener for rooms being added and removed, and
+ * by the Room itself when its name or description is set.  Clearing or
+ * loading the Map causes the index to be rebuilt when it is next used.
+ * Like the Map itself, the index must only be used on the event dispatch
+ * thread.
+ */
+
+public class TextIndex
+    extends Object
+    implements MapListener
+{
+    // **********************************************************************
+    // *********************         Constants          *********************
+    // **********************************************************************
+
+    /**
+     * The character that marks a query word as a prefix.
+     */
+    public static final char PREFIX_MARK = '*';
+
+    /**
+     * The initial capacity of the posting list of a token.
+     */
+    protected static final int INITIAL_POSTING_CAPACITY = 4;
+
+    /**
+     * The estimated cost of searching one posting list for a room,
+     * relative to the cost of marking one room of a posting list.
+     */
+    protected static final int PROBE_COST = 8;
+
+
+    // **********************************************************************
+    // *********************     Instance Variables     *********************
+    // **********************************************************************
+
+    /**
+     * The Map whose rooms are indexed.
+     */
+    protected Map m_oMap;
+
+    /**
+     * Indicates if the index must be rebuilt before it is next used.
+     */
+    protected boolean m_bStale;
+
+    /**
+     * The posting list of each token keyed by token.
+     */
+    protected HashMap<String, Posting> m_oPostings;
+
+    /**
+     * The same posting lists as m_oPostings, sorted by token to answer
+     * prefix queries.
+     */
+    protected TreeMap<String, Posting> m_oSortedPostings;
+
+    /**
+     * The index of each room keyed by room ID.
+     */
+    protected HashMap<String, Integer> m_oRoomIndex;
+
+    /**
+     * The room at each room index; null for an unused index.
+     */
+    protected Room[] m_aoRooms;
+
+    /**
+     * The number of room indices in use or freed.
+     */
+    protected int m_nRoomLimit;
+
+    /**
+     * The freed room indices available for reuse.
+     */
+    protected int[] m_anFreeRooms;
+
+    /**
+     * The number of freed room indices.
+     */
+    protected int m_nFreeRoomCount;
+
+    /**
+     * The mark of each room index left by the last query.  A room matched
+     * the first n words of the query being answered if its mark is
+     * m_nMarkBase + n.
+     */
+    protected int[] m_anMarks;
+
+    /**
+     * The mark below which room indices are unmatched by the query being
+     * answered.
+     */
+    protected int m_nMarkBase;
+
+
+    // **********************************************************************
+    // *********************        Constructors        *********************
+    // **********************************************************************
+
+    /**
+     * Constructs a new TextIndex object.  The caller is responsible for
+     * adding the object as a listener of the Map.
+     *
+     * @param  oMap  The Map whose rooms are to be indexed.
+     *
+     * @exception  IllegalArgumentException  If oMap is null.
+     */
+
+    public TextIndex( Map oMap )
+        throws IllegalArgumentException
+    {
+        // Make sure arguments are valid
+        if( oMap == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_oMap = oMap;
+        m_bStale = true;
+    }
+
+
+    // **********************************************************************
+    // *********************  Public Instance Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Rebuilds the index if the Map has been cleared or loaded since it
+     * was last used.  Queries call this before reading the index.
+     */
+
+    public void validate()
+    {
+        // Rebuild the index if necessary
+        if( m_bStale )
+            rebuild();
+    }
+
+    /**
+     * Finds the rooms whose name or description contains all words of the
+     * specified query.  Case is ignored, as is any character that is not a
+     * letter or digit.  A word followed by <code>*</code> matches any word
+     * that starts with it.
+     *
+     * <p>The rooms of the word found in the fewest rooms are visited in
+     * index order and checked against the other words, so the search stops
+     * as soon as enough rooms have been found.  Each other word is checked
+     * either by marking all its rooms beforehand or by searching its
+     * posting lists for each room visited, whichever costs less.
+     *
+     * @param  strQuery  The words to be found.
+     * @param  nMaxRooms  The maximum number of rooms to be returned.
+     *
+     * @return  The first nMaxRooms matching rooms in the order they were
+     *     indexed; empty if the query contains no words.
+     *
+     * @exception  IllegalArgumentException  If strQuery is null or if
+     *     nMaxRooms is negative.
+     */
+
+    public Room[] find( String strQuery, int nMaxRooms )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<String> alTerms;      // Words of the query
+        OperationEvent    oEvent;       // Event describing the query
+        Posting[][]       aaoPostings;  // Posting lists of each word
+        int[]             anSizes;      // Number of postings of each word
+        boolean[]         abMarked;     // Indicates if a word is marked
+        Posting[]         aoFirst;      // Posting lists of the rarest word
+        int[]             anHeap,       // Lists of the rarest word by room
+                          anAt;         // Position in each of those lists
+        int               nHeapSize,    // Number of lists not yet finished
+                          nMarked,      // Number of marked words
+                          nTerms,       // Number of words
+                          nPrevious,    // Room visited before
+                          nMatches,     // Number of matching rooms
+                          nI;           // Loop control
+        Room[]            aoRooms;      // Matching rooms found
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( strQuery == null || nMaxRooms < 0 )
+            throw new IllegalArgumentException();
+
+        // Look up the posting lists of each word, giving up as soon as one
+        // matches nothing
+        validate();
+        oEvent = OperationEvent.begin( OperationEvent.FIND_ROOMS );
+        alTerms = new ArrayList<String>();
+        tokenize( strQuery.toLowerCase( Locale.ROOT ), alTerms, true );
+        nTerms = nMaxRooms > 0 ? alTerms.size() : 0;
+        aaoPostings = new Posting[ nTerms ][];
+        anSizes = new int[ nTerms ];
+        for( nI = 0; nI < nTerms; nI++ )
+        {
+            aaoPostings[ nI ] = getPostings( alTerms.get( nI ) );
+            if( aaoPostings[ nI ].length == 0 )
+            {
+                nTerms = 0;
+                break;
+            }
+            for( final Posting oPosting : aaoPostings[ nI ] )
+                anSizes[ nI ] += oPosting.m_nCount;
+        }
+
+        // Order the words from the rarest to the most common
+        for( nI = 1; nI < nTerms; nI++ )
+        {
+            for( int nJ = nI; nJ > 0 && anSizes[ nJ ] < anSizes[ nJ - 1 ]; nJ-- )
+            {
+                Posting[] aoPostings = aaoPostings[ nJ ];
+                aaoPostings[ nJ ] = aaoPostings[ nJ - 1 ];
+                aaoPostings[ nJ - 1 ] = aoPostings;
+                int nSize = anSizes[ nJ ];
+                anSizes[ nJ ] = anSizes[ nJ - 1 ];
+                anSizes[ nJ - 1 ] = nSize;
+            }
+        }
+
+        // Mark the rooms of each word that costs less to walk than to
+        // search for each room of the rarest word; a room matches all the
+        // marked words if its mark is m_nMarkBase + nMarked
+        if( m_nMarkBase > Integer.MAX_VALUE - nTerms - 2 )
+        {
+            Arrays.fill( m_anMarks, 0 );
+            m_nMarkBase = 1;
+        }
+        abMarked = new boolean[ nTerms ];
+        nMarked = 0;
+        for( nI = 1; nI < nTerms; nI++ )
+        {
+            if( (long)anSizes[ 0 ] * aaoPostings[ nI ].length * PROBE_COST <= anSizes[ nI ] )
+                continue;
+            abMarked[ nI ] = true;
+            int nFrom = m_nMarkBase + nMarked,
+                nTo = nFrom + 1;
+            for( final Posting oPosting : aaoPostings[ nI ] )
+            {
+                for( int nJ = 0; nJ < oPosting.m_nCount; nJ++ )
+                {
+                    int nRoom = oPosting.m_anRooms[ nJ ];
+                    if( nMarked == 0 ? m_anMarks[ nRoom ] != nTo : m_anMarks[ nRoom ] == nFrom )
+                        m_anMarks[ nRoom ] = nTo;
+                }
+            }
+            nMarked++;
+        }
+
+        // Visit the rooms of the rarest word in index order by merging its
+        // posting lists, and keep those that match all other words
+        aoRooms = new Room[ Math.min( nMaxRooms, nTerms > 0 ? anSizes[ 0 ] : 0 ) ];
+        nMatches = 0;
+        aoFirst = nTerms > 0 ? aaoPostings[ 0 ] : new Posting[ 0 ];
+        anHeap = new int[ aoFirst.length ];
+        anAt = new int[ aoFirst.length ];
+        for( nI = 0; nI < aoFirst.length; nI++ )
+            anHeap[ nI ] = nI;
+        nHeapSize = aoFirst.length;
+        for( nI = nHeapSize / 2 - 1; nI >= 0; nI-- )
+            siftDown( anHeap, nHeapSize, nI, aoFirst, anAt );
+        nPrevious = MapGraph.NONE;
+        while( nHeapSize > 0 && nMatches < aoRooms.length )
+        {
+            // Take the lowest room and advance its list
+            int nList = anHeap[ 0 ],
+                nRoom = aoFirst[ nList ].m_anRooms[ anAt[ nList ]++ ];
+            if( anAt[ nList ] == aoFirst[ nList ].m_nCount )
+                anHeap[ 0 ] = anHeap[ --nHeapSize ];
+            siftDown( anHeap, nHeapSize, 0, aoFirst, anAt );
+            if( nRoom == nPrevious )
+                continue;
+            nPrevious = nRoom;
+
+            // Check the room against the other words
+            if( nMarked > 0 && m_anMarks[ nRoom ] != m_nMarkBase + nMarked )
+                continue;
+            boolean bMatch = true;
+            for( nI = 1; nI < nTerms && bMatch; nI++ )
+            {
+                if( !abMarked[ nI ] )
+                    bMatch = contains( aaoPostings[ nI ], nRoom );
+            }
+            if( bMatch )
+                aoRooms[ nMatches++ ] = m_aoRooms[ nRoom ];
+        }
+        m_nMarkBase += nMarked + 1;
+
+        // Return the matching rooms
+        if( nMatches < aoRooms.length )
+            aoRooms = Arrays.copyOf( aoRooms, nMatches );
+        oEvent.set( "terms", alTerms.size() );
+        oEvent.set( "rooms", nMatches );
+        oEvent.commit();
+        return( aoRooms );
+    }
+
+    /**
+     * Gets the number of distinct tokens in the index.
+     *
+     * @return  The number of tokens.
+     */
+
+    public int getTokenCount()
+    {
+        // Return the number of posting lists
+        validate();
+        return( m_oPostings.size() );
+    }
+
+
+    // **********************************************************************
+    // *********************     MapListener Methods    *********************
+    // **********************************************************************
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomAdded( Map, Room )
+     *     roomAdded
+     */
+
+    public void roomAdded( Map oMap, Room oRoom )
+    {
+        // Index the room unless the index will be rebuilt anyway
+        if( !m_bStale )
+            indexRoom( oRoom );
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#roomRemoved( Map, Room )
+     *     roomRemoved
+     */
+
+    public void roomRemoved( Map oMap, Room oRoom )
+    {
+        // Make sure the room is indexed
+        if( m_bStale )
+            return;
+        int nRoom = getRoomIndex( oRoom );
+        if( nRoom == MapGraph.NONE )
+            return;
+
+        // Remove the words of the room and free its index
+        removeText( oRoom );
+        m_oRoomIndex.remove( oRoom.m_strID );
+        m_aoRooms[ nRoom ] = null;
+        if( m_nFreeRoomCount == m_anFreeRooms.length )
+            m_anFreeRooms = MapGraph.grow( m_anFreeRooms, m_nFreeRoomCount + 1 );
+        m_anFreeRooms[ m_nFreeRoomCount++ ] = nRoom;
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeAdded( Map, Edge )
+     *     edgeAdded
+     */
+
+    public void edgeAdded( Map oMap, Edge oEdge )
+    {
+        // Edges have no text to index
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeRemoved( Map, Edge )
+     *     edgeRemoved
+     */
+
+    public void edgeRemoved( Map oMap, Edge oEdge )
+    {
+        // Edges have no text to index
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#edgeChanged( Map, Edge )
+     *     edgeChanged
+     */
+
+    public void edgeChanged( Map oMap, Edge oEdge )
+    {
+        // Edges have no text to index
+    }
+
+    /**
+     * @see  soloff.steven.ifmap.MapListener#mapReset( Map )  mapReset
+     */
+
+    public void mapReset( Map oMap )
+    {
+        // Rebuild the index when it is next used, and release the old one
+        // in the meantime
+        m_bStale = true;
+        m_oPostings = null;
+        m_oSortedPostings = null;
+        m_oRoomIndex = null;
+        m_aoRooms = null;
+        m_anMarks = null;
+    }
+
+
+    // **********************************************************************
+    // *********************  Package Instance Methods  *********************
+    // **********************************************************************
+
+    /**
+     * Removes the words of the specified room from the index.  The Room
+     * calls this before its name or description is set.
+     *
+     * @param  oRoom  The room whose words are to be removed.
+     */
+
+    void removeText( Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<String> alTokens;  // Tokens of the room
+        int               nRoom;     // Index of the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure the room is indexed
+        if( m_bStale || (nRoom = getRoomIndex( oRoom )) == MapGraph.NONE )
+            return;
+
+        // Remove the room from the posting list of each of its tokens, and
+        // drop the lists that become empty
+        alTokens = getTokens( oRoom );
+        for( final String strToken : alTokens )
+        {
+            Posting oPosting = m_oPostings.get( strToken );
+            if( oPosting != null && oPosting.remove( nRoom ) && oPosting.m_nCount == 0 )
+            {
+                m_oPostings.remove( strToken );
+                m_oSortedPostings.remove( strToken );
+            }
+        }
+    }
+
+    /**
+     * Adds the words of the specified room to the index.  The Room calls
+     * this after its name or description is set.
+     *
+     * @param  oRoom  The room whose words are to be added.
+     */
+
+    void addText( Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        ArrayList<String> alTokens;  // Tokens of the room
+        int               nRoom;     // Index of the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure the room is indexed
+        if( m_bStale || (nRoom = getRoomIndex( oRoom )) == MapGraph.NONE )
+            return;
+
+        // Add the room to the posting list of each of its tokens, creating
+        // the lists of new tokens
+        alTokens = getTokens( oRoom );
+        for( final String strToken : alTokens )
+        {
+            Posting oPosting = m_oPostings.get( strToken );
+            if( oPosting == null )
+            {
+                oPosting = new Posting();
+                m_oPostings.put( strToken, oPosting );
+                m_oSortedPostings.put( strToken, oPosting );
+            }
+            oPosting.insert( nRoom );
+        }
+    }
+
+
+    // **********************************************************************
+    // ********************* Protected Instance Methods *********************
+    // **********************************************************************
+
+    /**
+     * Rebuilds the index from all rooms on the Map.
+     */
+
+    protected void rebuild()
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        OperationEvent    oEvent;     // Event describing the build
+        ArrayList<String> alTokens;   // Tokens of each room
+        int               nCapacity,  // Initial capacity of the room arrays
+                          nRoom;      // Index of each room
+        long              lPostings;  // Number of postings
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Allocate the arrays with some room to grow
+        oEvent = OperationEvent.begin( OperationEvent.INDEX_TEXT );
+        nCapacity = Math.max( 16, m_oMap.m_oRoomMap.size() + m_oMap.m_oRoomMap.size() / 8 );
+        m_oRoomIndex = new HashMap<String, Integer>( (int)(nCapacity / 0.75f) + 1 );
+        m_aoRooms = new Room[ nCapacity ];
+        m_anMarks = new int[ nCapacity ];
+        m_nMarkBase = 1;
+        m_anFreeRooms = new int[ 16 ];
+        m_nRoomLimit = m_nFreeRoomCount = 0;
+        m_oPostings = new HashMap<String, Posting>();
+        m_bStale = false;
+
+        // Index all rooms; each is given the next index, so appending it to
+        // the posting lists keeps them sorted, and a token repeated within
+        // the room is only ever the last entry of its list
+        alTokens = new ArrayList<String>();
+        lPostings = 0;
+        for( final Room oRoom : m_oMap.m_oRoomMap.values() )
+        {
+            nRoom = m_nRoomLimit++;
+            m_aoRooms[ nRoom ] = oRoom;
+            m_oRoomIndex.put( oRoom.m_strID, Integer.valueOf( nRoom ) );
+            alTokens.clear();
+            tokenize( oRoom.getName().toLowerCase( Locale.ROOT ), alTokens, false );
+            tokenize( oRoom.getDescription().toLowerCase( Locale.ROOT ), alTokens, false );
+            for( final String strToken : alTokens )
+            {
+                Posting oPosting = m_oPostings.get( strToken );
+                if( oPosting == null )
+                {
+                    oPosting = new Posting();
+                    m_oPostings.put( strToken, oPosting );
+                }
+                if( oPosting.m_nCount == 0 || oPosting.m_anRooms[ oPosting.m_nCount - 1 ] != nRoom )
+                {
+                    oPosting.append( nRoom );
+                    lPostings++;
+                }
+            }
+        }
+
+        // Sort the tokens for prefix queries
+        m_oSortedPostings = new TreeMap<String, Posting>( m_oPostings );
+
+        // Record the build
+        oEvent.set( "rooms", m_nRoomLimit );
+        oEvent.set( "tokens", m_oPostings.size() );
+        oEvent.set( "postings", lPostings );
+        oEvent.commit();
+    }
+
+    /**
+     * Gives the specified room an index and adds its words to the index.
+     *
+     * @param  oRoom  The room to be indexed.
+     */
+
+    protected void indexRoom( Room oRoom )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nRoom;  // Index of the room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Reuse a freed index, or take the next one and grow the arrays if
+        // they are full
+        if( m_nFreeRoomCount > 0 )
+            nRoom = m_anFreeRooms[ --m_nFreeRoomCount ];
+        else
+        {
+            nRoom = m_nRoomLimit++;
+            if( nRoom == m_aoRooms.length )
+            {
+                Room[] aoRooms = new Room[ nRoom * 2 ];
+                System.arraycopy( m_aoRooms, 0, aoRooms, 0, nRoom );
+                m_aoRooms = aoRooms;
+                m_anMarks = MapGraph.grow( m_anMarks, nRoom * 2 );
+            }
+        }
+
+        // Store the room and add its words
+        m_aoRooms[ nRoom ] = oRoom;
+        m_anMarks[ nRoom ] = 0;
+        m_oRoomIndex.put( oRoom.m_strID, Integer.valueOf( nRoom ) );
+        addText( oRoom );
+    }
+
+    /**
+     * Gets the index of the specified room.
+     *
+     * @param  oRoom  The room whose index is to be returned.
+     *
+     * @return  The index of the room, or MapGraph.NONE if it is not
+     *     indexed.
+     */
+
+    protected int getRoomIndex( Room oRoom )
+    {
+        // Look up the index and make sure it belongs to the same Room
+        Integer oIndex = m_oRoomIndex.get( oRoom.m_strID );
+        if( oIndex == null || m_aoRooms[ oIndex.intValue() ] != oRoom )
+            return( MapGraph.NONE );
+        return( oIndex.intValue() );
+    }
+
+    /**
+     * Gets the posting lists matched by the specified query word.
+     *
+     * @param  strTerm  The query word, in lower case and ending in
+     *     PREFIX_MARK if it is a prefix.
+     *
+     * @return  The posting lists of the tokens matched by the word.
+     */
+
+    protected Posting[] getPostings( String strTerm )
+    {
+        // Look up a whole word
+        if( strTerm.charAt( strTerm.length() - 1 ) != PREFIX_MARK )
+        {
+            Posting oPosting = m_oPostings.get( strTerm );
+            return( oPosting != null ? new Posting[] { oPosting } : new Posting[ 0 ] );
+        }
+
+        // Look up the range of tokens that start with a prefix
+        String strPrefix = strTerm.substring( 0, strTerm.length() - 1 );
+        return( m_oSortedPostings.subMap( strPrefix, strPrefix + Character.MAX_VALUE )
+            .values().toArray( new Posting[ 0 ] ) );
+    }
+
+
+    // **********************************************************************
+    // *********************  Protected Class Methods   *********************
+    // **********************************************************************
+
+    /**
+     * Indicates if any of the specified posting lists contains the
+     * specified room.
+     *
+     * @param  aoPostings  The posting lists.
+     * @param  nRoom  The room index.
+     *
+     * @return  A flag indicating if the room is in any of the lists.
+     */
+
+    protected static boolean contains( Posting[] aoPostings, int nRoom )
+    {
+        // Search each list in turn
+        for( final Posting oPosting : aoPostings )
+        {
+            if( Arrays.binarySearch( oPosting.m_anRooms, 0, oPosting.m_nCount, nRoom ) >= 0 )
+                return( true );
+        }
+        return( false );
+    }
+
+    /**
+     * Moves a posting list down a heap of posting lists ordered by their
+     * next room until the heap is in order again.
+     *
+     * @param  anHeap  The indices of the posting lists, as a heap.
+     * @param  nSize  The number of lists in the heap.
+     * @param  nAt  The position in the heap of the list to be moved.
+     * @param  aoPostings  The posting lists.
+     * @param  anAt  The position of the next room in each posting list.
+     */
+
+    protected static void siftDown( int[] anHeap, int nSize, int nAt, Posting[] aoPostings, int[] anAt )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nList,   // Posting list being moved
+            nRoom,   // Next room of the list being moved
+            nChild;  // Position of the child with the lower next room
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Move the list down past each child whose next room is lower
+        if( nAt >= nSize )
+            return;
+        nList = anHeap[ nAt ];
+        nRoom = aoPostings[ nList ].m_anRooms[ anAt[ nList ] ];
+        while( (nChild = nAt * 2 + 1) < nSize )
+        {
+            if( nChild + 1 < nSize && getNextRoom( anHeap[ nChild + 1 ], aoPostings, anAt ) <
+                getNextRoom( anHeap[ nChild ], aoPostings, anAt ) )
+                nChild++;
+            if( getNextRoom( anHeap[ nChild ], aoPostings, anAt ) >= nRoom )
+                break;
+            anHeap[ nAt ] = anHeap[ nChild ];
+            nAt = nChild;
+        }
+        anHeap[ nAt ] = nList;
+    }
+
+    /**
+     * Gets the next room of the specified posting list.
+     *
+     * @param  nList  The index of the posting list.
+     * @param  aoPostings  The posting lists.
+     * @param  anAt  The position of the next room in each posting list.
+     *
+     * @return  The next room of the list.
+     */
+
+    protected static int getNextRoom( int nList, Posting[] aoPostings, int[] anAt )
+    {
+        // Return the room at the position of the list
+        return( aoPostings[ nList ].m_anRooms[ anAt[ nList ] ] );
+    }
+
+    /**
+     * Gets the tokens of the name and description of the specified room.
+     * A token may be listed more than once.
+     *
+     * @param  oRoom  The room.
+     *
+     * @return  The tokens of the room.
+     */
+
+    protected static ArrayList<String> getTokens( Room oRoom )
+    {
+        // Split the name and description of the room
+        ArrayList<String> alTokens = new ArrayList<String>();
+        tokenize( oRoom.getName().toLowerCase( Locale.ROOT ), alTokens, false );
+        tokenize( oRoom.getDescription().toLowerCase( Locale.ROOT ), alTokens, false );
+        return( alTokens );
+    }
+
+    /**
+     * Splits the specified text into tokens: the runs of letters and
+     * digits it contains.
+     *
+     * @param  strText  The text, in lower case.
+     * @param  alTokens  The list to which the tokens are added.
+     * @param  bMarkPrefixes  Indicates if a token followed by PREFIX_MARK
+     *     keeps the mark, as the words of a query do.
+     */
+
+    protected static void tokenize( String strText, ArrayList<String> alTokens, boolean bMarkPrefixes )
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        int nLength,  // Length of the text
+            nStart,   // Start of the current token
+            nI;       // Loop control
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Add each run of letters and digits
+        nLength = strText.length();
+        nStart = -1;
+        for( nI = 0; nI <= nLength; nI++ )
+        {
+            if( nI < nLength && Character.isLetterOrDigit( strText.charAt( nI ) ) )
+            {
+                if( nStart < 0 )
+                    nStart = nI;
+            }
+            else if( nStart >= 0 )
+            {
+                if( bMarkPrefixes && nI < nLength && strText.charAt( nI ) == PREFIX_MARK )
+                    alTokens.add( strText.substring( nStart, nI + 1 ) );
+                else
+                    alTokens.add( strText.substring( nStart, nI ) );
+                nStart = -1;
+            }
+        }
+    }
+
+
+    // **********************************************************************
+    // *********************       Inner Classes        *********************
+    // **********************************************************************
+
+    /**
+     * The sorted indices of the rooms that contain one token.
+     */
+
+    protected static class Posting
+        extends Object
+    {
+        // ------------------------------------------------------------------
+        // -----------------     Instance Variables     ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * The room indices in ascending order.
+         */
+        int[] m_anRooms;
+
+        /**
+         * The number of room indices.
+         */
+        int m_nCount;
+
+
+        // ------------------------------------------------------------------
+        // -----------------        Constructors        ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Constructs a new, empty Posting.
+         */
+
+        Posting()
+        {
+            // Initialize instance variables
+            m_anRooms = new int[ INITIAL_POSTING_CAPACITY ];
+            m_nCount = 0;
+        }
+
+
+        // ------------------------------------------------------------------
+        // -----------------  Package Instance Methods  ---------------------
+        // ------------------------------------------------------------------
+
+        /**
+         * Adds a room index greater than all those in the list.
+         *
+         * @param  nRoom  The room index.
+         */
+
+        void append( int nRoom )
+        {
+            // Grow the list if it is full and add the index at its end
+            if( m_nCount == m_anRooms.length )
+                m_anRooms = MapGraph.grow( m_anRooms, m_nCount + 1 );
+            m_anRooms[ m_nCount++ ] = nRoom;
+        }
+
+        /**
+         * Adds a room index in order unless it is already in the list.
+         *
+         * @param  nRoom  The room index.
+         */
+
+        void insert( int nRoom )
+        {
+            // Find where the index belongs
+            int nAt = Arrays.binarySearch( m_anRooms, 0, m_nCount, nRoom );
+            if( nAt >= 0 )
+                return;
+            nAt = -nAt - 1;
+
+            // Shift the greater indices up to make room for it
+            if( m_nCount == m_anRooms.length )
+                m_anRooms = MapGraph.grow( m_anRooms, m_nCount + 1 );
+            System.arraycopy( m_anRooms, nAt, m_anRooms, nAt + 1, m_nCount - nAt );
+            m_anRooms[ nAt ] = nRoom;
+            m_nCount++;
+        }
+
+        /**
+         * Removes a room index from the list.
+         *
+         * @param  nRoom  The room index.
+         *
+         * @return  A flag indicating if the index was in the list.
+         */
+
+        boolean remove( int nRoom )
+        {
+            // Find the index and shift the greater indices down over it
+            int nAt = Arrays.binarySearch( m_anRooms, 0, m_nCount, nRoom );
+            if( nAt < 0 )
+                return( false );
+            System.arraycopy( m_anRooms, nAt + 1, m_anRooms, nAt, m_nCount - nAt - 1 );
+            m_nCount--;
+            return( true );
+        }
+    }
+}
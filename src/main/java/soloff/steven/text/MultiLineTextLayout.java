@@ -0,0 +1,207 @@
+/*
+ * MultiLineTextLayout.java
+ *
+ * Copyright 2000-2013 by Steven Soloff.
+ * All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package soloff.steven.text;
+
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.font.LineMetrics;
+
+/**
+ * The precomputed layout of a multi-line string in which each line is
+ * centered horizontally within the block of text.  The glyphs of each line
+ * are shaped once when the layout is constructed, so the layout may be drawn
+ * any number of times without measuring or shaping the text again.  A layout
+ * is only valid for the font and font render context it was created with.
+ */
+
+public class MultiLineTextLayout
+    extends Object
+{
+//
+// Instance Variables
+//
+    /**
+     * The lines of text in the layout.
+     */
+    private String[] m_astrLines;
+
+    /**
+     * The font used to shape the text.
+     */
+    private Font m_oFont;
+
+    /**
+     * The font render context used to shape the text.
+     */
+    private FontRenderContext m_oFontRenderContext;
+
+    /**
+     * The shaped glyphs of each line.
+     */
+    private GlyphVector[] m_aoGlyphs;
+
+    /**
+     * The horizontal offset of each line from the left of the text block.
+     */
+    private float[] m_afLineOffsets;
+
+    /**
+     * The dimensions of the text block.
+     */
+    private Dimension m_dmSize;
+
+    /**
+     * The distance from the top of a line to its baseline.
+     */
+    private int m_nAscent;
+
+    /**
+     * The distance between the baselines of adjacent lines.
+     */
+    private int m_nLineHeight;
+
+//
+// Constructors
+//
+    /**
+     * Constructs a new MultiLineTextLayout object.
+     *
+     * @param  astrLines  The lines of text to be laid out.
+     * @param  oFont  The font used to shape the text.
+     * @param  oFontRenderContext  The font render context used to shape the
+     *     text.
+     *
+     * @exception  IllegalArgumentException  If astrLines, oFont, or
+     *     oFontRenderContext is null.
+     */
+
+    public MultiLineTextLayout( String[] astrLines, Font oFont, FontRenderContext oFontRenderContext )
+        throws IllegalArgumentException
+    {
+        /////////////////////////////////////////////////////////////////////
+        // VARIABLE DECLARATIONS                                           //
+
+        LineMetrics oLineMetrics;  // Metrics of a line in the font
+        float[]     afAdvances;    // Advance of each line
+        float       fWidth;        // Maximum advance of all lines
+        int         nI;            // Loop control variable
+
+        //                                                                 //
+        /////////////////////////////////////////////////////////////////////
+
+        // Make sure arguments are valid
+        if( astrLines == null || oFont == null || oFontRenderContext == null )
+            throw new IllegalArgumentException();
+
+        // Initialize instance variables
+        m_astrLines = astrLines;
+        m_oFont = oFont;
+        m_oFontRenderContext = oFontRenderContext;
+
+        // Compute the line metrics (rounded in the same manner as FontMetrics)
+        oLineMetrics = oFont.getLineMetrics( "", oFontRenderContext );
+        m_nAscent = Math.round( oLineMetrics.getAscent() );
+        m_nLineHeight = m_nAscent + Math.round( oLineMetrics.getDescent() ) +
+            Math.round( oLineMetrics.getLeading() );
+
+        // Shape each line and compute the width of the text block
+        m_aoGlyphs = new GlyphVector[ astrLines.length ];
+        afAdvances = new float[ astrLines.length ];
+        for( nI = 0, fWidth = 0.0f; nI < astrLines.length; nI++ )
+        {
+            m_aoGlyphs[ nI ] = oFont.createGlyphVector( oFontRenderContext, astrLines[ nI ] );
+            afAdvances[ nI ] = (float)m_aoGlyphs[ nI ].getLogicalBounds().getWidth();
+            fWidth = Math.max( fWidth, afAdvances[ nI ] );
+        }
+        m_dmSize = new Dimension( (int)Math.ceil( fWidth ), m_nLineHeight * astrLines.length );
+
+        // Center each line within the text block
+        m_afLineOffsets = new float[ astrLines.length ];
+        for( nI = 0; nI < astrLines.length; nI++ )
+            m_afLineOffsets[ nI ] = (int)((m_dmSize.width - afAdvances[ nI ]) / 2.0f);
+    }
+
+//
+// Public Instance Methods
+//
+    /**
+     * Gets the dimensions of the text block.
+     *
+     * @return  The dimensions of the text block.
+     */
+
+    public Dimension getSize()
+    {
+        // Return a copy of the text block dimensions
+        return( new Dimension( m_dmSize ) );
+    }
+
+    /**
+     * Gets the distance from the top of a line to its baseline.
+     *
+     * @return  The ascent of the font.
+     */
+
+    public int getAscent()
+    {
+        // Return the ascent
+        return( m_nAscent );
+    }
+
+    /**
+     * Indicates if this layout may be used to draw the specified text with
+     * the specified font and font render context.
+     *
+     * @param  astrLines  The lines of text to be drawn.
+     * @param  oFont  The font used to draw the text.
+     * @param  oFontRenderContext  The font render context used to draw the
+     *     text.
+     *
+     * @return  A flag indicating if this layout is valid for the text.
+     */
+
+    public boolean isValidFor( String[] astrLines, Font oFont, FontRenderContext oFontRenderContext )
+    {
+        // The layout is valid if it was created from the same lines of text
+        // and an equivalent font and render context
+        return( astrLines == m_astrLines && m_oFont.equals( oFont ) &&
+            m_oFontRenderContext.equals( oFontRenderContext ) );
+    }
+
+    /**
+     * Draws the text block using the current color of the graphics context.
+     *
+     * @param  g  The graphics context used for drawing.
+     * @param  nX  The x-coordinate of the left of the text block.
+     * @param  nY  The y-coordinate of the top of the text block.
+     */
+
+    public void draw( Graphics2D g, int nX, int nY )
+    {
+        // Draw the glyphs of each line at its baseline
+        for( int nI = 0; nI < m_aoGlyphs.length; nI++ )
+            g.drawGlyphVector( m_aoGlyphs[ nI ], nX + m_afLineOffsets[ nI ],
+                nY + m_nAscent + nI * m_nLineHeight );
+    }
+}